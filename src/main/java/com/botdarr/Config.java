@@ -79,6 +79,19 @@ public class Config {
     return getConfig().properties.getProperty(key);
   }
 
+  public static int getIntProperty(String key, int defaultValue) {
+    String value = getProperty(key);
+    if (Strings.isBlank(value)) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      LOGGER.warn("Invalid number for property " + key + "=" + value + ", using default " + defaultValue);
+      return defaultValue;
+    }
+  }
+
   public static boolean isRadarrEnabled() {
     return getConfig().isRaddarrEnabled;
   }
@@ -143,6 +156,17 @@ public class Config {
      */
     public static final String RADARR_URL_BASE = "radarr-url-base";
 
+    /**
+     * Comma separated name:weight pairs for ranking releases found by torrent searches
+     * (quality, seeders, size, age, indexer, rejected), i.e., quality:3,seeders:2
+     */
+    public static final String RADARR_TORRENT_RANK_WEIGHTS = "radarr-torrent-rank-weights";
+
+    /**
+     * Comma separated indexer names (best first) whose releases rank higher in torrent searches
+     */
+    public static final String RADARR_PREFERRED_INDEXERS = "radarr-preferred-indexers";
+
     /**
      * The url to your sonarr instance
      * (i.e., http://SOME_IP:PORT)
@@ -169,6 +193,166 @@ public class Config {
      */
     public static final String SONARR_URL_BASE = "sonarr-url-base";
 
+    /**
+     * How long (in seconds) cached data of a given type is served before a background refresh is triggered
+     * (i.e., cache-downloads-refresh-seconds=30)
+     */
+    public static final String CACHE_REFRESH_SECONDS_FORMAT = "cache-%s-refresh-seconds";
+
+    /**
+     * The oldest (in seconds) cached data of a given type can be before it is no longer served
+     * (i.e., cache-downloads-max-stale-seconds=600)
+     */
+    public static final String CACHE_MAX_STALE_SECONDS_FORMAT = "cache-%s-max-stale-seconds";
+
+    /**
+     * The number of threads that keep time for scheduled jobs and send quick background replies
+     */
+    public static final String SCHEDULER_THREADS = "scheduler-threads";
+
+    /**
+     * The number of threads each api (and each other periodic job) gets for blocking work, i.e., caching,
+     * notifications, snapshot refreshes and webhooks
+     */
+    public static final String SCHEDULER_IO_THREADS = "scheduler-io-threads";
+
+    /**
+     * The fastest (in seconds) radarr/sonarr data is re-cached, used after changes or user activity
+     */
+    public static final String CACHE_REFRESH_MIN_SECONDS = "cache-refresh-min-seconds";
+
+    /**
+     * The slowest (in seconds) radarr/sonarr data is re-cached, reached when nothing changes and nobody is using the bot
+     */
+    public static final String CACHE_REFRESH_MAX_SECONDS = "cache-refresh-max-seconds";
+
+    /**
+     * Overrides the fastest (in seconds) one class of data (library, profiles) is re-cached
+     */
+    public static final String CACHE_CLASS_REFRESH_MIN_SECONDS_FORMAT = "cache-%s-refresh-min-seconds";
+
+    /**
+     * Overrides the slowest (in seconds) one class of data (library, profiles) is re-cached
+     */
+    public static final String CACHE_CLASS_REFRESH_MAX_SECONDS_FORMAT = "cache-%s-refresh-max-seconds";
+
+    /**
+     * How long (in seconds) a command waits for the caches it depends on to warm up before answering "still warming up"
+     */
+    public static final String CACHE_WARMUP_WAIT_SECONDS = "cache-warmup-wait-seconds";
+
+    /**
+     * The fastest (in seconds) the download queues are polled for changes to notify about
+     */
+    public static final String DOWNLOAD_NOTIFICATIONS_SECONDS = "download-notifications-seconds";
+
+    /**
+     * How far (in percent) a download has to progress before another progress notification is sent
+     */
+    public static final String DOWNLOAD_PROGRESS_STEP_PERCENT = "download-progress-step-percent";
+
+    /**
+     * How long (in minutes) a download can go without progressing before it is reported as stalled
+     */
+    public static final String DOWNLOAD_STALL_MINUTES = "download-stall-minutes";
+
+    /**
+     * The number of threads commands run on (so slow commands don't block the chat client)
+     */
+    public static final String COMMAND_THREADS = "command-threads";
+
+    /**
+     * The most commands that can be waiting to run before new ones are rejected with "bot busy"
+     */
+    public static final String COMMAND_QUEUE_LIMIT = "command-queue-limit";
+
+    /**
+     * The most commands a single user (in a single channel) can have waiting to run
+     */
+    public static final String COMMAND_QUEUE_PER_USER_LIMIT = "command-queue-per-user-limit";
+
+    /**
+     * How long a command has (including time spent waiting in the queue) before it is dropped/its requests time out
+     */
+    public static final String COMMAND_TIMEOUT_SECONDS = "command-timeout-seconds";
+
+    /**
+     * How many commands a single user can run per minute (expensive commands count rate-limit-expensive-weight times)
+     */
+    public static final String RATE_LIMIT_USER_PER_MINUTE = "rate-limit-user-per-minute";
+
+    /**
+     * How many commands can be run in a single channel per minute (expensive commands count rate-limit-expensive-weight times)
+     */
+    public static final String RATE_LIMIT_CHANNEL_PER_MINUTE = "rate-limit-channel-per-minute";
+
+    /**
+     * How many expensive commands (i.e., torrent searches that hit every indexer) can be run per minute by everyone combined
+     */
+    public static final String RATE_LIMIT_EXPENSIVE_PER_MINUTE = "rate-limit-expensive-per-minute";
+
+    /**
+     * How many commands an expensive command counts as against the user/channel limits
+     */
+    public static final String RATE_LIMIT_EXPENSIVE_WEIGHT = "rate-limit-expensive-weight";
+
+    /**
+     * If true, downloads are shown on a single message per channel that is edited in place,
+     * instead of posting a message per download/change
+     */
+    public static final String STATUS_BOARD_ENABLED = "status-board-enabled";
+
+    /**
+     * How often (in seconds) the status board refreshes while people are looking at it (after a downloads command)
+     */
+    public static final String STATUS_BOARD_REFRESH_SECONDS = "status-board-refresh-seconds";
+
+    /**
+     * The port to listen on for radarr/sonarr webhooks (Settings->Connect->Webhook), leave empty to only poll
+     */
+    public static final String WEBHOOK_PORT = "webhook-port";
+
+    /**
+     * Token webhooks must send as the token query parameter (i.e., http://botdarr:8080/radarr?token=abc),
+     * without one webhooks are only accepted from localhost
+     */
+    public static final String WEBHOOK_TOKEN = "webhook-token";
+
+    /**
+     * How often (in minutes) every slack channel/user name is re-read, on top of the updates slack sends as they happen
+     */
+    public static final String SLACK_METADATA_REFRESH_MINUTES = "slack-metadata-refresh-minutes";
+
+    /**
+     * How many posted messages (with add commands) are remembered so thumbs up reactions don't need to fetch them back
+     */
+    public static final String REACTION_INDEX_MAX_SIZE = "reaction-index-max-size";
+
+    /**
+     * How long (in hours) posted messages are remembered for thumbs up reactions
+     */
+    public static final String REACTION_INDEX_EXPIRE_HOURS = "reaction-index-expire-hours";
+
+    /**
+     * Optional file the remembered messages are saved to, so they survive restarts
+     */
+    public static final String REACTION_INDEX_FILE = "reaction-index-file";
+
+    /**
+     * The longest (in seconds) the bot waits between attempts to reconnect to slack
+     */
+    public static final String SLACK_RECONNECT_MAX_BACKOFF_SECONDS = "slack-reconnect-max-backoff-seconds";
+
+    /**
+     * How far back (in minutes) commands sent while disconnected from slack are run after reconnecting, 0 turns it off
+     */
+    public static final String SLACK_CATCH_UP_MINUTES = "slack-catch-up-minutes";
+
+    /**
+     * Whether discord runs without the member/presence/voice caches the bot never uses
+     */
+    public static final String DISCORD_LOW_MEMORY = "discord-low-memory";
+
     //TODO: implement
     public static final String LIDARR_URL = "lidar-url";
   }
@@ -4,6 +4,7 @@ import com.botdarr.Config;
 import com.botdarr.clients.ChatClient;
 import com.botdarr.clients.ChatClientResponse;
 import com.botdarr.clients.ChatClientResponseBuilder;
+import com.google.gson.JsonObject;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.util.Strings;
@@ -13,6 +14,11 @@ import java.net.URLEncoder;
 import java.util.List;
 
 public interface Api {
+  /**
+   * A short name for this api (i.e., radarr), used for naming jobs/threads
+   */
+  String getName();
+
   /**
    * The url base for this api (can be null/empty)
    */
@@ -29,14 +35,22 @@ public interface Api {
   List<ChatClientResponse> downloads();
 
   /**
-   * Notifications that are sent every 10 minutes
+   * Sends notifications for whatever changed in the download queue since the last time this was called,
+   * returns true if anything changed
+   */
+  boolean sendPeriodicNotifications(ChatClient chatClient);
+
+  /**
+   * Applies a radarr/sonarr webhook ("Connect") event to the cached data as it happens,
+   * and triggers download notifications right away for grabs/downloads
    */
-  void sendPeriodicNotifications(ChatClient chatClient);
+  void handleWebhook(JsonObject webhook);
 
   /**
-   * Data cached from jda directly in the api
+   * Caches one class of data from the api, returns whether anything changed since the last time it was cached
+   * or FAILED if the backend couldn't be read (the cache is left as it was)
    */
-  void cacheData();
+  CacheResult cacheData(CacheClass cacheClass);
 
   /**
    * Gets the auth token for this api
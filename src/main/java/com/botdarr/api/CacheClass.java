@@ -0,0 +1,29 @@
+package com.botdarr.api;
+
+/**
+ * The classes of data each api caches periodically, each refreshed on its own adaptive schedule
+ * (a library changes all the time, profiles almost never)
+ */
+public enum CacheClass {
+  LIBRARY("library", 1),
+  PROFILES("profiles", 6);
+
+  CacheClass(String name, int intervalFactor) {
+    this.name = name;
+    this.intervalFactor = intervalFactor;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * How many times slower than the library this class refreshes by default
+   */
+  public int getIntervalFactor() {
+    return intervalFactor;
+  }
+
+  private final String name;
+  private final int intervalFactor;
+}
@@ -0,0 +1,10 @@
+package com.botdarr.api;
+
+/**
+ * What a cache refresh found, a failed refresh leaves the cache as it was
+ */
+public enum CacheResult {
+  CHANGED,
+  UNCHANGED,
+  FAILED
+}
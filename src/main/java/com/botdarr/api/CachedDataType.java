@@ -0,0 +1,44 @@
+package com.botdarr.api;
+
+import com.botdarr.Config;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The classes of backend data we keep snapshots of, each with its own staleness bounds
+ */
+public enum CachedDataType {
+  PROFILES("profiles", TimeUnit.MINUTES.toSeconds(5), TimeUnit.DAYS.toSeconds(1)),
+  LOOKUPS("lookups", TimeUnit.MINUTES.toSeconds(2), TimeUnit.MINUTES.toSeconds(30)),
+  DOWNLOADS("downloads", 15, TimeUnit.MINUTES.toSeconds(10));
+
+  CachedDataType(String name, long defaultRefreshSeconds, long defaultMaxStaleSeconds) {
+    this.name = name;
+    this.defaultRefreshSeconds = defaultRefreshSeconds;
+    this.defaultMaxStaleSeconds = defaultMaxStaleSeconds;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * How old a snapshot can get before we start refreshing it in the background
+   */
+  public long getRefreshAfterMillis() {
+    return TimeUnit.SECONDS.toMillis(Config.getIntProperty(
+      String.format(Config.Constants.CACHE_REFRESH_SECONDS_FORMAT, name), (int) defaultRefreshSeconds));
+  }
+
+  /**
+   * How old a snapshot can get before we stop serving it and wait on the backend instead
+   */
+  public long getMaxStaleMillis() {
+    return Math.max(getRefreshAfterMillis(), TimeUnit.SECONDS.toMillis(Config.getIntProperty(
+      String.format(Config.Constants.CACHE_MAX_STALE_SECONDS_FORMAT, name), (int) defaultMaxStaleSeconds)));
+  }
+
+  private final String name;
+  private final long defaultRefreshSeconds;
+  private final long defaultMaxStaleSeconds;
+}
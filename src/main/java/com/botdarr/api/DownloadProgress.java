@@ -0,0 +1,60 @@
+package com.botdarr.api;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Throughput/eta of a single download, derived from successive polls of the download queue
+ */
+public class DownloadProgress {
+  public DownloadProgress(double bytesPerSecond, long etaMillis, boolean stalled) {
+    this.bytesPerSecond = bytesPerSecond;
+    this.etaMillis = etaMillis;
+    this.stalled = stalled;
+  }
+
+  public double getBytesPerSecond() {
+    return bytesPerSecond;
+  }
+
+  /**
+   * Negative if there isn't enough history yet to estimate
+   */
+  public long getEtaMillis() {
+    return etaMillis;
+  }
+
+  public boolean isStalled() {
+    return stalled;
+  }
+
+  public boolean isKnown() {
+    return stalled || etaMillis >= 0;
+  }
+
+  public String getSpeed() {
+    return stalled ? "stalled" : formatBytesPerSecond(bytesPerSecond);
+  }
+
+  /**
+   * Our own eta if we have one, otherwise whatever radarr/sonarr reported
+   */
+  public String getTimeLeft(String reportedTimeleft) {
+    if (stalled) {
+      return "stalled";
+    }
+    if (etaMillis < 0) {
+      return reportedTimeleft == null ? "unknown" : reportedTimeleft;
+    }
+    long seconds = etaMillis / 1000;
+    return String.format("%02d:%02d:%02d", seconds / 3600, (seconds % 3600) / 60, seconds % 60);
+  }
+
+  public static String formatBytesPerSecond(double bytesPerSecond) {
+    return FileUtils.byteCountToDisplaySize((long) bytesPerSecond) + "/s";
+  }
+
+  public static final DownloadProgress UNKNOWN = new DownloadProgress(0, -1, false);
+  private final double bytesPerSecond;
+  private final long etaMillis;
+  private final boolean stalled;
+}
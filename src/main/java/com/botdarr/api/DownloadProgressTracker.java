@@ -0,0 +1,140 @@
+package com.botdarr.api;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the last few (size left, time) samples of every download in the queue to estimate throughput and eta,
+ * instead of relying on the time left radarr/sonarr report
+ */
+public class DownloadProgressTracker {
+  public DownloadProgressTracker(long stallMillis) {
+    this.stallMillis = stallMillis;
+  }
+
+  public void record(List<? extends DownloadQueueItem> queue) {
+    record(queue, System.currentTimeMillis());
+  }
+
+  /**
+   * Adds a sample for every download in the queue and forgets downloads that left it
+   */
+  public synchronized void record(List<? extends DownloadQueueItem> queue, long now) {
+    Set<Long> currentIds = new HashSet<>();
+    for (DownloadQueueItem item : queue) {
+      currentIds.add(item.getId());
+      Samples samples = samplesById.get(item.getId());
+      if (samples == null) {
+        samples = new Samples();
+        samplesById.put(item.getId(), samples);
+      }
+      samples.add(item.getSizeleft(), now);
+    }
+    samplesById.keySet().retainAll(currentIds);
+  }
+
+  public synchronized DownloadProgress getProgress(long id) {
+    Samples samples = samplesById.get(id);
+    if (samples == null || samples.count < 2) {
+      return DownloadProgress.UNKNOWN;
+    }
+    double medianRate = samples.getMedianRate();
+    //tracked outside the ring buffer since a stall can outlast the samples it holds
+    boolean stalled = samples.getLatestTimestamp() - samples.unchangedSince >= stallMillis;
+    long etaMillis = medianRate > 0 ? (long) (samples.getLatestSizeleft() / medianRate * 1000) : -1;
+    return new DownloadProgress(samples.smoothedRate, etaMillis, stalled);
+  }
+
+  /**
+   * Combined throughput (bytes per second) of everything in the queue, negative if nothing has enough history yet
+   */
+  public synchronized double getTotalBytesPerSecond() {
+    double total = 0;
+    boolean known = false;
+    for (Samples samples : samplesById.values()) {
+      if (samples.count >= 2) {
+        total += samples.smoothedRate;
+        known = true;
+      }
+    }
+    return known ? total : -1;
+  }
+
+  /**
+   * Fixed size ring buffer of samples, so memory per download doesn't grow no matter how long it stays in the queue
+   */
+  private static class Samples {
+    private void add(double sizeleft, long timestamp) {
+      if (count > 0) {
+        int latest = index(count - 1);
+        if (timestamp - timestamps[latest] < MIN_SAMPLE_INTERVAL_MILLIS) {
+          //polled again too quickly to say anything about throughput
+          return;
+        }
+        if (sizeleft > sizelefts[latest]) {
+          //the download restarted (or got replaced), older samples no longer apply
+          count = 0;
+          smoothedRate = 0;
+        } else {
+          double rate = (sizelefts[latest] - sizeleft) / ((timestamp - timestamps[latest]) / 1000d);
+          smoothedRate = count == 1 ? rate : SMOOTHING * rate + (1 - SMOOTHING) * smoothedRate;
+        }
+      }
+      if (count == 0 || sizeleft != getLatestSizeleft()) {
+        unchangedSince = timestamp;
+      }
+      int next = index(count);
+      sizelefts[next] = sizeleft;
+      timestamps[next] = timestamp;
+      if (count < CAPACITY) {
+        count++;
+      } else {
+        start = (start + 1) % CAPACITY;
+      }
+    }
+
+    /**
+     * The median rate between consecutive samples, one odd poll (i.e., a burst or a pause) doesn't swing the eta
+     */
+    private double getMedianRate() {
+      double[] rates = new double[count - 1];
+      for (int i = 1; i < count; i++) {
+        int previous = index(i - 1);
+        int current = index(i);
+        rates[i - 1] = (sizelefts[previous] - sizelefts[current]) / ((timestamps[current] - timestamps[previous]) / 1000d);
+      }
+      Arrays.sort(rates);
+      int middle = rates.length / 2;
+      return rates.length % 2 == 1 ? rates[middle] : (rates[middle - 1] + rates[middle]) / 2;
+    }
+
+    private double getLatestSizeleft() {
+      return sizelefts[index(count - 1)];
+    }
+
+    private long getLatestTimestamp() {
+      return timestamps[index(count - 1)];
+    }
+
+    private int index(int offset) {
+      return (start + offset) % CAPACITY;
+    }
+
+    private final double[] sizelefts = new double[CAPACITY];
+    private final long[] timestamps = new long[CAPACITY];
+    private int start;
+    private int count;
+    private double smoothedRate;
+    private long unchangedSince;
+  }
+
+  private final long stallMillis;
+  private final Map<Long, Samples> samplesById = new HashMap<>();
+  private static final int CAPACITY = 8;
+  private static final double SMOOTHING = 0.3;
+  private static final long MIN_SAMPLE_INTERVAL_MILLIS = 1000;
+}
@@ -0,0 +1,42 @@
+package com.botdarr.api;
+
+/**
+ * The parts of a radarr/sonarr queue entry needed to track downloads regardless of which api it came from
+ */
+public interface DownloadQueueItem {
+  long getId();
+
+  /**
+   * A human readable title (i.e., movie title or show title plus season/episode)
+   */
+  String getDisplayTitle();
+
+  String getStatus();
+
+  String getTimeleft();
+
+  /**
+   * Total size of the download in bytes
+   */
+  double getSize();
+
+  /**
+   * Bytes left to download
+   */
+  double getSizeleft();
+
+  /**
+   * How radarr/sonarr are tracking the download (i.e., Ok, Warning, Error)
+   */
+  String getTrackedDownloadStatus();
+
+  /**
+   * How much of the download is done (0-100)
+   */
+  default int getProgressPercent() {
+    if (getSize() <= 0) {
+      return 0;
+    }
+    return (int) Math.max(0, Math.min(100, ((getSize() - getSizeleft()) / getSize()) * 100));
+  }
+}
@@ -0,0 +1,135 @@
+package com.botdarr.api;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compares each poll of a download queue against the previous one (keyed by queue id) and only reports what changed
+ */
+public class QueueDiffEngine {
+  public QueueDiffEngine(int progressStepPercent, long stallMillis) {
+    this.progressStepPercent = Math.max(1, progressStepPercent);
+    this.stallMillis = stallMillis;
+  }
+
+  public List<QueueEvent> diff(List<? extends DownloadQueueItem> queue) {
+    return diff(queue, System.currentTimeMillis());
+  }
+
+  public synchronized List<QueueEvent> diff(List<? extends DownloadQueueItem> queue, long now) {
+    List<QueueEvent> queueEvents = new ArrayList<>();
+    Set<Long> currentIds = new HashSet<>();
+    for (DownloadQueueItem item : queue) {
+      currentIds.add(item.getId());
+      int progressPercent = item.getProgressPercent();
+      ItemState itemState = itemStates.get(item.getId());
+      if (itemState == null) {
+        itemState = new ItemState(item.getDisplayTitle(), item.getSizeleft(), now, progressPercent / progressStepPercent);
+        itemStates.put(item.getId(), itemState);
+        if (initialized) {
+          queueEvents.add(new QueueEvent(QueueEvent.Type.STARTED, item.getId(), item.getDisplayTitle(), progressPercent));
+        }
+      } else if (item.getSizeleft() < itemState.lastSizeleft) {
+        itemState.lastProgressAt = now;
+        itemState.stalled = false;
+      }
+      itemState.title = item.getDisplayTitle();
+      itemState.lastSizeleft = item.getSizeleft();
+      itemState.lastProgressPercent = progressPercent;
+      itemState.lastStatus = item.getStatus();
+
+      if (isFailed(item)) {
+        if (!itemState.failed) {
+          itemState.failed = true;
+          queueEvents.add(new QueueEvent(QueueEvent.Type.FAILED, item.getId(), itemState.title, progressPercent));
+        }
+        continue;
+      }
+      if (isCompleted(item)) {
+        if (!itemState.completed) {
+          itemState.completed = true;
+          queueEvents.add(new QueueEvent(QueueEvent.Type.COMPLETED, item.getId(), itemState.title, 100));
+        }
+        continue;
+      }
+      int progressStep = progressPercent / progressStepPercent;
+      if (progressStep > itemState.reportedProgressStep && progressPercent < 100) {
+        itemState.reportedProgressStep = progressStep;
+        queueEvents.add(new QueueEvent(QueueEvent.Type.PROGRESSED, item.getId(), itemState.title, progressStep * progressStepPercent));
+      }
+      boolean stalled = "warning".equalsIgnoreCase(item.getTrackedDownloadStatus()) ||
+        ("downloading".equalsIgnoreCase(item.getStatus()) && now - itemState.lastProgressAt >= stallMillis);
+      if (stalled && !itemState.stalled) {
+        itemState.stalled = true;
+        queueEvents.add(new QueueEvent(QueueEvent.Type.STALLED, item.getId(), itemState.title, progressPercent));
+      }
+    }
+
+    //downloads leave the queue once they're imported, but also when someone deletes/blocklists them by hand,
+    //so only the ones that were (all but) done when we last saw them count as finished
+    Set<Long> removedIds = new HashSet<>(itemStates.keySet());
+    removedIds.removeAll(currentIds);
+    for (Long removedId : removedIds) {
+      ItemState itemState = itemStates.remove(removedId);
+      if (itemState.failed || itemState.completed) {
+        continue;
+      }
+      if (itemState.lastProgressPercent >= COMPLETED_PERCENT || "importing".equalsIgnoreCase(itemState.lastStatus)) {
+        queueEvents.add(new QueueEvent(QueueEvent.Type.COMPLETED, removedId, itemState.title, 100));
+      } else {
+        queueEvents.add(new QueueEvent(QueueEvent.Type.REMOVED, removedId, itemState.title, itemState.lastProgressPercent));
+      }
+    }
+
+    if (!initialized) {
+      //the first poll only establishes what is already downloading
+      initialized = true;
+      LOGGER.debug("Initialized queue diff with " + itemStates.size() + " downloads");
+    }
+    return queueEvents;
+  }
+
+  private boolean isFailed(DownloadQueueItem item) {
+    return "failed".equalsIgnoreCase(item.getStatus()) || "error".equalsIgnoreCase(item.getTrackedDownloadStatus());
+  }
+
+  private boolean isCompleted(DownloadQueueItem item) {
+    return "completed".equalsIgnoreCase(item.getStatus());
+  }
+
+  private static class ItemState {
+    private ItemState(String title, double lastSizeleft, long lastProgressAt, int reportedProgressStep) {
+      this.title = title;
+      this.lastSizeleft = lastSizeleft;
+      this.lastProgressAt = lastProgressAt;
+      this.reportedProgressStep = reportedProgressStep;
+    }
+
+    private String title;
+    private double lastSizeleft;
+    private long lastProgressAt;
+    private int reportedProgressStep;
+    private int lastProgressPercent;
+    private String lastStatus;
+    private boolean stalled;
+    private boolean failed;
+    private boolean completed;
+  }
+
+  private final int progressStepPercent;
+  private final long stallMillis;
+  private final Map<Long, ItemState> itemStates = new HashMap<>();
+  private boolean initialized = false;
+  public static final int DEFAULT_PROGRESS_STEP_PERCENT = 25;
+  public static final int DEFAULT_STALL_MINUTES = 10;
+  //progress is rounded down, and radarr/sonarr can drop an item a poll before it shows 100%
+  private static final int COMPLETED_PERCENT = 99;
+  private static final Logger LOGGER = LogManager.getLogger();
+}
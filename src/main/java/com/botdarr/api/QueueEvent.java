@@ -0,0 +1,98 @@
+package com.botdarr.api;
+
+import com.botdarr.clients.ChatClientResponse;
+import com.botdarr.clients.ChatClientResponseBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Something that happened to a download between two polls of a radarr/sonarr queue
+ */
+public class QueueEvent {
+  public QueueEvent(Type type, long id, String title, int progressPercent) {
+    this.type = type;
+    this.id = id;
+    this.title = title;
+    this.progressPercent = progressPercent;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  public String getTitle() {
+    return title;
+  }
+
+  public int getProgressPercent() {
+    return progressPercent;
+  }
+
+  public String getMessage() {
+    switch (type) {
+      case STARTED:
+        return "Started downloading " + title;
+      case PROGRESSED:
+        return title + " is " + progressPercent + "% downloaded";
+      case STALLED:
+        return title + " looks stalled at " + progressPercent + "%";
+      case COMPLETED:
+        return "Finished downloading " + title;
+      case FAILED:
+        return title + " failed to download";
+      case REMOVED:
+        return title + " was removed from the download queue at " + progressPercent + "%";
+      default:
+        return title + " changed";
+    }
+  }
+
+  public <T extends ChatClientResponse> T toResponse(ChatClientResponseBuilder<T> chatClientResponseBuilder) {
+    switch (type) {
+      case COMPLETED:
+        return chatClientResponseBuilder.createSuccessMessage(getMessage());
+      case STALLED:
+      case FAILED:
+        return chatClientResponseBuilder.createErrorMessage(getMessage());
+      default:
+        return chatClientResponseBuilder.createInfoMessage(getMessage());
+    }
+  }
+
+  /**
+   * Renders up to maxResponses events, summarizing the rest so a busy queue doesn't flood the channels
+   */
+  public static <T extends ChatClientResponse> List<T> toResponses(List<QueueEvent> queueEvents,
+                                                                   ChatClientResponseBuilder<T> chatClientResponseBuilder,
+                                                                   int maxResponses) {
+    List<T> responses = new ArrayList<>();
+    for (QueueEvent queueEvent : queueEvents) {
+      if (responses.size() == maxResponses - 1 && queueEvents.size() > maxResponses) {
+        responses.add(chatClientResponseBuilder.createInfoMessage("And " + (queueEvents.size() - responses.size()) + " more download updates"));
+        break;
+      }
+      responses.add(queueEvent.toResponse(chatClientResponseBuilder));
+    }
+    return responses;
+  }
+
+  public enum Type {
+    STARTED,
+    PROGRESSED,
+    STALLED,
+    COMPLETED,
+    FAILED,
+    //left the queue before finishing, i.e., deleted or blocklisted in radarr/sonarr
+    REMOVED
+  }
+
+  private final Type type;
+  private final long id;
+  private final String title;
+  private final int progressPercent;
+}
@@ -3,12 +3,16 @@ package com.botdarr.api;
 import com.botdarr.Config;
 import com.botdarr.api.radarr.*;
 import com.botdarr.clients.ChatClientResponseBuilder;
+import com.botdarr.clients.StatusBoard;
 import com.botdarr.commands.CommandContext;
+import com.botdarr.commands.ResultSessions;
 import com.botdarr.clients.ChatClient;
 import com.botdarr.clients.ChatClientResponse;
 import com.botdarr.connections.ConnectionHelper;
+import com.botdarr.scheduling.Scheduler;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import org.apache.commons.io.IOUtils;
@@ -23,10 +27,22 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URLEncoder;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class RadarrApi implements Api {
   public RadarrApi(ChatClientResponseBuilder<? extends ChatClientResponse> chatClientResponseBuilder) {
     this.chatClientResponseBuilder = chatClientResponseBuilder;
+    this.queueDiffEngine = new QueueDiffEngine(
+      Config.getIntProperty(Config.Constants.DOWNLOAD_PROGRESS_STEP_PERCENT, QueueDiffEngine.DEFAULT_PROGRESS_STEP_PERCENT),
+      TimeUnit.MINUTES.toMillis(Config.getIntProperty(Config.Constants.DOWNLOAD_STALL_MINUTES, QueueDiffEngine.DEFAULT_STALL_MINUTES)));
+    this.downloadProgressTracker = new DownloadProgressTracker(
+      TimeUnit.MINUTES.toMillis(Config.getIntProperty(Config.Constants.DOWNLOAD_STALL_MINUTES, QueueDiffEngine.DEFAULT_STALL_MINUTES)));
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
   }
 
   @Override
@@ -41,24 +57,19 @@ public class RadarrApi implements Api {
 
   public List<ChatClientResponse> lookup(String search, boolean findNew) {
     try {
-      List<ChatClientResponse> responses = new ArrayList<>();
-      List<RadarrMovie> movies = lookupMovies(search);
-      for (RadarrMovie lookupMovie : movies) {
-        RadarrMovie existingMovie = RADARR_CACHE.getExistingMovie(lookupMovie.getTmdbId());
-        boolean isExistingMovie = existingMovie != null;
-        boolean skip = findNew ? isExistingMovie : !isExistingMovie;
-        if (skip) {
-          continue;
-        }
-        responses.add(chatClientResponseBuilder.getNewOrExistingMovie(lookupMovie, existingMovie, findNew));
-      }
-      if (responses.size() > MAX_RESULTS_TO_SHOW) {
-        responses = responses.subList(0, MAX_RESULTS_TO_SHOW - 1);
-        responses.add(0, chatClientResponseBuilder.createInfoMessage("Too many movies found, please narrow search"));
-      }
+      SnapshotCache.Snapshot<List<RadarrMovie>> snapshot = lookupSnapshots.get(search.toLowerCase(), () -> lookupMovies(search));
+      List<ChatClientResponse> responses = ResultPipeline.of(snapshot.getValue())
+        .filter(lookupMovie -> {
+          boolean isExistingMovie = RADARR_CACHE.getExistingMovie(lookupMovie.getTmdbId()) != null;
+          return findNew != isExistingMovie;
+        })
+        .paginate(findNew ? "new movies" : "existing movies",
+          lookupMovie -> chatClientResponseBuilder.getNewOrExistingMovie(lookupMovie, RADARR_CACHE.getExistingMovie(lookupMovie.getTmdbId()), findNew),
+          chatClientResponseBuilder);
       if (responses.size() == 0) {
         return Arrays.asList(chatClientResponseBuilder.createErrorMessage("Could not find any " + (findNew ? "new" : "existing") + " movies for search term=" + search));
       }
+      addStaleNotice(responses, snapshot);
       return responses;
     } catch (Exception e) {
       LOGGER.error("Error trying to lookup movie", e);
@@ -68,6 +79,12 @@ public class RadarrApi implements Api {
 
   @Override
   public List<ChatClientResponse> downloads() {
+    if (StatusBoard.isEnabled()) {
+      //point at the board (and keep it fresh while people are looking) instead of posting every download again
+      StatusBoard.markWatched();
+      Scheduler.getScheduler().requestRefresh(Scheduler.getNotificationsJobName(this));
+      return new ArrayList<>(Arrays.asList(chatClientResponseBuilder.createInfoMessage("Movie downloads are shown on the status board, refreshing it now")));
+    }
     List<ChatClientResponse> chatClientResponses = getMovieDownloads();
     if (chatClientResponses.isEmpty()) {
       chatClientResponses.add(chatClientResponseBuilder.createInfoMessage("No movies downloading"));
@@ -89,22 +106,18 @@ public class RadarrApi implements Api {
         }
         return Arrays.asList(addMovie(movies.get(0)));
       }
-      List<ChatClientResponse> restOfMovies = new ArrayList<>();
-      for (RadarrMovie radarrMovie : movies) {
-        if (RADARR_CACHE.doesMovieExist(radarrMovie.getTitle())) {
-          //skip existing movies
-          continue;
-        }
-        restOfMovies.add(chatClientResponseBuilder.getMovie(radarrMovie));
-      }
-      if (restOfMovies.size() > 1) {
-        restOfMovies = subList(restOfMovies);
-        restOfMovies.add(0, chatClientResponseBuilder.createInfoMessage("Too many movies found, please narrow search"));
-      }
+      //skip existing movies
+      List<RadarrMovie> restOfMovies = ResultPipeline.of(movies)
+        .filter(radarrMovie -> !RADARR_CACHE.doesMovieExist(radarrMovie.getTitle()))
+        .collect();
       if (restOfMovies.size() == 0) {
         return Arrays.asList(chatClientResponseBuilder.createInfoMessage("No new movies found, check existing movies"));
       }
-      return restOfMovies;
+      List<ChatClientResponse> responses = ResultSessions.paginate("new movies", restOfMovies, chatClientResponseBuilder::getMovie, chatClientResponseBuilder);
+      if (restOfMovies.size() > 1 && restOfMovies.size() <= ResultSessions.MAX_RESULTS_TO_SHOW) {
+        responses.add(0, chatClientResponseBuilder.createInfoMessage("Too many movies found, please narrow search"));
+      }
+      return responses;
     } catch (Exception e) {
       LOGGER.error("Error trying to add movie", e);
       return Arrays.asList(chatClientResponseBuilder.createErrorMessage("Error trying to add movie " + searchText + ", e=" + e.getMessage()));
@@ -135,7 +148,16 @@ public class RadarrApi implements Api {
   }
 
   public List<ChatClientResponse> getProfiles() {
-    Collection<RadarrProfile> profiles = RADARR_CACHE.getQualityProfiles();
+    SnapshotCache.Snapshot<List<RadarrProfile>> snapshot = null;
+    Collection<RadarrProfile> profiles;
+    try {
+      snapshot = profileSnapshots.get(PROFILES_SNAPSHOT_KEY, this::getRadarrProfiles);
+      profiles = snapshot.getValue();
+    } catch (Exception e) {
+      //fall back to whatever the periodic cache job last saw
+      LOGGER.warn("Error trying to get radarr profiles, using cached profiles", e);
+      profiles = RADARR_CACHE.getQualityProfiles();
+    }
     if (profiles == null || profiles.isEmpty()) {
       return Arrays.asList(chatClientResponseBuilder.createErrorMessage("Found 0 profiles, please setup Radarr with at least one profile"));
     }
@@ -144,6 +166,7 @@ public class RadarrApi implements Api {
     for (RadarrProfile radarrProfile : profiles) {
       profileMessages.add(chatClientResponseBuilder.getMovieProfile(radarrProfile));
     }
+    addStaleNotice(profileMessages, snapshot);
     return profileMessages;
   }
 
@@ -184,20 +207,19 @@ public class RadarrApi implements Api {
       return Arrays.asList(chatClientResponseBuilder.createErrorMessage("No downloads available for " + movieTitle + ", make sure you have exact film name."));
     }
 
-    List<ChatClientResponse> responses = new ArrayList<>();
-    for (RadarrTorrent radarrTorrent : radarrTorrents) {
-      if (!showRejected && radarrTorrent.isRejected()) {
-        //dont show rejected torrents
-        continue;
-      }
-      responses.add(chatClientResponseBuilder.getTorrentResponses(radarrTorrent, movieTitle));
-    }
+    //dont show rejected torrents unless asked to, best candidates first
+    List<RadarrTorrent> uniqueTorrents = torrentRanker.dedupe(ResultPipeline.of(radarrTorrents)
+      .filter(radarrTorrent -> showRejected || !radarrTorrent.isRejected())
+      .collect());
+    List<RadarrTorrent> torrents = torrentRanker.getTopTorrents(uniqueTorrents, MAX_TORRENTS_TO_RANK);
 
-    if (responses.isEmpty()) {
-      responses.add(chatClientResponseBuilder.createErrorMessage("Torrents were found but all of them were rejected based on your profiles/indexer settings for movie " + movieTitle));
+    if (torrents.isEmpty()) {
+      return Arrays.asList(chatClientResponseBuilder.createErrorMessage("Torrents were found but all of them were rejected based on your profiles/indexer settings for movie " + movieTitle));
     }
 
-    return responses;
+    //only the best are kept, the header says how many were found
+    return ResultSessions.paginate("downloads for " + movieTitle, torrents, uniqueTorrents.size(),
+      radarrTorrent -> chatClientResponseBuilder.getTorrentResponses(radarrTorrent, movieTitle), chatClientResponseBuilder);
   }
 
   public List<ChatClientResponse> cancelDownload(String command) {
@@ -216,35 +238,117 @@ public class RadarrApi implements Api {
   }
 
   @Override
-  public void sendPeriodicNotifications(ChatClient chatClient) {
-    List<ChatClientResponse> downloads = getMovieDownloads();
-    if (downloads != null && !downloads.isEmpty()) {
-      chatClient.sendMessage(downloads, null);
-    } else {
-      LOGGER.debug("No movie downloads available for sending");
+  public boolean sendPeriodicNotifications(ChatClient chatClient) {
+    List<RadarrQueue> queue;
+    try {
+      queue = getRadarrQueue();
+    } catch (Exception e) {
+      //try again next time instead of posting errors to the channels
+      LOGGER.error("Error trying to get movie downloads for notifications", e);
+      return false;
+    }
+    downloadSnapshots.put(QUEUE_SNAPSHOT_KEY, queue);
+    List<QueueEvent> queueEvents = queueDiffEngine.diff(queue);
+    if (StatusBoard.isEnabled()) {
+      //one message per channel edited in place, instead of a message per change
+      statusBoard.update(chatClient, chatClientResponseBuilder, StatusBoard.getLines(queue, downloadProgressTracker::getProgress));
+      return !queueEvents.isEmpty();
+    }
+    if (queueEvents.isEmpty()) {
+      LOGGER.debug("No movie download changes available for sending");
+      return false;
     }
+    chatClient.sendMessage(QueueEvent.toResponses(queueEvents, chatClientResponseBuilder, MAX_NOTIFICATIONS_TO_SEND), null);
+    return true;
   }
 
   @Override
-  public void cacheData() {
-    ConnectionHelper.makeGetRequest(this, "/movie", new ConnectionHelper.SimpleEntityResponseHandler<RadarrMovie>() {
-      @Override
-      public List<RadarrMovie> onSuccess(String response) throws Exception {
-        JsonParser parser = new JsonParser();
-        JsonArray json = parser.parse(response).getAsJsonArray();
-        for (int i = 0; i < json.size(); i++) {
-          RadarrMovie radarrMovie = new Gson().fromJson(json.get(i), RadarrMovie.class);
+  public void handleWebhook(JsonObject webhook) {
+    JsonElement eventTypeJson = webhook.get("eventType");
+    if (eventTypeJson == null || !eventTypeJson.isJsonPrimitive()) {
+      LOGGER.warn("Ignoring radarr webhook without an eventType, webhook=" + webhook);
+      return;
+    }
+    String eventType = eventTypeJson.getAsString();
+    if (eventType.equalsIgnoreCase("Test")) {
+      LOGGER.info("Received radarr test webhook");
+      return;
+    }
+    JsonElement movieJson = webhook.get("movie");
+    if (movieJson == null || movieJson.isJsonNull()) {
+      //i.e., health and update events
+      LOGGER.debug("Ignoring radarr webhook without a movie, eventType=" + eventType);
+      return;
+    }
+    RadarrMovie webhookMovie = movieJson.isJsonObject() ? new Gson().fromJson(movieJson, RadarrMovie.class) : null;
+    if (webhookMovie == null) {
+      LOGGER.warn("Ignoring radarr webhook with an unexpected movie, eventType=" + eventType + ", webhook=" + webhook);
+      return;
+    }
+    if (eventType.equalsIgnoreCase("MovieDelete")) {
+      if (webhookMovie.getTmdbId() == 0) {
+        //the cache is keyed by tmdbId, so re-cache everything instead of leaving the movie behind
+        LOGGER.warn("Can't apply radarr webhook, the movie has no tmdbId, eventType=" + eventType + ", webhook=" + webhook);
+        Scheduler.getScheduler().requestRefresh(Scheduler.getCacheJobName(this, CacheClass.LIBRARY));
+      } else if (!RADARR_CACHE.remove(webhookMovie)) {
+        LOGGER.debug("Deleted movie wasn't cached, tmdbId=" + webhookMovie.getTmdbId());
+      }
+    } else if (webhookMovie.getId() == 0) {
+      LOGGER.warn("Can't apply radarr webhook, the movie has no id, eventType=" + eventType + ", webhook=" + webhook);
+      Scheduler.getScheduler().requestRefresh(Scheduler.getCacheJobName(this, CacheClass.LIBRARY));
+    } else {
+      //grabs, downloads, renames, file deletes and adds all change the movie, so pull in its latest state
+      try {
+        for (RadarrMovie radarrMovie : getRadarrMovie(webhookMovie.getId())) {
           RADARR_CACHE.add(radarrMovie);
         }
-        return null;
+      } catch (Exception e) {
+        LOGGER.error("Error trying to get movie from radarr webhook, eventType=" + eventType, e);
+        //fall back to re-caching everything
+        Scheduler.getScheduler().requestRefresh(Scheduler.getCacheJobName(this, CacheClass.LIBRARY));
       }
-    });
+    }
+    if (eventType.equalsIgnoreCase("Grab") || eventType.equalsIgnoreCase("Download")) {
+      //the download queue changed, notify now instead of on the next poll
+      Scheduler.getScheduler().requestRefresh(Scheduler.getNotificationsJobName(this));
+    }
+  }
 
-    List<RadarrProfile> radarrProfiles = getRadarrProfiles();
-    for (RadarrProfile radarrProfile : radarrProfiles) {
-      RADARR_CACHE.addProfile(radarrProfile);
+  @Override
+  public CacheResult cacheData(CacheClass cacheClass) {
+    AtomicBoolean changed = new AtomicBoolean(false);
+    try {
+      if (cacheClass == CacheClass.LIBRARY) {
+        //strict so a backend error fails the refresh instead of looking like an empty library
+        ConnectionHelper.makeGetRequest(this, "/movie", new ConnectionHelper.StrictEntityResponseHandler<RadarrMovie>() {
+          @Override
+          public List<RadarrMovie> onSuccess(String response) throws Exception {
+            JsonParser parser = new JsonParser();
+            JsonArray json = parser.parse(response).getAsJsonArray();
+            for (int i = 0; i < json.size(); i++) {
+              RadarrMovie radarrMovie = new Gson().fromJson(json.get(i), RadarrMovie.class);
+              if (RADARR_CACHE.add(radarrMovie)) {
+                changed.set(true);
+              }
+            }
+            return null;
+          }
+        });
+      } else if (cacheClass == CacheClass.PROFILES) {
+        List<RadarrProfile> radarrProfiles = getRadarrProfiles();
+        for (RadarrProfile radarrProfile : radarrProfiles) {
+          if (RADARR_CACHE.addProfile(radarrProfile)) {
+            changed.set(true);
+          }
+        }
+        profileSnapshots.put(PROFILES_SNAPSHOT_KEY, radarrProfiles);
+      }
+    } catch (Exception e) {
+      LOGGER.error("Error trying to cache radarr " + cacheClass.getName(), e);
+      return CacheResult.FAILED;
     }
-    LOGGER.info("Finished caching radarr data");
+    LOGGER.info("Finished caching radarr " + cacheClass.getName());
+    return changed.get() ? CacheResult.CHANGED : CacheResult.UNCHANGED;
   }
 
   @Override
@@ -278,22 +382,49 @@ public class RadarrApi implements Api {
   }
 
   private List<ChatClientResponse> getMovieDownloads() {
-    return ConnectionHelper.makeGetRequest(this, "queue", new ConnectionHelper.SimpleMessageEmbedResponseHandler(chatClientResponseBuilder) {
+    SnapshotCache.Snapshot<List<RadarrQueue>> snapshot;
+    try {
+      snapshot = downloadSnapshots.get(QUEUE_SNAPSHOT_KEY, this::getRadarrQueue);
+    } catch (Exception e) {
+      LOGGER.error("Error trying to get movie downloads", e);
+      return new ArrayList<>(Arrays.asList(chatClientResponseBuilder.createErrorMessage("Error getting movie downloads, e=" + e.getMessage())));
+    }
+    List<ChatClientResponse> chatClientResponses = ResultPipeline.of(snapshot.getValue())
+      .paginate("movie downloads",
+        radarrQueue -> chatClientResponseBuilder.getMovieDownloadResponses(radarrQueue, downloadProgressTracker.getProgress(radarrQueue.getId())),
+        chatClientResponseBuilder);
+    double totalBytesPerSecond = downloadProgressTracker.getTotalBytesPerSecond();
+    if (!chatClientResponses.isEmpty() && totalBytesPerSecond >= 0) {
+      chatClientResponses.add(0, chatClientResponseBuilder.createInfoMessage("Downloading movies at " + DownloadProgress.formatBytesPerSecond(totalBytesPerSecond) + " in total"));
+    }
+    if (!chatClientResponses.isEmpty()) {
+      addStaleNotice(chatClientResponses, snapshot);
+    }
+    return chatClientResponses;
+  }
+
+  private List<RadarrMovie> getRadarrMovie(long id) {
+    return ConnectionHelper.makeGetRequest(this, "movie/" + id, new ConnectionHelper.StrictEntityResponseHandler<RadarrMovie>() {
       @Override
-      public List<ChatClientResponse> onSuccess(String response) throws Exception {
-        List<ChatClientResponse> chatClientResponses = new ArrayList<>();
+      public List<RadarrMovie> onSuccess(String response) {
+        return Collections.singletonList(new Gson().fromJson(response, RadarrMovie.class));
+      }
+    });
+  }
+
+  private List<RadarrQueue> getRadarrQueue() {
+    return ConnectionHelper.makeGetRequest(this, "queue", new ConnectionHelper.StrictEntityResponseHandler<RadarrQueue>() {
+      @Override
+      public List<RadarrQueue> onSuccess(String response) {
+        List<RadarrQueue> radarrQueues = new ArrayList<>();
         JsonParser parser = new JsonParser();
         JsonArray json = parser.parse(response).getAsJsonArray();
-        boolean tooManyDownloads = json.size() >= MAX_RESULTS_TO_SHOW;
         for (int i = 0; i < json.size(); i++) {
-          RadarrQueue radarrQueue = new Gson().fromJson(json.get(i), RadarrQueue.class);
-          chatClientResponses.add(chatClientResponseBuilder.getMovieDownloadResponses(radarrQueue));
-        }
-        if (tooManyDownloads) {
-          chatClientResponses = subList(chatClientResponses);
-          chatClientResponses.add(0, chatClientResponseBuilder.createInfoMessage("Too many downloads, limiting results to " + MAX_RESULTS_TO_SHOW));
+          radarrQueues.add(new Gson().fromJson(json.get(i), RadarrQueue.class));
         }
-        return chatClientResponses;
+        //every fetch is a throughput sample, whether it's for notifications or a user asking
+        downloadProgressTracker.record(radarrQueues);
+        return radarrQueues;
       }
     });
   }
@@ -315,6 +446,7 @@ public class RadarrApi implements Api {
       HttpPost post = new HttpPost(getApiUrl("movie"));
 
       post.addHeader("content-type", "application/x-www-form-urlencoded");
+      ConnectionHelper.applyCommandDeadline(post);
       String json = new Gson().toJson(radarrMovie, RadarrMovie.class);
       post.setEntity(new StringEntity(json));
 
@@ -333,7 +465,11 @@ public class RadarrApi implements Api {
         if (statusCode != 200 && statusCode != 201) {
           return chatClientResponseBuilder.createErrorMessage("Could not add movie, status-code=" + statusCode + ", reason=" + response.getStatusLine().getReasonPhrase());
         }
-        LogManager.getLogger("AuditLog").info("User " + CommandContext.getConfig().getUsername() + " added " + radarrMovie.getTitle());
+        CommandContext commandContext = CommandContext.current();
+        LogManager.getLogger("AuditLog").info("User " + commandContext.getUsername() + " added " + radarrMovie.getTitle() +
+          " in channel " + commandContext.getChannel() + " (trace " + commandContext.getTraceId() + ")");
+        //refresh the library right away so the new content shows up as existing
+        Scheduler.getScheduler().requestRefresh(Scheduler.getCacheJobName(this, CacheClass.LIBRARY));
         return chatClientResponseBuilder.createSuccessMessage("Movie " + radarrMovie.getTitle() + " added, radarr-detail=" + response.getStatusLine().getReasonPhrase());
       }
     } catch (IOException e) {
@@ -369,7 +505,7 @@ public class RadarrApi implements Api {
 
   private List<RadarrMovie> lookupMovies(String search) throws Exception {
     return ConnectionHelper.makeGetRequest(this, "movie/lookup", "&term=" + URLEncoder.encode(search, "UTF-8"),
-      new ConnectionHelper.SimpleEntityResponseHandler<RadarrMovie>() {
+      new ConnectionHelper.StrictEntityResponseHandler<RadarrMovie>() {
       @Override
       public List<RadarrMovie> onSuccess(String response) {
         List<RadarrMovie> movies = new ArrayList<>();
@@ -398,7 +534,7 @@ public class RadarrApi implements Api {
   }
 
   private List<RadarrProfile> getRadarrProfiles() {
-    return ConnectionHelper.makeGetRequest(this, "profile", new ConnectionHelper.SimpleEntityResponseHandler<RadarrProfile>() {
+    return ConnectionHelper.makeGetRequest(this, "profile", new ConnectionHelper.StrictEntityResponseHandler<RadarrProfile>() {
       @Override
       public List<RadarrProfile> onSuccess(String response) {
         List<RadarrProfile> radarrProfiles = new ArrayList<>();
@@ -413,12 +549,29 @@ public class RadarrApi implements Api {
     });
   }
 
-  private List<ChatClientResponse> subList(List<ChatClientResponse> responses) {
-    return responses.subList(0, responses.size() > MAX_RESULTS_TO_SHOW ? MAX_RESULTS_TO_SHOW - 1 : responses.size());
+  private void addStaleNotice(List<ChatClientResponse> responses, SnapshotCache.Snapshot<?> snapshot) {
+    if (snapshot != null && snapshot.isStale()) {
+      responses.add(0, chatClientResponseBuilder.createInfoMessage(snapshot.isRefreshFailed() ?
+        "Radarr is slow to respond or unreachable, showing data from " + snapshot.getAgeDescription() + " ago" :
+        "Showing data from " + snapshot.getAgeDescription() + " ago, refreshing"));
+    }
   }
 
   private final ChatClientResponseBuilder<? extends ChatClientResponse> chatClientResponseBuilder;
+  private final QueueDiffEngine queueDiffEngine;
+  private final DownloadProgressTracker downloadProgressTracker;
+  private final StatusBoard statusBoard = new StatusBoard("radarr-downloads", "Movie downloads");
+  private final RadarrTorrentRanker torrentRanker = RadarrTorrentRanker.fromConfig();
+  private final SnapshotCache<String, List<RadarrProfile>> profileSnapshots = new SnapshotCache<>(NAME, CachedDataType.PROFILES, 1);
+  private final SnapshotCache<String, List<RadarrMovie>> lookupSnapshots = new SnapshotCache<>(NAME, CachedDataType.LOOKUPS, 100);
+  private final SnapshotCache<String, List<RadarrQueue>> downloadSnapshots = new SnapshotCache<>(NAME, CachedDataType.DOWNLOADS, 1);
+  private static final String NAME = "radarr";
   private static final RadarrCache RADARR_CACHE = new RadarrCache();
   private static final int MAX_RESULTS_TO_SHOW = 20;
+  private static final int MAX_NOTIFICATIONS_TO_SEND = 10;
+  //a few pages worth, nobody pages past the best 50 releases
+  private static final int MAX_TORRENTS_TO_RANK = 50;
+  private static final String PROFILES_SNAPSHOT_KEY = "profiles";
+  private static final String QUEUE_SNAPSHOT_KEY = "queue";
   public static final String ADD_MOVIE_COMMAND_FIELD_PREFIX = "Add movie command";
 }
@@ -0,0 +1,89 @@
+package com.botdarr.api;
+
+import com.botdarr.clients.ChatClientResponse;
+import com.botdarr.clients.ChatClientResponseBuilder;
+import com.botdarr.commands.ResultSessions;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Ordering;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Filters, ranks and limits api results while they are still (cheap) model objects, so only the results that are
+ * actually sent get turned into embeds/blocks. Nothing runs until one of the terminal methods is called.
+ */
+public class ResultPipeline<T> {
+  public static <T> ResultPipeline<T> of(Collection<T> results) {
+    return new ResultPipeline<>(results);
+  }
+
+  private ResultPipeline(Collection<T> results) {
+    this.results = results;
+  }
+
+  public ResultPipeline<T> filter(Predicate<? super T> predicate) {
+    Predicate<? super T> previous = this.predicate;
+    this.predicate = previous == null ? predicate : result -> previous.test(result) && predicate.test(result);
+    return this;
+  }
+
+  public ResultPipeline<T> rank(Comparator<? super T> comparator) {
+    this.comparator = comparator;
+    return this;
+  }
+
+  public ResultPipeline<T> limit(int limit) {
+    this.limit = limit;
+    return this;
+  }
+
+  /**
+   * The results that made it through, best ranked first. Ranking with a limit only keeps the top results around
+   * (instead of sorting everything), and without ranking the results stop being read once the limit is reached.
+   */
+  public List<T> collect() {
+    Iterator<T> iterator = predicate == null ? results.iterator() : Iterators.filter(results.iterator(), predicate::test);
+    if (comparator != null) {
+      Ordering<T> ordering = Ordering.from(comparator::compare);
+      if (limit >= 0) {
+        return new ArrayList<>(ordering.leastOf(iterator, limit));
+      }
+      List<T> ranked = new ArrayList<>();
+      Iterators.addAll(ranked, iterator);
+      ranked.sort(ordering);
+      return ranked;
+    }
+    List<T> collected = new ArrayList<>();
+    Iterators.addAll(collected, limit >= 0 ? Iterators.limit(iterator, limit) : iterator);
+    return collected;
+  }
+
+  public <R> List<R> render(Function<? super T, ? extends R> renderer) {
+    List<T> collected = collect();
+    List<R> rendered = new ArrayList<>(collected.size());
+    for (T result : collected) {
+      rendered.add(renderer.apply(result));
+    }
+    return rendered;
+  }
+
+  /**
+   * Renders the results, a page at a time if there are too many for one reply (see {@link ResultSessions})
+   */
+  public List<ChatClientResponse> paginate(String description,
+                                           Function<T, ? extends ChatClientResponse> renderer,
+                                           ChatClientResponseBuilder<? extends ChatClientResponse> chatClientResponseBuilder) {
+    return ResultSessions.paginate(description, collect(), renderer, chatClientResponseBuilder);
+  }
+
+  private final Collection<T> results;
+  private Predicate<? super T> predicate;
+  private Comparator<? super T> comparator;
+  private int limit = -1;
+}
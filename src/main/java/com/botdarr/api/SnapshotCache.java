@@ -0,0 +1,154 @@
+package com.botdarr.api;
+
+import com.botdarr.scheduling.Scheduler;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps the last good result of a backend call per key and serves it while it is within the staleness bounds
+ * of its data type, refreshing it in the background (stale-while-revalidate) so chat responses don't wait on slow backends
+ */
+public class SnapshotCache<K, V> {
+  /**
+   * Background refreshes run on the io lane (i.e., the api name) so they never tie up another api's threads
+   */
+  public SnapshotCache(String lane, CachedDataType dataType, long maxEntries) {
+    this(dataType, maxEntries, runnable -> Scheduler.getScheduler().executeIo(lane, runnable), System::currentTimeMillis);
+  }
+
+  public SnapshotCache(CachedDataType dataType, long maxEntries, Executor refresher, LongSupplier clock) {
+    this.dataType = dataType;
+    this.refresher = refresher;
+    this.clock = clock;
+    this.snapshots = CacheBuilder.newBuilder().maximumSize(maxEntries).build();
+  }
+
+  public Snapshot<V> get(K key, Loader<V> loader) throws Exception {
+    Entry<V> entry = snapshots.getIfPresent(key);
+    if (entry == null) {
+      return load(key, loader);
+    }
+    long age = clock.getAsLong() - entry.loadedAt;
+    if (age <= dataType.getRefreshAfterMillis()) {
+      return new Snapshot<>(entry.value, age, false, false);
+    }
+    if (age <= dataType.getMaxStaleMillis()) {
+      refreshInBackground(key, entry, loader);
+      return new Snapshot<>(entry.value, age, true, entry.refreshFailed);
+    }
+    //the snapshot is too old to serve, so we have to wait on the backend
+    return load(key, loader);
+  }
+
+  /**
+   * Replaces the snapshot for a key with data fetched elsewhere (i.e., the periodic cache job)
+   */
+  public void put(K key, V value) {
+    snapshots.put(key, new Entry<>(value, clock.getAsLong()));
+  }
+
+  public void invalidateAll() {
+    snapshots.invalidateAll();
+  }
+
+  private Snapshot<V> load(K key, Loader<V> loader) throws Exception {
+    V value = loader.load();
+    put(key, value);
+    return new Snapshot<>(value, 0, false, false);
+  }
+
+  private void refreshInBackground(K key, Entry<V> entry, Loader<V> loader) {
+    if (!entry.refreshing.compareAndSet(false, true)) {
+      //someone is already refreshing this snapshot
+      return;
+    }
+    refresher.execute(() -> {
+      try {
+        put(key, loader.load());
+      } catch (Exception e) {
+        entry.refreshFailed = true;
+        LOGGER.warn("Error refreshing " + dataType.getName() + " snapshot for key=" + key + ", continuing to serve stale data", e);
+      } finally {
+        entry.refreshing.set(false);
+      }
+    });
+  }
+
+  public interface Loader<V> {
+    V load() throws Exception;
+  }
+
+  public static class Snapshot<V> {
+    private Snapshot(V value, long ageMillis, boolean stale, boolean refreshFailed) {
+      this.value = value;
+      this.ageMillis = ageMillis;
+      this.stale = stale;
+      this.refreshFailed = refreshFailed;
+    }
+
+    public V getValue() {
+      return value;
+    }
+
+    public long getAgeMillis() {
+      return ageMillis;
+    }
+
+    /**
+     * Whether this snapshot is past its refresh point and is being refreshed in the background
+     */
+    public boolean isStale() {
+      return stale;
+    }
+
+    /**
+     * Whether the last background refresh of this snapshot failed (i.e., the backend timed out or is down)
+     */
+    public boolean isRefreshFailed() {
+      return refreshFailed;
+    }
+
+    public String getAgeDescription() {
+      long seconds = TimeUnit.MILLISECONDS.toSeconds(ageMillis);
+      if (seconds < 60) {
+        return seconds + " seconds";
+      }
+      long minutes = TimeUnit.SECONDS.toMinutes(seconds);
+      if (minutes < 60) {
+        return minutes + " minutes";
+      }
+      return TimeUnit.MINUTES.toHours(minutes) + " hours";
+    }
+
+    private final V value;
+    private final long ageMillis;
+    private final boolean stale;
+    private final boolean refreshFailed;
+  }
+
+  private static class Entry<V> {
+    private Entry(V value, long loadedAt) {
+      this.value = value;
+      this.loadedAt = loadedAt;
+    }
+
+    private final V value;
+    private final long loadedAt;
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+    //a successful refresh replaces the entry, so this only ever goes from false to true
+    private volatile boolean refreshFailed;
+  }
+
+  private final CachedDataType dataType;
+  private final Executor refresher;
+  private final LongSupplier clock;
+  private final Cache<K, Entry<V>> snapshots;
+  private static final Logger LOGGER = LogManager.getLogger();
+}
@@ -5,8 +5,11 @@ import com.botdarr.api.sonarr.*;
 import com.botdarr.clients.ChatClient;
 import com.botdarr.clients.ChatClientResponse;
 import com.botdarr.clients.ChatClientResponseBuilder;
+import com.botdarr.clients.StatusBoard;
 import com.botdarr.commands.CommandContext;
+import com.botdarr.commands.ResultSessions;
 import com.botdarr.connections.ConnectionHelper;
+import com.botdarr.scheduling.Scheduler;
 import com.google.gson.*;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
@@ -20,11 +23,24 @@ import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class SonarrApi implements Api {
   public SonarrApi(ChatClientResponseBuilder<? extends ChatClientResponse> chatClientResponseBuilder) {
     this.chatClientResponseBuilder = chatClientResponseBuilder;
+    this.queueDiffEngine = new QueueDiffEngine(
+      Config.getIntProperty(Config.Constants.DOWNLOAD_PROGRESS_STEP_PERCENT, QueueDiffEngine.DEFAULT_PROGRESS_STEP_PERCENT),
+      TimeUnit.MINUTES.toMillis(Config.getIntProperty(Config.Constants.DOWNLOAD_STALL_MINUTES, QueueDiffEngine.DEFAULT_STALL_MINUTES)));
+    this.downloadProgressTracker = new DownloadProgressTracker(
+      TimeUnit.MINUTES.toMillis(Config.getIntProperty(Config.Constants.DOWNLOAD_STALL_MINUTES, QueueDiffEngine.DEFAULT_STALL_MINUTES)));
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
   }
 
   @Override
@@ -39,6 +55,12 @@ public class SonarrApi implements Api {
 
   @Override
   public List<ChatClientResponse> downloads() {
+    if (StatusBoard.isEnabled()) {
+      //point at the board (and keep it fresh while people are looking) instead of posting every download again
+      StatusBoard.markWatched();
+      Scheduler.getScheduler().requestRefresh(Scheduler.getNotificationsJobName(this));
+      return new ArrayList<>(Arrays.asList(chatClientResponseBuilder.createInfoMessage("Show downloads are shown on the status board, refreshing it now")));
+    }
     List<ChatClientResponse> chatClientResponses = getShowDownloads();
     if (chatClientResponses.isEmpty()) {
       chatClientResponses.add(chatClientResponseBuilder.createInfoMessage("No shows downloading"));
@@ -77,21 +99,18 @@ public class SonarrApi implements Api {
         }
         return Arrays.asList(addShow(shows.get(0)));
       }
-      List<ChatClientResponse> restOfShows = new ArrayList<>();
-      for (SonarrShow sonarrShow : shows) {
-        if (SONARR_CACHE.doesShowExist(sonarrShow.getTitle())) {
-          //skip existing movies
-          continue;
-        }
-        restOfShows.add(chatClientResponseBuilder.getShowResponse(sonarrShow));
-      }
-      if (restOfShows.size() > 1) {
-        restOfShows.add(0, chatClientResponseBuilder.createInfoMessage("Too many shows found, please narrow search"));
-      }
+      //skip existing shows
+      List<SonarrShow> restOfShows = ResultPipeline.of(shows)
+        .filter(sonarrShow -> !SONARR_CACHE.doesShowExist(sonarrShow.getTitle()))
+        .collect();
       if (restOfShows.size() == 0) {
         return Arrays.asList(chatClientResponseBuilder.createInfoMessage("No new shows found, check existing movies"));
       }
-      return subList(restOfShows);
+      List<ChatClientResponse> responses = ResultSessions.paginate("new shows", restOfShows, chatClientResponseBuilder::getShowResponse, chatClientResponseBuilder);
+      if (restOfShows.size() > 1 && restOfShows.size() <= ResultSessions.MAX_RESULTS_TO_SHOW) {
+        responses.add(0, chatClientResponseBuilder.createInfoMessage("Too many shows found, please narrow search"));
+      }
+      return responses;
     } catch (Exception e) {
       LOGGER.error("Error found trying to add show=" + searchText, e);
       return Arrays.asList(chatClientResponseBuilder.createErrorMessage("Error trying to add show " + searchText + ", e=" + e.getMessage()));
@@ -100,25 +119,20 @@ public class SonarrApi implements Api {
 
   public List<ChatClientResponse> lookup(String search, boolean findNew) {
     try {
-      List<ChatClientResponse> responses = new ArrayList<>();
-      List<SonarrShow> shows = lookupShows(search);
-      for (SonarrShow sonarrShow : shows) {
-        //TODO: should we try to lookup shows with rage/maze id's as well?
-        SonarrShow existingShow = SONARR_CACHE.getExistingShowFromTvdbId(sonarrShow.getTvdbId());
-        boolean isExistingMovie = existingShow != null;
-        boolean skip = findNew ? isExistingMovie : !isExistingMovie;
-        if (skip) {
-          continue;
-        }
-        responses.add(chatClientResponseBuilder.getNewOrExistingShow(sonarrShow, existingShow, findNew));
-      }
+      SnapshotCache.Snapshot<List<SonarrShow>> snapshot = lookupSnapshots.get(search.toLowerCase(), () -> lookupShows(search));
+      List<ChatClientResponse> responses = ResultPipeline.of(snapshot.getValue())
+        .filter(sonarrShow -> {
+          //TODO: should we try to lookup shows with rage/maze id's as well?
+          boolean isExistingShow = SONARR_CACHE.getExistingShowFromTvdbId(sonarrShow.getTvdbId()) != null;
+          return findNew != isExistingShow;
+        })
+        .paginate(findNew ? "new shows" : "existing shows",
+          sonarrShow -> chatClientResponseBuilder.getNewOrExistingShow(sonarrShow, SONARR_CACHE.getExistingShowFromTvdbId(sonarrShow.getTvdbId()), findNew),
+          chatClientResponseBuilder);
       if (responses.size() == 0) {
         return Arrays.asList(chatClientResponseBuilder.createErrorMessage("Could not find any " + (findNew ? "new" : "existing") + " shows for search term=" + search));
       }
-      if (responses.size() > MAX_RESULTS_TO_SHOW) {
-        responses = subList(responses);
-        responses.add(0, chatClientResponseBuilder.createInfoMessage("Too many shows found, limiting results to " + MAX_RESULTS_TO_SHOW));
-      }
+      addStaleNotice(responses, snapshot);
       return responses;
     } catch (Exception e) {
       LOGGER.error("Error trying to lookup show, searchText=" + search, e);
@@ -137,7 +151,16 @@ public class SonarrApi implements Api {
   }
 
   public List<ChatClientResponse> getProfiles() {
-    Collection<SonarrProfile> profiles = SONARR_CACHE.getQualityProfiles();
+    SnapshotCache.Snapshot<List<SonarrProfile>> snapshot = null;
+    Collection<SonarrProfile> profiles;
+    try {
+      snapshot = profileSnapshots.get(PROFILES_SNAPSHOT_KEY, this::getSonarrProfiles);
+      profiles = snapshot.getValue();
+    } catch (Exception e) {
+      //fall back to whatever the periodic cache job last saw
+      LOGGER.warn("Error trying to get sonarr profiles, using cached profiles", e);
+      profiles = SONARR_CACHE.getQualityProfiles();
+    }
     if (profiles == null || profiles.isEmpty()) {
       return Arrays.asList(chatClientResponseBuilder.createErrorMessage("Found 0 profiles, please setup Sonarr with at least one profile"));
     }
@@ -146,6 +169,7 @@ public class SonarrApi implements Api {
     for (SonarrProfile sonarrProfile : profiles) {
       profileMessages.add(chatClientResponseBuilder.getShowProfile(sonarrProfile));
     }
+    addStaleNotice(profileMessages, snapshot);
     return profileMessages;
   }
 
@@ -155,34 +179,117 @@ public class SonarrApi implements Api {
   }
 
   @Override
-  public void sendPeriodicNotifications(ChatClient chatClient) {
-    List<ChatClientResponse> downloads = getShowDownloads();
-    if (downloads != null && !downloads.isEmpty()) {
-      chatClient.sendMessage(downloads, null);
-    } else {
-      LOGGER.debug("No show downloads available for sending");
+  public boolean sendPeriodicNotifications(ChatClient chatClient) {
+    List<SonarrQueue> queue;
+    try {
+      queue = getSonarrQueue();
+    } catch (Exception e) {
+      //try again next time instead of posting errors to the channels
+      LOGGER.error("Error trying to get show downloads for notifications", e);
+      return false;
+    }
+    downloadSnapshots.put(QUEUE_SNAPSHOT_KEY, queue);
+    List<QueueEvent> queueEvents = queueDiffEngine.diff(queue);
+    if (StatusBoard.isEnabled()) {
+      //one message per channel edited in place, instead of a message per change
+      statusBoard.update(chatClient, chatClientResponseBuilder, StatusBoard.getLines(queue, downloadProgressTracker::getProgress));
+      return !queueEvents.isEmpty();
+    }
+    if (queueEvents.isEmpty()) {
+      LOGGER.debug("No show download changes available for sending");
+      return false;
     }
+    chatClient.sendMessage(QueueEvent.toResponses(queueEvents, chatClientResponseBuilder, MAX_NOTIFICATIONS_TO_SEND), null);
+    return true;
   }
 
   @Override
-  public void cacheData() {
-    ConnectionHelper.makeGetRequest(this, "/series", new ConnectionHelper.SimpleEntityResponseHandler<SonarrShow>() {
-      @Override
-      public List<SonarrShow> onSuccess(String response) throws Exception {
-        JsonParser parser = new JsonParser();
-        JsonArray json = parser.parse(response).getAsJsonArray();
-        for (int i = 0; i < json.size(); i++) {
-          SonarrShow sonarrShow = new Gson().fromJson(json.get(i), SonarrShow.class);
+  public void handleWebhook(JsonObject webhook) {
+    JsonElement eventTypeJson = webhook.get("eventType");
+    if (eventTypeJson == null || !eventTypeJson.isJsonPrimitive()) {
+      LOGGER.warn("Ignoring sonarr webhook without an eventType, webhook=" + webhook);
+      return;
+    }
+    String eventType = eventTypeJson.getAsString();
+    if (eventType.equalsIgnoreCase("Test")) {
+      LOGGER.info("Received sonarr test webhook");
+      return;
+    }
+    JsonElement seriesJson = webhook.get("series");
+    if (seriesJson == null || seriesJson.isJsonNull()) {
+      //i.e., health and update events
+      LOGGER.debug("Ignoring sonarr webhook without a series, eventType=" + eventType);
+      return;
+    }
+    SonarrShow webhookShow = seriesJson.isJsonObject() ? new Gson().fromJson(seriesJson, SonarrShow.class) : null;
+    if (webhookShow == null) {
+      LOGGER.warn("Ignoring sonarr webhook with an unexpected series, eventType=" + eventType + ", webhook=" + webhook);
+      return;
+    }
+    if (eventType.equalsIgnoreCase("SeriesDelete")) {
+      if (webhookShow.getTvdbId() == 0) {
+        //the cache is keyed by tvdbId, so re-cache everything instead of leaving the show behind
+        LOGGER.warn("Can't apply sonarr webhook, the series has no tvdbId, eventType=" + eventType + ", webhook=" + webhook);
+        Scheduler.getScheduler().requestRefresh(Scheduler.getCacheJobName(this, CacheClass.LIBRARY));
+      } else if (!SONARR_CACHE.remove(webhookShow)) {
+        LOGGER.debug("Deleted show wasn't cached, tvdbId=" + webhookShow.getTvdbId());
+      }
+    } else if (webhookShow.getId() == 0) {
+      LOGGER.warn("Can't apply sonarr webhook, the series has no id, eventType=" + eventType + ", webhook=" + webhook);
+      Scheduler.getScheduler().requestRefresh(Scheduler.getCacheJobName(this, CacheClass.LIBRARY));
+    } else {
+      //grabs, downloads, renames, file deletes and adds all change the show, so pull in its latest state
+      try {
+        for (SonarrShow sonarrShow : getSonarrShow(webhookShow.getId())) {
           SONARR_CACHE.add(sonarrShow);
         }
-        return null;
+      } catch (Exception e) {
+        LOGGER.error("Error trying to get show from sonarr webhook, eventType=" + eventType, e);
+        //fall back to re-caching everything
+        Scheduler.getScheduler().requestRefresh(Scheduler.getCacheJobName(this, CacheClass.LIBRARY));
       }
-    });
-    List<SonarrProfile> sonarrProfiles = getSonarrProfiles();
-    for (SonarrProfile sonarrProfile : sonarrProfiles) {
-      SONARR_CACHE.addProfile(sonarrProfile);
     }
-    LOGGER.info("Finished caching sonarr data");
+    if (eventType.equalsIgnoreCase("Grab") || eventType.equalsIgnoreCase("Download")) {
+      //the download queue changed, notify now instead of on the next poll
+      Scheduler.getScheduler().requestRefresh(Scheduler.getNotificationsJobName(this));
+    }
+  }
+
+  @Override
+  public CacheResult cacheData(CacheClass cacheClass) {
+    AtomicBoolean changed = new AtomicBoolean(false);
+    try {
+      if (cacheClass == CacheClass.LIBRARY) {
+        //strict so a backend error fails the refresh instead of looking like an empty library
+        ConnectionHelper.makeGetRequest(this, "/series", new ConnectionHelper.StrictEntityResponseHandler<SonarrShow>() {
+          @Override
+          public List<SonarrShow> onSuccess(String response) throws Exception {
+            JsonParser parser = new JsonParser();
+            JsonArray json = parser.parse(response).getAsJsonArray();
+            for (int i = 0; i < json.size(); i++) {
+              SonarrShow sonarrShow = new Gson().fromJson(json.get(i), SonarrShow.class);
+              if (SONARR_CACHE.add(sonarrShow)) {
+                changed.set(true);
+              }
+            }
+            return null;
+          }
+        });
+      } else if (cacheClass == CacheClass.PROFILES) {
+        List<SonarrProfile> sonarrProfiles = getSonarrProfiles();
+        for (SonarrProfile sonarrProfile : sonarrProfiles) {
+          if (SONARR_CACHE.addProfile(sonarrProfile)) {
+            changed.set(true);
+          }
+        }
+        profileSnapshots.put(PROFILES_SNAPSHOT_KEY, sonarrProfiles);
+      }
+    } catch (Exception e) {
+      LOGGER.error("Error trying to cache sonarr " + cacheClass.getName(), e);
+      return CacheResult.FAILED;
+    }
+    LOGGER.info("Finished caching sonarr " + cacheClass.getName());
+    return changed.get() ? CacheResult.CHANGED : CacheResult.UNCHANGED;
   }
 
   @Override
@@ -191,27 +298,58 @@ public class SonarrApi implements Api {
   }
 
   private List<ChatClientResponse> getShowDownloads() {
-    return ConnectionHelper.makeGetRequest(this, "queue", new ConnectionHelper.SimpleMessageEmbedResponseHandler(chatClientResponseBuilder) {
+    SnapshotCache.Snapshot<List<SonarrQueue>> snapshot;
+    try {
+      snapshot = downloadSnapshots.get(QUEUE_SNAPSHOT_KEY, this::getSonarrQueue);
+    } catch (Exception e) {
+      LOGGER.error("Error trying to get show downloads", e);
+      return new ArrayList<>(Arrays.asList(chatClientResponseBuilder.createErrorMessage("Error getting show downloads, e=" + e.getMessage())));
+    }
+    List<ChatClientResponse> responses = ResultPipeline.of(snapshot.getValue())
+      .filter(showQueue -> {
+        SonarQueueEpisode episode = showQueue.getEpisode();
+        if (episode == null) {
+          //something is wrong with the download, skip
+          LOGGER.error("Series " + showQueue.getSonarrQueueShow().getTitle() + " missing episode info for id " + showQueue.getId());
+          return false;
+        }
+        return true;
+      })
+      .paginate("show downloads",
+        showQueue -> chatClientResponseBuilder.getShowDownloadResponses(showQueue, downloadProgressTracker.getProgress(showQueue.getId())),
+        chatClientResponseBuilder);
+    double totalBytesPerSecond = downloadProgressTracker.getTotalBytesPerSecond();
+    if (!responses.isEmpty() && totalBytesPerSecond >= 0) {
+      responses.add(0, chatClientResponseBuilder.createInfoMessage("Downloading shows at " + DownloadProgress.formatBytesPerSecond(totalBytesPerSecond) + " in total"));
+    }
+    if (!responses.isEmpty()) {
+      addStaleNotice(responses, snapshot);
+    }
+    return responses;
+  }
+
+  private List<SonarrShow> getSonarrShow(long id) {
+    return ConnectionHelper.makeGetRequest(this, "series/" + id, new ConnectionHelper.StrictEntityResponseHandler<SonarrShow>() {
+      @Override
+      public List<SonarrShow> onSuccess(String response) {
+        return Collections.singletonList(new Gson().fromJson(response, SonarrShow.class));
+      }
+    });
+  }
+
+  private List<SonarrQueue> getSonarrQueue() {
+    return ConnectionHelper.makeGetRequest(this, "queue", new ConnectionHelper.StrictEntityResponseHandler<SonarrQueue>() {
       @Override
-      public List<ChatClientResponse> onSuccess(String response) throws Exception {
-        List<ChatClientResponse> responses = new ArrayList<>();
+      public List<SonarrQueue> onSuccess(String response) {
+        List<SonarrQueue> sonarrQueues = new ArrayList<>();
         JsonParser parser = new JsonParser();
         JsonArray json = parser.parse(response).getAsJsonArray();
         for (int i = 0; i < json.size(); i++) {
-          SonarrQueue showQueue = new Gson().fromJson(json.get(i), SonarrQueue.class);
-          SonarQueueEpisode episode = showQueue.getEpisode();
-          if (episode == null) {
-            //something is wrong with the download, skip
-            LOGGER.error("Series " + showQueue.getSonarrQueueShow().getTitle() + " missing episode info for id " + showQueue.getId());
-            continue;
-          }
-          responses.add(chatClientResponseBuilder.getShowDownloadResponses(showQueue));
+          sonarrQueues.add(new Gson().fromJson(json.get(i), SonarrQueue.class));
         }
-        if (json.size() >= MAX_RESULTS_TO_SHOW) {
-          responses = subList(responses);
-          responses.add(0, chatClientResponseBuilder.createInfoMessage("Too many downloads, limiting results to " + MAX_RESULTS_TO_SHOW));
-        }
-        return responses;
+        //every fetch is a throughput sample, whether it's for notifications or a user asking
+        downloadProgressTracker.record(sonarrQueues);
+        return sonarrQueues;
       }
     });
   }
@@ -235,6 +373,7 @@ public class SonarrApi implements Api {
       HttpPost post = new HttpPost(getApiUrl("series"));
 
       post.addHeader("content-type", "application/x-www-form-urlencoded");
+      ConnectionHelper.applyCommandDeadline(post);
       post.setEntity(new StringEntity(new GsonBuilder().addSerializationExclusionStrategy(excludeUnnecessaryFields).create().toJson(sonarrShow, SonarrShow.class)));
 
       try (CloseableHttpResponse response = client.execute(post)) {
@@ -242,7 +381,11 @@ public class SonarrApi implements Api {
         if (statusCode != 200 && statusCode != 201) {
           return chatClientResponseBuilder.createErrorMessage("Could not add show, status-code=" + statusCode + ", reason=" + response.getStatusLine().getReasonPhrase());
         }
-        LogManager.getLogger("AuditLog").info("User " + CommandContext.getConfig().getUsername() + " added " + title);
+        CommandContext commandContext = CommandContext.current();
+        LogManager.getLogger("AuditLog").info("User " + commandContext.getUsername() + " added " + title +
+          " in channel " + commandContext.getChannel() + " (trace " + commandContext.getTraceId() + ")");
+        //refresh the library right away so the new content shows up as existing
+        Scheduler.getScheduler().requestRefresh(Scheduler.getCacheJobName(this, CacheClass.LIBRARY));
         return chatClientResponseBuilder.createSuccessMessage("Show " + title + " added, sonarr-detail=" + response.getStatusLine().getReasonPhrase());
       }
     } catch (IOException e) {
@@ -252,7 +395,7 @@ public class SonarrApi implements Api {
   }
 
   private List<SonarrShow> lookupShows(String search) throws Exception {
-    return ConnectionHelper.makeGetRequest(this, "series/lookup", "&term=" + URLEncoder.encode(search, "UTF-8"), new ConnectionHelper.SimpleEntityResponseHandler<SonarrShow>() {
+    return ConnectionHelper.makeGetRequest(this, "series/lookup", "&term=" + URLEncoder.encode(search, "UTF-8"), new ConnectionHelper.StrictEntityResponseHandler<SonarrShow>() {
       @Override
       public List<SonarrShow> onSuccess(String response) {
         List<SonarrShow> movies = new ArrayList<>();
@@ -267,7 +410,7 @@ public class SonarrApi implements Api {
   }
 
   private List<SonarrProfile> getSonarrProfiles() {
-    return ConnectionHelper.makeGetRequest(this, "profile", new ConnectionHelper.SimpleEntityResponseHandler<SonarrProfile>() {
+    return ConnectionHelper.makeGetRequest(this, "profile", new ConnectionHelper.StrictEntityResponseHandler<SonarrProfile>() {
       @Override
       public List<SonarrProfile> onSuccess(String response) {
         List<SonarrProfile> sonarrProfiles = new ArrayList<>();
@@ -295,12 +438,25 @@ public class SonarrApi implements Api {
     }
   };
 
-  private List<ChatClientResponse> subList(List<ChatClientResponse> responses) {
-    return responses.subList(0, responses.size() > MAX_RESULTS_TO_SHOW ? MAX_RESULTS_TO_SHOW - 1 : responses.size());
+  private void addStaleNotice(List<ChatClientResponse> responses, SnapshotCache.Snapshot<?> snapshot) {
+    if (snapshot != null && snapshot.isStale()) {
+      responses.add(0, chatClientResponseBuilder.createInfoMessage(snapshot.isRefreshFailed() ?
+        "Sonarr is slow to respond or unreachable, showing data from " + snapshot.getAgeDescription() + " ago" :
+        "Showing data from " + snapshot.getAgeDescription() + " ago, refreshing"));
+    }
   }
 
   private final ChatClientResponseBuilder<? extends ChatClientResponse> chatClientResponseBuilder;
+  private final QueueDiffEngine queueDiffEngine;
+  private final DownloadProgressTracker downloadProgressTracker;
+  private final StatusBoard statusBoard = new StatusBoard("sonarr-downloads", "Show downloads");
+  private final SnapshotCache<String, List<SonarrProfile>> profileSnapshots = new SnapshotCache<>(NAME, CachedDataType.PROFILES, 1);
+  private final SnapshotCache<String, List<SonarrShow>> lookupSnapshots = new SnapshotCache<>(NAME, CachedDataType.LOOKUPS, 100);
+  private final SnapshotCache<String, List<SonarrQueue>> downloadSnapshots = new SnapshotCache<>(NAME, CachedDataType.DOWNLOADS, 1);
+  private static final String NAME = "sonarr";
   private static final SonarrCache SONARR_CACHE = new SonarrCache();
-  private static final int MAX_RESULTS_TO_SHOW = 20;
+  private static final int MAX_NOTIFICATIONS_TO_SEND = 10;
+  private static final String PROFILES_SNAPSHOT_KEY = "profiles";
+  private static final String QUEUE_SNAPSHOT_KEY = "queue";
   public static final String ADD_SHOW_COMMAND_FIELD_PREFIX = "Add show command";
 }
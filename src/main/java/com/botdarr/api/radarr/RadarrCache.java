@@ -22,13 +22,34 @@ public class RadarrCache {
     return Collections.unmodifiableCollection(existingProfiles.values());
   }
 
-  public void add(RadarrMovie movie) {
-    existingTmdbIdsToMovies.put(movie.getTmdbId(), movie);
+  /**
+   * Returns true if the movie is new to the cache or its download state changed
+   */
+  public boolean add(RadarrMovie movie) {
+    RadarrMovie previousMovie = existingTmdbIdsToMovies.put(movie.getTmdbId(), movie);
     existingMovieTitlesToIds.put(movie.getTitle().toLowerCase(), movie.getId());
+    return previousMovie == null ||
+      previousMovie.isDownloaded() != movie.isDownloaded() ||
+      previousMovie.isHasFile() != movie.isHasFile();
   }
 
-  public void addProfile(RadarrProfile qualityProfile) {
-    existingProfiles.put(qualityProfile.getName().toLowerCase(), qualityProfile);
+  /**
+   * Removes a movie deleted from radarr, returns true if it was cached
+   */
+  public boolean remove(RadarrMovie movie) {
+    RadarrMovie previousMovie = existingTmdbIdsToMovies.remove(movie.getTmdbId());
+    if (previousMovie == null) {
+      return false;
+    }
+    existingMovieTitlesToIds.remove(previousMovie.getTitle().toLowerCase());
+    return true;
+  }
+
+  /**
+   * Returns true if the profile is new to the cache
+   */
+  public boolean addProfile(RadarrProfile qualityProfile) {
+    return existingProfiles.put(qualityProfile.getName().toLowerCase(), qualityProfile) == null;
   }
 
   public RadarrProfile getProfile(String qualityProfileName) {
@@ -1,6 +1,9 @@
 package com.botdarr.api.radarr;
 
-public class RadarrQueue {
+import com.botdarr.api.DownloadQueueItem;
+
+public class RadarrQueue implements DownloadQueueItem {
+  @Override
   public String getStatus() {
     return status;
   }
@@ -9,6 +12,7 @@ public class RadarrQueue {
     this.status = status;
   }
 
+  @Override
   public String getTimeleft() {
     return timeleft;
   }
@@ -17,6 +21,7 @@ public class RadarrQueue {
     this.timeleft = timeleft;
   }
 
+  @Override
   public long getId() {
     return id;
   }
@@ -49,7 +54,42 @@ public class RadarrQueue {
     this.movie = radarrQueueMovie;
   }
 
+  @Override
+  public String getDisplayTitle() {
+    return movie == null ? "Unknown movie" : movie.getTitle();
+  }
+
+  @Override
+  public double getSize() {
+    return size;
+  }
+
+  public void setSize(double size) {
+    this.size = size;
+  }
+
+  @Override
+  public double getSizeleft() {
+    return sizeleft;
+  }
+
+  public void setSizeleft(double sizeleft) {
+    this.sizeleft = sizeleft;
+  }
+
+  @Override
+  public String getTrackedDownloadStatus() {
+    return trackedDownloadStatus;
+  }
+
+  public void setTrackedDownloadStatus(String trackedDownloadStatus) {
+    this.trackedDownloadStatus = trackedDownloadStatus;
+  }
+
   private String status;
+  private double size;
+  private double sizeleft;
+  private String trackedDownloadStatus;
   private String timeleft;
   private RadarrProfileQualityItem quality;
   private long id;
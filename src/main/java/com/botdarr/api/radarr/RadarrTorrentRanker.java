@@ -0,0 +1,203 @@
+package com.botdarr.api.radarr;
+
+import com.botdarr.Config;
+import com.google.common.base.Splitter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Strings;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scores releases locally (quality, seeders/leechers, a sane size, age, preferred indexers, rejections) so the best
+ * candidates are shown first, and only keeps the top ones around instead of sorting every release radarr found
+ */
+public class RadarrTorrentRanker {
+  public static RadarrTorrentRanker fromConfig() {
+    Map<String, Double> weights = new HashMap<>(DEFAULT_WEIGHTS);
+    String configuredWeights = Config.getProperty(Config.Constants.RADARR_TORRENT_RANK_WEIGHTS);
+    if (!Strings.isBlank(configuredWeights)) {
+      try {
+        for (Map.Entry<String, String> weight : Splitter.on(',').trimResults().omitEmptyStrings()
+          .withKeyValueSeparator(':').split(configuredWeights).entrySet()) {
+          if (!DEFAULT_WEIGHTS.containsKey(weight.getKey())) {
+            LOGGER.warn("Unknown torrent rank weight " + weight.getKey() + ", expected one of " + DEFAULT_WEIGHTS.keySet());
+            continue;
+          }
+          weights.put(weight.getKey(), Double.valueOf(weight.getValue().trim()));
+        }
+      } catch (IllegalArgumentException e) {
+        LOGGER.warn("Invalid torrent rank weights " + configuredWeights + ", using the defaults", e);
+        weights = new HashMap<>(DEFAULT_WEIGHTS);
+      }
+    }
+    String preferredIndexers = Config.getProperty(Config.Constants.RADARR_PREFERRED_INDEXERS);
+    return new RadarrTorrentRanker(weights, Strings.isBlank(preferredIndexers) ?
+      Collections.emptyList() : Splitter.on(',').trimResults().omitEmptyStrings().splitToList(preferredIndexers));
+  }
+
+  /**
+   * Weights are keyed by quality, seeders, size, age, indexer and rejected (see DEFAULT_WEIGHTS),
+   * preferred indexers are best first
+   */
+  public RadarrTorrentRanker(Map<String, Double> weights, List<String> preferredIndexers) {
+    this.qualityWeight = weights.getOrDefault(QUALITY, 0d);
+    this.seedersWeight = weights.getOrDefault(SEEDERS, 0d);
+    this.sizeWeight = weights.getOrDefault(SIZE, 0d);
+    this.ageWeight = weights.getOrDefault(AGE, 0d);
+    this.indexerWeight = weights.getOrDefault(INDEXER, 0d);
+    this.rejectedWeight = weights.getOrDefault(REJECTED, 0d);
+    this.preferredIndexers = new HashMap<>();
+    for (int i = 0; i < preferredIndexers.size(); i++) {
+      this.preferredIndexers.put(preferredIndexers.get(i).toLowerCase(), i);
+    }
+  }
+
+  /**
+   * The best scoring (at most) maxResults releases, best first, with the same release from multiple indexers
+   * (same info hash) only showing up once
+   */
+  public List<RadarrTorrent> getTopTorrents(Collection<RadarrTorrent> radarrTorrents, int maxResults) {
+    if (maxResults <= 0) {
+      return new ArrayList<>();
+    }
+    Collection<RadarrTorrent> uniqueTorrents = dedupe(radarrTorrents);
+    int maxQualityWeight = 0;
+    for (RadarrTorrent radarrTorrent : uniqueTorrents) {
+      maxQualityWeight = Math.max(maxQualityWeight, radarrTorrent.getQualityWeight());
+    }
+
+    //min heap of the best maxResults so far, the worst of them is on top to get replaced
+    PriorityQueue<ScoredTorrent> best = new PriorityQueue<>(maxResults + 1, Comparator.comparingDouble(ScoredTorrent::getScore));
+    for (RadarrTorrent radarrTorrent : uniqueTorrents) {
+      double score = score(radarrTorrent, maxQualityWeight);
+      if (best.size() < maxResults) {
+        best.add(new ScoredTorrent(radarrTorrent, score));
+      } else if (score > best.peek().score) {
+        best.poll();
+        best.add(new ScoredTorrent(radarrTorrent, score));
+      }
+    }
+
+    List<RadarrTorrent> topTorrents = new ArrayList<>(best.size());
+    while (!best.isEmpty()) {
+      topTorrents.add(best.poll().radarrTorrent);
+    }
+    Collections.reverse(topTorrents);
+    return topTorrents;
+  }
+
+  private double score(RadarrTorrent radarrTorrent, int maxQualityWeight) {
+    double score = 0;
+    if (maxQualityWeight > 0) {
+      score += qualityWeight * Math.max(0, radarrTorrent.getQualityWeight()) / maxQualityWeight;
+    }
+    score += seedersWeight * getHealth(radarrTorrent);
+    score += sizeWeight * (radarrTorrent.getSize() >= MIN_SANE_SIZE && radarrTorrent.getSize() <= MAX_SANE_SIZE ? 1 : 0);
+    //newer releases are better seeded/retained, but a year old isn't much worse than a month old
+    score += ageWeight / (1 + Math.max(0, radarrTorrent.getAgeHours()) / TimeUnit.DAYS.toHours(30));
+    Integer indexerRank = radarrTorrent.getIndexer() == null ? null : preferredIndexers.get(radarrTorrent.getIndexer().toLowerCase());
+    if (indexerRank != null) {
+      score += indexerWeight * (preferredIndexers.size() - indexerRank) / preferredIndexers.size();
+    }
+    if (radarrTorrent.isRejected()) {
+      //temporary rejections (i.e., the indexer is rate limited) are more likely to work out later
+      score -= rejectedWeight * (radarrTorrent.isTemporarilyRejected() ? 0.5 : 1);
+    }
+    return score;
+  }
+
+  /**
+   * 0-1, how likely the release is to actually download
+   */
+  private double getHealth(RadarrTorrent radarrTorrent) {
+    if ("usenet".equalsIgnoreCase(radarrTorrent.getProtocol())) {
+      //no swarm to speak of
+      return 1;
+    }
+    int seeders = Math.max(0, radarrTorrent.getSeeders());
+    int leechers = Math.max(0, radarrTorrent.getLeechers());
+    double seededScore = Math.min(1, Math.log1p(seeders) / Math.log1p(SEEDERS_FOR_FULL_SCORE));
+    double ratio = (double) seeders / (seeders + leechers + 1);
+    return 0.8 * seededScore + 0.2 * ratio;
+  }
+
+  /**
+   * The same release from multiple indexers (same info hash) merged into one, keeping the one radarr would accept
+   * (then the better seeded one)
+   */
+  public List<RadarrTorrent> dedupe(Collection<RadarrTorrent> radarrTorrents) {
+    Map<String, RadarrTorrent> uniqueTorrents = new LinkedHashMap<>();
+    List<RadarrTorrent> withoutHash = new ArrayList<>();
+    for (RadarrTorrent radarrTorrent : radarrTorrents) {
+      if (Strings.isBlank(radarrTorrent.getInfoHash())) {
+        //usenet releases (and some torrent indexers) don't have one
+        withoutHash.add(radarrTorrent);
+        continue;
+      }
+      uniqueTorrents.merge(radarrTorrent.getInfoHash().toLowerCase(), radarrTorrent, this::pickDuplicate);
+    }
+    List<RadarrTorrent> deduped = new ArrayList<>(uniqueTorrents.values());
+    deduped.addAll(withoutHash);
+    return deduped;
+  }
+
+  /**
+   * Keeps whichever copy of the same release radarr would accept, then the better seeded one
+   */
+  private RadarrTorrent pickDuplicate(RadarrTorrent existing, RadarrTorrent duplicate) {
+    if (existing.isRejected() != duplicate.isRejected()) {
+      return existing.isRejected() ? duplicate : existing;
+    }
+    return duplicate.getSeeders() > existing.getSeeders() ? duplicate : existing;
+  }
+
+  private static class ScoredTorrent {
+    private ScoredTorrent(RadarrTorrent radarrTorrent, double score) {
+      this.radarrTorrent = radarrTorrent;
+      this.score = score;
+    }
+
+    private double getScore() {
+      return score;
+    }
+
+    private final RadarrTorrent radarrTorrent;
+    private final double score;
+  }
+
+  private final double qualityWeight;
+  private final double seedersWeight;
+  private final double sizeWeight;
+  private final double ageWeight;
+  private final double indexerWeight;
+  private final double rejectedWeight;
+  private final Map<String, Integer> preferredIndexers;
+  private static final String QUALITY = "quality";
+  private static final String SEEDERS = "seeders";
+  private static final String SIZE = "size";
+  private static final String AGE = "age";
+  private static final String INDEXER = "indexer";
+  private static final String REJECTED = "rejected";
+  private static final Map<String, Double> DEFAULT_WEIGHTS = new LinkedHashMap<String, Double>() {{
+    put(QUALITY, 3d);
+    put(SEEDERS, 2d);
+    put(SIZE, 1d);
+    put(AGE, 0.5d);
+    put(INDEXER, 1d);
+    put(REJECTED, 5d);
+  }};
+  private static final int SEEDERS_FOR_FULL_SCORE = 100;
+  private static final long MIN_SANE_SIZE = 100L * 1024 * 1024;
+  private static final long MAX_SANE_SIZE = 150L * 1024 * 1024 * 1024;
+  private static final Logger LOGGER = LogManager.getLogger();
+}
@@ -22,11 +22,31 @@ public class SonarrCache {
     return existingShowTitlesToSonarrId.containsKey(title.toLowerCase());
   }
 
-  public void add(SonarrShow show) {
-    existingTvdbIdsToMovies.put(show.getTvdbId(), show);
+  /**
+   * Returns true if the show is new to the cache or its seasons/episodes changed
+   */
+  public boolean add(SonarrShow show) {
+    SonarrShow previousShow = existingTvdbIdsToMovies.put(show.getTvdbId(), show);
     existingTvrageIdsToMovies.put(show.getTvRageId(), show);
     existingTvmazeIdsToMovies.put(show.getTvMazeId(), show);
     existingShowTitlesToSonarrId.put(show.getTitle().toLowerCase(), show.getId());
+    return previousShow == null ||
+      previousShow.getSeasonCount() != show.getSeasonCount() ||
+      getEpisodeCount(previousShow) != getEpisodeCount(show);
+  }
+
+  /**
+   * Removes a show deleted from sonarr, returns true if it was cached
+   */
+  public boolean remove(SonarrShow show) {
+    SonarrShow previousShow = existingTvdbIdsToMovies.remove(show.getTvdbId());
+    if (previousShow == null) {
+      return false;
+    }
+    existingTvrageIdsToMovies.remove(previousShow.getTvRageId());
+    existingTvmazeIdsToMovies.remove(previousShow.getTvMazeId());
+    existingShowTitlesToSonarrId.remove(previousShow.getTitle().toLowerCase());
+    return true;
   }
 
   public Long getSonarrId(String title) {
@@ -37,8 +57,23 @@ public class SonarrCache {
     return Collections.unmodifiableCollection(existingProfiles.values());
   }
 
-  public void addProfile(SonarrProfile qualityProfile) {
-    existingProfiles.put(qualityProfile.getName().toLowerCase(), qualityProfile);
+  /**
+   * Returns true if the profile is new to the cache
+   */
+  public boolean addProfile(SonarrProfile qualityProfile) {
+    return existingProfiles.put(qualityProfile.getName().toLowerCase(), qualityProfile) == null;
+  }
+
+  private long getEpisodeCount(SonarrShow show) {
+    long episodeCount = 0;
+    if (show.getSeasons() != null) {
+      for (SonarrSeason sonarrSeason : show.getSeasons()) {
+        if (sonarrSeason.getStatistics() != null) {
+          episodeCount += sonarrSeason.getStatistics().getEpisodeCount();
+        }
+      }
+    }
+    return episodeCount;
   }
 
   public SonarrProfile getProfile(String qualityProfileName) {
@@ -1,7 +1,10 @@
 package com.botdarr.api.sonarr;
 
-public class SonarrQueue {
+import com.botdarr.api.DownloadQueueItem;
 
+public class SonarrQueue implements DownloadQueueItem {
+
+  @Override
   public String getStatus() {
     return status;
   }
@@ -10,6 +13,7 @@ public class SonarrQueue {
     this.status = status;
   }
 
+  @Override
   public String getTimeleft() {
     return timeleft;
   }
@@ -18,6 +22,7 @@ public class SonarrQueue {
     this.timeleft = timeleft;
   }
 
+  @Override
   public long getId() {
     return id;
   }
@@ -58,7 +63,46 @@ public class SonarrQueue {
     this.episode = episode;
   }
 
+  @Override
+  public String getDisplayTitle() {
+    String title = series == null ? "Unknown show" : series.getTitle();
+    if (episode != null) {
+      title += " S" + episode.getSeasonNumber() + "E" + episode.getEpisodeNumber();
+    }
+    return title;
+  }
+
+  @Override
+  public double getSize() {
+    return size;
+  }
+
+  public void setSize(double size) {
+    this.size = size;
+  }
+
+  @Override
+  public double getSizeleft() {
+    return sizeleft;
+  }
+
+  public void setSizeleft(double sizeleft) {
+    this.sizeleft = sizeleft;
+  }
+
+  @Override
+  public String getTrackedDownloadStatus() {
+    return trackedDownloadStatus;
+  }
+
+  public void setTrackedDownloadStatus(String trackedDownloadStatus) {
+    this.trackedDownloadStatus = trackedDownloadStatus;
+  }
+
   private String status;
+  private double size;
+  private double sizeleft;
+  private String trackedDownloadStatus;
   private String timeleft;
   private SonarrProfileQualityItem quality;
   private long id;
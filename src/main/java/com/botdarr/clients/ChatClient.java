@@ -8,4 +8,9 @@ public interface ChatClient<T extends ChatClientResponse> {
   void sendMessage(T chatClientResponse, String channel);
   void sendMessage(List<T> chatClientResponses, String channel);
   void sendMessage(CommandResponse<T> commandResponse, String channel);
+
+  /**
+   * Posts the named board to every channel the first time, then edits those same messages in place
+   */
+  void updateStatusBoard(String boardName, T chatClientResponse);
 }
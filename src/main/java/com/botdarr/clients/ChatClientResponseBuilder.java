@@ -1,5 +1,6 @@
 package com.botdarr.clients;
 
+import com.botdarr.api.DownloadProgress;
 import com.botdarr.api.radarr.RadarrMovie;
 import com.botdarr.api.radarr.RadarrProfile;
 import com.botdarr.api.radarr.RadarrQueue;
@@ -22,8 +23,8 @@ public interface ChatClientResponseBuilder<T extends ChatClientResponse> {
   T getMoviesHelpResponse(List<Command> radarrCommands);
   T getShowsHelpResponse(List<Command> sonarrCommands);
   T getShowResponse(SonarrShow show);
-  T getShowDownloadResponses(SonarrQueue sonarrShow);
-  T getMovieDownloadResponses(RadarrQueue radarrQueue);
+  T getShowDownloadResponses(SonarrQueue sonarrShow, DownloadProgress downloadProgress);
+  T getMovieDownloadResponses(RadarrQueue radarrQueue, DownloadProgress downloadProgress);
   T createErrorMessage(String message);
   T createInfoMessage(String message);
   T createSuccessMessage(String message);
@@ -34,6 +35,7 @@ public interface ChatClientResponseBuilder<T extends ChatClientResponse> {
   T getNewOrExistingMovie(RadarrMovie lookupMovie, RadarrMovie existingMovie, boolean findNew);
   T getMovie(RadarrMovie radarrMovie);
   T getDiscoverableMovies(RadarrMovie radarrMovie);
+  T getStatusBoard(String title, List<String> lines);
 
   static String getVersion() throws IOException {
     ClassLoader classloader = Thread.currentThread().getContextClassLoader();
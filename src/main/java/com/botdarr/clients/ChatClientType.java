@@ -3,11 +3,15 @@ package com.botdarr.clients;
 import com.botdarr.api.*;
 import com.botdarr.Config;
 import com.botdarr.commands.*;
+import com.botdarr.connections.WebhookServer;
+import com.botdarr.discord.DiscordCachePolicy;
+import com.botdarr.discord.DiscordChannelRoutes;
 import com.botdarr.discord.DiscordChatClient;
 import com.botdarr.discord.DiscordResponse;
 import com.botdarr.discord.DiscordResponseBuilder;
 import com.botdarr.scheduling.Scheduler;
 import com.botdarr.slack.SlackChatClient;
+import com.botdarr.slack.SlackFrameFilter;
 import com.botdarr.slack.SlackMessage;
 import com.botdarr.slack.SlackResponse;
 import com.botdarr.slack.SlackResponseBuilder;
@@ -26,9 +30,13 @@ import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.JDABuilder;
 import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.entities.MessageChannel;
 import net.dv8tion.jda.api.entities.MessageHistory;
 import net.dv8tion.jda.api.events.GenericEvent;
 import net.dv8tion.jda.api.events.ReadyEvent;
+import net.dv8tion.jda.api.events.channel.text.TextChannelCreateEvent;
+import net.dv8tion.jda.api.events.channel.text.TextChannelDeleteEvent;
+import net.dv8tion.jda.api.events.channel.text.update.TextChannelUpdateNameEvent;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.api.events.message.guild.react.GuildMessageReactionAddEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
@@ -36,7 +44,10 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import javax.annotation.Nonnull;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.botdarr.api.RadarrApi.ADD_MOVIE_COMMAND_FIELD_PREFIX;
 import static com.botdarr.api.SonarrApi.ADD_SHOW_COMMAND_FIELD_PREFIX;
@@ -49,7 +60,8 @@ public enum ChatClientType {
         ChatClientResponseBuilder<DiscordResponse> responseChatClientResponseBuilder = new DiscordResponseBuilder();
         ApisAndCommandConfig config = buildConfig(responseChatClientResponseBuilder);
 
-        JDA jda = new JDABuilder(Config.getProperty(Config.Constants.DISCORD_TOKEN)).addEventListeners(new ListenerAdapter() {
+        JDABuilder jdaBuilder = DiscordCachePolicy.apply(new JDABuilder(Config.getProperty(Config.Constants.DISCORD_TOKEN)), DiscordCachePolicy.isLowMemory());
+        JDA jda = jdaBuilder.addEventListeners(new ListenerAdapter() {
           @Override
           public void onGenericEvent(@Nonnull GenericEvent event) {
             super.onGenericEvent(event);
@@ -57,16 +69,42 @@ public enum ChatClientType {
 
           @Override
           public void onReady(@Nonnull ReadyEvent event) {
-            LogManager.getLogger("DiscordLog").info("Connected to discord");
+            LogManager.getLogger("DiscordLog").info("Connected to discord" + (DiscordCachePolicy.isLowMemory() ? " (low memory mode)" : ""));
+            DiscordChannelRoutes.getRoutes().rebuild(event.getJDA());
             ChatClient chatClient = new DiscordChatClient(event.getJDA());
             //start the scheduler threads that send notifications and cache data periodically
             initScheduling(chatClient, config.apis);
             super.onReady(event);
           }
 
+          @Override
+          public void onTextChannelCreate(@Nonnull TextChannelCreateEvent event) {
+            DiscordChannelRoutes.getRoutes().addChannel(event.getChannel().getName(), event.getChannel().getIdLong());
+            super.onTextChannelCreate(event);
+          }
+
+          @Override
+          public void onTextChannelDelete(@Nonnull TextChannelDeleteEvent event) {
+            DiscordChannelRoutes.getRoutes().removeChannel(event.getChannel().getIdLong());
+            super.onTextChannelDelete(event);
+          }
+
+          @Override
+          public void onTextChannelUpdateName(@Nonnull TextChannelUpdateNameEvent event) {
+            DiscordChannelRoutes.getRoutes().renameChannel(event.getChannel().getIdLong(), event.getNewName());
+            super.onTextChannelUpdateName(event);
+          }
+
           @Override
           public void onGuildMessageReactionAdd(@Nonnull GuildMessageReactionAddEvent event) {
             if (event.getReactionEmote().getName().equalsIgnoreCase(THUMBS_UP_EMOTE)) {
+              String indexedCommand = ReactionCommandIndex.getIndex().get(event.getMessageId());
+              if (indexedCommand != null) {
+                handleCommand(event.getJDA(), indexedCommand, event.getUser().getName(), event.getChannel().getName());
+                super.onGuildMessageReactionAdd(event);
+                return;
+              }
+              //not a message we remember posting (i.e., it's older than the index), go get it
               MessageHistory.MessageRetrieveAction me = event.getChannel().getHistoryAround(event.getMessageId(), 1);
               me.queue(messageHistory -> {
                 List<Message> messageHistories = messageHistory.getRetrievedHistory();
@@ -89,25 +127,43 @@ public enum ChatClientType {
 
           @Override
           public void onMessageReceived(@Nonnull MessageReceivedEvent event) {
-            handleCommand(event.getJDA(), event.getMessage().getContentStripped(), event.getAuthor().getName(), event.getChannel().getName());
+            if (event.getAuthor().isBot() || !isRoutedChannel(event.getChannel())) {
+              //our own output, other bots and other channels never need the message parsed
+              return;
+            }
+            //filter on the same text the router sees, markdown in the raw content (i.e., **movie find**) would hide commands
+            String content = event.getMessage().getContentStripped();
+            if (!config.commandRouter.startsWithCommand(content, 0)) {
+              //chatter
+              return;
+            }
+            handleCommand(event.getJDA(), content, event.getAuthor().getName(), event.getChannel().getName());
             LogManager.getLogger("DiscordLog").debug(event.getMessage().getContentRaw());
             super.onMessageReceived(event);
           }
 
+          private boolean isRoutedChannel(MessageChannel channel) {
+            DiscordChannelRoutes routes = DiscordChannelRoutes.getRoutes();
+            //until the routes are built (on ready) let everything through
+            return !routes.isBuilt() || routes.getChannelIds(channel.getName()).contains(channel.getIdLong());
+          }
+
           private void handleCommand(JDA jda, String message, String author, String channelName) {
+            //route on the listener thread (cheap) so chatter that isn't a command never gets queued
+            CommandRouter.Match match = config.commandRouter.route(message);
+            if (match == null) {
+              return;
+            }
             //build chat client
             ChatClient<DiscordResponse> discordChatClient = new DiscordChatClient(jda);
-
-            //capture/process command
-            CommandResponse commandResponse = processMessage(
-              config.commands,
-              message,
-              author,
-              responseChatClientResponseBuilder);
-            if (commandResponse != null) {
-              //then send the response
-              discordChatClient.sendMessage(commandResponse, channelName);
-            }
+            submitCommand(discordChatClient, responseChatClientResponseBuilder, author, channelName, match.getCommand().getCost(), () -> {
+              //capture/process command
+              CommandResponse commandResponse = processMessage(match, author, responseChatClientResponseBuilder);
+              if (commandResponse != null) {
+                //then send the response
+                discordChatClient.sendMessage(commandResponse, channelName);
+              }
+            });
           }
 
           private static final String THUMBS_UP_EMOTE = "\uD83D\uDC4D";
@@ -128,57 +184,94 @@ public enum ChatClientType {
       ChatClientResponseBuilder<SlackResponse> responseChatClientResponseBuilder = new SlackResponseBuilder();
       ApisAndCommandConfig config = buildConfig(responseChatClientResponseBuilder);
 
-      slackChatClient.addMessageHandler(new RTMMessageHandler() {
+      SlackFrameFilter frameFilter = new SlackFrameFilter(slackChatClient.getMetadataCache(), config.commandRouter);
+      RTMMessageHandler messageHandler = new RTMMessageHandler() {
         @Override
         public void handle(String message) {
+          if (!frameFilter.accept(message)) {
+            //typing, presence, pongs, chatter, other channels
+            return;
+          }
           JsonObject json = jsonParser.parse(message).getAsJsonObject();
+          if (slackChatClient.getMetadataCache().handleEvent(json)) {
+            //channel/user changes, nothing to run
+            LogManager.getLogger("SlackLog").debug(json);
+            return;
+          }
           SlackMessage slackMessage = new Gson().fromJson(json, SlackMessage.class);
           if (slackMessage.getType() != null) {
             if (slackMessage.getType().equalsIgnoreCase("message")) {
-              handleCommand(slackMessage.getText(), slackChatClient.getUser(slackMessage.getUserId()).getName(), slackMessage.getChannel());
+              if (!slackChatClient.getConnectionSupervisor().messageSeen(slackMessage.getChannel(), slackMessage.getTs())) {
+                //already handled while catching up after a reconnect
+                return;
+              }
+              CommandRouter.Match match = slackMessage.getText() == null ? null : config.commandRouter.route(slackMessage.getText());
+              if (match != null) {
+                //unknown users still cost a slack api call, so that happens on the command threads too
+                submitCommand(slackChatClient, responseChatClientResponseBuilder, slackMessage.getUserId(), slackMessage.getChannel(), match.getCommand().getCost(), () ->
+                  handleCommand(match, slackChatClient.getUserName(slackMessage.getUserId()), slackMessage.getChannel()));
+              }
             } else if (slackMessage.getType().equalsIgnoreCase("reaction_added") && slackMessage.getReaction().equalsIgnoreCase("+1")) {
               //thumbsup = +1 in slack for some reason
-              try {
-                //search public channels first
-                List<com.github.seratch.jslack.api.model.Message> conversationMessages = slackChatClient.getPublicMessages(slackMessage);
-                if (conversationMessages == null || conversationMessages.isEmpty()) {
-                  //check private channels if necessary
-                  conversationMessages = slackChatClient.getPrivateMessages(slackMessage);
-                }
-                if (conversationMessages != null) {
-                  conversationMessageLoop:
-                  for (com.github.seratch.jslack.api.model.Message conversationMessage : conversationMessages) {
-                    for (LayoutBlock layoutBlock : conversationMessage.getBlocks()) {
-                      if (layoutBlock.getType().equals("section")) {
-                        SectionBlock sectionBlock = (SectionBlock) layoutBlock;
-                        if (sectionBlock.getText() instanceof MarkdownTextObject) {
-                          String markdownText = ((MarkdownTextObject) sectionBlock.getText()).getText();
-                          if (markdownText != null &&
-                            (markdownText.startsWith(ADD_MOVIE_COMMAND_FIELD_PREFIX) || markdownText.startsWith(ADD_SHOW_COMMAND_FIELD_PREFIX))) {
-                            String postProcessedCommand = markdownText
-                              .replaceAll(ADD_MOVIE_COMMAND_FIELD_PREFIX + " - ", "")
-                              .replaceAll(ADD_SHOW_COMMAND_FIELD_PREFIX + " - ", "");
-                            handleCommand(postProcessedCommand, slackChatClient.getUser(slackMessage.getUserId()).getName(), slackMessage.getItem().getChannel());
-                            break conversationMessageLoop;
-                          }
+              //reactions only ever run add commands
+              submitCommand(slackChatClient, responseChatClientResponseBuilder, slackMessage.getUserId(), slackMessage.getItem().getChannel(), CommandCost.CHEAP, () ->
+                handleReaction(slackMessage));
+            }
+          }
+          LogManager.getLogger("SlackLog").debug(json);
+        }
+
+        private void handleReaction(SlackMessage slackMessage) {
+          String indexedCommand = ReactionCommandIndex.getIndex().get(
+            SlackChatClient.getReactionKey(slackMessage.getItem().getChannel(), slackMessage.getItem().getTs()));
+          if (indexedCommand != null) {
+            CommandRouter.Match match = config.commandRouter.route(indexedCommand);
+            if (match != null) {
+              handleCommand(match, slackChatClient.getUserName(slackMessage.getUserId()), slackMessage.getItem().getChannel());
+            }
+            return;
+          }
+          //not a message we remember posting (i.e., it's older than the index), go get it
+          try {
+            //search public channels first
+            List<com.github.seratch.jslack.api.model.Message> conversationMessages = slackChatClient.getPublicMessages(slackMessage);
+            if (conversationMessages == null || conversationMessages.isEmpty()) {
+              //check private channels if necessary
+              conversationMessages = slackChatClient.getPrivateMessages(slackMessage);
+            }
+            if (conversationMessages != null) {
+              conversationMessageLoop:
+              for (com.github.seratch.jslack.api.model.Message conversationMessage : conversationMessages) {
+                for (LayoutBlock layoutBlock : conversationMessage.getBlocks()) {
+                  if (layoutBlock.getType().equals("section")) {
+                    SectionBlock sectionBlock = (SectionBlock) layoutBlock;
+                    if (sectionBlock.getText() instanceof MarkdownTextObject) {
+                      String markdownText = ((MarkdownTextObject) sectionBlock.getText()).getText();
+                      if (markdownText != null &&
+                        (markdownText.startsWith(ADD_MOVIE_COMMAND_FIELD_PREFIX) || markdownText.startsWith(ADD_SHOW_COMMAND_FIELD_PREFIX))) {
+                        String postProcessedCommand = markdownText
+                          .replaceAll(ADD_MOVIE_COMMAND_FIELD_PREFIX + " - ", "")
+                          .replaceAll(ADD_SHOW_COMMAND_FIELD_PREFIX + " - ", "");
+                        CommandRouter.Match match = config.commandRouter.route(postProcessedCommand);
+                        if (match != null) {
+                          handleCommand(match, slackChatClient.getUserName(slackMessage.getUserId()), slackMessage.getItem().getChannel());
                         }
+                        break conversationMessageLoop;
                       }
                     }
                   }
                 }
-              } catch (Exception e) {
-                LogManager.getLogger("SlackLog").error("Error fetching conversation history", e);
               }
             }
+          } catch (Exception e) {
+            LogManager.getLogger("SlackLog").error("Error fetching conversation history", e);
           }
-          LogManager.getLogger("SlackLog").debug(json);
         }
 
-        private void handleCommand(String text, String userId, String channel) {
+        private void handleCommand(CommandRouter.Match match, String userId, String channel) {
           //capture/process the command
           CommandResponse commandResponse = processMessage(
-            config.commands,
-            text,
+            match,
             userId,
             responseChatClientResponseBuilder);
           if (commandResponse != null) {
@@ -186,10 +279,28 @@ public enum ChatClientType {
             slackChatClient.sendMessage(commandResponse, channel);
           }
         }
+      };
+      slackChatClient.addMessageHandler(messageHandler);
+      slackChatClient.addCatchUpHandler(message -> {
+        //sent while the bot was disconnected, so possibly minutes ago
+        SlackMessage slackMessage = new Gson().fromJson(message, SlackMessage.class);
+        CommandRouter.Match match = slackMessage.getText() == null ? null : config.commandRouter.route(slackMessage.getText());
+        if (match != null && match.getCommand().isMutating()) {
+          //adding/downloading something this late (and maybe twice, if the user already retried) is worse than asking again
+          if (slackChatClient.getConnectionSupervisor().messageSeen(slackMessage.getChannel(), slackMessage.getTs())) {
+            slackChatClient.sendMessage(responseChatClientResponseBuilder.createInfoMessage("Missed \"" + slackMessage.getText() +
+              "\" while disconnected from slack, send it again if you still want it"), slackMessage.getChannel());
+          }
+          return;
+        }
+        //read only commands run like live ones (which skips anything that already arrived live)
+        messageHandler.handle(message);
       });
 
       //start the scheduler threads that send notifications and cache data periodically
       initScheduling(slackChatClient, config.apis);
+      Scheduler.getScheduler().schedulePeriodic("slack-metadata", slackChatClient.getMetadataCache()::refresh,
+        TimeUnit.MINUTES.toMillis(Config.getIntProperty(Config.Constants.SLACK_METADATA_REFRESH_MINUTES, DEFAULT_SLACK_METADATA_REFRESH_MINUTES)));
 
       slackChatClient.connect();
     }
@@ -199,31 +310,72 @@ public enum ChatClientType {
     Scheduler scheduler = Scheduler.getScheduler();
     scheduler.initApiNotifications(apis, chatClient);
     scheduler.initApiCaching(apis);
+    //onReady can fire again after reconnects, only ever bind the webhook port once
+    if (WebhookServer.isEnabled() && WEBHOOK_SERVER_STARTED.compareAndSet(false, true)) {
+      try {
+        new WebhookServer(apis).start();
+      } catch (IOException e) {
+        LOGGER.error("Error starting webhook server, falling back to polling", e);
+      }
+    }
   }
 
-  <T extends ChatClientResponse, Z extends Api> CommandResponse processMessage(List<Command> apiCommands,
-                                                                              String strippedMessage,
+  <T extends ChatClientResponse> void submitCommand(ChatClient<T> chatClient,
+                                                    ChatClientResponseBuilder<T> chatClientResponseBuilder,
+                                                    String user,
+                                                    String channel,
+                                                    CommandCost cost,
+                                                    Runnable command) {
+    CommandContext commandContext = CommandContext.create(user, channel,
+      TimeUnit.SECONDS.toMillis(Config.getIntProperty(Config.Constants.COMMAND_TIMEOUT_SECONDS, DEFAULT_COMMAND_TIMEOUT_SECONDS)));
+    RateLimiter.Rejection rejection = RateLimiter.getRateLimiter().tryAcquire(user, channel, cost);
+    if (rejection != null) {
+      LOGGER.info("Rate limited command from " + user + " in " + channel + ", " + rejection.getLimitName() + " limit hit");
+      //bound to the command so the answer goes out as a reply, ahead of notifications
+      Scheduler.getScheduler().executeBackground(commandContext.bind(() ->
+        chatClient.sendMessage(chatClientResponseBuilder.createInfoMessage("Slow down, too many " +
+          (cost == CommandCost.EXPENSIVE ? "expensive " : "") + "commands (" + rejection.getLimitName() + " limit), try again in " +
+          Math.max(1, TimeUnit.MILLISECONDS.toSeconds(rejection.getRetryAfterMillis() + 999)) + " seconds"), channel)));
+      return;
+    }
+    if (!CommandExecutionEngine.getEngine().submit(user, channel, commandContext.bind(command))) {
+      //shed the command instead of piling up work, and answer off of the listener thread
+      LOGGER.warn("Rejected command from " + user + ", the command queues are full");
+      Scheduler.getScheduler().executeBackground(commandContext.bind(() ->
+        chatClient.sendMessage(chatClientResponseBuilder.createInfoMessage("Bot is busy, try again in a bit"), channel)));
+    }
+  }
+
+  <T extends ChatClientResponse, Z extends Api> CommandResponse processMessage(CommandRouter.Match match,
                                                                               String name,
                                                                               ChatClientResponseBuilder<T> chatClientResponseBuilder) {
     try {
-      for (Command apiCommand : apiCommands) {
-        if (strippedMessage.startsWith(apiCommand.getIdentifier())) {
-          String commandOperation = strippedMessage.replaceAll(apiCommand.getIdentifier().toLowerCase(), "");
-          try {
-            CommandContext
-              .start()
-              .setUsername(name);
-            return apiCommand.execute(commandOperation.trim());
-          } finally {
-            CommandContext.end();
-          }
+      Command apiCommand = match.getCommand();
+      if (CommandContext.current().isExpired()) {
+        //waited in the queue so long the user has probably given up on it
+        return new CommandResponse(chatClientResponseBuilder.createInfoMessage("Bot was too busy to get to \"" +
+          apiCommand.getIdentifier() + "\" in time, try again"));
+      }
+      //let the scheduler know people are around so the data this command needs stays fresh
+      Scheduler.getScheduler().recordActivity(apiCommand.getCacheDependencies());
+      if (!Scheduler.getScheduler().awaitCaches(apiCommand.getCacheDependencies())) {
+        List<String> unreachableApis = Scheduler.getScheduler().getUnreachableApis(apiCommand.getCacheDependencies());
+        if (!unreachableApis.isEmpty()) {
+          return new CommandResponse(chatClientResponseBuilder.createErrorMessage(String.join(", ", unreachableApis) +
+            (unreachableApis.size() == 1 ? " is" : " are") + " unreachable, try again later"));
         }
+        //answering now would give wrong "new vs existing" answers
+        return new CommandResponse(chatClientResponseBuilder.createInfoMessage("Still warming up " +
+          Scheduler.getScheduler().getCachesNotReady(apiCommand.getCacheDependencies()) + " data, try again in a few seconds"));
+      }
+      //the user id the command was queued under might only now be resolved to a name
+      try (CommandContext.Scope ignored = CommandContext.current().withUsername(name).bind()) {
+        return apiCommand.execute(match.getArguments());
       }
     } catch (Exception e) {
-      LOGGER.error("Error trying to execute command " + strippedMessage, e);
-      return new CommandResponse(chatClientResponseBuilder.createErrorMessage("Error trying to parse command " + strippedMessage));
+      LOGGER.error("Error trying to execute command " + match.getCommand().getIdentifier() + " (trace " + CommandContext.current().getTraceId() + ")", e);
+      return new CommandResponse(chatClientResponseBuilder.createErrorMessage("Error trying to parse command " + match.getCommand().getIdentifier() + " " + match.getArguments()));
     }
-    return null;
   }
 
   public abstract void init() throws Exception;
@@ -234,6 +386,7 @@ public enum ChatClientType {
 
     List<Command> radarrCommands = RadarrCommands.getCommands(radarrApi);
     List<Command> sonarrCommands = SonarrCommands.getCommands(sonarrApi);
+    List<Command> resultCommands = ResultCommands.getCommands(responseChatClientResponseBuilder);
 
     List<Command> commands = new ArrayList<>();
     List<Api> apis = new ArrayList<>();
@@ -245,18 +398,22 @@ public enum ChatClientType {
       commands.addAll(sonarrCommands);
       apis.add(sonarrApi);
     }
-    commands.addAll(HelpCommands.getCommands(responseChatClientResponseBuilder, radarrCommands, sonarrCommands));
-    return new ApisAndCommandConfig(apis, commands);
+    commands.addAll(resultCommands);
+    commands.addAll(HelpCommands.getCommands(responseChatClientResponseBuilder, radarrCommands, sonarrCommands, resultCommands));
+    return new ApisAndCommandConfig(apis, new CommandRouter(commands));
   }
 
   private static class ApisAndCommandConfig {
-    private ApisAndCommandConfig(List<Api> apis, List<Command> commands) {
+    private ApisAndCommandConfig(List<Api> apis, CommandRouter commandRouter) {
       this.apis = apis;
-      this.commands = commands;
+      this.commandRouter = commandRouter;
     }
     private final List<Api> apis;
-    private final List<Command> commands;
+    private final CommandRouter commandRouter;
   }
 
+  private static final int DEFAULT_COMMAND_TIMEOUT_SECONDS = 60;
+  private static final int DEFAULT_SLACK_METADATA_REFRESH_MINUTES = 60;
+  private static final AtomicBoolean WEBHOOK_SERVER_STARTED = new AtomicBoolean(false);
   private static final Logger LOGGER = LogManager.getLogger(ChatClientType.class);
 }
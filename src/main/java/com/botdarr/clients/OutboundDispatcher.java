@@ -0,0 +1,306 @@
+package com.botdarr.clients;
+
+import com.botdarr.commands.CommandContext;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Sends chat api calls in the background instead of on the listener/scheduler threads, shared by every chat client.
+ * Every channel gets its own token bucket (i.e., slack allows about a message per second per channel) and sends in
+ * order, while different channels send in parallel. Replies to commands (interactive) always go ahead of
+ * notifications/status boards (background), except that background traffic gets a turn every so often so it can't be
+ * starved. Rate limited calls wait out the time the chat api asked for and are retried, holding back the rest of
+ * that channel's messages until then.
+ */
+public class OutboundDispatcher {
+  /**
+   * retryAfterMillis returns how long (in millis) the chat api asked us to back off after a failed call,
+   * or -1 if the call wasn't rate limited
+   */
+  public OutboundDispatcher(String name,
+                            int threads,
+                            long millisPerMessage,
+                            int burst,
+                            int maxPendingPerChannel,
+                            ToLongFunction<Exception> retryAfterMillis) {
+    this.executor = new ScheduledThreadPoolExecutor(Math.max(1, threads),
+      new ThreadFactoryBuilder().setNameFormat("botdarr-" + name + "-outbound-%d").setDaemon(true).build());
+    this.emissionIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, millisPerMessage));
+    this.burstToleranceNanos = this.emissionIntervalNanos * (Math.max(1, burst) - 1);
+    this.maxPendingPerChannel = maxPendingPerChannel;
+    this.retryAfterMillis = retryAfterMillis;
+  }
+
+  public enum Priority {
+    INTERACTIVE,
+    BACKGROUND;
+
+    /**
+     * Interactive while a command is running on this thread (its reply), background otherwise
+     */
+    public static Priority current() {
+      return CommandContext.current().getChannel() != null ? INTERACTIVE : BACKGROUND;
+    }
+  }
+
+  public <T> CompletableFuture<T> submit(String channelId, OutboundCall<T> call) {
+    return submit(channelId, Priority.current(), call);
+  }
+
+  /**
+   * Queues a call against the channel, the future completes with its response once it was sent
+   * (or exceptionally if it failed, ran out of rate limit retries or the channel already had too much queued)
+   */
+  public <T> CompletableFuture<T> submit(String channelId, Priority priority, OutboundCall<T> call) {
+    return submitAsync(channelId, priority, () -> CompletableFuture.completedFuture(call.call()));
+  }
+
+  public <T> CompletableFuture<T> submitAsync(String channelId, AsyncOutboundCall<T> call) {
+    return submitAsync(channelId, Priority.current(), call);
+  }
+
+  /**
+   * Same as submit, for chat apis that can send without blocking (i.e., jda's RestAction.submit()).
+   * The channel still waits for the call to finish before sending its next message, but no dispatcher thread does
+   */
+  public <T> CompletableFuture<T> submitAsync(String channelId, Priority priority, AsyncOutboundCall<T> call) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    ChannelQueue channelQueue = channels.computeIfAbsent(channelId, ChannelQueue::new);
+    synchronized (channelQueue) {
+      if (channelQueue.size() >= maxPendingPerChannel) {
+        rejected.increment();
+        LOGGER.warn("Dropping a " + priority.name().toLowerCase() + " message for channel " + channelId + ", " +
+          channelQueue.size() + " messages are already waiting to be sent there");
+        future.completeExceptionally(new RejectedExecutionException("Too many messages queued for channel " + channelId));
+        return future;
+      }
+      channelQueue.getPending(priority).add(new Delivery<>(call, future, priority));
+      queued.incrementAndGet();
+      if (!channelQueue.draining) {
+        channelQueue.draining = true;
+        channelQueue.scheduleDrain(System.nanoTime());
+      }
+    }
+    return future;
+  }
+
+  /**
+   * How many calls were sent (by priority), retried after being rate limited, failed and rejected,
+   * and how many are waiting
+   */
+  public Map<String, Long> getMetrics() {
+    Map<String, Long> metrics = new LinkedHashMap<>();
+    metrics.put("sent interactive", sentInteractive.sum());
+    metrics.put("sent background", sentBackground.sum());
+    metrics.put("rate limited", rateLimited.sum());
+    metrics.put("failed", failed.sum());
+    metrics.put("rejected", rejected.sum());
+    metrics.put("queued", queued.get());
+    return Collections.unmodifiableMap(metrics);
+  }
+
+  public void shutdown() {
+    executor.shutdown();
+    LOGGER.info("Outbound dispatcher shutdown, " + getMetrics());
+  }
+
+  public interface OutboundCall<T> {
+    T call() throws Exception;
+  }
+
+  public interface AsyncOutboundCall<T> {
+    CompletionStage<T> call() throws Exception;
+  }
+
+  private class Delivery<T> {
+    private Delivery(AsyncOutboundCall<T> call, CompletableFuture<T> future, Priority priority) {
+      this.call = call;
+      this.future = future;
+      this.priority = priority;
+    }
+
+    /**
+     * Starts the call, the stage completes once the chat api answered (right away for blocking calls)
+     */
+    private CompletionStage<T> send() {
+      try {
+        return call.call();
+      } catch (Exception e) {
+        CompletableFuture<T> failedCall = new CompletableFuture<>();
+        failedCall.completeExceptionally(e);
+        return failedCall;
+      }
+    }
+
+    /**
+     * Returns how long to wait before retrying if the call was rate limited, otherwise -1
+     * (the outcome is only handed to the future on complete, after the metrics are updated)
+     */
+    private long onSent(T response, Throwable throwable) {
+      if (throwable == null) {
+        result = response;
+        return -1;
+      }
+      Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+      Exception e = cause instanceof Exception ? (Exception) cause : new ExecutionException(cause);
+      long retryAfter = retryAfterMillis.applyAsLong(e);
+      if (retryAfter >= 0 && ++attempts <= MAX_RATE_LIMIT_RETRIES) {
+        return retryAfter;
+      }
+      error = e;
+      return -1;
+    }
+
+    private void complete() {
+      if (error != null) {
+        future.completeExceptionally(error);
+      } else {
+        future.complete(result);
+      }
+    }
+
+    private final AsyncOutboundCall<T> call;
+    private final CompletableFuture<T> future;
+    private final Priority priority;
+    private int attempts;
+    private T result;
+    private Exception error;
+  }
+
+  /**
+   * A channel's pending calls, only one drain per channel is ever scheduled/running so messages stay in order
+   */
+  private class ChannelQueue {
+    private ChannelQueue(String channelId) {
+      this.channelId = channelId;
+    }
+
+    private Deque<Delivery<?>> getPending(Priority priority) {
+      return priority == Priority.INTERACTIVE ? interactive : background;
+    }
+
+    private int size() {
+      return interactive.size() + background.size();
+    }
+
+    /**
+     * Interactive first, unless background has been waiting behind too many interactive sends in a row
+     */
+    private Delivery<?> poll() {
+      if (!background.isEmpty() && (interactive.isEmpty() || interactiveStreak >= MAX_INTERACTIVE_STREAK)) {
+        interactiveStreak = 0;
+        return background.poll();
+      }
+      Delivery<?> delivery = interactive.poll();
+      if (delivery != null && !background.isEmpty()) {
+        interactiveStreak++;
+      }
+      return delivery;
+    }
+
+    //must hold the lock
+    private void scheduleDrain(long nowNanos) {
+      long delayNanos = Math.max(blockedUntilNanos - nowNanos, theoreticalArrivalNanos - burstToleranceNanos - nowNanos);
+      try {
+        executor.schedule(this::drainOne, Math.max(0, delayNanos), TimeUnit.NANOSECONDS);
+      } catch (RejectedExecutionException e) {
+        //shutting down, nothing left to send with
+        draining = false;
+      }
+    }
+
+    private void drainOne() {
+      Delivery<?> delivery;
+      synchronized (this) {
+        delivery = poll();
+        if (delivery == null) {
+          draining = false;
+          return;
+        }
+        long nowNanos = System.nanoTime();
+        theoreticalArrivalNanos = Math.max(theoreticalArrivalNanos, nowNanos) + emissionIntervalNanos;
+      }
+      send(delivery);
+    }
+
+    private <T> void send(Delivery<T> delivery) {
+      delivery.send().whenComplete((response, throwable) -> afterSend(delivery, delivery.onSent(response, throwable)));
+    }
+
+    private void afterSend(Delivery<?> delivery, long retryAfter) {
+      boolean done = false;
+      synchronized (this) {
+        long nowNanos = System.nanoTime();
+        if (retryAfter >= 0) {
+          rateLimited.increment();
+          LOGGER.warn("Rate limited in channel " + channelId + ", retrying in " + retryAfter + "ms");
+          //keep the channel in order, nothing else goes out until the retry does
+          getPending(delivery.priority).addFirst(delivery);
+          blockedUntilNanos = nowNanos + TimeUnit.MILLISECONDS.toNanos(retryAfter);
+        } else {
+          queued.decrementAndGet();
+          if (delivery.error != null) {
+            failed.increment();
+          } else if (delivery.priority == Priority.INTERACTIVE) {
+            sentInteractive.increment();
+          } else {
+            sentBackground.increment();
+          }
+          done = true;
+        }
+        if (size() == 0) {
+          draining = false;
+        } else {
+          scheduleDrain(nowNanos);
+        }
+      }
+      if (done) {
+        //outside the lock, callers can chain more sends onto the future
+        delivery.complete();
+      }
+    }
+
+    private final String channelId;
+    private final Deque<Delivery<?>> interactive = new ArrayDeque<>();
+    private final Deque<Delivery<?>> background = new ArrayDeque<>();
+    private int interactiveStreak;
+    private boolean draining;
+    private long theoreticalArrivalNanos = System.nanoTime();
+    private long blockedUntilNanos = System.nanoTime();
+  }
+
+  private final ScheduledThreadPoolExecutor executor;
+  private final long emissionIntervalNanos;
+  private final long burstToleranceNanos;
+  private final int maxPendingPerChannel;
+  private final ToLongFunction<Exception> retryAfterMillis;
+  private final Map<String, ChannelQueue> channels = new ConcurrentHashMap<>();
+  private final LongAdder sentInteractive = new LongAdder();
+  private final LongAdder sentBackground = new LongAdder();
+  private final LongAdder rateLimited = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final AtomicLong queued = new AtomicLong();
+  private static final int MAX_RATE_LIMIT_RETRIES = 5;
+  //background gets one send in after this many interactive ones while it waits
+  private static final int MAX_INTERACTIVE_STREAK = 10;
+  private static final Logger LOGGER = LogManager.getLogger();
+}
@@ -0,0 +1,166 @@
+package com.botdarr.clients;
+
+import com.botdarr.Config;
+import com.botdarr.scheduling.Scheduler;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Strings;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the add command in each message the bot posts (keyed by the chat client's message id), so a thumbs up
+ * reaction can run it right away instead of fetching the message back from the chat api.
+ * Entries expire and the index is bounded, the message history is still there for anything older.
+ */
+public class ReactionCommandIndex {
+  public static ReactionCommandIndex getIndex() {
+    if (instance == null) {
+      synchronized (ReactionCommandIndex.class) {
+        if (instance == null) {
+          ReactionCommandIndex index = new ReactionCommandIndex(
+            Config.getIntProperty(Config.Constants.REACTION_INDEX_MAX_SIZE, DEFAULT_MAX_SIZE),
+            TimeUnit.HOURS.toMillis(Config.getIntProperty(Config.Constants.REACTION_INDEX_EXPIRE_HOURS, DEFAULT_EXPIRE_HOURS)),
+            Config.getProperty(Config.Constants.REACTION_INDEX_FILE));
+          index.schedulePersistence();
+          instance = index;
+        }
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * If file isn't blank the index is saved there periodically (and on shutdown), and loaded from it on startup
+   */
+  public ReactionCommandIndex(int maxSize, long expireMillis, String file) {
+    this.expireMillis = expireMillis;
+    this.file = Strings.isBlank(file) ? null : Paths.get(file);
+    this.commands = CacheBuilder.newBuilder()
+      .maximumSize(maxSize)
+      .expireAfterWrite(expireMillis, TimeUnit.MILLISECONDS)
+      .build();
+    load();
+  }
+
+  public void put(String messageKey, String command) {
+    put(new Entry(messageKey, command, System.currentTimeMillis()));
+  }
+
+  /**
+   * The add command in the message, or null if the message isn't (or is no longer) known
+   */
+  public String get(String messageKey) {
+    Entry entry = commands.getIfPresent(messageKey);
+    if (entry == null || isExpired(entry, System.currentTimeMillis())) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    return entry.command;
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public synchronized void save() {
+    if (file == null || !dirty.getAndSet(false)) {
+      return;
+    }
+    Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+    try {
+      try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+        new Gson().toJson(new ArrayList<>(commands.asMap().values()), writer);
+      }
+      //never leave a half written index behind
+      Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      dirty.set(true);
+      LOGGER.error("Error saving reaction command index to " + file, e);
+    }
+  }
+
+  private void load() {
+    if (file == null || !Files.exists(file)) {
+      return;
+    }
+    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      List<Entry> entries = new Gson().fromJson(reader, new TypeToken<List<Entry>>() {}.getType());
+      long now = System.currentTimeMillis();
+      if (entries != null) {
+        for (Entry entry : entries) {
+          if (entry.messageKey != null && entry.command != null && !isExpired(entry, now)) {
+            commands.put(entry.messageKey, entry);
+          }
+        }
+      }
+      LOGGER.info("Loaded " + commands.size() + " reaction commands from " + file);
+    } catch (Exception e) {
+      //worst case reactions fall back to the message history
+      LOGGER.error("Error loading reaction command index from " + file, e);
+    }
+  }
+
+  private void schedulePersistence() {
+    if (file == null) {
+      return;
+    }
+    Scheduler.getScheduler().schedulePeriodic("reaction-index-save", this::save, TimeUnit.MINUTES.toMillis(SAVE_EVERY_MINUTES));
+    Runtime.getRuntime().addShutdownHook(new Thread(this::save, "botdarr-reaction-index-save"));
+  }
+
+  private void put(Entry entry) {
+    commands.put(entry.messageKey, entry);
+    dirty.set(true);
+  }
+
+  private boolean isExpired(Entry entry, long now) {
+    //loaded entries keep the time they were first indexed at
+    return now - entry.indexedAt > expireMillis;
+  }
+
+  private static class Entry {
+    private Entry(String messageKey, String command, long indexedAt) {
+      this.messageKey = messageKey;
+      this.command = command;
+      this.indexedAt = indexedAt;
+    }
+
+    private final String messageKey;
+    private final String command;
+    private final long indexedAt;
+  }
+
+  private final long expireMillis;
+  private final Path file;
+  private final Cache<String, Entry> commands;
+  private final AtomicBoolean dirty = new AtomicBoolean(false);
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private static volatile ReactionCommandIndex instance;
+  private static final int DEFAULT_MAX_SIZE = 10000;
+  private static final int DEFAULT_EXPIRE_HOURS = 72;
+  private static final int SAVE_EVERY_MINUTES = 5;
+  private static final Logger LOGGER = LogManager.getLogger();
+}
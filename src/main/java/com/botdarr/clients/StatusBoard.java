@@ -0,0 +1,89 @@
+package com.botdarr.clients;
+
+import com.botdarr.Config;
+import com.botdarr.api.DownloadProgress;
+import com.botdarr.api.DownloadQueueItem;
+import com.botdarr.api.ResultPipeline;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * A single message per channel showing the whole download queue, edited in place on every refresh
+ * instead of posting a new message per download
+ */
+public class StatusBoard {
+  public StatusBoard(String name, String title) {
+    this.name = name;
+    this.title = title;
+  }
+
+  public static boolean isEnabled() {
+    return Boolean.parseBoolean(Config.getProperty(Config.Constants.STATUS_BOARD_ENABLED));
+  }
+
+  /**
+   * Someone asked for downloads, so refresh the boards faster for a while
+   */
+  public static void markWatched() {
+    lastWatchedAt = System.currentTimeMillis();
+  }
+
+  public static boolean isWatched() {
+    return System.currentTimeMillis() - lastWatchedAt < WATCH_WINDOW_MILLIS;
+  }
+
+  /**
+   * Edits the board in every channel, skipped if nothing on it changed since the last update
+   */
+  public synchronized <T extends ChatClientResponse> boolean update(ChatClient<T> chatClient,
+                                                                    ChatClientResponseBuilder<T> chatClientResponseBuilder,
+                                                                    List<String> lines) {
+    if (lines.equals(lastLines)) {
+      return false;
+    }
+    lastLines = new ArrayList<>(lines);
+    chatClient.updateStatusBoard(name, chatClientResponseBuilder.getStatusBoard(title, lines));
+    return true;
+  }
+
+  /**
+   * Lines for the downloads worth showing, active ones first, only as many as fit on the board
+   */
+  public static List<String> getLines(List<? extends DownloadQueueItem> queue, Function<Long, DownloadProgress> progress) {
+    List<String> lines = ResultPipeline.of(queue)
+      .rank(ACTIVE_FIRST)
+      .limit(MAX_LINES)
+      .render(item -> getLine(item, progress.apply(item.getId())));
+    if (queue.size() > MAX_LINES) {
+      lines.add("And " + (queue.size() - MAX_LINES) + " more downloads");
+    }
+    return lines;
+  }
+
+  /**
+   * One compact line per download (i.e., "Movie - downloading, 45%, 00:12:00 left, 2 MB/s")
+   */
+  public static String getLine(DownloadQueueItem item, DownloadProgress downloadProgress) {
+    String line = item.getDisplayTitle() + " - " + item.getStatus() + ", " + item.getProgressPercent() + "%, " +
+      downloadProgress.getTimeLeft(item.getTimeleft()) + " left";
+    if (downloadProgress.isKnown() && !downloadProgress.isStalled()) {
+      line += ", " + downloadProgress.getSpeed();
+    }
+    return line;
+  }
+
+  private final String name;
+  private final String title;
+  private List<String> lastLines;
+  private static volatile long lastWatchedAt;
+  private static final int MAX_LINES = 40;
+  //downloading before queued/paused/etc, then closest to done
+  private static final Comparator<DownloadQueueItem> ACTIVE_FIRST = Comparator
+    .comparing((DownloadQueueItem item) -> !"downloading".equalsIgnoreCase(item.getStatus()))
+    .thenComparing(Comparator.comparingInt(DownloadQueueItem::getProgressPercent).reversed());
+  private static final long WATCH_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(10);
+}
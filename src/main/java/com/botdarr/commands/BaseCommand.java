@@ -1,9 +1,19 @@
 package com.botdarr.commands;
 
+import com.botdarr.api.Api;
+
+import java.util.Collections;
+import java.util.List;
+
 public abstract class BaseCommand implements Command {
   public BaseCommand(String commandText, String description) {
+    this(commandText, description, Collections.emptyList());
+  }
+
+  public BaseCommand(String commandText, String description, List<Api> cacheDependencies) {
     this.commandText = commandText;
     this.description = description;
+    this.cacheDependencies = cacheDependencies;
   }
 
   @Override
@@ -21,6 +31,12 @@ public abstract class BaseCommand implements Command {
     return commandText;
   }
 
+  @Override
+  public List<Api> getCacheDependencies() {
+    return cacheDependencies;
+  }
+
   private final String description;
   private final String commandText;
+  private final List<Api> cacheDependencies;
 }
@@ -1,10 +1,36 @@
 package com.botdarr.commands;
 
+import com.botdarr.api.Api;
 import com.botdarr.clients.ChatClientResponse;
 
+import java.util.Collections;
+import java.util.List;
+
 public interface Command {
   public String getCommandText();
   public String getDescription();
   public String getIdentifier();
   public CommandResponse<? extends ChatClientResponse> execute(String command);
+
+  /**
+   * The apis whose caches need to be warmed up before this command can give correct answers
+   */
+  public default List<Api> getCacheDependencies() {
+    return Collections.emptyList();
+  }
+
+  /**
+   * How heavily this command counts against the rate limits
+   */
+  public default CommandCost getCost() {
+    return CommandCost.CHEAP;
+  }
+
+  /**
+   * Whether this command changes anything in radarr/sonarr (adds, downloads), those never run late
+   * (i.e., when catching up on messages sent while the bot was disconnected)
+   */
+  public default boolean isMutating() {
+    return false;
+  }
 }
@@ -1,35 +1,132 @@
 package com.botdarr.commands;
 
-public class CommandContext {
-  public static CommandContextConfig getConfig() {
-    if (contextConfigThreadLocal == null) {
-      contextConfigThreadLocal = new ThreadLocal<>();
-      contextConfigThreadLocal.set(new CommandContextConfig());
-    }
-    if (contextConfigThreadLocal.get() == null) {
-      contextConfigThreadLocal.set(new CommandContextConfig());
-    }
-    return contextConfigThreadLocal.get();
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Who ran the command currently running on this thread, where, and how long it has left.
+ * Contexts never change once created, the only thread local state is which one is bound, and binding always restores
+ * whatever was bound before (so nothing leaks onto pooled threads once a command finishes).
+ */
+public final class CommandContext {
+  public static CommandContext create(String username, String channel, long timeoutMillis) {
+    return new CommandContext(
+      username,
+      channel,
+      timeoutMillis > 0 ? System.currentTimeMillis() + timeoutMillis : NO_DEADLINE,
+      Long.toHexString(ThreadLocalRandom.current().nextLong()));
+  }
+
+  /**
+   * The context bound to this thread, or an empty one (no user, channel or deadline) outside of a command
+   */
+  public static CommandContext current() {
+    CommandContext commandContext = CURRENT.get();
+    return commandContext == null ? EMPTY : commandContext;
+  }
+
+  /**
+   * Captures the current context so the runnable sees it no matter what thread it ends up running on
+   */
+  public static Runnable wrap(Runnable runnable) {
+    return current().bind(runnable);
+  }
+
+  public static <T> Callable<T> wrap(Callable<T> callable) {
+    return current().bind(callable);
+  }
+
+  private CommandContext(String username, String channel, long deadline, String traceId) {
+    this.username = username;
+    this.channel = channel;
+    this.deadline = deadline;
+    this.traceId = traceId;
+  }
+
+  public String getUsername() {
+    return username;
+  }
+
+  public String getChannel() {
+    return channel;
   }
 
-  public static void end() {
-    contextConfigThreadLocal = null;
+  public String getTraceId() {
+    return traceId;
   }
 
-  public static CommandContextConfig start() {
-    return getConfig();
+  public boolean hasDeadline() {
+    return deadline != NO_DEADLINE;
   }
 
-  public static class CommandContextConfig {
-    public String getUsername() {
-      return this.username;
+  /**
+   * Milliseconds until the deadline (never negative), or Long.MAX_VALUE without one
+   */
+  public long getRemainingMillis() {
+    return hasDeadline() ? Math.max(0, deadline - System.currentTimeMillis()) : Long.MAX_VALUE;
+  }
+
+  public boolean isExpired() {
+    return getRemainingMillis() == 0;
+  }
+
+  /**
+   * Copy of this context with a different username (i.e., once a chat user id has been resolved to a name)
+   */
+  public CommandContext withUsername(String username) {
+    return new CommandContext(username, channel, deadline, traceId);
+  }
+
+  /**
+   * Makes this the current context until the returned scope is closed
+   */
+  public Scope bind() {
+    CommandContext previous = CURRENT.get();
+    CURRENT.set(this);
+    return new Scope(previous);
+  }
+
+  /**
+   * The runnable, run with this as the current context
+   */
+  public Runnable bind(Runnable runnable) {
+    return () -> {
+      try (Scope ignored = bind()) {
+        runnable.run();
+      }
+    };
+  }
+
+  public <T> Callable<T> bind(Callable<T> callable) {
+    return () -> {
+      try (Scope ignored = bind()) {
+        return callable.call();
+      }
+    };
+  }
+
+  public static class Scope implements AutoCloseable {
+    private Scope(CommandContext previous) {
+      this.previous = previous;
     }
 
-    public CommandContextConfig setUsername(String username) {
-      this.username = username;
-      return this;
+    @Override
+    public void close() {
+      if (previous == null) {
+        CURRENT.remove();
+      } else {
+        CURRENT.set(previous);
+      }
     }
-    private String username;
+
+    private final CommandContext previous;
   }
-  private static ThreadLocal<CommandContextConfig> contextConfigThreadLocal;
+
+  private final String username;
+  private final String channel;
+  private final long deadline;
+  private final String traceId;
+  private static final long NO_DEADLINE = -1;
+  private static final CommandContext EMPTY = new CommandContext(null, null, NO_DEADLINE, null);
+  private static final ThreadLocal<CommandContext> CURRENT = new ThreadLocal<>();
 }
@@ -0,0 +1,16 @@
+package com.botdarr.commands;
+
+/**
+ * How much load a command puts on radarr/sonarr (and through them the configured indexers), used for rate limiting
+ */
+public enum CommandCost {
+  /**
+   * Answered from radarr/sonarr (or the bot's caches) directly
+   */
+  CHEAP,
+
+  /**
+   * Fans out to every configured indexer (i.e., torrent searches)
+   */
+  EXPENSIVE
+}
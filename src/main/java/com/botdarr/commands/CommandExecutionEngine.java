@@ -0,0 +1,166 @@
+package com.botdarr.commands;
+
+import com.botdarr.Config;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs commands off of the chat client listener threads on a fixed number of workers.
+ * Every user/channel pair gets its own queue (so their commands run one at a time, in order), and workers take turns
+ * between queues so one user's slow searches can't starve everyone else. When the queues are full commands are
+ * rejected right away instead of piling up.
+ */
+public class CommandExecutionEngine {
+  public static CommandExecutionEngine getEngine() {
+    if (instance == null) {
+      synchronized (CommandExecutionEngine.class) {
+        if (instance == null) {
+          instance = new CommandExecutionEngine(
+            Config.getIntProperty(Config.Constants.COMMAND_THREADS, DEFAULT_THREADS),
+            Config.getIntProperty(Config.Constants.COMMAND_QUEUE_LIMIT, DEFAULT_QUEUE_LIMIT),
+            Config.getIntProperty(Config.Constants.COMMAND_QUEUE_PER_USER_LIMIT, DEFAULT_QUEUE_PER_USER_LIMIT));
+        }
+      }
+    }
+    return instance;
+  }
+
+  public CommandExecutionEngine(int threads, int queueLimit, int queuePerUserLimit) {
+    this.queueLimit = queueLimit;
+    this.queuePerUserLimit = queuePerUserLimit;
+    ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("botdarr-command-%d").setDaemon(true).build();
+    for (int i = 0; i < Math.max(1, threads); i++) {
+      threadFactory.newThread(this::work).start();
+    }
+  }
+
+  /**
+   * Queues a command for the given user/channel, returns false if the bot is too busy to take it
+   */
+  public boolean submit(String user, String channel, Runnable command) {
+    String key = user + ":" + channel;
+    lock.lock();
+    try {
+      if (shutdown || queued >= queueLimit) {
+        rejected.incrementAndGet();
+        return false;
+      }
+      Lane lane = lanes.get(key);
+      if (lane == null) {
+        lane = new Lane(key);
+        lanes.put(key, lane);
+      }
+      if (lane.commands.size() >= queuePerUserLimit) {
+        rejected.incrementAndGet();
+        return false;
+      }
+      lane.commands.add(command);
+      queued++;
+      if (!lane.active) {
+        //lanes are only ever in the ready queue once, and never while one of their commands is running
+        lane.active = true;
+        ready.add(lane);
+        notEmpty.signal();
+      }
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public long getExecutedCount() {
+    return executed.get();
+  }
+
+  public long getRejectedCount() {
+    return rejected.get();
+  }
+
+  public void shutdown() {
+    lock.lock();
+    try {
+      shutdown = true;
+      notEmpty.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void work() {
+    while (true) {
+      Lane lane;
+      Runnable command;
+      lock.lock();
+      try {
+        while (ready.isEmpty() && !shutdown) {
+          notEmpty.awaitUninterruptibly();
+        }
+        if (ready.isEmpty()) {
+          return;
+        }
+        lane = ready.poll();
+        command = lane.commands.poll();
+        queued--;
+      } finally {
+        lock.unlock();
+      }
+
+      try {
+        command.run();
+      } catch (Throwable e) {
+        LOGGER.error("Error running command", e);
+      }
+      executed.incrementAndGet();
+
+      lock.lock();
+      try {
+        if (lane.commands.isEmpty()) {
+          lane.active = false;
+          lanes.remove(lane.key);
+        } else {
+          //back of the line, so other users get a turn first
+          ready.add(lane);
+          notEmpty.signal();
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  private static class Lane {
+    private Lane(String key) {
+      this.key = key;
+    }
+
+    private final String key;
+    private final Queue<Runnable> commands = new ArrayDeque<>();
+    private boolean active;
+  }
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final Map<String, Lane> lanes = new HashMap<>();
+  private final Queue<Lane> ready = new ArrayDeque<>();
+  private final int queueLimit;
+  private final int queuePerUserLimit;
+  private final AtomicLong executed = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+  private int queued;
+  private boolean shutdown;
+  private static volatile CommandExecutionEngine instance;
+  private static final int DEFAULT_THREADS = 4;
+  private static final int DEFAULT_QUEUE_LIMIT = 100;
+  private static final int DEFAULT_QUEUE_PER_USER_LIMIT = 5;
+  private static final Logger LOGGER = LogManager.getLogger();
+}
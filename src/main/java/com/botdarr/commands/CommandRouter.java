@@ -0,0 +1,138 @@
+package com.botdarr.commands;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds the command a message is for by walking a trie of command tokens (i.e., "movie" -> "find" -> "new"),
+ * built once up front, so routing a message is a single pass over it no matter how many commands there are
+ */
+public class CommandRouter {
+  public CommandRouter(List<Command> commands) {
+    for (Command command : commands) {
+      Node node = root;
+      for (String token : command.getIdentifier().trim().split("\\s+")) {
+        Node child = node.getChild(token);
+        if (child == null) {
+          child = new Node(token);
+          node.children.add(child);
+        }
+        node = child;
+      }
+      if (node.command != null) {
+        throw new IllegalArgumentException("Duplicate command identifier " + command.getIdentifier());
+      }
+      node.command = command;
+    }
+  }
+
+  /**
+   * Returns the command with the longest identifier the message starts with (matching whole words only),
+   * or null if the message isn't a command
+   */
+  public Match route(String message) {
+    Node node = root;
+    Command matchedCommand = null;
+    int matchedEnd = 0;
+    int position = skipWhitespace(message, 0);
+    while (position < message.length()) {
+      Node child = node.match(message, position);
+      if (child == null) {
+        break;
+      }
+      node = child;
+      position += child.token.length();
+      if (node.command != null) {
+        matchedCommand = node.command;
+        matchedEnd = position;
+      }
+      position = skipWhitespace(message, position);
+    }
+    return matchedCommand == null ? null : new Match(matchedCommand, message, matchedEnd);
+  }
+
+  /**
+   * Cheap pre-check (no allocations) for whether the text at this position starts with the first word of any
+   * command, so raw messages that can't be commands are dropped before they are parsed at all
+   */
+  public boolean startsWithCommand(String text, int position) {
+    position = skipWhitespace(text, position);
+    for (int i = 0; i < root.children.size(); i++) {
+      if (text.startsWith(root.children.get(i).token, position)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static int skipWhitespace(String message, int position) {
+    while (position < message.length() && Character.isWhitespace(message.charAt(position))) {
+      position++;
+    }
+    return position;
+  }
+
+  public static class Match {
+    private Match(Command command, String message, int argumentsStart) {
+      this.command = command;
+      this.message = message;
+      this.argumentsStart = argumentsStart;
+    }
+
+    public Command getCommand() {
+      return command;
+    }
+
+    /**
+     * Everything after the command identifier, trimmed (only sliced out of the message when asked for)
+     */
+    public String getArguments() {
+      int start = skipWhitespace(message, argumentsStart);
+      int end = message.length();
+      while (end > start && Character.isWhitespace(message.charAt(end - 1))) {
+        end--;
+      }
+      return message.substring(start, end);
+    }
+
+    private final Command command;
+    private final String message;
+    private final int argumentsStart;
+  }
+
+  private static class Node {
+    private Node(String token) {
+      this.token = token;
+    }
+
+    private Node getChild(String token) {
+      for (int i = 0; i < children.size(); i++) {
+        if (children.get(i).token.equals(token)) {
+          return children.get(i);
+        }
+      }
+      return null;
+    }
+
+    /**
+     * The child whose token is at this position of the message as a whole word
+     */
+    private Node match(String message, int position) {
+      for (int i = 0; i < children.size(); i++) {
+        Node child = children.get(i);
+        int end = position + child.token.length();
+        if (message.startsWith(child.token, position) &&
+          (end == message.length() || Character.isWhitespace(message.charAt(end)))) {
+          return child;
+        }
+      }
+      return null;
+    }
+
+    private final String token;
+    private final List<Node> children = new ArrayList<>();
+    private Command command;
+  }
+
+  private final Node root = new Node("");
+}
@@ -9,7 +9,13 @@ import java.util.List;
 public class HelpCommands {
   public static List<Command> getCommands(ChatClientResponseBuilder<? extends ChatClientResponse> chatClientResponseBuilder,
                                           List<Command> radarrCommands,
-                                          List<Command> sonarrCommands) {
+                                          List<Command> sonarrCommands,
+                                          List<Command> resultCommands) {
+    //searches can be paged through, so list the paging commands along with the movie/show commands
+    List<Command> radarrHelpCommands = new ArrayList<>(radarrCommands);
+    radarrHelpCommands.addAll(resultCommands);
+    List<Command> sonarrHelpCommands = new ArrayList<>(sonarrCommands);
+    sonarrHelpCommands.addAll(resultCommands);
     return new ArrayList<Command>() {{
       add(new BaseCommand("help", "") {
         @Override
@@ -20,13 +26,13 @@ public class HelpCommands {
       add(new BaseCommand("movies help", "") {
         @Override
         public CommandResponse<? extends ChatClientResponse> execute(String command) {
-          return new CommandResponse(chatClientResponseBuilder.getMoviesHelpResponse(radarrCommands));
+          return new CommandResponse(chatClientResponseBuilder.getMoviesHelpResponse(radarrHelpCommands));
         }
       });
       add(new BaseCommand("shows help", "") {
         @Override
         public CommandResponse<? extends ChatClientResponse> execute(String command) {
-          return new CommandResponse(chatClientResponseBuilder.getShowsHelpResponse(sonarrCommands));
+          return new CommandResponse(chatClientResponseBuilder.getShowsHelpResponse(sonarrHelpCommands));
         }
       });
     }};
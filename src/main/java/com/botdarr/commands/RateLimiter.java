@@ -0,0 +1,232 @@
+package com.botdarr.commands;
+
+import com.botdarr.Config;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission control for commands, with token buckets per user, per channel and per command cost.
+ * Every bucket is a single "theoretical arrival time" (GCRA) updated with compare-and-set, so checking a limit never
+ * takes a lock no matter how many listener threads are routing messages.
+ */
+public class RateLimiter {
+  public static RateLimiter getRateLimiter() {
+    if (instance == null) {
+      synchronized (RateLimiter.class) {
+        if (instance == null) {
+          instance = new RateLimiter(
+            Config.getIntProperty(Config.Constants.RATE_LIMIT_USER_PER_MINUTE, DEFAULT_USER_PER_MINUTE),
+            Config.getIntProperty(Config.Constants.RATE_LIMIT_CHANNEL_PER_MINUTE, DEFAULT_CHANNEL_PER_MINUTE),
+            Config.getIntProperty(Config.Constants.RATE_LIMIT_EXPENSIVE_PER_MINUTE, DEFAULT_EXPENSIVE_PER_MINUTE),
+            Config.getIntProperty(Config.Constants.RATE_LIMIT_EXPENSIVE_WEIGHT, DEFAULT_EXPENSIVE_WEIGHT));
+          Runtime.getRuntime().addShutdownHook(new Thread(instance::logRejectionCounts, "botdarr-rate-limiter-stats"));
+        }
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * Limits are in tokens per minute (a cheap command costs 1, an expensive one costs expensiveWeight against the
+   * user/channel limits), 0 or less turns that limit off
+   */
+  public RateLimiter(int userPerMinute, int channelPerMinute, int expensivePerMinute, int expensiveWeight) {
+    this.userLimit = new Limit("user", userPerMinute);
+    this.channelLimit = new Limit("channel", channelPerMinute);
+    this.expensiveLimit = new Limit("expensive commands", expensivePerMinute);
+    this.expensiveWeight = Math.max(1, expensiveWeight);
+  }
+
+  public Rejection tryAcquire(String user, String channel, CommandCost cost) {
+    return tryAcquire(user, channel, cost, System.nanoTime());
+  }
+
+  /**
+   * Takes tokens from every bucket the command counts against, returns null if the command can run
+   * or what limit it hit (in which case no tokens are taken)
+   */
+  public Rejection tryAcquire(String user, String channel, CommandCost cost, long nowNanos) {
+    int weight = cost == CommandCost.EXPENSIVE ? expensiveWeight : 1;
+    List<Acquired> acquired = new ArrayList<>(3);
+    try {
+      Rejection rejection = acquire(userLimit, user, weight, nowNanos, acquired);
+      if (rejection == null) {
+        rejection = acquire(channelLimit, channel, weight, nowNanos, acquired);
+      }
+      if (rejection == null && cost == CommandCost.EXPENSIVE) {
+        //shared by everyone, since every expensive command hits the same indexers
+        rejection = acquire(expensiveLimit, "", 1, nowNanos, acquired);
+      }
+      if (rejection != null) {
+        //hand back what the earlier buckets gave so a rejected command doesn't count against the user
+        for (Acquired previous : acquired) {
+          previous.bucket.refund(previous.amountNanos);
+        }
+        logRejectionCountsPeriodically(nowNanos);
+      }
+      return rejection;
+    } finally {
+      if (acquireCount.incrementAndGet() % SWEEP_EVERY_ACQUIRES == 0) {
+        sweep(nowNanos);
+      }
+    }
+  }
+
+  /**
+   * How many commands each limit has rejected, i.e., {user=3, channel=0, expensive commands=12}
+   */
+  public Map<String, Long> getRejectionCounts() {
+    Map<String, Long> rejectionCounts = new LinkedHashMap<>();
+    for (Limit limit : new Limit[] {userLimit, channelLimit, expensiveLimit}) {
+      rejectionCounts.put(limit.name, limit.rejected.sum());
+    }
+    return Collections.unmodifiableMap(rejectionCounts);
+  }
+
+  public void logRejectionCounts() {
+    LOGGER.info("Rate limiter rejections, " + getRejectionCounts());
+  }
+
+  /**
+   * Logs the totals at most once per REJECTION_LOG_INTERVAL_NANOS while commands are being rejected,
+   * so a flood shows up in the logs without a line per rejected command
+   */
+  private void logRejectionCountsPeriodically(long nowNanos) {
+    long lastLogged = lastRejectionLogNanos.get();
+    if (lastLogged != NEVER_LOGGED && nowNanos - lastLogged < REJECTION_LOG_INTERVAL_NANOS) {
+      return;
+    }
+    if (lastRejectionLogNanos.compareAndSet(lastLogged, nowNanos)) {
+      LOGGER.warn("Commands are being rate limited, rejections so far " + getRejectionCounts());
+    }
+  }
+
+  private Rejection acquire(Limit limit, String key, int weight, long nowNanos, List<Acquired> acquired) {
+    if (!limit.isEnabled()) {
+      return null;
+    }
+    TokenBucket bucket = limit.buckets.computeIfAbsent(key == null ? "" : key, k -> new TokenBucket(nowNanos));
+    long amountNanos = limit.emissionIntervalNanos * weight;
+    long waitNanos = bucket.tryAcquire(amountNanos, limit.burstToleranceNanos, nowNanos);
+    if (waitNanos > 0) {
+      limit.rejected.increment();
+      return new Rejection(limit.name, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+    }
+    acquired.add(new Acquired(bucket, amountNanos));
+    return null;
+  }
+
+  /**
+   * Drops buckets that have completely refilled, they would behave the same as a new one
+   */
+  private void sweep(long nowNanos) {
+    for (Limit limit : new Limit[] {userLimit, channelLimit, expensiveLimit}) {
+      limit.buckets.values().removeIf(bucket -> bucket.theoreticalArrival.get() - nowNanos <= 0);
+    }
+  }
+
+  public static class Rejection {
+    private Rejection(String limitName, long retryAfterMillis) {
+      this.limitName = limitName;
+      this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public String getLimitName() {
+      return limitName;
+    }
+
+    public long getRetryAfterMillis() {
+      return retryAfterMillis;
+    }
+
+    private final String limitName;
+    private final long retryAfterMillis;
+  }
+
+  /**
+   * GCRA bucket, the time (in nanos) at which the bucket would be full again if nothing else was taken from it
+   */
+  private static class TokenBucket {
+    private TokenBucket(long nowNanos) {
+      this.theoreticalArrival = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * Returns 0 if the tokens were taken, otherwise how long (in nanos) until they would be available
+     */
+    private long tryAcquire(long amountNanos, long burstToleranceNanos, long nowNanos) {
+      while (true) {
+        long current = theoreticalArrival.get();
+        long next = Math.max(current, nowNanos) + amountNanos;
+        long waitNanos = next - nowNanos - burstToleranceNanos;
+        if (waitNanos > 0) {
+          return waitNanos;
+        }
+        if (theoreticalArrival.compareAndSet(current, next)) {
+          return 0;
+        }
+      }
+    }
+
+    private void refund(long amountNanos) {
+      theoreticalArrival.addAndGet(-amountNanos);
+    }
+
+    private final AtomicLong theoreticalArrival;
+  }
+
+  private static class Limit {
+    private Limit(String name, int perMinute) {
+      this.name = name;
+      this.emissionIntervalNanos = perMinute > 0 ? TimeUnit.MINUTES.toNanos(1) / perMinute : 0;
+      //a full minute's worth of tokens can be used in a burst
+      this.burstToleranceNanos = TimeUnit.MINUTES.toNanos(1);
+    }
+
+    private boolean isEnabled() {
+      return emissionIntervalNanos > 0;
+    }
+
+    private final String name;
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final LongAdder rejected = new LongAdder();
+  }
+
+  private static class Acquired {
+    private Acquired(TokenBucket bucket, long amountNanos) {
+      this.bucket = bucket;
+      this.amountNanos = amountNanos;
+    }
+
+    private final TokenBucket bucket;
+    private final long amountNanos;
+  }
+
+  private final Limit userLimit;
+  private final Limit channelLimit;
+  private final Limit expensiveLimit;
+  private final int expensiveWeight;
+  private final AtomicLong acquireCount = new AtomicLong();
+  private final AtomicLong lastRejectionLogNanos = new AtomicLong(NEVER_LOGGED);
+  private static volatile RateLimiter instance;
+  private static final long NEVER_LOGGED = Long.MIN_VALUE;
+  private static final long REJECTION_LOG_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(10);
+  private static final int SWEEP_EVERY_ACQUIRES = 1000;
+  private static final int DEFAULT_USER_PER_MINUTE = 20;
+  private static final int DEFAULT_CHANNEL_PER_MINUTE = 60;
+  private static final int DEFAULT_EXPENSIVE_PER_MINUTE = 6;
+  private static final int DEFAULT_EXPENSIVE_WEIGHT = 5;
+  private static final Logger LOGGER = LogManager.getLogger();
+}
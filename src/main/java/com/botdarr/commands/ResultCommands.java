@@ -0,0 +1,26 @@
+package com.botdarr.commands;
+
+import com.botdarr.clients.ChatClientResponse;
+import com.botdarr.clients.ChatClientResponseBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ResultCommands {
+  public static List<Command> getCommands(ChatClientResponseBuilder<? extends ChatClientResponse> chatClientResponseBuilder) {
+    return new ArrayList<Command>() {{
+      add(new BaseCommand("results next", "Shows the next page of results from your last search") {
+        @Override
+        public CommandResponse<? extends ChatClientResponse> execute(String command) {
+          return new CommandResponse(ResultSessions.next(chatClientResponseBuilder));
+        }
+      });
+      add(new BaseCommand("results prev", "Shows the previous page of results from your last search") {
+        @Override
+        public CommandResponse<? extends ChatClientResponse> execute(String command) {
+          return new CommandResponse(ResultSessions.previous(chatClientResponseBuilder));
+        }
+      });
+    }};
+  }
+}
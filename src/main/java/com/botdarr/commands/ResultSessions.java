@@ -0,0 +1,137 @@
+package com.botdarr.commands;
+
+import com.botdarr.clients.ChatClientResponse;
+import com.botdarr.clients.ChatClientResponseBuilder;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Pages through results too big for one reply ("results next"/"results prev") instead of cutting them off.
+ * Each user/channel keeps the (unrendered) results of their last big search, pages are only rendered when shown.
+ */
+public class ResultSessions {
+  /**
+   * Renders the results as-is if they fit in one reply, otherwise starts a session for the current user/channel
+   * and renders the first page (with a header explaining how to see the rest)
+   */
+  public static <T> List<ChatClientResponse> paginate(String description,
+                                                      List<T> results,
+                                                      Function<T, ? extends ChatClientResponse> renderer,
+                                                      ChatClientResponseBuilder<? extends ChatClientResponse> chatClientResponseBuilder) {
+    return paginate(description, results, results.size(), renderer, chatClientResponseBuilder);
+  }
+
+  /**
+   * Same as above, for results that are only the best of totalFound (the header says so, so nobody goes looking
+   * for the rest)
+   */
+  public static <T> List<ChatClientResponse> paginate(String description,
+                                                      List<T> results,
+                                                      int totalFound,
+                                                      Function<T, ? extends ChatClientResponse> renderer,
+                                                      ChatClientResponseBuilder<? extends ChatClientResponse> chatClientResponseBuilder) {
+    if (results.size() <= MAX_RESULTS_TO_SHOW && totalFound <= results.size()) {
+      return render(results, renderer);
+    }
+    Session<T> session = new Session<>(description, new ArrayList<>(results), totalFound, renderer, chatClientResponseBuilder);
+    SESSIONS.put(getSessionKey(), session);
+    return session.renderPage(0);
+  }
+
+  public static List<ChatClientResponse> next(ChatClientResponseBuilder<? extends ChatClientResponse> chatClientResponseBuilder) {
+    return move(1, chatClientResponseBuilder);
+  }
+
+  public static List<ChatClientResponse> previous(ChatClientResponseBuilder<? extends ChatClientResponse> chatClientResponseBuilder) {
+    return move(-1, chatClientResponseBuilder);
+  }
+
+  private static List<ChatClientResponse> move(int pages, ChatClientResponseBuilder<? extends ChatClientResponse> chatClientResponseBuilder) {
+    Session<?> session = SESSIONS.getIfPresent(getSessionKey());
+    if (session == null) {
+      return new ArrayList<>(Collections.singletonList(chatClientResponseBuilder.createInfoMessage("No results to page through, run a search first")));
+    }
+    List<ChatClientResponse> responses = session.move(pages);
+    if (responses == null) {
+      return new ArrayList<>(Collections.singletonList(chatClientResponseBuilder.createInfoMessage(
+        "No " + (pages > 0 ? "more" : "previous") + " " + session.description + " to show")));
+    }
+    return responses;
+  }
+
+  private static <T> List<ChatClientResponse> render(List<T> results, Function<T, ? extends ChatClientResponse> renderer) {
+    List<ChatClientResponse> responses = new ArrayList<>(results.size());
+    for (T result : results) {
+      responses.add(renderer.apply(result));
+    }
+    return responses;
+  }
+
+  private static String getSessionKey() {
+    CommandContext commandContext = CommandContext.current();
+    return commandContext.getUsername() + ":" + commandContext.getChannel();
+  }
+
+  private static class Session<T> {
+    private Session(String description,
+                    List<T> results,
+                    int totalFound,
+                    Function<T, ? extends ChatClientResponse> renderer,
+                    ChatClientResponseBuilder<? extends ChatClientResponse> chatClientResponseBuilder) {
+      this.description = description;
+      this.results = results;
+      this.totalFound = totalFound;
+      this.renderer = renderer;
+      this.chatClientResponseBuilder = chatClientResponseBuilder;
+    }
+
+    /**
+     * Renders the page that many pages away from the current one, or returns null if there is no such page
+     */
+    private synchronized List<ChatClientResponse> move(int pages) {
+      int nextPage = page + pages;
+      if (nextPage < 0 || nextPage >= getPageCount()) {
+        return null;
+      }
+      return renderPage(nextPage);
+    }
+
+    private synchronized List<ChatClientResponse> renderPage(int page) {
+      this.page = page;
+      int start = page * PAGE_SIZE;
+      int end = Math.min(results.size(), start + PAGE_SIZE);
+      List<ChatClientResponse> responses = new ArrayList<>(PAGE_SIZE + 1);
+      String navigation = getPageCount() == 1 ? "" :
+        page + 1 < getPageCount() ? ", use \"results next\" to see more" : ", use \"results prev\" to go back";
+      responses.add(chatClientResponseBuilder.createInfoMessage("Showing " + description + " " + (start + 1) + "-" + end +
+        " of " + results.size() + (totalFound > results.size() ? " (the best of " + totalFound + " found)" : "") + navigation));
+      responses.addAll(render(results.subList(start, end), renderer));
+      return responses;
+    }
+
+    private int getPageCount() {
+      return (results.size() + PAGE_SIZE - 1) / PAGE_SIZE;
+    }
+
+    private final String description;
+    private final List<T> results;
+    private final int totalFound;
+    private final Function<T, ? extends ChatClientResponse> renderer;
+    private final ChatClientResponseBuilder<? extends ChatClientResponse> chatClientResponseBuilder;
+    private int page;
+  }
+
+  public static final int MAX_RESULTS_TO_SHOW = 20;
+  //leaves room for the header on every page
+  private static final int PAGE_SIZE = MAX_RESULTS_TO_SHOW - 1;
+  private static final Cache<String, Session<?>> SESSIONS = CacheBuilder.newBuilder()
+    .maximumSize(500)
+    .expireAfterAccess(30, TimeUnit.MINUTES)
+    .build();
+}
@@ -1,16 +1,20 @@
 package com.botdarr.commands;
 
+import com.botdarr.api.Api;
 import com.botdarr.api.SonarrApi;
 import com.botdarr.clients.ChatClientResponse;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class SonarrCommands {
   public static List<Command> getCommands(SonarrApi sonarrApi) {
+    //commands that compare against existing content need the sonarr cache warmed up first
+    List<Api> cacheDependencies = Collections.singletonList(sonarrApi);
     return new ArrayList<Command>() {{
       add(new BaseCommand("show id add", "Adds a show using search text and tmdb id (i.e., show id add 30 rock 484737). The easiest" +
-        " way to use this command is to use \"show find new TITLE\", then the results will contain the show add command for you") {
+        " way to use this command is to use \"show find new TITLE\", then the results will contain the show add command for you", cacheDependencies) {
         @Override
         public CommandResponse<? extends ChatClientResponse> execute(String command) {
           int lastSpace = command.lastIndexOf(" ");
@@ -18,13 +22,23 @@ public class SonarrCommands {
           String id = command.substring(lastSpace + 1);
           return new CommandResponse(sonarrApi.addWithId(searchText, id));
         }
+
+        @Override
+        public boolean isMutating() {
+          return true;
+        }
       });
       add(new BaseCommand("show title add", "Adds a show with just a title. Since there can be multiple shows that match search criteria" +
-        " we will either add the show or return all the shows that match your search.") {
+        " we will either add the show or return all the shows that match your search.", cacheDependencies) {
         @Override
         public CommandResponse<? extends ChatClientResponse> execute(String command) {
           return new CommandResponse(sonarrApi.addWithTitle(command));
         }
+
+        @Override
+        public boolean isMutating() {
+          return true;
+        }
       });
       add(new BaseCommand("show downloads", "Shows all the active shows downloading in sonarr") {
         @Override
@@ -38,13 +52,13 @@ public class SonarrCommands {
           return new CommandResponse(sonarrApi.getProfiles());
         }
       });
-      add(new BaseCommand("show find existing", "Finds a existing show using sonarr (i.e., show find existing Ahh! Real fudgecakes)") {
+      add(new BaseCommand("show find existing", "Finds a existing show using sonarr (i.e., show find existing Ahh! Real fudgecakes)", cacheDependencies) {
         @Override
         public CommandResponse<? extends ChatClientResponse> execute(String command) {
           return new CommandResponse(sonarrApi.lookup(command, false));
         }
       });
-      add(new BaseCommand("show find new", "Finds a new show using sonarr (i.e., show find new Fresh Prince of Fresh air)") {
+      add(new BaseCommand("show find new", "Finds a new show using sonarr (i.e., show find new Fresh Prince of Fresh air)", cacheDependencies) {
         @Override
         public CommandResponse<? extends ChatClientResponse> execute(String command) {
           return new CommandResponse(sonarrApi.lookup(command, true));
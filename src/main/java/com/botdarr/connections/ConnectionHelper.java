@@ -4,12 +4,15 @@ import com.botdarr.api.Api;
 import com.botdarr.Config;
 import com.botdarr.clients.ChatClientResponse;
 import com.botdarr.clients.ChatClientResponseBuilder;
+import com.botdarr.commands.CommandContext;
 import com.google.gson.Gson;
 import com.sun.jndi.toolkit.url.Uri;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
@@ -33,6 +36,7 @@ public class ConnectionHelper {
     try (CloseableHttpClient client = HttpClientBuilder.create().build()) {
       HttpPost post = new HttpPost(api.getApiUrl(path) + params);
       post.setHeader("X-Api-Key", Config.getProperty(api.getApiToken()));
+      applyCommandDeadline(post);
       post.setEntity(new StringEntity(new Gson().toJson(params), ContentType.APPLICATION_JSON));
       try (CloseableHttpResponse response = client.execute(post)) {
         int statusCode = response.getStatusLine().getStatusCode();
@@ -57,6 +61,7 @@ public class ConnectionHelper {
     try (CloseableHttpClient client = HttpClientBuilder.create().build()) {
       HttpGet get = new HttpGet(api.getApiUrl(path) + params);
       get.setHeader("X-Api-Key", Config.getProperty(api.getApiToken()));
+      applyCommandDeadline(get);
       try (CloseableHttpResponse response = client.execute(get)) {
         int statusCode = response.getStatusLine().getStatusCode();
         if (statusCode == 200) {
@@ -80,6 +85,7 @@ public class ConnectionHelper {
     try (CloseableHttpClient client = HttpClientBuilder.create().build()) {
       HttpDelete delete = new HttpDelete(api.getApiUrl(path) + params);
       delete.setHeader("X-Api-Key", Config.getProperty(api.getApiToken()));
+      applyCommandDeadline(delete);
       try (CloseableHttpResponse response = client.execute(delete)) {
         int statusCode = response.getStatusLine().getStatusCode();
         if (statusCode == 200) {
@@ -99,6 +105,23 @@ public class ConnectionHelper {
     }
   }
 
+  /**
+   * Requests made while running a command time out when the command runs out of time, instead of holding a command
+   * thread for as long as radarr/sonarr take to answer
+   */
+  public static void applyCommandDeadline(HttpRequestBase request) {
+    CommandContext commandContext = CommandContext.current();
+    if (!commandContext.hasDeadline()) {
+      return;
+    }
+    int timeout = (int) Math.max(MIN_REQUEST_TIMEOUT_MILLIS, Math.min(Integer.MAX_VALUE, commandContext.getRemainingMillis()));
+    request.setConfig(RequestConfig.custom()
+      .setConnectTimeout(timeout)
+      .setConnectionRequestTimeout(timeout)
+      .setSocketTimeout(timeout)
+      .build());
+  }
+
   public static abstract class SimpleMessageEmbedResponseHandler implements ResponseHandler<ChatClientResponse> {
     public SimpleMessageEmbedResponseHandler(ChatClientResponseBuilder<? extends ChatClientResponse> chatClientResponseBuilder) {
       this.chatClientResponseBuilder = chatClientResponseBuilder;
@@ -130,6 +153,22 @@ public class ConnectionHelper {
     }
   }
 
+  /**
+   * Surfaces failures as exceptions instead of empty results, so callers can tell "nothing found" apart from "backend down"
+   */
+  public static abstract class StrictEntityResponseHandler<T> implements ResponseHandler<T> {
+
+    @Override
+    public List<T> onFailure(int statusCode, String reason) {
+      throw new RuntimeException("Request failed with status code=" + statusCode + ", reason=" + reason);
+    }
+
+    @Override
+    public List<T> onException(Exception e) {
+      throw new RuntimeException("Request failed with exception, e=" + e.getMessage(), e);
+    }
+  }
+
   public static interface ResponseHandler<T> {
     List<T> onSuccess(String response) throws Exception;
 
@@ -138,5 +177,6 @@ public class ConnectionHelper {
     List<T> onException(Exception e);
   }
 
+  private static final int MIN_REQUEST_TIMEOUT_MILLIS = 1000;
   private static final Logger LOGGER = LogManager.getLogger();
 }
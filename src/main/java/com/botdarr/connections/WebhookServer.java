@@ -0,0 +1,160 @@
+package com.botdarr.connections;
+
+import com.botdarr.Config;
+import com.botdarr.api.Api;
+import com.botdarr.scheduling.Scheduler;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Strings;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+
+/**
+ * Receives radarr/sonarr webhook ("Connect") events at /radarr and /sonarr so changes are applied as they happen
+ * instead of on the next poll
+ */
+public class WebhookServer {
+  public static boolean isEnabled() {
+    return !Strings.isBlank(Config.getProperty(Config.Constants.WEBHOOK_PORT));
+  }
+
+  public WebhookServer(List<Api> apis) {
+    this(apis, Config.getIntProperty(Config.Constants.WEBHOOK_PORT, 0), Config.getProperty(Config.Constants.WEBHOOK_TOKEN));
+  }
+
+  public WebhookServer(List<Api> apis, int port, String token) {
+    this.apis = apis;
+    this.port = port;
+    this.token = token;
+  }
+
+  public void start() throws IOException {
+    InetSocketAddress address;
+    if (Strings.isBlank(token)) {
+      //without a token anyone who can reach the port could forge deletes or trigger refreshes, so only listen locally
+      address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+      LOGGER.warn("!!! No " + Config.Constants.WEBHOOK_TOKEN + " is set, webhooks will ONLY be accepted from this machine (" +
+        address.getAddress().getHostAddress() + "). Set " + Config.Constants.WEBHOOK_TOKEN +
+        " to accept webhooks from radarr/sonarr running on other hosts/containers !!!");
+    } else {
+      address = new InetSocketAddress(port);
+    }
+    server = HttpServer.create(address, 0);
+    for (Api api : apis) {
+      server.createContext("/" + api.getName(), exchange -> handle(api, exchange));
+    }
+    //requests are tiny and the real work is handed off to the api's io lane, so the default single dispatch thread is enough
+    server.start();
+    LOGGER.info("Listening for webhooks on " + server.getAddress());
+  }
+
+  /**
+   * The address the server is bound to, null if it hasn't been started
+   */
+  public InetSocketAddress getAddress() {
+    return server == null ? null : server.getAddress();
+  }
+
+  public void stop() {
+    if (server != null) {
+      server.stop(0);
+    }
+  }
+
+  private void handle(Api api, HttpExchange exchange) throws IOException {
+    try {
+      if (!exchange.getRequestMethod().equalsIgnoreCase("POST")) {
+        respond(exchange, 405);
+        return;
+      }
+      if (!isAuthorized(exchange)) {
+        LOGGER.warn("Rejected " + api.getName() + " webhook with a missing/invalid token from " + exchange.getRemoteAddress());
+        respond(exchange, 401);
+        return;
+      }
+      String body = readBody(exchange.getRequestBody());
+      if (body == null) {
+        respond(exchange, 413);
+        return;
+      }
+      JsonObject webhook;
+      try {
+        webhook = new JsonParser().parse(body).getAsJsonObject();
+      } catch (JsonParseException | IllegalStateException e) {
+        LOGGER.warn("Rejected " + api.getName() + " webhook that isn't a json object");
+        respond(exchange, 400);
+        return;
+      }
+      LOGGER.info("Accepted " + api.getName() + " webhook, eventType=" + getEventType(webhook) + " from " + exchange.getRemoteAddress());
+      //respond right away, applying the event can mean calling back into radarr/sonarr
+      respond(exchange, 202);
+      Scheduler.getScheduler().executeIo(api.getName(), () -> api.handleWebhook(webhook));
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private String getEventType(JsonObject webhook) {
+    return webhook.has("eventType") && webhook.get("eventType").isJsonPrimitive() ? webhook.get("eventType").getAsString() : "";
+  }
+
+  private boolean isAuthorized(HttpExchange exchange) {
+    if (Strings.isBlank(token)) {
+      //only reachable from loopback (see start())
+      return true;
+    }
+    String query = exchange.getRequestURI().getRawQuery();
+    if (query == null) {
+      return false;
+    }
+    for (String param : query.split("&")) {
+      if (param.startsWith(TOKEN_PARAM)) {
+        //constant time comparison so the token can't be guessed a character at a time
+        return MessageDigest.isEqual(
+          param.substring(TOKEN_PARAM.length()).getBytes(StandardCharsets.UTF_8),
+          token.getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns null if the body is bigger than any real webhook payload
+   */
+  private String readBody(InputStream inputStream) throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = inputStream.read(buffer)) != -1) {
+      body.write(buffer, 0, read);
+      if (body.size() > MAX_BODY_BYTES) {
+        return null;
+      }
+    }
+    return new String(body.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  private void respond(HttpExchange exchange, int statusCode) throws IOException {
+    exchange.sendResponseHeaders(statusCode, -1);
+  }
+
+  private final List<Api> apis;
+  private final int port;
+  private final String token;
+  private HttpServer server;
+  private static final String TOKEN_PARAM = "token=";
+  private static final int MAX_BODY_BYTES = 1024 * 1024;
+  private static final Logger LOGGER = LogManager.getLogger();
+}
@@ -0,0 +1,33 @@
+package com.botdarr.discord;
+
+import com.botdarr.Config;
+import net.dv8tion.jda.api.JDABuilder;
+import net.dv8tion.jda.api.utils.ChunkingFilter;
+import net.dv8tion.jda.api.utils.cache.CacheFlag;
+
+import java.util.EnumSet;
+
+/**
+ * How much guild state JDA keeps in memory. botdarr only ever needs text channels, message authors and reactions,
+ * so low memory mode stops JDA from chunking every member and caching presences/activities, voice states and emotes,
+ * and turns off audio. On big guilds that's most of the heap.
+ */
+public class DiscordCachePolicy {
+  public static boolean isLowMemory() {
+    return Boolean.parseBoolean(Config.getProperty(Config.Constants.DISCORD_LOW_MEMORY));
+  }
+
+  public static JDABuilder apply(JDABuilder jdaBuilder, boolean lowMemory) {
+    if (!lowMemory) {
+      return jdaBuilder;
+    }
+    return jdaBuilder
+      .setDisabledCacheFlags(EnumSet.allOf(CacheFlag.class))
+      .setChunkingFilter(ChunkingFilter.NONE)
+      //guilds bigger than this only send their online members on connect (50 is the lowest discord allows)
+      .setLargeThreshold(LARGE_GUILD_THRESHOLD)
+      .setAudioEnabled(false);
+  }
+
+  private static final int LARGE_GUILD_THRESHOLD = 50;
+}
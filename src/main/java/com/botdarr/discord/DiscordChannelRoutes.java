@@ -0,0 +1,119 @@
+package com.botdarr.discord;
+
+import com.botdarr.Config;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.TextChannel;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Strings;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Which text channels (across every guild) messages go to, by channel name. Built once from the configured
+ * discord-channels and kept up to date from channel create/delete/rename events, so sending a message is a map lookup
+ * instead of parsing the config and walking every channel the bot can see.
+ */
+public class DiscordChannelRoutes {
+  public static DiscordChannelRoutes getRoutes() {
+    if (instance == null) {
+      synchronized (DiscordChannelRoutes.class) {
+        if (instance == null) {
+          String discordChannels = Config.getProperty(Config.Constants.DISCORD_CHANNELS);
+          instance = new DiscordChannelRoutes(Strings.isBlank(discordChannels) ?
+            new HashSet<>() : Splitter.on(',').trimResults().omitEmptyStrings().splitToList(discordChannels));
+        }
+      }
+    }
+    return instance;
+  }
+
+  public DiscordChannelRoutes(Collection<String> configuredChannelNames) {
+    this.configuredChannelNames = ImmutableSet.copyOf(configuredChannelNames);
+  }
+
+  /**
+   * Re-reads every channel the bot can see, i.e., when (re)connecting
+   */
+  public synchronized void rebuild(JDA jda) {
+    idsToNames.clear();
+    for (TextChannel textChannel : jda.getTextChannels()) {
+      put(textChannel.getName(), textChannel.getIdLong());
+    }
+    publish();
+    built = true;
+    LOGGER.info("Routing to " + allIds.size() + " discord channels");
+  }
+
+  public boolean isBuilt() {
+    return built;
+  }
+
+  /**
+   * Ids of the configured channels with this name, or every configured channel if channelName is null
+   */
+  public Set<Long> getChannelIds(String channelName) {
+    if (channelName == null) {
+      return allIds;
+    }
+    Set<Long> channelIds = namesToIds.get(channelName.toLowerCase());
+    return channelIds == null ? ImmutableSet.of() : channelIds;
+  }
+
+  public synchronized void addChannel(String channelName, long channelId) {
+    if (put(channelName, channelId)) {
+      publish();
+    }
+  }
+
+  public synchronized void removeChannel(long channelId) {
+    if (idsToNames.remove(channelId) != null) {
+      publish();
+    }
+  }
+
+  public synchronized void renameChannel(long channelId, String newName) {
+    //renamed into or out of the configured channels
+    idsToNames.remove(channelId);
+    put(newName, channelId);
+    publish();
+  }
+
+  private boolean put(String channelName, long channelId) {
+    if (!configuredChannelNames.contains(channelName)) {
+      return false;
+    }
+    idsToNames.put(channelId, channelName);
+    return true;
+  }
+
+  /**
+   * Swaps in new read-only lookups so sends never see a half updated table or need a lock
+   */
+  private void publish() {
+    Map<String, Set<Long>> names = new HashMap<>();
+    for (Map.Entry<Long, String> channel : idsToNames.entrySet()) {
+      names.computeIfAbsent(channel.getValue().toLowerCase(), name -> new HashSet<>()).add(channel.getKey());
+    }
+    Map<String, Set<Long>> published = new HashMap<>();
+    for (Map.Entry<String, Set<Long>> name : names.entrySet()) {
+      published.put(name.getKey(), ImmutableSet.copyOf(name.getValue()));
+    }
+    namesToIds = published;
+    allIds = ImmutableSet.copyOf(idsToNames.keySet());
+  }
+
+  private final Set<String> configuredChannelNames;
+  private final Map<Long, String> idsToNames = new HashMap<>();
+  private volatile Map<String, Set<Long>> namesToIds = new HashMap<>();
+  private volatile Set<Long> allIds = ImmutableSet.of();
+  private volatile boolean built;
+  private static volatile DiscordChannelRoutes instance;
+  private static final Logger LOGGER = LogManager.getLogger("DiscordLog");
+}
@@ -1,15 +1,20 @@
 package com.botdarr.discord;
 
-import com.botdarr.Config;
 import com.botdarr.clients.ChatClient;
+import com.botdarr.clients.OutboundDispatcher;
+import com.botdarr.clients.ReactionCommandIndex;
 import com.botdarr.commands.CommandResponse;
-import com.google.common.base.Splitter;
-import com.google.common.collect.Sets;
 import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.TextChannel;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DiscordChatClient implements ChatClient<DiscordResponse> {
   public DiscordChatClient(JDA readyEventJda) {
@@ -18,14 +23,15 @@ public class DiscordChatClient implements ChatClient<DiscordResponse> {
 
   @Override
   public void sendMessage(DiscordResponse chatClientResponse, String channelName) {
-    sendMessages(channel -> channel.sendMessage(chatClientResponse.getMessage()).queue(), channelName);
+    sendMessages(channel -> send(channel, chatClientResponse), channelName);
   }
 
   @Override
   public void sendMessage(List<DiscordResponse> chatClientResponses, String channelName) {
+    List<DiscordResponse> packedResponses = DiscordMessagePacker.pack(chatClientResponses);
     sendMessages(channel -> {
-      for (DiscordResponse discordResponse : chatClientResponses) {
-        channel.sendMessage(discordResponse.getMessage()).queue();
+      for (DiscordResponse discordResponse : packedResponses) {
+        send(channel, discordResponse);
       }
     }, channelName);
   }
@@ -37,20 +43,69 @@ public class DiscordChatClient implements ChatClient<DiscordResponse> {
     } else if (commandResponse.getMultipleChatClientResponses() != null) {
       sendMessage(commandResponse.getMultipleChatClientResponses(), targetChannel);
     } else {
-      //TODO: err
+      LOGGER.warn("Nothing to send for command response in channel " + targetChannel);
     }
   }
 
-  private void sendMessages(MessageSender messageSender, String channelName) {
-    Set<String> supportedDiscordChannels = Sets.newHashSet(Splitter.on(',').trimResults().split(Config.getProperty(Config.Constants.DISCORD_CHANNELS)));
-    for (TextChannel textChannel : jda.getTextChannels()) {
-      if (!supportedDiscordChannels.contains(textChannel.getName())) {
-        continue;
+  @Override
+  public void updateStatusBoard(String boardName, DiscordResponse chatClientResponse) {
+    sendMessages(channel -> DISPATCHER.submitAsync(channel.getId(), OutboundDispatcher.Priority.BACKGROUND, () -> {
+      String key = boardName + ":" + channel.getId();
+      String messageId = STATUS_BOARD_MESSAGE_IDS.get(key);
+      if (messageId == null) {
+        return postStatusBoard(channel, key, chatClientResponse);
       }
-      if (channelName != null && !channelName.equalsIgnoreCase(textChannel.getName())) {
-        continue;
+      return channel.editMessageById(messageId, chatClientResponse.getMessage()).submit()
+        .handle((message, e) -> {
+          if (e == null) {
+            return CompletableFuture.completedFuture(message);
+          }
+          //the board was probably deleted, post a new one
+          LOGGER.warn("Could not edit status board " + boardName + " in " + channel.getName() + ", posting a new one", e);
+          return postStatusBoard(channel, key, chatClientResponse);
+        })
+        .thenCompose(message -> message);
+    }).whenComplete((ignored, e) -> {
+      if (e != null) {
+        LOGGER.error("Error updating discord status board", e);
+      }
+    }), null);
+  }
+
+  private CompletableFuture<Message> postStatusBoard(TextChannel channel, String key, DiscordResponse chatClientResponse) {
+    return channel.sendMessage(chatClientResponse.getMessage()).submit().thenApply(message -> {
+      STATUS_BOARD_MESSAGE_IDS.put(key, message.getId());
+      return message;
+    });
+  }
+
+  private void send(TextChannel channel, DiscordResponse discordResponse) {
+    //jda paces/retries rate limited requests itself, the dispatcher decides what goes first
+    //submit() instead of complete() so waiting on discord doesn't tie up a dispatcher thread
+    DISPATCHER.submitAsync(channel.getId(), () -> channel.sendMessage(discordResponse.getMessage()).submit())
+      .whenComplete((message, e) -> {
+        if (e != null) {
+          LOGGER.error("Error sending discord message", e);
+          return;
+        }
+        String addCommand = discordResponse.getAddCommand();
+        if (addCommand != null) {
+          //so a thumbs up on it doesn't need to fetch the message back
+          ReactionCommandIndex.getIndex().put(message.getId(), addCommand);
+        }
+      });
+  }
+
+  private void sendMessages(MessageSender messageSender, String channelName) {
+    DiscordChannelRoutes routes = DiscordChannelRoutes.getRoutes();
+    if (!routes.isBuilt()) {
+      routes.rebuild(jda);
+    }
+    for (long channelId : routes.getChannelIds(channelName)) {
+      TextChannel textChannel = jda.getTextChannelById(channelId);
+      if (textChannel != null) {
+        messageSender.send(textChannel);
       }
-      messageSender.send(textChannel);
     }
   }
 
@@ -58,4 +113,11 @@ public class DiscordChatClient implements ChatClient<DiscordResponse> {
     void send(TextChannel channel);
   }
   private final JDA jda;
+  //chat clients get created per command, the boards need to outlive them
+  private static final Map<String, String> STATUS_BOARD_MESSAGE_IDS = new ConcurrentHashMap<>();
+  //a page of results (ResultSessions.MAX_RESULTS_TO_SHOW) plus a burst of notifications always fits, with room for several users at once
+  private static final int MAX_PENDING_PER_CHANNEL = 500;
+  //discord allows 5 messages per 5 seconds per channel, so sends are paced at one a second with a burst of 5
+  private static final OutboundDispatcher DISPATCHER = new OutboundDispatcher("discord", 4, 1000, 5, MAX_PENDING_PER_CHANNEL, e -> -1);
+  private static final Logger LOGGER = LogManager.getLogger("DiscordLog");
 }
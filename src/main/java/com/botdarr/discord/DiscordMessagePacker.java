@@ -0,0 +1,79 @@
+package com.botdarr.discord;
+
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Packs responses into as few discord messages as the embed limits allow (25 fields, 6000 characters).
+ * A message can only carry one embed, so each response after the first becomes a heading field (its title
+ * and description) followed by its own fields.
+ * Responses with an add command or a poster (i.e., every "find new" result) still get a message each, since a
+ * thumbs up reaction runs the one add command in the message it is on and an embed only has room for one image.
+ */
+public class DiscordMessagePacker {
+  public static List<DiscordResponse> pack(List<DiscordResponse> discordResponses) {
+    List<DiscordResponse> packed = new ArrayList<>();
+    EmbedBuilder current = null;
+    int currentFields = 0;
+    int currentLength = 0;
+    for (DiscordResponse discordResponse : discordResponses) {
+      MessageEmbed embed = discordResponse.getMessage();
+      if (discordResponse.getAddCommand() != null || !isPackable(embed)) {
+        //posters can't be merged, and a thumbs up reaction adds whatever is in the message
+        current = flush(current, packed);
+        packed.add(discordResponse);
+        continue;
+      }
+      int fields = embed.getFields().size() + 1;
+      int length = embed.getLength() + HEADING_PLACEHOLDER_LENGTH;
+      if (current != null && (currentFields + fields > MAX_FIELDS || currentLength + length > MAX_LENGTH)) {
+        current = flush(current, packed);
+      }
+      if (current == null) {
+        current = new EmbedBuilder(embed);
+        currentFields = embed.getFields().size();
+        currentLength = embed.getLength();
+        continue;
+      }
+      current.addField(orPlaceholder(embed.getTitle()), orPlaceholder(embed.getDescription()), false);
+      for (MessageEmbed.Field field : embed.getFields()) {
+        current.addField(field);
+      }
+      currentFields += fields;
+      currentLength += length;
+    }
+    flush(current, packed);
+    return packed;
+  }
+
+  private static boolean isPackable(MessageEmbed embed) {
+    if (embed.getImage() != null || embed.getThumbnail() != null || embed.getFooter() != null) {
+      return false;
+    }
+    //the description has to fit in a field value once it is merged into another embed
+    if (embed.getDescription() != null && embed.getDescription().length() > MessageEmbed.VALUE_MAX_LENGTH) {
+      return false;
+    }
+    return true;
+  }
+
+  private static EmbedBuilder flush(EmbedBuilder current, List<DiscordResponse> packed) {
+    if (current != null) {
+      packed.add(new DiscordResponse(current.build()));
+    }
+    return null;
+  }
+
+  private static String orPlaceholder(String text) {
+    return text == null || text.isEmpty() ? ZERO_WIDTH_SPACE : text;
+  }
+
+  private static final String ZERO_WIDTH_SPACE = "\u200B";
+  //a title/description missing from the heading field is filled in with a zero width space
+  private static final int HEADING_PLACEHOLDER_LENGTH = 2;
+  private static final int MAX_FIELDS = 25;
+  private static final int MAX_LENGTH = MessageEmbed.EMBED_MAX_LENGTH_BOT;
+}
@@ -3,6 +3,9 @@ package com.botdarr.discord;
 import com.botdarr.clients.ChatClientResponse;
 import net.dv8tion.jda.api.entities.MessageEmbed;
 
+import static com.botdarr.api.RadarrApi.ADD_MOVIE_COMMAND_FIELD_PREFIX;
+import static com.botdarr.api.SonarrApi.ADD_SHOW_COMMAND_FIELD_PREFIX;
+
 public class DiscordResponse implements ChatClientResponse {
   public DiscordResponse(MessageEmbed message) {
     this.message = message;
@@ -12,5 +15,17 @@ public class DiscordResponse implements ChatClientResponse {
     return message;
   }
 
+  /**
+   * The add command a thumbs up on this response would run, or null if it doesn't have one
+   */
+  public String getAddCommand() {
+    for (MessageEmbed.Field field : message.getFields()) {
+      if (ADD_MOVIE_COMMAND_FIELD_PREFIX.equals(field.getName()) || ADD_SHOW_COMMAND_FIELD_PREFIX.equals(field.getName())) {
+        return field.getValue();
+      }
+    }
+    return null;
+  }
+
   private final MessageEmbed message;
 }
@@ -1,6 +1,7 @@
 package com.botdarr.discord;
 
 import com.botdarr.Config;
+import com.botdarr.api.DownloadProgress;
 import com.botdarr.api.sonarr.*;
 import com.botdarr.clients.ChatClientResponseBuilder;
 import com.botdarr.api.radarr.*;
@@ -13,11 +14,13 @@ import org.apache.logging.log4j.Logger;
 
 import java.awt.*;
 import java.io.IOException;
+import java.time.Instant;
 import java.util.Base64;
 import java.util.List;
 
 import static com.botdarr.api.RadarrApi.ADD_MOVIE_COMMAND_FIELD_PREFIX;
 import static com.botdarr.api.SonarrApi.ADD_SHOW_COMMAND_FIELD_PREFIX;
+import static net.dv8tion.jda.api.entities.MessageEmbed.TEXT_MAX_LENGTH;
 import static net.dv8tion.jda.api.entities.MessageEmbed.VALUE_MAX_LENGTH;
 
 public class DiscordResponseBuilder implements ChatClientResponseBuilder<DiscordResponse> {
@@ -40,6 +43,10 @@ public class DiscordResponseBuilder implements ChatClientResponseBuilder<Discord
       embedBuilder.addField("shows help", "Shows all the commands for shows", false);
     }
 
+    if (radarrEnabled || sonarrEnabled) {
+      embedBuilder.addField("results next/results prev", "Pages through the results of your last search when there are too many to show at once", false);
+    }
+
     if (!radarrEnabled && !sonarrEnabled) {
       embedBuilder.appendDescription("No radarr or sonarr commands configured, check your properties file and logs");
     }
@@ -67,14 +74,17 @@ public class DiscordResponseBuilder implements ChatClientResponseBuilder<Discord
   }
 
   @Override
-  public DiscordResponse getShowDownloadResponses(SonarrQueue showQueue) {
+  public DiscordResponse getShowDownloadResponses(SonarrQueue showQueue, DownloadProgress downloadProgress) {
     EmbedBuilder embedBuilder = new EmbedBuilder();
     SonarQueueEpisode episode = showQueue.getEpisode();
     embedBuilder.setTitle(showQueue.getSonarrQueueShow().getTitle());
     embedBuilder.addField("Season/Episode", "S" + episode.getSeasonNumber() + "E" + episode.getEpisodeNumber(), true);
     embedBuilder.addField("Quality", showQueue.getQuality().getQuality().getName(), true);
     embedBuilder.addField("Status", showQueue.getStatus(), true);
-    embedBuilder.addField("Time Left", showQueue.getTimeleft() == null ? "unknown" : showQueue.getTimeleft(), true);
+    embedBuilder.addField("Time Left", downloadProgress.getTimeLeft(showQueue.getTimeleft()), true);
+    if (downloadProgress.isKnown()) {
+      embedBuilder.addField("Speed", downloadProgress.getSpeed(), true);
+    }
     String overview = episode.getTitle() + ": " + episode.getOverview();
     if (overview.length() > VALUE_MAX_LENGTH) {
       overview = overview.substring(0, VALUE_MAX_LENGTH);
@@ -92,12 +102,15 @@ public class DiscordResponseBuilder implements ChatClientResponseBuilder<Discord
   }
 
   @Override
-  public DiscordResponse getMovieDownloadResponses(RadarrQueue radarrQueue) {
+  public DiscordResponse getMovieDownloadResponses(RadarrQueue radarrQueue, DownloadProgress downloadProgress) {
     EmbedBuilder embedBuilder = new EmbedBuilder();
     embedBuilder.setTitle(radarrQueue.getRadarrQueueMovie().getTitle());
     embedBuilder.addField("Quality", radarrQueue.getQuality().getQuality().getName(), true);
     embedBuilder.addField("Status", radarrQueue.getStatus(), true);
-    embedBuilder.addField("Time Left", radarrQueue.getTimeleft() == null ? "unknown" : radarrQueue.getTimeleft(), true);
+    embedBuilder.addField("Time Left", downloadProgress.getTimeLeft(radarrQueue.getTimeleft()), true);
+    if (downloadProgress.isKnown()) {
+      embedBuilder.addField("Speed", downloadProgress.getSpeed(), true);
+    }
     if (radarrQueue.getStatusMessages() != null) {
       for (RadarrQueueStatusMessages statusMessage : radarrQueue.getStatusMessages()) {
         for (String message : statusMessage.getMessages()) {
@@ -238,6 +251,25 @@ public class DiscordResponseBuilder implements ChatClientResponseBuilder<Discord
     return new DiscordResponse(createSuccessMessageEmbed(message));
   }
 
+  @Override
+  public DiscordResponse getStatusBoard(String title, List<String> lines) {
+    EmbedBuilder embedBuilder = new EmbedBuilder();
+    embedBuilder.setTitle(title);
+    StringBuilder description = new StringBuilder();
+    for (int i = 0; i < lines.size(); i++) {
+      String more = "\n...and " + (lines.size() - i) + " more";
+      if (description.length() + lines.get(i).length() + 1 + more.length() > TEXT_MAX_LENGTH) {
+        description.append(more);
+        break;
+      }
+      description.append(lines.get(i)).append("\n");
+    }
+    embedBuilder.setDescription(lines.isEmpty() ? "Nothing downloading" : description.toString());
+    embedBuilder.setFooter("Updated", null);
+    embedBuilder.setTimestamp(Instant.now());
+    return new DiscordResponse(embedBuilder.build());
+  }
+
   private MessageEmbed createInfoMessageEmbed(String message) {
     return createMessageEmbed("Info", Color.WHITE, message);
   }
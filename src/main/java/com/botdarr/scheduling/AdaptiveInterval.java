@@ -0,0 +1,47 @@
+package com.botdarr.scheduling;
+
+/**
+ * A refresh interval that snaps back to its minimum when data changes or users are active,
+ * and doubles toward its maximum every time a refresh finds nothing new
+ */
+public class AdaptiveInterval {
+  public AdaptiveInterval(long minMillis, long maxMillis) {
+    this.minMillis = minMillis;
+    this.maxMillis = Math.max(minMillis, maxMillis);
+    this.currentMillis = minMillis;
+  }
+
+  public synchronized long getCurrentMillis() {
+    return currentMillis;
+  }
+
+  public long getMinMillis() {
+    return minMillis;
+  }
+
+  /**
+   * Something changed or someone is using the bot, refresh as often as allowed
+   */
+  public synchronized void reset() {
+    currentMillis = minMillis;
+  }
+
+  /**
+   * Refresh at a specific interval until the next reset/back off, can be faster than the minimum
+   * (i.e., while someone is watching a status board)
+   */
+  public synchronized void resetTo(long millis) {
+    currentMillis = Math.max(1, Math.min(maxMillis, millis));
+  }
+
+  /**
+   * Nothing changed, back off exponentially toward the ceiling
+   */
+  public synchronized void backOff() {
+    currentMillis = Math.min(maxMillis, currentMillis * 2);
+  }
+
+  private final long minMillis;
+  private final long maxMillis;
+  private long currentMillis;
+}
@@ -0,0 +1,119 @@
+package com.botdarr.scheduling;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks which caches have finished warming up, so commands that depend on them can wait instead of
+ * answering from empty caches. A cache whose warmup failed (i.e., the backend is down) is reported as failed
+ * right away instead of making commands wait for a warmup that isn't going to finish
+ */
+public class CacheReadiness {
+  public enum State {
+    WARMING_UP,
+    READY,
+    FAILED
+  }
+
+  /**
+   * Registers a cache that is about to warm up
+   */
+  public void expect(String cacheName) {
+    if (states.putIfAbsent(cacheName, State.WARMING_UP) == null) {
+      warmupStarted.putIfAbsent(cacheName, System.currentTimeMillis());
+    }
+  }
+
+  public void markReady(String cacheName) {
+    State previous;
+    synchronized (this) {
+      previous = states.get(cacheName);
+      if (previous == null || previous == State.READY) {
+        return;
+      }
+      states.put(cacheName, State.READY);
+      notifyAll();
+    }
+    LOGGER.info("Cache " + cacheName + " warmed up in " + (System.currentTimeMillis() - warmupStarted.get(cacheName)) + "ms" +
+      (previous == State.FAILED ? " (after failing)" : ""));
+  }
+
+  /**
+   * The warmup failed, commands stop waiting on it until a later run succeeds. Caches that already warmed up keep
+   * serving what they have
+   */
+  public void markFailed(String cacheName) {
+    synchronized (this) {
+      if (states.get(cacheName) != State.WARMING_UP) {
+        return;
+      }
+      states.put(cacheName, State.FAILED);
+      notifyAll();
+    }
+    LOGGER.warn("Cache " + cacheName + " failed to warm up, retrying");
+  }
+
+  public State getState(String cacheName) {
+    //caches nobody registered (i.e., disabled apis) have nothing to wait on
+    return states.getOrDefault(cacheName, State.READY);
+  }
+
+  public boolean isReady(String cacheName) {
+    return getState(cacheName) == State.READY;
+  }
+
+  /**
+   * Waits up to the timeout (in total, not per cache) for all the caches to be ready.
+   * Returns false right away if any of them failed to warm up
+   */
+  public synchronized boolean await(Collection<String> cacheNames, long timeoutMillis) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    while (true) {
+      boolean ready = true;
+      for (String cacheName : cacheNames) {
+        State state = getState(cacheName);
+        if (state == State.FAILED) {
+          return false;
+        }
+        ready &= state == State.READY;
+      }
+      long remaining = deadline - System.currentTimeMillis();
+      if (ready || remaining <= 0) {
+        return ready;
+      }
+      wait(remaining);
+    }
+  }
+
+  public List<String> getNotReady(Collection<String> cacheNames) {
+    return getInState(cacheNames, State.WARMING_UP, State.FAILED);
+  }
+
+  public List<String> getFailed(Collection<String> cacheNames) {
+    return getInState(cacheNames, State.FAILED);
+  }
+
+  private List<String> getInState(Collection<String> cacheNames, State... matching) {
+    List<String> inState = new ArrayList<>();
+    for (String cacheName : cacheNames) {
+      State state = getState(cacheName);
+      for (State match : matching) {
+        if (state == match) {
+          inState.add(cacheName);
+          break;
+        }
+      }
+    }
+    return inState;
+  }
+
+  private final Map<String, State> states = new ConcurrentHashMap<>();
+  private final Map<String, Long> warmupStarted = new ConcurrentHashMap<>();
+  private static final Logger LOGGER = LogManager.getLogger();
+}
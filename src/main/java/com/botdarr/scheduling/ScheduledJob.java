@@ -0,0 +1,114 @@
+package com.botdarr.scheduling;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A named unit of periodic work that never runs concurrently with itself and keeps track of how it has been doing
+ */
+public class ScheduledJob implements Runnable {
+  public ScheduledJob(String name, Runnable task) {
+    this(name, () -> {
+      task.run();
+      return true;
+    });
+  }
+
+  /**
+   * The task returns false when a run failed without throwing (i.e., it already logged the backend error)
+   */
+  public ScheduledJob(String name, BooleanSupplier task) {
+    this.name = name;
+    this.task = task;
+  }
+
+  @Override
+  public void run() {
+    if (!running.compareAndSet(false, true)) {
+      //the previous run is still going, don't pile up behind it
+      skippedRuns.incrementAndGet();
+      LOGGER.debug("Skipping job " + name + " since it is still running");
+      return;
+    }
+    long start = System.currentTimeMillis();
+    try {
+      if (task.getAsBoolean()) {
+        lastSuccessTime.set(System.currentTimeMillis());
+        successfulRuns.incrementAndGet();
+      } else {
+        lastFailureTime.set(System.currentTimeMillis());
+        failedRuns.incrementAndGet();
+      }
+    } catch (Throwable e) {
+      lastFailureTime.set(System.currentTimeMillis());
+      failedRuns.incrementAndGet();
+      LOGGER.error("Error during job " + name, e);
+    } finally {
+      lastDurationMillis.set(System.currentTimeMillis() - start);
+      running.set(false);
+      LOGGER.debug("Finished job " + name + " in " + lastDurationMillis.get() + "ms");
+    }
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public boolean isRunning() {
+    return running.get();
+  }
+
+  public long getLastDurationMillis() {
+    return lastDurationMillis.get();
+  }
+
+  /**
+   * Epoch millis of the last successful run, 0 if the job never succeeded
+   */
+  public long getLastSuccessTime() {
+    return lastSuccessTime.get();
+  }
+
+  public long getLastFailureTime() {
+    return lastFailureTime.get();
+  }
+
+  public long getSuccessfulRuns() {
+    return successfulRuns.get();
+  }
+
+  public long getFailedRuns() {
+    return failedRuns.get();
+  }
+
+  public long getSkippedRuns() {
+    return skippedRuns.get();
+  }
+
+  @Override
+  public String toString() {
+    return "job=" + name +
+      ", running=" + running.get() +
+      ", lastDurationMillis=" + lastDurationMillis.get() +
+      ", lastSuccessTime=" + lastSuccessTime.get() +
+      ", lastFailureTime=" + lastFailureTime.get() +
+      ", successfulRuns=" + successfulRuns.get() +
+      ", failedRuns=" + failedRuns.get() +
+      ", skippedRuns=" + skippedRuns.get();
+  }
+
+  private final String name;
+  private final BooleanSupplier task;
+  private final AtomicBoolean running = new AtomicBoolean(false);
+  private final AtomicLong lastDurationMillis = new AtomicLong();
+  private final AtomicLong lastSuccessTime = new AtomicLong();
+  private final AtomicLong lastFailureTime = new AtomicLong();
+  private final AtomicLong successfulRuns = new AtomicLong();
+  private final AtomicLong failedRuns = new AtomicLong();
+  private final AtomicLong skippedRuns = new AtomicLong();
+  private static final Logger LOGGER = LogManager.getLogger();
+}
@@ -1,14 +1,31 @@
 package com.botdarr.scheduling;
 
+import com.botdarr.Config;
 import com.botdarr.api.Api;
+import com.botdarr.api.CacheClass;
+import com.botdarr.api.CacheResult;
 import com.botdarr.clients.ChatClient;
+import com.botdarr.clients.StatusBoard;
+import com.botdarr.connections.WebhookServer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.Executors;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Scheduler {
   public static Scheduler getScheduler() {
@@ -22,43 +39,361 @@ public class Scheduler {
     return instance;
   }
 
+  private Scheduler() {
+    executor = new ScheduledThreadPoolExecutor(
+      Math.max(1, Config.getIntProperty(Config.Constants.SCHEDULER_THREADS, DEFAULT_THREADS)),
+      new ThreadFactoryBuilder().setNameFormat("botdarr-scheduler-%d").setDaemon(true).build());
+    //don't keep cancelled jobs around in the work queue
+    executor.setRemoveOnCancelPolicy(true);
+    this.ioThreadsPerLane = Math.max(1, Config.getIntProperty(Config.Constants.SCHEDULER_IO_THREADS, DEFAULT_IO_THREADS));
+    Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "botdarr-scheduler-shutdown"));
+  }
 
   public void initApiNotifications(List<Api> apis, ChatClient chatClient) {
-    if (notificationFuture == null) {
-      notificationFuture = Executors.newScheduledThreadPool(1).scheduleWithFixedDelay(() -> {
-        try {
-          for (Api api : apis) {
-            api.sendPeriodicNotifications(chatClient);
-          }
-        } catch (Throwable e) {
-          LOGGER.error("Error during api notification", e);
+    //each api gets its own job so a slow api doesn't hold up the others
+    //with webhooks enabled, grabs/downloads trigger notifications right away so polling is only a consistency sweep
+    long minMillis = TimeUnit.SECONDS.toMillis(Config.getIntProperty(Config.Constants.DOWNLOAD_NOTIFICATIONS_SECONDS,
+      WebhookServer.isEnabled() ? DEFAULT_WEBHOOK_DOWNLOAD_NOTIFICATIONS_SECONDS : DEFAULT_DOWNLOAD_NOTIFICATIONS_SECONDS));
+    long watchedMillis = TimeUnit.SECONDS.toMillis(
+      Config.getIntProperty(Config.Constants.STATUS_BOARD_REFRESH_SECONDS, DEFAULT_STATUS_BOARD_REFRESH_SECONDS));
+    for (Api api : apis) {
+      //poll often while downloads are changing, back off while the queue is quiet
+      AdaptiveInterval interval = new AdaptiveInterval(minMillis, minMillis * NOTIFICATIONS_MAX_BACKOFF_FACTOR);
+      scheduleAdaptive(api.getName(), new ScheduledJob(getNotificationsJobName(api), () -> {
+        boolean changed = api.sendPeriodicNotifications(chatClient);
+        if (StatusBoard.isWatched()) {
+          //someone just asked for downloads, keep the status board fresh while they're looking
+          interval.resetTo(watchedMillis);
+        } else if (changed) {
+          interval.reset();
+        } else {
+          interval.backOff();
         }
-      }, 0, 1, TimeUnit.HOURS);
+      }), interval, ThreadLocalRandom.current().nextLong(Math.max(1, Math.min(minMillis / 10, MAX_JITTER_MILLIS))));
     }
   }
 
   public void initApiCaching(List<Api> apis) {
-    //cache initially
+    //the first run of each cache job is the warmup, they all start right away and run in parallel
+    //so warmup takes as long as the slowest api instead of all of them added up
+    //webhooks keep the caches current between runs, so there's less reason to poll often
+    boolean webhooksEnabled = WebhookServer.isEnabled();
+    int minSeconds = Config.getIntProperty(Config.Constants.CACHE_REFRESH_MIN_SECONDS,
+      webhooksEnabled ? DEFAULT_WEBHOOK_CACHE_REFRESH_MIN_SECONDS : DEFAULT_CACHE_REFRESH_MIN_SECONDS);
+    int maxSeconds = Config.getIntProperty(Config.Constants.CACHE_REFRESH_MAX_SECONDS,
+      webhooksEnabled ? DEFAULT_WEBHOOK_CACHE_REFRESH_MAX_SECONDS : DEFAULT_CACHE_REFRESH_MAX_SECONDS);
+    for (Api api : apis) {
+      //every class of data gets its own job and interval, a busy library doesn't keep re-fetching profiles
+      for (CacheClass cacheClass : CacheClass.values()) {
+        String cacheName = getCacheName(api, cacheClass);
+        cacheReadiness.expect(cacheName);
+        AdaptiveInterval interval = new AdaptiveInterval(
+          TimeUnit.SECONDS.toMillis(Config.getIntProperty(String.format(Config.Constants.CACHE_CLASS_REFRESH_MIN_SECONDS_FORMAT, cacheClass.getName()),
+            minSeconds * cacheClass.getIntervalFactor())),
+          TimeUnit.SECONDS.toMillis(Config.getIntProperty(String.format(Config.Constants.CACHE_CLASS_REFRESH_MAX_SECONDS_FORMAT, cacheClass.getName()),
+            maxSeconds * cacheClass.getIntervalFactor())));
+        //then cache on a schedule that speeds up when things change and slows down when they don't
+        scheduleAdaptive(api.getName(), new ScheduledJob(getCacheJobName(api, cacheClass), () -> {
+          CacheResult cacheResult = api.cacheData(cacheClass);
+          if (cacheResult == CacheResult.FAILED) {
+            //commands answer that the api is unreachable (instead of from an empty cache) until a retry works
+            cacheReadiness.markFailed(cacheName);
+            interval.reset();
+            return false;
+          }
+          if (cacheResult == CacheResult.CHANGED) {
+            interval.reset();
+          } else {
+            interval.backOff();
+          }
+          cacheReadiness.markReady(cacheName);
+          return true;
+        }), interval, 0);
+      }
+    }
+  }
+
+  /**
+   * Waits (up to the configured warmup wait) for the caches of the given apis to be warmed up,
+   * doesn't wait at all if one of them failed to warm up
+   */
+  public boolean awaitCaches(Collection<Api> apis) {
+    if (apis.isEmpty()) {
+      return true;
+    }
+    try {
+      return cacheReadiness.await(getCacheNames(apis),
+        TimeUnit.SECONDS.toMillis(Config.getIntProperty(Config.Constants.CACHE_WARMUP_WAIT_SECONDS, DEFAULT_CACHE_WARMUP_WAIT_SECONDS)));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  public List<String> getCachesNotReady(Collection<Api> apis) {
+    return cacheReadiness.getNotReady(getCacheNames(apis));
+  }
+
+  /**
+   * The apis whose caches couldn't be warmed up since the backend couldn't be reached
+   */
+  public List<String> getUnreachableApis(Collection<Api> apis) {
+    List<String> unreachable = new ArrayList<>();
+    for (Api api : apis) {
+      if (!cacheReadiness.getFailed(getCacheNames(Collections.singletonList(api))).isEmpty()) {
+        unreachable.add(api.getName());
+      }
+    }
+    return unreachable;
+  }
+
+  public static String getCacheJobName(Api api, CacheClass cacheClass) {
+    return api.getName() + "-" + cacheClass.getName() + "-cache";
+  }
+
+  public static String getNotificationsJobName(Api api) {
+    return api.getName() + "-notifications";
+  }
+
+  /**
+   * Runs an adaptive job as soon as possible instead of waiting for its next turn (i.e., after a user adds a movie)
+   */
+  public void requestRefresh(String jobName) {
+    AdaptiveJob adaptiveJob = adaptiveJobs.get(jobName);
+    if (adaptiveJob == null) {
+      LOGGER.debug("No adaptive job found to refresh, job=" + jobName);
+      return;
+    }
+    adaptiveJob.interval.reset();
+    adaptiveJob.runSoon();
+  }
+
+  /**
+   * Called whenever someone runs a command, so the caches it depends on refresh quickly while people are around
+   * (notifications and everything else keep their own pace)
+   */
+  public void recordActivity(Collection<Api> apis) {
+    long now = System.currentTimeMillis();
     for (Api api : apis) {
-      api.cacheData();
+      AtomicLong lastActivity = lastActivities.computeIfAbsent(api.getName(), name -> new AtomicLong());
+      long previousActivity = lastActivity.get();
+      if (now - previousActivity < ACTIVITY_THROTTLE_MILLIS || !lastActivity.compareAndSet(previousActivity, now)) {
+        continue;
+      }
+      for (CacheClass cacheClass : CacheClass.values()) {
+        AdaptiveJob adaptiveJob = adaptiveJobs.get(getCacheJobName(api, cacheClass));
+        if (adaptiveJob != null) {
+          adaptiveJob.interval.reset();
+          adaptiveJob.pullIn(adaptiveJob.interval.getMinMillis());
+        }
+      }
     }
+  }
+
+  /**
+   * Runs a job every intervalMillis (the first run is right away), without backing off or speeding up.
+   * The job gets its own io lane
+   */
+  public void schedulePeriodic(String jobName, Runnable runnable, long intervalMillis) {
+    scheduleAdaptive(jobName, new ScheduledJob(jobName, runnable), new AdaptiveInterval(intervalMillis, intervalMillis), 0);
+  }
+
+  /**
+   * Runs quick one-off work (i.e., sending a reply) off of the chat client threads. Never use this for anything that
+   * can block on a backend, that's what executeIo is for
+   */
+  public void executeBackground(Runnable runnable) {
+    executor.execute(() -> {
+      try {
+        runnable.run();
+      } catch (Throwable e) {
+        LOGGER.error("Error during background task", e);
+      }
+    });
+  }
 
-    //then cache on a schedule
-    if (cacheFuture == null) {
-      cacheFuture = Executors.newScheduledThreadPool(1).scheduleWithFixedDelay(() -> {
+  /**
+   * Runs one-off blocking work (i.e., refreshing stale cache snapshots, applying webhooks) on the io lane
+   * of the api it talks to, so a slow radarr can only ever tie up radarr's threads.
+   * If the lane already has too much queued, the work is dropped (and logged)
+   */
+  public void executeIo(String lane, Runnable runnable) {
+    try {
+      getLane(lane).execute(() -> {
         try {
-          for (Api api : apis) {
-            api.cacheData();
-          }
+          runnable.run();
         } catch (Throwable e) {
-          LOGGER.error("Error during api cache", e);
+          LOGGER.error("Error during " + lane + " io task", e);
         }
-      }, 0, 2, TimeUnit.MINUTES);
+      });
+    } catch (RejectedExecutionException e) {
+      LOGGER.warn("Dropped " + lane + " io task, too many are already queued");
     }
   }
 
-  private ScheduledFuture notificationFuture;
-  private ScheduledFuture cacheFuture;
+  /**
+   * Metrics for every job this scheduler has run
+   */
+  public Collection<ScheduledJob> getJobs() {
+    return Collections.unmodifiableCollection(jobs.values());
+  }
+
+  public void shutdown() {
+    if (executor.isShutdown()) {
+      return;
+    }
+    LOGGER.info("Shutting down scheduler");
+    executor.shutdown();
+    for (ThreadPoolExecutor lane : lanes.values()) {
+      lane.shutdown();
+    }
+    try {
+      long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(SHUTDOWN_TIMEOUT_SECONDS);
+      if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        List<Runnable> abandoned = executor.shutdownNow();
+        LOGGER.warn("Scheduler did not shutdown in time, abandoned " + abandoned.size() + " tasks");
+      }
+      for (Map.Entry<String, ThreadPoolExecutor> lane : lanes.entrySet()) {
+        if (!lane.getValue().awaitTermination(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+          List<Runnable> abandoned = lane.getValue().shutdownNow();
+          LOGGER.warn("Io lane " + lane.getKey() + " did not shutdown in time, abandoned " + abandoned.size() + " tasks");
+        }
+      }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      for (ThreadPoolExecutor lane : lanes.values()) {
+        lane.shutdownNow();
+      }
+      Thread.currentThread().interrupt();
+    }
+    for (ScheduledJob job : jobs.values()) {
+      LOGGER.info(job.toString());
+    }
+  }
+
+  /**
+   * Bounded threads (that go away when idle) for blocking work against one api/job
+   */
+  private ThreadPoolExecutor getLane(String lane) {
+    return lanes.computeIfAbsent(lane, name -> {
+      ThreadPoolExecutor laneExecutor = new ThreadPoolExecutor(ioThreadsPerLane, ioThreadsPerLane,
+        LANE_IDLE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(MAX_QUEUED_PER_LANE),
+        new ThreadFactoryBuilder().setNameFormat("botdarr-" + name + "-io-%d").setDaemon(true).build());
+      laneExecutor.allowCoreThreadTimeOut(true);
+      return laneExecutor;
+    });
+  }
+
+  private void scheduleAdaptive(String lane, ScheduledJob job, AdaptiveInterval interval, long initialDelayMillis) {
+    if (jobs.putIfAbsent(job.getName(), job) != null) {
+      //already scheduled
+      return;
+    }
+    AdaptiveJob adaptiveJob = new AdaptiveJob(job, interval, lane);
+    adaptiveJobs.put(job.getName(), adaptiveJob);
+    adaptiveJob.scheduleNext(initialDelayMillis);
+  }
+
+  private List<String> getCacheNames(Collection<Api> apis) {
+    List<String> cacheNames = new ArrayList<>();
+    for (Api api : apis) {
+      for (CacheClass cacheClass : CacheClass.values()) {
+        cacheNames.add(getCacheName(api, cacheClass));
+      }
+    }
+    return cacheNames;
+  }
+
+  private static String getCacheName(Api api, CacheClass cacheClass) {
+    return api.getName() + " " + cacheClass.getName();
+  }
+
+  /**
+   * A job that reschedules itself after every run using its adaptive interval. The scheduler threads only keep time,
+   * the job itself runs on its io lane
+   */
+  private class AdaptiveJob {
+    private AdaptiveJob(ScheduledJob job, AdaptiveInterval interval, String lane) {
+      this.job = job;
+      this.interval = interval;
+      this.lane = lane;
+    }
+
+    private void runSoon() {
+      if (job.isRunning()) {
+        //run again as soon as the current run finishes
+        refreshRequested.set(true);
+        return;
+      }
+      scheduleNext(0);
+    }
+
+    /**
+     * Moves the next run earlier if it is further away than the given delay
+     */
+    private synchronized void pullIn(long delayMillis) {
+      if (nextRunAt - System.currentTimeMillis() > delayMillis) {
+        scheduleNext(delayMillis);
+      }
+    }
+
+    private synchronized void scheduleNext(long delayMillis) {
+      if (executor.isShutdown()) {
+        return;
+      }
+      if (future != null) {
+        future.cancel(false);
+      }
+      nextRunAt = System.currentTimeMillis() + delayMillis;
+      future = executor.schedule(this::dispatch, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void dispatch() {
+      try {
+        getLane(lane).execute(this::runAndReschedule);
+      } catch (RejectedExecutionException e) {
+        //the lane is backed up (or shutting down), try again next time around
+        LOGGER.warn("Io lane " + lane + " is full, skipping a run of job " + job.getName());
+        scheduleNext(interval.getCurrentMillis());
+      }
+    }
+
+    private void runAndReschedule() {
+      job.run();
+      scheduleNext(refreshRequested.getAndSet(false) ? 0 : interval.getCurrentMillis());
+    }
+
+    private final ScheduledJob job;
+    private final AdaptiveInterval interval;
+    private final String lane;
+    private final AtomicBoolean refreshRequested = new AtomicBoolean(false);
+    private ScheduledFuture<?> future;
+    private long nextRunAt;
+  }
+
+  private final ScheduledThreadPoolExecutor executor;
+  private final int ioThreadsPerLane;
+  private final Map<String, ThreadPoolExecutor> lanes = new ConcurrentHashMap<>();
+  private final Map<String, AdaptiveJob> adaptiveJobs = new ConcurrentHashMap<>();
+  private final Map<String, AtomicLong> lastActivities = new ConcurrentHashMap<>();
+  private final CacheReadiness cacheReadiness = new CacheReadiness();
+  private final Map<String, ScheduledJob> jobs = new ConcurrentHashMap<>();
   private static volatile Scheduler instance;
+  private static final int DEFAULT_THREADS = 2;
+  private static final int DEFAULT_IO_THREADS = 2;
+  private static final int MAX_QUEUED_PER_LANE = 50;
+  private static final long LANE_IDLE_SECONDS = 60;
+  private static final long MAX_JITTER_MILLIS = TimeUnit.SECONDS.toMillis(30);
+  private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+  private static final long ACTIVITY_THROTTLE_MILLIS = TimeUnit.SECONDS.toMillis(30);
+  private static final int DEFAULT_CACHE_REFRESH_MIN_SECONDS = 120;
+  private static final int DEFAULT_CACHE_REFRESH_MAX_SECONDS = 1800;
+  private static final int DEFAULT_CACHE_WARMUP_WAIT_SECONDS = 5;
+  private static final int DEFAULT_DOWNLOAD_NOTIFICATIONS_SECONDS = 60;
+  private static final int NOTIFICATIONS_MAX_BACKOFF_FACTOR = 8;
+  private static final int DEFAULT_STATUS_BOARD_REFRESH_SECONDS = 15;
+  private static final int DEFAULT_WEBHOOK_CACHE_REFRESH_MIN_SECONDS = 900;
+  private static final int DEFAULT_WEBHOOK_CACHE_REFRESH_MAX_SECONDS = 3600;
+  private static final int DEFAULT_WEBHOOK_DOWNLOAD_NOTIFICATIONS_SECONDS = 300;
   private static final Logger LOGGER = LogManager.getLogger();
 }
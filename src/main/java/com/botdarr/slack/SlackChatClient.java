@@ -2,94 +2,85 @@ package com.botdarr.slack;
 
 import com.botdarr.Config;
 import com.botdarr.clients.ChatClient;
+import com.botdarr.clients.OutboundDispatcher;
+import com.botdarr.clients.ReactionCommandIndex;
 import com.botdarr.commands.CommandResponse;
 import com.github.seratch.jslack.Slack;
 import com.github.seratch.jslack.api.methods.SlackApiException;
 import com.github.seratch.jslack.api.methods.request.chat.ChatPostMessageRequest;
+import com.github.seratch.jslack.api.methods.request.chat.ChatUpdateRequest;
 import com.github.seratch.jslack.api.methods.request.conversations.ConversationsHistoryRequest;
-import com.github.seratch.jslack.api.methods.request.conversations.ConversationsListRequest;
 import com.github.seratch.jslack.api.methods.request.groups.GroupsHistoryRequest;
-import com.github.seratch.jslack.api.methods.request.users.UsersInfoRequest;
-import com.github.seratch.jslack.api.methods.response.conversations.ConversationsListResponse;
-import com.github.seratch.jslack.api.model.Conversation;
-import com.github.seratch.jslack.api.model.ConversationType;
+import com.github.seratch.jslack.api.methods.response.chat.ChatPostMessageResponse;
+import com.github.seratch.jslack.api.methods.response.chat.ChatUpdateResponse;
 import com.github.seratch.jslack.api.model.Message;
-import com.github.seratch.jslack.api.model.User;
-import com.github.seratch.jslack.api.model.block.DividerBlock;
-import com.github.seratch.jslack.api.model.block.LayoutBlock;
 import com.github.seratch.jslack.api.rtm.RTMClient;
 import com.github.seratch.jslack.api.rtm.RTMMessageHandler;
-import com.google.common.base.Splitter;
-import com.google.common.collect.Sets;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.util.Strings;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 public class SlackChatClient implements ChatClient<SlackResponse> {
   public SlackChatClient(RTMClient rtmClient) {
     this.rtm = rtmClient;
-    rtm.addCloseHandler(reason -> {
-      connected.set(false);
-      LOGGER.error("Error caught during slack close handler, reason=" +  reason.toString());
-    });
-    rtm.addErrorHandler(reason -> {
-      LOGGER.error("Error caught from slack error handler", reason);
-    });
+    this.connectionSupervisor = new SlackConnectionSupervisor(rtm, metadataCache);
   }
 
+  /**
+   * The handler gets every rtm frame
+   */
   public void addMessageHandler(RTMMessageHandler messageHandler) {
     rtm.addMessageHandler(messageHandler);
   }
 
+  /**
+   * The handler gets the messages missed while disconnected, as rtm message frames (see SlackConnectionSupervisor)
+   */
+  public void addCatchUpHandler(RTMMessageHandler catchUpHandler) {
+    connectionSupervisor.addCatchUpHandler(catchUpHandler);
+  }
+
+  /**
+   * Connects (and keeps reconnecting) in the background, blocking until shutdown
+   */
   public void connect() throws Exception {
-    // must connect within 30 seconds after establishing wss endpoint
-    this.rtm.connect();
-    while(true) {
-      //set state of whether we are connected or not (jslack doesn't expose session in rtm client so we need our own state)
-      connected.set(true);
-      while (connected.get()) {
-        Thread.sleep(1000);
-      }
-      //if we for some reason stop being connected, reconnect and retry
-      this.rtm.reconnect();
-    }
+    Runtime.getRuntime().addShutdownHook(new Thread(connectionSupervisor::stop, "botdarr-slack-disconnect"));
+    connectionSupervisor.start();
+    connectionSupervisor.awaitStopped();
+  }
+
+  public SlackConnectionSupervisor getConnectionSupervisor() {
+    return connectionSupervisor;
   }
 
   @Override
   public void sendMessage(SlackResponse chatClientResponse, String channel) {
-    sendMessages(channelId -> {
-      try {
-        Slack.getInstance().methods().chatPostMessage(ChatPostMessageRequest.builder()
-          .token(Config.getProperty(Config.Constants.SLACK_BOT_TOKEN))
-          .blocks(chatClientResponse.getBlocks())
-          .channel(channelId).build());
-      } catch (Exception e) {
-        LOGGER.error("Error sending slack message", e);
-      }
-    }, channel);
+    sendMessages(channelId -> post(channelId, chatClientResponse), channel);
   }
 
   @Override
   public void sendMessage(List<SlackResponse> chatClientResponses, String channel) {
+    sendMessagesAsync(chatClientResponses, channel);
+  }
+
+  /**
+   * Packs the responses into as few messages as possible and queues them (in order) for every target channel, the future completes once all of them were sent
+   */
+  public CompletableFuture<Void> sendMessagesAsync(List<SlackResponse> chatClientResponses, String channel) {
+    List<CompletableFuture<?>> futures = new ArrayList<>();
+    List<SlackResponse> packedResponses = SlackMessagePacker.pack(chatClientResponses);
     sendMessages(channelId -> {
-      for (SlackResponse slackResponse : chatClientResponses) {
-        try {
-          List<LayoutBlock> blocks = slackResponse.getBlocks();
-          blocks.add(DividerBlock.builder().build());
-          Slack.getInstance().methods().chatPostMessage(ChatPostMessageRequest.builder()
-            .token(Config.getProperty(Config.Constants.SLACK_BOT_TOKEN))
-            .blocks(blocks)
-            .channel(channelId).build());
-          Thread.sleep(1000); //slack is rate limited
-        } catch (Exception e) {
-          LOGGER.error("Error sending slack message", e);
-        }
+      for (SlackResponse slackResponse : packedResponses) {
+        futures.add(post(channelId, slackResponse));
       }
     }, channel);
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
   }
 
   @Override
@@ -99,7 +90,62 @@ public class SlackChatClient implements ChatClient<SlackResponse> {
     } else if (commandResponse.getMultipleChatClientResponses() != null) {
       sendMessage(commandResponse.getMultipleChatClientResponses(), targetChannel);
     } else {
-      //TODO: err
+      LOGGER.warn("Nothing to send for command response in channel " + targetChannel);
+    }
+  }
+
+  @Override
+  public void updateStatusBoard(String boardName, SlackResponse chatClientResponse) {
+    sendMessages(channelId -> dispatcher.submit(channelId, OutboundDispatcher.Priority.BACKGROUND, () -> {
+      String key = boardName + ":" + channelId;
+      String ts = statusBoardTimestamps.get(key);
+      if (ts != null) {
+        ChatUpdateResponse chatUpdateResponse = Slack.getInstance().methods().chatUpdate(ChatUpdateRequest.builder()
+          .token(Config.getProperty(Config.Constants.SLACK_BOT_TOKEN))
+          .blocks(chatClientResponse.getBlocks())
+          .channel(channelId)
+          .ts(ts).build());
+        if (chatUpdateResponse.isOk()) {
+          return null;
+        }
+        //the board was probably deleted, post a new one
+        LOGGER.warn("Could not update status board " + boardName + ", posting a new one, error=" + chatUpdateResponse.getError());
+      }
+      ChatPostMessageResponse chatPostMessageResponse = Slack.getInstance().methods().chatPostMessage(ChatPostMessageRequest.builder()
+        .token(Config.getProperty(Config.Constants.SLACK_BOT_TOKEN))
+        .blocks(chatClientResponse.getBlocks())
+        .channel(channelId).build());
+      if (chatPostMessageResponse.isOk()) {
+        statusBoardTimestamps.put(key, chatPostMessageResponse.getTs());
+      }
+      return null;
+    }).whenComplete((ignored, e) -> {
+      if (e != null) {
+        LOGGER.error("Error updating slack status board", e);
+      }
+    }), null);
+  }
+
+  public OutboundDispatcher getDispatcher() {
+    return dispatcher;
+  }
+
+  /**
+   * How long (in millis) slack asked us to back off, or -1 if the call wasn't rate limited
+   */
+  static long getRetryAfterMillis(Exception e) {
+    if (!(e instanceof SlackApiException)) {
+      return -1;
+    }
+    SlackApiException slackApiException = (SlackApiException) e;
+    if (slackApiException.getResponse() == null || slackApiException.getResponse().code() != 429) {
+      return -1;
+    }
+    String retryAfter = slackApiException.getResponse().header("Retry-After");
+    try {
+      return Strings.isBlank(retryAfter) ? DEFAULT_RETRY_AFTER_MILLIS : TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+    } catch (NumberFormatException ex) {
+      return DEFAULT_RETRY_AFTER_MILLIS;
     }
   }
 
@@ -123,34 +169,47 @@ public class SlackChatClient implements ChatClient<SlackResponse> {
       .build()).getMessages();
   }
 
-  public User getUser(String userId) {
-    try {
-      return Slack.getInstance().methods().usersInfo(UsersInfoRequest.builder()
-        .user(userId)
-        .token(Config.getProperty(Config.Constants.SLACK_BOT_TOKEN)).build()).getUser();
-    } catch (Exception e) {
-      LOGGER.error("Error getting user", e);
-      throw new RuntimeException("Error getting user");
-    }
+  public SlackMetadataCache getMetadataCache() {
+    return metadataCache;
   }
 
-  private void sendMessages(MessageSender messageSender, String targetChannel) {
-    try {
-      Map<String, String> conversationNamesToIds = new HashMap<>();
-      ConversationsListResponse conversationsListResponse =
-        Slack.getInstance().methods().conversationsList(ConversationsListRequest.builder()
-          .token(Config.getProperty(Config.Constants.SLACK_BOT_TOKEN))
-          .types(Arrays.asList(ConversationType.PRIVATE_CHANNEL, ConversationType.PUBLIC_CHANNEL)).build());
-      for (Conversation conversation : conversationsListResponse.getChannels()) {
-        conversationNamesToIds.put(conversation.getName(), conversation.getId());
-      }
+  public String getUserName(String userId) {
+    return metadataCache.getUserName(userId);
+  }
 
-      Set<String> supportedSlackChannels = Sets.newHashSet(Splitter.on(',').trimResults().split(Config.getProperty(Config.Constants.SLACK_CHANNELS)));
-      for (String slackChannel : supportedSlackChannels) {
-        String channelId = conversationNamesToIds.get(slackChannel);
-        if (Strings.isBlank(channelId)) {
-          continue;
+  /**
+   * The key messages are remembered under in the reaction command index
+   */
+  public static String getReactionKey(String channelId, String ts) {
+    return channelId + ":" + ts;
+  }
+
+  private CompletableFuture<ChatPostMessageResponse> post(String channelId, SlackResponse slackResponse) {
+    CompletableFuture<ChatPostMessageResponse> future = dispatcher.submit(channelId, () ->
+      Slack.getInstance().methods().chatPostMessage(ChatPostMessageRequest.builder()
+        .token(Config.getProperty(Config.Constants.SLACK_BOT_TOKEN))
+        .blocks(slackResponse.getBlocks())
+        .channel(channelId).build()));
+    future.whenComplete((chatPostMessageResponse, e) -> {
+      if (e != null) {
+        LOGGER.error("Error sending slack message", e);
+      } else if (!chatPostMessageResponse.isOk()) {
+        LOGGER.error("Error sending slack message, error=" + chatPostMessageResponse.getError());
+      } else {
+        String addCommand = slackResponse.getAddCommand();
+        if (addCommand != null) {
+          //so a thumbs up on it doesn't need to fetch the message back
+          ReactionCommandIndex.getIndex().put(getReactionKey(channelId, chatPostMessageResponse.getTs()), addCommand);
         }
+      }
+    });
+    return future;
+  }
+
+  private void sendMessages(MessageSender messageSender, String targetChannel) {
+    try {
+      //senders can wait for the first channel refresh, a message sent before it would be dropped otherwise
+      for (String channelId : metadataCache.loadChannelIds()) {
         if (targetChannel != null && !channelId.equalsIgnoreCase(targetChannel)) {
           continue;
         }
@@ -165,8 +224,16 @@ public class SlackChatClient implements ChatClient<SlackResponse> {
     void send(String channel);
   }
 
-  private AtomicBoolean connected = new AtomicBoolean(false);
+  private final Map<String, String> statusBoardTimestamps = new ConcurrentHashMap<>();
+  private final SlackMetadataCache metadataCache = new SlackMetadataCache();
+  //slack allows about a message per second per channel, with short bursts.
+  //jslack only has blocking calls, so these threads wait on slack while sending (the rest of the bot never does)
+  private final OutboundDispatcher dispatcher = new OutboundDispatcher("slack", 4, 1000, 3, MAX_PENDING_PER_CHANNEL, SlackChatClient::getRetryAfterMillis);
 
   private final RTMClient rtm;
+  private final SlackConnectionSupervisor connectionSupervisor;
+  private static final long DEFAULT_RETRY_AFTER_MILLIS = 1000;
+  //a page of results (ResultSessions.MAX_RESULTS_TO_SHOW) plus a burst of notifications always fits, with room for several users at once
+  private static final int MAX_PENDING_PER_CHANNEL = 500;
   private static final Logger LOGGER = LogManager.getLogger("SlackLog");
 }
@@ -0,0 +1,449 @@
+package com.botdarr.slack;
+
+import com.botdarr.Config;
+import com.github.seratch.jslack.Slack;
+import com.github.seratch.jslack.api.methods.request.conversations.ConversationsHistoryRequest;
+import com.github.seratch.jslack.api.methods.response.conversations.ConversationsHistoryResponse;
+import com.github.seratch.jslack.api.model.Message;
+import com.github.seratch.jslack.api.rtm.RTMClient;
+import com.github.seratch.jslack.api.rtm.RTMCloseHandler;
+import com.github.seratch.jslack.api.rtm.RTMErrorHandler;
+import com.github.seratch.jslack.api.rtm.RTMMessageHandler;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.JsonObject;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps the rtm connection up. Close/error callbacks (or a connection that stopped answering pings) trigger a
+ * reconnect with jittered exponential backoff, so an outage doesn't turn into a reconnect storm against slack.
+ * After a reconnect, the messages sent in the configured channels while the bot was disconnected are handed to the
+ * catch-up handlers.
+ * jslack doesn't expose the websocket session, so the state here is our own.
+ */
+public class SlackConnectionSupervisor {
+  public SlackConnectionSupervisor(RTMClient rtm, SlackMetadataCache metadataCache) {
+    this(new RtmConnection(rtm),
+      metadataCache,
+      new SlackApiHistory(),
+      TimeUnit.SECONDS.toMillis(Config.getIntProperty(Config.Constants.SLACK_RECONNECT_MAX_BACKOFF_SECONDS, DEFAULT_MAX_BACKOFF_SECONDS)),
+      TimeUnit.MINUTES.toMillis(Config.getIntProperty(Config.Constants.SLACK_CATCH_UP_MINUTES, DEFAULT_CATCH_UP_MINUTES)),
+      PING_INTERVAL_MILLIS,
+      new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder().setNameFormat("botdarr-slack-connection-%d").setDaemon(true).build()),
+      System::nanoTime);
+  }
+
+  public SlackConnectionSupervisor(Connection connection,
+                                   SlackMetadataCache metadataCache,
+                                   History history,
+                                   long maxBackoffMillis,
+                                   long catchUpMillis,
+                                   long pingIntervalMillis,
+                                   ScheduledExecutorService executor,
+                                   LongSupplier nanoClock) {
+    this.connection = connection;
+    this.metadataCache = metadataCache;
+    this.history = history;
+    this.maxBackoffMillis = maxBackoffMillis;
+    this.catchUpMillis = catchUpMillis;
+    this.pingIntervalMillis = pingIntervalMillis;
+    this.executor = executor;
+    this.nanoClock = nanoClock;
+    this.lastFrameNanos = nanoClock.getAsLong();
+    //any frame (hello, pong, events) proves the connection is alive
+    connection.addMessageHandler(frame -> {
+      lastFrameNanos = nanoClock.getAsLong();
+      lastFrameMillis = System.currentTimeMillis();
+    });
+    connection.addCloseHandler(reason -> {
+      LOGGER.error("Slack connection closed, reason=" + reason);
+      connectionLost();
+    });
+    connection.addErrorHandler(reason -> {
+      LOGGER.error("Error caught from slack error handler", reason);
+      connectionLost();
+    });
+  }
+
+  public enum State {
+    NEW,
+    STARTING,
+    CONNECTED,
+    RECONNECTING,
+    STOPPED
+  }
+
+  /**
+   * Handlers that get sent the messages missed while disconnected, as rtm message frames.
+   * They are replayed late (up to catch-up-minutes), so handlers should only run commands that are safe to run late
+   * and use messageSeen to skip anything already handled
+   */
+  public void addCatchUpHandler(RTMMessageHandler catchUpHandler) {
+    catchUpHandlers.add(catchUpHandler);
+  }
+
+  /**
+   * Connects in the background (retrying until it works) and starts checking the connection is alive
+   */
+  public void start() {
+    if (!state.compareAndSet(State.NEW, State.STARTING)) {
+      return;
+    }
+    executor.execute(this::connect);
+    executor.scheduleWithFixedDelay(this::checkLiveness, pingIntervalMillis, pingIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Blocks until stop is called
+   */
+  public void awaitStopped() throws InterruptedException {
+    stopped.await();
+  }
+
+  public void stop() {
+    if (state.getAndSet(State.STOPPED) == State.STOPPED) {
+      return;
+    }
+    executor.shutdownNow();
+    try {
+      connection.disconnect();
+    } catch (Exception e) {
+      LOGGER.warn("Error disconnecting from slack", e);
+    }
+    LOGGER.info("Slack connection stopped, " + getMetrics());
+    stopped.countDown();
+  }
+
+  public State getState() {
+    return state.get();
+  }
+
+  /**
+   * Remembers the message as handled (and the newest one handled in the channel, so catching up after a reconnect
+   * starts after it). Returns false if it was already seen, i.e., it arrived live while the channel was being caught up
+   */
+  public boolean messageSeen(String channelId, String ts) {
+    if (channelId == null || ts == null) {
+      return true;
+    }
+    lastSeenTimestamps.merge(channelId, ts, (current, seen) -> compareTimestamps(seen, current) > 0 ? seen : current);
+    return seenMessages.asMap().putIfAbsent(channelId + ":" + ts, Boolean.TRUE) == null;
+  }
+
+  /**
+   * Connection state (as the ordinal of State), how often it connected/reconnected/failed, and the catch up counts
+   */
+  public Map<String, Long> getMetrics() {
+    Map<String, Long> metrics = new LinkedHashMap<>();
+    metrics.put("state", (long) state.get().ordinal());
+    metrics.put("connects", connects.get());
+    metrics.put("reconnects", reconnects.get());
+    metrics.put("failed connects", failedConnects.get());
+    metrics.put("liveness timeouts", livenessTimeouts.get());
+    metrics.put("caught up messages", caughtUpMessages.get());
+    metrics.put("connected millis", state.get() == State.CONNECTED ? System.currentTimeMillis() - connectedAtMillis : 0);
+    return Collections.unmodifiableMap(metrics);
+  }
+
+  /**
+   * Full jitter, a random delay up to min(max, base * 2^attempt), so every bot that lost slack doesn't come back at once
+   */
+  public static long getBackoffMillis(int attempt, long maxBackoffMillis, Random random) {
+    long cap = Math.min(maxBackoffMillis, BASE_BACKOFF_MILLIS << Math.min(attempt, MAX_BACKOFF_SHIFT));
+    //never retry in a tight loop
+    return Math.max(MIN_BACKOFF_MILLIS, (long) (random.nextDouble() * cap));
+  }
+
+  /**
+   * Compares slack message timestamps ("seconds.micros"), numerically
+   */
+  public static int compareTimestamps(String ts1, String ts2) {
+    return new BigDecimal(ts1).compareTo(new BigDecimal(ts2));
+  }
+
+  private void connectionLost() {
+    if (state.compareAndSet(State.CONNECTED, State.RECONNECTING)) {
+      //live messages start flowing again before catching up is done, and would move the last seen timestamps
+      //past everything missed in the meantime
+      lastSeenAtDisconnect = new HashMap<>(lastSeenTimestamps);
+      scheduleReconnect();
+    }
+  }
+
+  //only ever runs on the supervisor thread
+  private void connect() {
+    if (state.get() == State.STOPPED) {
+      return;
+    }
+    boolean reconnecting = state.get() == State.RECONNECTING;
+    try {
+      long lastAliveMillis = lastFrameMillis;
+      if (reconnecting) {
+        //gets a fresh websocket url, the old one only works once
+        connection.reconnect();
+        reconnects.incrementAndGet();
+      } else {
+        // must connect within 30 seconds after establishing wss endpoint
+        connection.connect();
+      }
+      connects.incrementAndGet();
+      attempts.set(0);
+      lastFrameNanos = nanoClock.getAsLong();
+      connectedAtMillis = System.currentTimeMillis();
+      if (!state.compareAndSet(reconnecting ? State.RECONNECTING : State.STARTING, State.CONNECTED)) {
+        //stopped while connecting
+        return;
+      }
+      LOGGER.info(reconnecting ? "Reconnected to slack" : "Connected to slack");
+      if (reconnecting) {
+        catchUp(lastAliveMillis);
+      }
+    } catch (Exception e) {
+      failedConnects.incrementAndGet();
+      LOGGER.error("Error connecting to slack", e);
+      state.compareAndSet(State.STARTING, State.RECONNECTING);
+      scheduleReconnect();
+    }
+  }
+
+  private void scheduleReconnect() {
+    if (state.get() == State.STOPPED) {
+      return;
+    }
+    long backoffMillis = getBackoffMillis(attempts.getAndIncrement(), maxBackoffMillis, ThreadLocalRandom.current());
+    LOGGER.warn("Reconnecting to slack in " + backoffMillis + "ms");
+    try {
+      executor.schedule(this::connect, backoffMillis, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      //stopped in the meantime
+    }
+  }
+
+  /**
+   * Pings slack and drops connections that went quiet (half open sockets never get a close callback).
+   * Runs every ping interval once started
+   */
+  public void checkLiveness() {
+    if (state.get() != State.CONNECTED) {
+      return;
+    }
+    if (nanoClock.getAsLong() - lastFrameNanos > TimeUnit.MILLISECONDS.toNanos(pingIntervalMillis * MISSED_PINGS_ALLOWED)) {
+      livenessTimeouts.incrementAndGet();
+      LOGGER.error("Slack stopped answering pings, reconnecting");
+      try {
+        connection.disconnect();
+      } catch (Exception e) {
+        LOGGER.warn("Error disconnecting from slack", e);
+      }
+      connectionLost();
+      return;
+    }
+    try {
+      JsonObject ping = new JsonObject();
+      ping.addProperty("id", pingIds.incrementAndGet());
+      ping.addProperty("type", "ping");
+      connection.sendMessage(ping.toString());
+    } catch (Exception e) {
+      LOGGER.error("Error pinging slack", e);
+      connectionLost();
+    }
+  }
+
+  /**
+   * Replays the messages posted in the configured channels since the connection was last known to be alive
+   * (or since the last message handled before the disconnect, if newer), oldest first and at most catch-up-minutes back.
+   * Messages that also arrived live since reconnecting are left to the handlers (messageSeen) to skip
+   */
+  private void catchUp(long lastAliveMillis) {
+    if (catchUpMillis <= 0 || lastAliveMillis <= 0 || catchUpHandlers.isEmpty()) {
+      return;
+    }
+    //channels could have changed while disconnected
+    metadataCache.refresh();
+    long oldestMillis = Math.max(lastAliveMillis, System.currentTimeMillis() - catchUpMillis);
+    String oldestAlive = String.format("%d.%06d", oldestMillis / 1000, (oldestMillis % 1000) * 1000);
+    for (String channelId : metadataCache.getChannelIds()) {
+      String lastSeen = lastSeenAtDisconnect.get(channelId);
+      String oldest = lastSeen != null && compareTimestamps(lastSeen, oldestAlive) > 0 ? lastSeen : oldestAlive;
+      try {
+        ConversationsHistoryResponse conversationsHistoryResponse = history.getMessagesAfter(channelId, oldest, MAX_CATCH_UP_MESSAGES);
+        if (!conversationsHistoryResponse.isOk()) {
+          LOGGER.error("Error catching up on slack channel " + channelId + ", error=" + conversationsHistoryResponse.getError());
+          continue;
+        }
+        List<Message> missed = new ArrayList<>(conversationsHistoryResponse.getMessages());
+        //slack returns newest first
+        Collections.reverse(missed);
+        for (Message message : missed) {
+          if (message.getBotId() != null || message.getSubtype() != null || message.getText() == null) {
+            //our own posts, joins, edits, etc
+            continue;
+          }
+          if (message.getTs() != null && lastSeen != null && compareTimestamps(message.getTs(), lastSeen) <= 0) {
+            //already handled (slack's oldest is only a hint, i.e., for messages that share a second)
+            continue;
+          }
+          JsonObject frame = new JsonObject();
+          frame.addProperty("type", "message");
+          frame.addProperty("channel", channelId);
+          frame.addProperty("user", message.getUser());
+          frame.addProperty("text", message.getText());
+          frame.addProperty("ts", message.getTs());
+          for (RTMMessageHandler catchUpHandler : catchUpHandlers) {
+            catchUpHandler.handle(frame.toString());
+          }
+          caughtUpMessages.incrementAndGet();
+        }
+      } catch (Exception e) {
+        LOGGER.error("Error catching up on slack channel " + channelId, e);
+      }
+    }
+  }
+
+  /**
+   * The rtm calls the supervisor makes
+   */
+  public interface Connection {
+    void connect() throws Exception;
+
+    /**
+     * Connects with a fresh websocket url, the old one only works once
+     */
+    void reconnect() throws Exception;
+
+    void disconnect() throws Exception;
+
+    void sendMessage(String message);
+
+    void addMessageHandler(RTMMessageHandler messageHandler);
+
+    void addCloseHandler(RTMCloseHandler closeHandler);
+
+    void addErrorHandler(RTMErrorHandler errorHandler);
+  }
+
+  /**
+   * Reads the messages posted in a channel after the oldest timestamp (exclusive), newest first like slack returns them
+   */
+  public interface History {
+    ConversationsHistoryResponse getMessagesAfter(String channelId, String oldest, int limit) throws Exception;
+  }
+
+  private static class RtmConnection implements Connection {
+    private RtmConnection(RTMClient rtm) {
+      this.rtm = rtm;
+    }
+
+    @Override
+    public void connect() throws Exception {
+      rtm.connect();
+    }
+
+    @Override
+    public void reconnect() throws Exception {
+      rtm.reconnect();
+    }
+
+    @Override
+    public void disconnect() throws Exception {
+      rtm.disconnect();
+    }
+
+    @Override
+    public void sendMessage(String message) {
+      rtm.sendMessage(message);
+    }
+
+    @Override
+    public void addMessageHandler(RTMMessageHandler messageHandler) {
+      rtm.addMessageHandler(messageHandler);
+    }
+
+    @Override
+    public void addCloseHandler(RTMCloseHandler closeHandler) {
+      rtm.addCloseHandler(closeHandler);
+    }
+
+    @Override
+    public void addErrorHandler(RTMErrorHandler errorHandler) {
+      rtm.addErrorHandler(errorHandler);
+    }
+
+    private final RTMClient rtm;
+  }
+
+  private static class SlackApiHistory implements History {
+    @Override
+    public ConversationsHistoryResponse getMessagesAfter(String channelId, String oldest, int limit) throws Exception {
+      return Slack.getInstance().methods().conversationsHistory(ConversationsHistoryRequest.builder()
+        .token(Config.getProperty(Config.Constants.SLACK_USER_TOKEN))
+        .channel(channelId)
+        .oldest(oldest)
+        .inclusive(false)
+        .limit(limit)
+        .build());
+    }
+  }
+
+  private final Connection connection;
+  private final SlackMetadataCache metadataCache;
+  private final History history;
+  private final long maxBackoffMillis;
+  private final long catchUpMillis;
+  private final long pingIntervalMillis;
+  private final ScheduledExecutorService executor;
+  private final LongSupplier nanoClock;
+  private final AtomicReference<State> state = new AtomicReference<>(State.NEW);
+  private final List<RTMMessageHandler> catchUpHandlers = new CopyOnWriteArrayList<>();
+  private final Map<String, String> lastSeenTimestamps = new ConcurrentHashMap<>();
+  private volatile Map<String, String> lastSeenAtDisconnect = Collections.emptyMap();
+  //recently handled messages (channel:ts), so one that arrives live while its channel is being caught up runs once
+  private final Cache<String, Boolean> seenMessages = CacheBuilder.newBuilder()
+    .maximumSize(MAX_SEEN_MESSAGES)
+    .expireAfterWrite(1, TimeUnit.HOURS)
+    .build();
+  private final AtomicLong pingIds = new AtomicLong();
+  private final AtomicLong connects = new AtomicLong();
+  private final AtomicLong reconnects = new AtomicLong();
+  private final AtomicLong failedConnects = new AtomicLong();
+  private final AtomicLong livenessTimeouts = new AtomicLong();
+  private final AtomicLong caughtUpMessages = new AtomicLong();
+  private final AtomicInteger attempts = new AtomicInteger();
+  private final CountDownLatch stopped = new CountDownLatch(1);
+  private volatile long lastFrameNanos;
+  private volatile long lastFrameMillis;
+  private volatile long connectedAtMillis;
+  private static final long BASE_BACKOFF_MILLIS = 1000;
+  private static final long MIN_BACKOFF_MILLIS = 250;
+  private static final int MAX_BACKOFF_SHIFT = 20;
+  private static final long PING_INTERVAL_MILLIS = 30000;
+  private static final int MISSED_PINGS_ALLOWED = 3;
+  private static final int MAX_CATCH_UP_MESSAGES = 100;
+  private static final int MAX_SEEN_MESSAGES = 1000;
+  private static final int DEFAULT_MAX_BACKOFF_SECONDS = 300;
+  private static final int DEFAULT_CATCH_UP_MINUTES = 10;
+  private static final Logger LOGGER = LogManager.getLogger("SlackLog");
+}
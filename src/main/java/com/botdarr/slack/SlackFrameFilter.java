@@ -0,0 +1,131 @@
+package com.botdarr.slack;
+
+import com.botdarr.commands.CommandRouter;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drops rtm frames the bot has no use for (typing, presence, hello/pong, chatter that isn't a command, bot messages,
+ * messages in other channels) by scanning the raw json, before any of it gets parsed.
+ * Only ever gives false positives (frames that get parsed and then ignored), never drops a frame that matters.
+ * Never blocks the rtm thread, the channels are looked up in the metadata cache as they were last loaded.
+ */
+public class SlackFrameFilter {
+  public SlackFrameFilter(SlackMetadataCache metadataCache, CommandRouter commandRouter) {
+    this.metadataCache = metadataCache;
+    this.commandRouter = commandRouter;
+  }
+
+  public boolean accept(String frame) {
+    boolean accepted = isAccepted(frame);
+    if (accepted) {
+      acceptedFrames.increment();
+    } else {
+      droppedFrames.increment();
+    }
+    return accepted;
+  }
+
+  public long getAcceptedFrames() {
+    return acceptedFrames.sum();
+  }
+
+  public long getDroppedFrames() {
+    return droppedFrames.sum();
+  }
+
+  private boolean isAccepted(String frame) {
+    for (String metadataType : METADATA_TYPES) {
+      if (hasStringValue(frame, TYPE_KEY, metadataType)) {
+        return true;
+      }
+    }
+    //before messages, the reacted to item is a nested "type":"message"
+    if (hasStringValue(frame, TYPE_KEY, "reaction_added")) {
+      return hasStringValue(frame, REACTION_KEY, "+1") && isConfiguredChannel(frame);
+    }
+    if (hasStringValue(frame, TYPE_KEY, "message")) {
+      //our own output (and other bots') can contain command text, i.e., the add command on every search result
+      return !isBotMessage(frame) && isConfiguredChannel(frame) && hasCommandText(frame);
+    }
+    return false;
+  }
+
+  private static boolean isBotMessage(String frame) {
+    return frame.contains(BOT_ID_KEY) || hasStringValue(frame, SUBTYPE_KEY, "bot_message");
+  }
+
+  private boolean isConfiguredChannel(String frame) {
+    List<String> channelIds = metadataCache.getChannelIds();
+    if (!metadataCache.isLoaded()) {
+      //the channels are still loading (in the background), let everything through until they are
+      return true;
+    }
+    for (int i = 0; i < channelIds.size(); i++) {
+      if (hasStringValue(frame, CHANNEL_KEY, channelIds.get(i))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean hasCommandText(String frame) {
+    int position = 0;
+    while ((position = findStringValue(frame, TEXT_KEY, position)) >= 0) {
+      if (commandRouter.startsWithCommand(frame, position)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Whether any "key":"value" pair (at any depth) has exactly this value
+   */
+  private static boolean hasStringValue(String frame, String key, String value) {
+    int position = 0;
+    while ((position = findStringValue(frame, key, position)) >= 0) {
+      int end = position + value.length();
+      if (frame.startsWith(value, position) && end < frame.length() && frame.charAt(end) == '"') {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Where the next string value of the key (from the given position) starts, or -1 if there isn't one
+   */
+  private static int findStringValue(String frame, String key, int from) {
+    int position = frame.indexOf(key, from);
+    while (position >= 0) {
+      int valueStart = position + key.length();
+      while (valueStart < frame.length() && Character.isWhitespace(frame.charAt(valueStart))) {
+        valueStart++;
+      }
+      if (valueStart < frame.length() && frame.charAt(valueStart) == '"') {
+        return valueStart + 1;
+      }
+      //i.e., "text":{...}
+      position = frame.indexOf(key, valueStart);
+    }
+    return -1;
+  }
+
+  private final SlackMetadataCache metadataCache;
+  private final CommandRouter commandRouter;
+  private final LongAdder acceptedFrames = new LongAdder();
+  private final LongAdder droppedFrames = new LongAdder();
+  private static final String TYPE_KEY = "\"type\":";
+  private static final String CHANNEL_KEY = "\"channel\":";
+  private static final String TEXT_KEY = "\"text\":";
+  private static final String REACTION_KEY = "\"reaction\":";
+  private static final String SUBTYPE_KEY = "\"subtype\":";
+  private static final String BOT_ID_KEY = "\"bot_id\":";
+  //kept in the metadata cache
+  private static final String[] METADATA_TYPES = {
+    "channel_created", "channel_joined", "channel_rename", "channel_deleted",
+    "group_joined", "group_rename", "group_deleted", "user_change", "team_join"
+  };
+}
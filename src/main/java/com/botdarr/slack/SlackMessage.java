@@ -21,6 +21,10 @@ public class SlackMessage {
     return reaction;
   }
 
+  public String getTs() {
+    return ts;
+  }
+
   public SlackMessageItem getItem() {
     return item;
   }
@@ -29,6 +33,7 @@ public class SlackMessage {
   private String text;
   private String user; //slack user id
   private String channel;
+  private String ts;
   private String reaction;
   private SlackMessageItem item;
 }
@@ -0,0 +1,54 @@
+package com.botdarr.slack;
+
+import com.github.seratch.jslack.api.model.block.DividerBlock;
+import com.github.seratch.jslack.api.model.block.LayoutBlock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Packs responses into as few slack messages as the block limit allows (with a divider after each response),
+ * so a list of downloads, profiles or existing movies/shows is a couple of api calls instead of one per entry.
+ * Responses with an add command (i.e., every "find new" result) still get a message each, since a thumbs up
+ * reaction runs the one add command in the message it is on.
+ */
+public class SlackMessagePacker {
+  public static List<SlackResponse> pack(List<SlackResponse> slackResponses) {
+    List<SlackResponse> packed = new ArrayList<>();
+    SlackResponse current = null;
+    for (SlackResponse slackResponse : slackResponses) {
+      if (slackResponse.getAddCommand() != null) {
+        //a thumbs up reaction adds whatever is in the message, so each add command needs its own message
+        packed.add(withDivider(slackResponse.getBlocks()));
+        current = null;
+        continue;
+      }
+      List<LayoutBlock> blocks = new ArrayList<>(slackResponse.getBlocks());
+      blocks.add(DividerBlock.builder().build());
+      if (current != null && current.getBlocks().size() + blocks.size() > MAX_BLOCKS_PER_MESSAGE) {
+        //don't split a response that fits in a message of its own
+        current = null;
+      }
+      for (LayoutBlock layoutBlock : blocks) {
+        //a response with more blocks than a message can hold is split up
+        if (current == null || current.getBlocks().size() >= MAX_BLOCKS_PER_MESSAGE) {
+          current = new SlackResponse();
+          packed.add(current);
+        }
+        current.addBlock(layoutBlock);
+      }
+    }
+    return packed;
+  }
+
+  private static SlackResponse withDivider(List<LayoutBlock> blocks) {
+    SlackResponse slackResponse = new SlackResponse();
+    for (LayoutBlock layoutBlock : blocks) {
+      slackResponse.addBlock(layoutBlock);
+    }
+    slackResponse.addBlock(DividerBlock.builder().build());
+    return slackResponse;
+  }
+
+  private static final int MAX_BLOCKS_PER_MESSAGE = 50;
+}
@@ -0,0 +1,315 @@
+package com.botdarr.slack;
+
+import com.botdarr.Config;
+import com.botdarr.scheduling.Scheduler;
+import com.github.seratch.jslack.Slack;
+import com.github.seratch.jslack.api.methods.SlackApiException;
+import com.github.seratch.jslack.api.methods.request.conversations.ConversationsListRequest;
+import com.github.seratch.jslack.api.methods.request.users.UsersInfoRequest;
+import com.github.seratch.jslack.api.methods.request.users.UsersListRequest;
+import com.github.seratch.jslack.api.methods.response.conversations.ConversationsListResponse;
+import com.github.seratch.jslack.api.methods.response.users.UsersInfoResponse;
+import com.github.seratch.jslack.api.methods.response.users.UsersListResponse;
+import com.github.seratch.jslack.api.model.Conversation;
+import com.github.seratch.jslack.api.model.ConversationType;
+import com.github.seratch.jslack.api.model.User;
+import com.google.common.base.Splitter;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Strings;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Channel name/id and user id/name lookups, kept up to date from rtm events (plus a periodic sweep to catch
+ * anything missed while disconnected) so sending and receiving messages doesn't cost any slack api calls
+ */
+public class SlackMetadataCache {
+  public SlackMetadataCache() {
+    this(Splitter.on(',').trimResults().omitEmptyStrings()
+        .splitToList(Strings.isBlank(Config.getProperty(Config.Constants.SLACK_CHANNELS)) ? "" : Config.getProperty(Config.Constants.SLACK_CHANNELS)),
+      new SlackApiMetadataSource(),
+      runnable -> Scheduler.getScheduler().executeIo(LANE, runnable));
+  }
+
+  /**
+   * The loader runs the first refresh in the background when channels are asked for before it happened
+   */
+  public SlackMetadataCache(Collection<String> configuredChannelNames, MetadataSource metadataSource, Executor loader) {
+    this.configuredChannelNames = new HashSet<>(configuredChannelNames);
+    this.metadataSource = metadataSource;
+    this.loader = loader;
+  }
+
+  /**
+   * Ids of the configured slack-channels the bot can see. Never blocks, until the first refresh finished this is
+   * empty and the refresh is started in the background
+   */
+  public List<String> getChannelIds() {
+    if (!loaded) {
+      loadInBackground();
+    }
+    return channelIds;
+  }
+
+  /**
+   * Same as getChannelIds, but runs the first refresh right away if it hasn't happened yet.
+   * Only for threads that can afford to wait on slack (i.e., senders, which would otherwise drop the message)
+   */
+  public List<String> loadChannelIds() {
+    if (!loaded) {
+      refresh();
+    }
+    return channelIds;
+  }
+
+  public boolean isLoaded() {
+    return loaded;
+  }
+
+  /**
+   * Falls back to the user id if the user can't be looked up
+   */
+  public String getUserName(String userId) {
+    String userName = userIdsToNames.get(userId);
+    if (userName != null) {
+      return userName;
+    }
+    //someone we haven't seen yet (i.e., joined while the bot was disconnected), look them up once
+    try {
+      UsersInfoResponse usersInfoResponse = metadataSource.getUser(userId);
+      if (usersInfoResponse.isOk() && usersInfoResponse.getUser() != null && usersInfoResponse.getUser().getName() != null) {
+        putUser(usersInfoResponse.getUser());
+        return usersInfoResponse.getUser().getName();
+      }
+      LOGGER.warn("Could not look up slack user " + userId + ", error=" + usersInfoResponse.getError());
+    } catch (Exception e) {
+      LOGGER.warn("Error looking up slack user " + userId, e);
+    }
+    return userId;
+  }
+
+  /**
+   * Applies channel/user changes from an rtm event, returns false if the event isn't about channels or users
+   */
+  public boolean handleEvent(JsonObject json) {
+    JsonElement type = json.get("type");
+    if (type == null || !type.isJsonPrimitive()) {
+      return false;
+    }
+    switch (type.getAsString()) {
+      case "channel_created":
+      case "channel_joined":
+      case "channel_rename":
+      case "group_joined":
+      case "group_rename":
+        JsonElement channel = json.get("channel");
+        if (channel != null && channel.isJsonObject()) {
+          putChannel(getString(channel.getAsJsonObject(), "id"), getString(channel.getAsJsonObject(), "name"));
+        }
+        return true;
+      case "channel_deleted":
+      case "group_deleted":
+        JsonElement channelId = json.get("channel");
+        if (channelId != null && channelId.isJsonPrimitive()) {
+          removeChannel(channelId.getAsString());
+        }
+        return true;
+      case "user_change":
+      case "team_join":
+        JsonElement user = json.get("user");
+        if (user != null && user.isJsonObject()) {
+          String userId = getString(user.getAsJsonObject(), "id");
+          String userName = getString(user.getAsJsonObject(), "name");
+          if (userId != null && userName != null) {
+            userIdsToNames.put(userId, userName);
+          }
+        }
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Re-reads every channel and user, for anything rtm events didn't cover
+   */
+  public synchronized void refresh() {
+    try {
+      Map<String, String> refreshedChannels = new ConcurrentHashMap<>();
+      String cursor = null;
+      do {
+        ConversationsListResponse conversationsListResponse = metadataSource.listChannels(cursor);
+        if (!conversationsListResponse.isOk()) {
+          LOGGER.error("Error listing slack channels, error=" + conversationsListResponse.getError());
+          return;
+        }
+        for (Conversation conversation : conversationsListResponse.getChannels()) {
+          refreshedChannels.put(conversation.getName(), conversation.getId());
+        }
+        cursor = getNextCursor(conversationsListResponse.getResponseMetadata());
+      } while (cursor != null);
+      //swap in whole so renamed/deleted channels don't linger
+      synchronized (channelLock) {
+        channelNamesToIds = refreshedChannels;
+        publishChannelIds();
+      }
+      loaded = true;
+
+      cursor = null;
+      do {
+        UsersListResponse usersListResponse = metadataSource.listUsers(cursor);
+        if (!usersListResponse.isOk()) {
+          LOGGER.error("Error listing slack users, error=" + usersListResponse.getError());
+          return;
+        }
+        for (User user : usersListResponse.getMembers()) {
+          putUser(user);
+        }
+        cursor = getNextCursor(usersListResponse.getResponseMetadata());
+      } while (cursor != null);
+      LOGGER.debug("Refreshed slack metadata, channels=" + channelNamesToIds.size() + ", users=" + userIdsToNames.size());
+    } catch (Exception e) {
+      LOGGER.error("Error refreshing slack channels/users", e);
+    }
+  }
+
+  /**
+   * Starts the first refresh on the slack metadata lane, at most one at a time and (if slack keeps failing)
+   * at most once every LOAD_RETRY_MILLIS so every incoming frame doesn't turn into a slack api call
+   */
+  private void loadInBackground() {
+    long nowMillis = System.currentTimeMillis();
+    if (nowMillis - lastLoadStartedMillis < LOAD_RETRY_MILLIS || !loading.compareAndSet(false, true)) {
+      return;
+    }
+    lastLoadStartedMillis = nowMillis;
+    try {
+      loader.execute(() -> {
+        try {
+          refresh();
+        } finally {
+          loading.set(false);
+        }
+      });
+    } catch (RuntimeException e) {
+      loading.set(false);
+      LOGGER.warn("Could not start loading slack channels/users", e);
+    }
+  }
+
+  private void putChannel(String channelId, String channelName) {
+    if (channelId == null || channelName == null) {
+      return;
+    }
+    synchronized (channelLock) {
+      //renames keep the id, so drop the old name
+      channelNamesToIds.values().remove(channelId);
+      channelNamesToIds.put(channelName, channelId);
+      publishChannelIds();
+    }
+  }
+
+  private void removeChannel(String channelId) {
+    synchronized (channelLock) {
+      channelNamesToIds.values().remove(channelId);
+      publishChannelIds();
+    }
+  }
+
+  /**
+   * Must hold the channel lock, recomputes the configured channel ids once per change instead of once per message
+   */
+  private void publishChannelIds() {
+    List<String> configuredChannelIds = new ArrayList<>();
+    for (String configuredChannelName : configuredChannelNames) {
+      String channelId = channelNamesToIds.get(configuredChannelName);
+      if (!Strings.isBlank(channelId)) {
+        configuredChannelIds.add(channelId);
+      }
+    }
+    channelIds = Collections.unmodifiableList(configuredChannelIds);
+  }
+
+  private void putUser(User user) {
+    if (user != null && user.getId() != null && user.getName() != null) {
+      userIdsToNames.put(user.getId(), user.getName());
+    }
+  }
+
+  /**
+   * The slack api calls the cache makes
+   */
+  public interface MetadataSource {
+    ConversationsListResponse listChannels(String cursor) throws IOException, SlackApiException;
+
+    UsersListResponse listUsers(String cursor) throws IOException, SlackApiException;
+
+    UsersInfoResponse getUser(String userId) throws IOException, SlackApiException;
+  }
+
+  private static class SlackApiMetadataSource implements MetadataSource {
+    @Override
+    public ConversationsListResponse listChannels(String cursor) throws IOException, SlackApiException {
+      return Slack.getInstance().methods().conversationsList(ConversationsListRequest.builder()
+        .token(Config.getProperty(Config.Constants.SLACK_BOT_TOKEN))
+        .types(Arrays.asList(ConversationType.PRIVATE_CHANNEL, ConversationType.PUBLIC_CHANNEL))
+        .excludeArchived(true)
+        .limit(PAGE_SIZE)
+        .cursor(cursor).build());
+    }
+
+    @Override
+    public UsersListResponse listUsers(String cursor) throws IOException, SlackApiException {
+      return Slack.getInstance().methods().usersList(UsersListRequest.builder()
+        .token(Config.getProperty(Config.Constants.SLACK_BOT_TOKEN))
+        .limit(PAGE_SIZE)
+        .cursor(cursor).build());
+    }
+
+    @Override
+    public UsersInfoResponse getUser(String userId) throws IOException, SlackApiException {
+      return Slack.getInstance().methods().usersInfo(UsersInfoRequest.builder()
+        .user(userId)
+        .token(Config.getProperty(Config.Constants.SLACK_BOT_TOKEN)).build());
+    }
+  }
+
+  private static String getNextCursor(com.github.seratch.jslack.api.model.ResponseMetadata responseMetadata) {
+    return responseMetadata == null || Strings.isBlank(responseMetadata.getNextCursor()) ? null : responseMetadata.getNextCursor();
+  }
+
+  private static String getString(JsonObject json, String key) {
+    JsonElement value = json.get(key);
+    return value == null || !value.isJsonPrimitive() ? null : value.getAsString();
+  }
+
+  private final Set<String> configuredChannelNames;
+  private final MetadataSource metadataSource;
+  private final Executor loader;
+  private final AtomicBoolean loading = new AtomicBoolean(false);
+  private volatile long lastLoadStartedMillis;
+  private final Object channelLock = new Object();
+  private final Map<String, String> userIdsToNames = new ConcurrentHashMap<>();
+  private volatile Map<String, String> channelNamesToIds = new ConcurrentHashMap<>();
+  private volatile List<String> channelIds = Collections.emptyList();
+  private volatile boolean loaded;
+  private static final int PAGE_SIZE = 200;
+  private static final long LOAD_RETRY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+  private static final String LANE = "slack-metadata";
+  private static final Logger LOGGER = LogManager.getLogger("SlackLog");
+}
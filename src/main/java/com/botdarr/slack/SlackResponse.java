@@ -2,10 +2,17 @@ package com.botdarr.slack;
 
 import com.botdarr.clients.ChatClientResponse;
 import com.github.seratch.jslack.api.model.block.LayoutBlock;
+import com.github.seratch.jslack.api.model.block.SectionBlock;
+import com.github.seratch.jslack.api.model.block.composition.MarkdownTextObject;
+import com.github.seratch.jslack.api.model.block.composition.PlainTextObject;
+import com.github.seratch.jslack.api.model.block.composition.TextObject;
 
 import java.util.ArrayList;
 import java.util.List;
 
+import static com.botdarr.api.RadarrApi.ADD_MOVIE_COMMAND_FIELD_PREFIX;
+import static com.botdarr.api.SonarrApi.ADD_SHOW_COMMAND_FIELD_PREFIX;
+
 public class SlackResponse implements ChatClientResponse {
   public List<LayoutBlock> getBlocks() {
     return blocks;
@@ -15,5 +22,33 @@ public class SlackResponse implements ChatClientResponse {
     this.blocks.add(slackResponseBlock);
   }
 
+  /**
+   * The add command a thumbs up on this response would run, or null if it doesn't have one
+   */
+  public String getAddCommand() {
+    for (LayoutBlock layoutBlock : blocks) {
+      if (!(layoutBlock instanceof SectionBlock)) {
+        continue;
+      }
+      String text = getText(((SectionBlock) layoutBlock).getText());
+      if (text != null && (text.startsWith(ADD_MOVIE_COMMAND_FIELD_PREFIX) || text.startsWith(ADD_SHOW_COMMAND_FIELD_PREFIX))) {
+        return text
+          .replaceAll(ADD_MOVIE_COMMAND_FIELD_PREFIX + " - ", "")
+          .replaceAll(ADD_SHOW_COMMAND_FIELD_PREFIX + " - ", "");
+      }
+    }
+    return null;
+  }
+
+  private static String getText(TextObject textObject) {
+    if (textObject instanceof MarkdownTextObject) {
+      return ((MarkdownTextObject) textObject).getText();
+    }
+    if (textObject instanceof PlainTextObject) {
+      return ((PlainTextObject) textObject).getText();
+    }
+    return null;
+  }
+
   private List<LayoutBlock> blocks = new ArrayList<>();
 }
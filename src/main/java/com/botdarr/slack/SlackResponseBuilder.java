@@ -1,6 +1,7 @@
 package com.botdarr.slack;
 
 import com.botdarr.Config;
+import com.botdarr.api.DownloadProgress;
 import com.botdarr.api.radarr.*;
 import com.botdarr.api.sonarr.*;
 import com.botdarr.clients.ChatClientResponseBuilder;
@@ -15,6 +16,8 @@ import org.apache.commons.io.FileUtils;
 import org.apache.logging.log4j.util.Strings;
 
 import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
@@ -48,6 +51,12 @@ public class SlackResponseBuilder implements ChatClientResponseBuilder<SlackResp
           .build());
       }
 
+      if (radarrEnabled || sonarrEnabled) {
+        slackResponse.addBlock(SectionBlock.builder()
+          .text(MarkdownTextObject.builder().text("*results next/results prev* - Pages through the results of your last search when there are too many to show at once").build())
+          .build());
+      }
+
       if (!radarrEnabled && !sonarrEnabled) {
         slackResponse.addBlock(SectionBlock.builder()
           .text(MarkdownTextObject.builder().text("*No radarr or sonarr commands configured, check your properties file and logs*").build())
@@ -93,7 +102,7 @@ public class SlackResponseBuilder implements ChatClientResponseBuilder<SlackResp
   }
 
   @Override
-  public SlackResponse getShowDownloadResponses(SonarrQueue showQueue) {
+  public SlackResponse getShowDownloadResponses(SonarrQueue showQueue, DownloadProgress downloadProgress) {
     SonarQueueEpisode episode = showQueue.getEpisode();
     SlackResponse slackResponse = new SlackResponse();
     slackResponse.addBlock(SectionBlock.builder()
@@ -109,8 +118,13 @@ public class SlackResponseBuilder implements ChatClientResponseBuilder<SlackResp
       .text(MarkdownTextObject.builder().text("Status - " + showQueue.getStatus()).build())
       .build());
     slackResponse.addBlock(SectionBlock.builder()
-      .text(MarkdownTextObject.builder().text("Time Left - *" + (showQueue.getTimeleft() == null ? "unknown" : showQueue.getTimeleft()) + "*").build())
+      .text(MarkdownTextObject.builder().text("Time Left - *" + downloadProgress.getTimeLeft(showQueue.getTimeleft()) + "*").build())
       .build());
+    if (downloadProgress.isKnown()) {
+      slackResponse.addBlock(SectionBlock.builder()
+        .text(MarkdownTextObject.builder().text("Speed - " + downloadProgress.getSpeed()).build())
+        .build());
+    }
     String overview = episode.getTitle() + ": " + episode.getOverview();
     if (overview.length() > VALUE_MAX_LENGTH) {
       overview = overview.substring(0, VALUE_MAX_LENGTH);
@@ -138,7 +152,7 @@ public class SlackResponseBuilder implements ChatClientResponseBuilder<SlackResp
   }
 
   @Override
-  public SlackResponse getMovieDownloadResponses(RadarrQueue radarrQueue) {
+  public SlackResponse getMovieDownloadResponses(RadarrQueue radarrQueue, DownloadProgress downloadProgress) {
     SlackResponse slackResponse = new SlackResponse();
     slackResponse.addBlock(SectionBlock.builder()
       .text(MarkdownTextObject.builder().text("*Title* - " + radarrQueue.getRadarrQueueMovie().getTitle()).build())
@@ -150,8 +164,13 @@ public class SlackResponseBuilder implements ChatClientResponseBuilder<SlackResp
       .text(MarkdownTextObject.builder().text("Status - " + radarrQueue.getStatus()).build())
       .build());
     slackResponse.addBlock(SectionBlock.builder()
-      .text(MarkdownTextObject.builder().text("Time Left - *" + (radarrQueue.getTimeleft() == null ? "unknown" : radarrQueue.getTimeleft()) + "*").build())
+      .text(MarkdownTextObject.builder().text("Time Left - *" + downloadProgress.getTimeLeft(radarrQueue.getTimeleft()) + "*").build())
       .build());
+    if (downloadProgress.isKnown()) {
+      slackResponse.addBlock(SectionBlock.builder()
+        .text(MarkdownTextObject.builder().text("Speed - " + downloadProgress.getSpeed()).build())
+        .build());
+    }
     if (radarrQueue.getStatusMessages() != null) {
       List<ContextBlockElement> contextBlockElements = new ArrayList<>();
       for (RadarrQueueStatusMessages statusMessage : radarrQueue.getStatusMessages()) {
@@ -180,6 +199,30 @@ public class SlackResponseBuilder implements ChatClientResponseBuilder<SlackResp
     return slackResponse;
   }
 
+  @Override
+  public SlackResponse getStatusBoard(String title, List<String> lines) {
+    SlackResponse slackResponse = new SlackResponse();
+    slackResponse.addBlock(SectionBlock.builder()
+      .text(MarkdownTextObject.builder().text("*" + title + "*").build())
+      .build());
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < lines.size(); i++) {
+      String more = "\n...and " + (lines.size() - i) + " more";
+      if (text.length() + lines.get(i).length() + 1 + more.length() > SECTION_TEXT_MAX_LENGTH) {
+        text.append(more);
+        break;
+      }
+      text.append(lines.get(i)).append("\n");
+    }
+    slackResponse.addBlock(SectionBlock.builder()
+      .text(MarkdownTextObject.builder().text(lines.isEmpty() ? "Nothing downloading" : text.toString()).build())
+      .build());
+    slackResponse.addBlock(ContextBlock.builder()
+      .elements(Arrays.asList(PlainTextObject.builder().text("Updated " + LocalDateTime.now().format(UPDATED_FORMAT)).build()))
+      .build());
+    return slackResponse;
+  }
+
   @Override
   public SlackResponse createInfoMessage(String message) {
     SlackResponse slackResponse = new SlackResponse();
@@ -409,4 +452,7 @@ public class SlackResponseBuilder implements ChatClientResponseBuilder<SlackResp
     }
     return slackResponse;
   }
+
+  private static final int SECTION_TEXT_MAX_LENGTH = 3000;
+  private static final DateTimeFormatter UPDATED_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 }
@@ -0,0 +1,54 @@
+package com.botdarr;
+
+import com.botdarr.scheduling.AdaptiveInterval;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AdaptiveIntervalTests {
+  @Test
+  public void backOff_doublesUpToTheMax() {
+    AdaptiveInterval interval = new AdaptiveInterval(1000, 5000);
+    Assert.assertEquals(1000, interval.getCurrentMillis());
+    interval.backOff();
+    Assert.assertEquals(2000, interval.getCurrentMillis());
+    interval.backOff();
+    Assert.assertEquals(4000, interval.getCurrentMillis());
+    interval.backOff();
+    Assert.assertEquals(5000, interval.getCurrentMillis());
+    interval.backOff();
+    Assert.assertEquals(5000, interval.getCurrentMillis());
+  }
+
+  @Test
+  public void reset_snapsBackToTheMin() {
+    AdaptiveInterval interval = new AdaptiveInterval(1000, 5000);
+    interval.backOff();
+    interval.backOff();
+    interval.reset();
+    Assert.assertEquals(1000, interval.getCurrentMillis());
+  }
+
+  @Test
+  public void resetTo_canGoBelowTheMinButNotAboveTheMax() {
+    AdaptiveInterval interval = new AdaptiveInterval(1000, 5000);
+    interval.resetTo(200);
+    Assert.assertEquals(200, interval.getCurrentMillis());
+    interval.resetTo(60000);
+    Assert.assertEquals(5000, interval.getCurrentMillis());
+    //never a busy loop
+    interval.resetTo(0);
+    Assert.assertEquals(1, interval.getCurrentMillis());
+    //backing off from below the min still doubles
+    interval.resetTo(300);
+    interval.backOff();
+    Assert.assertEquals(600, interval.getCurrentMillis());
+  }
+
+  @Test
+  public void maxBelowMinIsTheMin() {
+    AdaptiveInterval interval = new AdaptiveInterval(1000, 10);
+    interval.backOff();
+    Assert.assertEquals(1000, interval.getCurrentMillis());
+    Assert.assertEquals(1000, interval.getMinMillis());
+  }
+}
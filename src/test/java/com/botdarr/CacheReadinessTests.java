@@ -0,0 +1,113 @@
+package com.botdarr;
+
+import com.botdarr.scheduling.CacheReadiness;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class CacheReadinessTests {
+  @Test
+  public void await_unregisteredCachesAreReady() throws Exception {
+    CacheReadiness cacheReadiness = new CacheReadiness();
+    Assert.assertTrue(cacheReadiness.isReady("radarr library"));
+    Assert.assertTrue(cacheReadiness.await(Collections.singletonList("radarr library"), 0));
+  }
+
+  @Test
+  public void await_timesOutWhileWarmingUp() throws Exception {
+    CacheReadiness cacheReadiness = new CacheReadiness();
+    cacheReadiness.expect("radarr library");
+    cacheReadiness.expect("radarr profiles");
+    cacheReadiness.markReady("radarr profiles");
+
+    Assert.assertFalse(cacheReadiness.await(Arrays.asList("radarr library", "radarr profiles"), 0));
+    Assert.assertEquals(Collections.singletonList("radarr library"),
+      cacheReadiness.getNotReady(Arrays.asList("radarr library", "radarr profiles")));
+    Assert.assertTrue(cacheReadiness.getFailed(Arrays.asList("radarr library", "radarr profiles")).isEmpty());
+  }
+
+  @Test
+  public void await_wakesUpOnceReady() throws Exception {
+    CacheReadiness cacheReadiness = new CacheReadiness();
+    cacheReadiness.expect("radarr library");
+    CountDownLatch waiting = new CountDownLatch(1);
+    AtomicBoolean ready = new AtomicBoolean();
+    Thread waiter = new Thread(() -> {
+      try {
+        waiting.countDown();
+        ready.set(cacheReadiness.await(Collections.singletonList("radarr library"), TimeUnit.MINUTES.toMillis(1)));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    waiter.start();
+    waiting.await();
+
+    cacheReadiness.markReady("radarr library");
+    waiter.join(TimeUnit.SECONDS.toMillis(10));
+    Assert.assertFalse(waiter.isAlive());
+    Assert.assertTrue(ready.get());
+  }
+
+  @Test
+  public void await_failedWarmupDoesntWait() throws Exception {
+    CacheReadiness cacheReadiness = new CacheReadiness();
+    cacheReadiness.expect("radarr library");
+    cacheReadiness.markFailed("radarr library");
+
+    long start = System.nanoTime();
+    Assert.assertFalse(cacheReadiness.await(Collections.singletonList("radarr library"), TimeUnit.MINUTES.toMillis(1)));
+    Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+    Assert.assertEquals(CacheReadiness.State.FAILED, cacheReadiness.getState("radarr library"));
+    Assert.assertEquals(Collections.singletonList("radarr library"), cacheReadiness.getFailed(Collections.singletonList("radarr library")));
+    Assert.assertEquals(Collections.singletonList("radarr library"), cacheReadiness.getNotReady(Collections.singletonList("radarr library")));
+  }
+
+  @Test
+  public void await_wakesUpOnceFailed() throws Exception {
+    CacheReadiness cacheReadiness = new CacheReadiness();
+    cacheReadiness.expect("radarr library");
+    CountDownLatch waiting = new CountDownLatch(1);
+    AtomicBoolean ready = new AtomicBoolean(true);
+    Thread waiter = new Thread(() -> {
+      try {
+        waiting.countDown();
+        ready.set(cacheReadiness.await(Collections.singletonList("radarr library"), TimeUnit.MINUTES.toMillis(1)));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    waiter.start();
+    waiting.await();
+
+    cacheReadiness.markFailed("radarr library");
+    waiter.join(TimeUnit.SECONDS.toMillis(10));
+    Assert.assertFalse(waiter.isAlive());
+    Assert.assertFalse(ready.get());
+  }
+
+  @Test
+  public void markReady_afterAFailedWarmup() throws Exception {
+    CacheReadiness cacheReadiness = new CacheReadiness();
+    cacheReadiness.expect("radarr library");
+    cacheReadiness.markFailed("radarr library");
+    cacheReadiness.markReady("radarr library");
+    Assert.assertTrue(cacheReadiness.isReady("radarr library"));
+    Assert.assertTrue(cacheReadiness.await(Collections.singletonList("radarr library"), 0));
+  }
+
+  @Test
+  public void markFailed_afterWarmupKeepsTheCacheReady() throws Exception {
+    CacheReadiness cacheReadiness = new CacheReadiness();
+    cacheReadiness.expect("radarr library");
+    cacheReadiness.markReady("radarr library");
+    //a later refresh failing still leaves the data we have
+    cacheReadiness.markFailed("radarr library");
+    Assert.assertTrue(cacheReadiness.isReady("radarr library"));
+  }
+}
@@ -0,0 +1,90 @@
+package com.botdarr;
+
+import com.botdarr.commands.CommandExecutionEngine;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class CommandExecutionEngineTests {
+  @After
+  public void afterEachTest() {
+    if (engine != null) {
+      engine.shutdown();
+    }
+  }
+
+  @Test
+  public void submit_commandsFromTheSameUserRunInOrder() throws Exception {
+    engine = new CommandExecutionEngine(4, 100, 10);
+    List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch done = new CountDownLatch(10);
+    for (int i = 0; i < 10; i++) {
+      int command = i;
+      Assert.assertTrue(engine.submit("user1", "channel1", () -> {
+        order.add(command);
+        done.countDown();
+      }));
+    }
+    Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(i, (int) order.get(i));
+    }
+  }
+
+  @Test
+  public void submit_otherUsersAreNotStuckBehindABusyUser() throws Exception {
+    engine = new CommandExecutionEngine(1, 100, 10);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch otherUserDone = new CountDownLatch(1);
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+    engine.submit("user1", "channel1", () -> await(release));
+    engine.submit("user1", "channel1", () -> order.add("user1"));
+    engine.submit("user2", "channel1", () -> {
+      order.add("user2");
+      otherUserDone.countDown();
+    });
+    release.countDown();
+    Assert.assertTrue(otherUserDone.await(5, TimeUnit.SECONDS));
+    //user2 was queued after user1's second command, but gets the next turn
+    Assert.assertEquals("user2", order.get(0));
+  }
+
+  @Test
+  public void submit_rejectsWhenTheUserQueueIsFull() throws Exception {
+    engine = new CommandExecutionEngine(1, 100, 2);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    try {
+      Assert.assertTrue(engine.submit("user1", "channel1", () -> {
+        started.countDown();
+        await(release);
+      }));
+      //the running command no longer counts against the queue
+      Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+      Assert.assertTrue(engine.submit("user1", "channel1", () -> {}));
+      Assert.assertTrue(engine.submit("user1", "channel1", () -> {}));
+      Assert.assertFalse(engine.submit("user1", "channel1", () -> {}));
+      //other users still have room
+      Assert.assertTrue(engine.submit("user2", "channel1", () -> {}));
+      Assert.assertEquals(1, engine.getRejectedCount());
+    } finally {
+      release.countDown();
+    }
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private CommandExecutionEngine engine;
+}
@@ -0,0 +1,67 @@
+package com.botdarr;
+
+import com.botdarr.clients.ChatClientResponse;
+import com.botdarr.commands.BaseCommand;
+import com.botdarr.commands.Command;
+import com.botdarr.commands.CommandResponse;
+import com.botdarr.commands.CommandRouter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class CommandRouterTests {
+  @Test
+  public void route_longestIdentifierWins() {
+    CommandRouter commandRouter = new CommandRouter(getCommands("movie find downloads", "movie find all downloads", "movie downloads"));
+    CommandRouter.Match match = commandRouter.route("movie find all downloads");
+    Assert.assertEquals("movie find all downloads", match.getCommand().getIdentifier());
+    Assert.assertEquals("", match.getArguments());
+  }
+
+  @Test
+  public void route_argumentsContainingTheIdentifierAreKept() {
+    CommandRouter commandRouter = new CommandRouter(getCommands("movie title add", "movie downloads"));
+    CommandRouter.Match match = commandRouter.route("movie title add  movie downloads the movie ");
+    Assert.assertEquals("movie title add", match.getCommand().getIdentifier());
+    Assert.assertEquals("movie downloads the movie", match.getArguments());
+  }
+
+  @Test
+  public void route_matchesWholeWordsOnly() {
+    CommandRouter commandRouter = new CommandRouter(getCommands("help", "movies help"));
+    Assert.assertNull(commandRouter.route("helpful"));
+    Assert.assertNull(commandRouter.route("movie"));
+    Assert.assertEquals("movies help", commandRouter.route("movies help").getCommand().getIdentifier());
+  }
+
+  @Test
+  public void route_partialIdentifierNotMatched() {
+    CommandRouter commandRouter = new CommandRouter(getCommands("movie find new"));
+    Assert.assertNull(commandRouter.route("movie find existing"));
+  }
+
+  @Test
+  public void startsWithCommand_scansRawFrames() {
+    CommandRouter commandRouter = new CommandRouter(getCommands("movie find new", "help"));
+    String frame = "{\"type\":\"message\",\"text\":\"movie find new alien\"}";
+    Assert.assertTrue(commandRouter.startsWithCommand(frame, frame.indexOf("movie")));
+    Assert.assertFalse(commandRouter.startsWithCommand(frame, frame.indexOf("message")));
+    Assert.assertTrue(commandRouter.startsWithCommand("  help", 0));
+  }
+
+  private List<Command> getCommands(String... identifiers) {
+    List<Command> commands = new ArrayList<>();
+    for (String identifier : Arrays.asList(identifiers)) {
+      commands.add(new BaseCommand(identifier, identifier) {
+        @Override
+        public CommandResponse<? extends ChatClientResponse> execute(String command) {
+          return null;
+        }
+      });
+    }
+    return commands;
+  }
+}
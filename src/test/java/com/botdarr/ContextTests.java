@@ -5,49 +5,83 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class ContextTests {
   @Test
-  public void setUsername_usernameSavedInCurrentThread() {
-    CommandContext.getConfig().setUsername("fakeUser1");
-    Assert.assertEquals("fakeUser1", CommandContext.getConfig().getUsername());
+  public void bind_usernameSavedInCurrentThread() {
+    try (CommandContext.Scope ignored = CommandContext.create("fakeUser1", "channel1", 0).bind()) {
+      Assert.assertEquals("fakeUser1", CommandContext.current().getUsername());
+      Assert.assertEquals("channel1", CommandContext.current().getChannel());
+    }
   }
 
   @Test
-  public void setUsername_usernameSavedInDifferentThread() throws Exception {
-    CommandContext.getConfig().setUsername("fakeUser1");
-    //confirm fake user 1 exists in thread local
-    Assert.assertEquals("fakeUser1", CommandContext.getConfig().getUsername());
-
-    CountDownLatch countDownLatch = new CountDownLatch(1);
-    new Thread(() -> {
-      //confirm the username in this thread is null since it was set in a previous thread
-      Assert.assertNull(CommandContext.getConfig().getUsername());
-
-      //set fake user 2 in this thread and confirm its the fake user 2
-      CommandContext.getConfig().setUsername("fakeUser2");
-      Assert.assertEquals("fakeUser2", CommandContext.getConfig().getUsername());
-      countDownLatch.countDown();
-    }).start();
-
-    //wait for test thread to complete (timeout after a minute if the other thread fails for some insane reason)
-    countDownLatch.await(1, TimeUnit.MINUTES);
-
-    //validate fake user 1 is still the set user in this thread
-    Assert.assertEquals("fakeUser1", CommandContext.getConfig().getUsername());
+  public void bind_usernameSavedInDifferentThread() throws Exception {
+    try (CommandContext.Scope ignored = CommandContext.create("fakeUser1", "channel1", 0).bind()) {
+      //confirm fake user 1 is bound to this thread
+      Assert.assertEquals("fakeUser1", CommandContext.current().getUsername());
+
+      AtomicReference<String> otherThreadUsernameBefore = new AtomicReference<>("unset");
+      AtomicReference<String> otherThreadUsernameAfter = new AtomicReference<>();
+      CountDownLatch countDownLatch = new CountDownLatch(1);
+      new Thread(() -> {
+        //nothing is bound in this thread since the context was bound in a different one
+        otherThreadUsernameBefore.set(CommandContext.current().getUsername());
+
+        //bind fake user 2 in this thread
+        try (CommandContext.Scope ignored2 = CommandContext.create("fakeUser2", "channel1", 0).bind()) {
+          otherThreadUsernameAfter.set(CommandContext.current().getUsername());
+        }
+        countDownLatch.countDown();
+      }).start();
+
+      //wait for test thread to complete (timeout after a minute if the other thread fails for some insane reason)
+      countDownLatch.await(1, TimeUnit.MINUTES);
+      Assert.assertNull(otherThreadUsernameBefore.get());
+      Assert.assertEquals("fakeUser2", otherThreadUsernameAfter.get());
+
+      //validate fake user 1 is still the bound user in this thread
+      Assert.assertEquals("fakeUser1", CommandContext.current().getUsername());
+    }
   }
 
   @Test
-  public void reset_usernameResetAfterContextCleared() {
-    CommandContext.getConfig().setUsername("fakeUser1");
-    //confirm fake user 1 exists in thread local
-    Assert.assertEquals("fakeUser1", CommandContext.getConfig().getUsername());
+  public void bind_previousContextRestoredWhenClosed() {
+    try (CommandContext.Scope ignored = CommandContext.create("fakeUser1", "channel1", 0).bind()) {
+      try (CommandContext.Scope ignored2 = CommandContext.current().withUsername("fakeUser2").bind()) {
+        Assert.assertEquals("fakeUser2", CommandContext.current().getUsername());
+      }
+      Assert.assertEquals("fakeUser1", CommandContext.current().getUsername());
+    }
 
-    //reset the context
-    CommandContext.end();
+    //verify nothing is left bound
+    Assert.assertNull(CommandContext.current().getUsername());
+  }
 
-    //verify the username doesn't exist
-    Assert.assertNull(CommandContext.getConfig().getUsername());
+  @Test
+  public void wrap_contextFollowsWorkOntoPooledThreads() throws Exception {
+    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    try {
+      CommandContext commandContext = CommandContext.create("fakeUser1", "channel1", 0);
+      try (CommandContext.Scope ignored = commandContext.bind()) {
+        Assert.assertEquals(commandContext.getTraceId(),
+          executorService.submit(CommandContext.wrap(() -> CommandContext.current().getTraceId())).get());
+      }
+      //the pooled thread doesn't keep the context once the work is done
+      Assert.assertNull(executorService.submit(() -> CommandContext.current().getUsername()).get());
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
+  @Test
+  public void create_deadline() {
+    Assert.assertFalse(CommandContext.create("fakeUser1", "channel1", 0).hasDeadline());
+    Assert.assertFalse(CommandContext.create("fakeUser1", "channel1", TimeUnit.MINUTES.toMillis(1)).isExpired());
+    Assert.assertTrue(CommandContext.create("fakeUser1", "channel1", 1).withUsername("fakeUser2").getRemainingMillis() <= 1);
   }
 }
@@ -0,0 +1,35 @@
+package com.botdarr;
+
+import com.botdarr.discord.DiscordChannelRoutes;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class DiscordChannelRoutesTests {
+  @Test
+  public void getChannelIds_onlyConfiguredChannels() {
+    DiscordChannelRoutes routes = new DiscordChannelRoutes(Arrays.asList("plex", "requests"));
+    routes.addChannel("plex", 1);
+    routes.addChannel("general", 2);
+    //same name in another guild
+    routes.addChannel("plex", 3);
+    Assert.assertEquals(ImmutableSet.of(1L, 3L), routes.getChannelIds("PLEX"));
+    Assert.assertEquals(ImmutableSet.of(1L, 3L), routes.getChannelIds(null));
+    Assert.assertTrue(routes.getChannelIds("general").isEmpty());
+  }
+
+  @Test
+  public void getChannelIds_followsRenamesAndDeletes() {
+    DiscordChannelRoutes routes = new DiscordChannelRoutes(Arrays.asList("plex", "requests"));
+    routes.addChannel("plex", 1);
+    routes.addChannel("general", 2);
+    routes.renameChannel(1, "movies");
+    routes.renameChannel(2, "requests");
+    Assert.assertTrue(routes.getChannelIds("plex").isEmpty());
+    Assert.assertEquals(ImmutableSet.of(2L), routes.getChannelIds("requests"));
+    routes.removeChannel(2);
+    Assert.assertTrue(routes.getChannelIds(null).isEmpty());
+  }
+}
@@ -0,0 +1,109 @@
+package com.botdarr;
+
+import com.botdarr.discord.DiscordMessagePacker;
+import com.botdarr.discord.DiscordResponse;
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.botdarr.api.RadarrApi.ADD_MOVIE_COMMAND_FIELD_PREFIX;
+
+public class DiscordMessagePackerTests {
+  @Test
+  public void pack_responsesShareAnEmbed() {
+    List<DiscordResponse> packed = DiscordMessagePacker.pack(Arrays.asList(response("a", 2), response("b", 2), response("c", 2)));
+    Assert.assertEquals(1, packed.size());
+    MessageEmbed embed = packed.get(0).getMessage();
+    Assert.assertEquals("a", embed.getTitle());
+    //the first response's fields, then a heading field and the fields of each of the others
+    Assert.assertEquals(2 + 3 + 3, embed.getFields().size());
+    Assert.assertEquals("b", embed.getFields().get(2).getName());
+    Assert.assertEquals("b description", embed.getFields().get(2).getValue());
+    Assert.assertEquals("c1", embed.getFields().get(7).getName());
+  }
+
+  @Test
+  public void pack_staysWithin25Fields() {
+    List<DiscordResponse> responses = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      responses.add(response("r" + i, 5));
+    }
+    List<DiscordResponse> packed = DiscordMessagePacker.pack(responses);
+    //5 + 6 + 6 + 6 fields, the next response would go over 25
+    Assert.assertEquals(3, packed.size());
+    Assert.assertEquals(23, packed.get(0).getMessage().getFields().size());
+    Assert.assertEquals("r4", packed.get(1).getMessage().getTitle());
+    Assert.assertEquals(23, packed.get(1).getMessage().getFields().size());
+    Assert.assertEquals(5 + 6, packed.get(2).getMessage().getFields().size());
+  }
+
+  @Test
+  public void pack_staysWithin6000Characters() {
+    List<DiscordResponse> responses = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      responses.add(response("r" + i, 1, repeat('x', 1000)));
+    }
+    List<DiscordResponse> packed = DiscordMessagePacker.pack(responses);
+    for (DiscordResponse discordResponse : packed) {
+      Assert.assertTrue(discordResponse.getMessage().getLength() <= MessageEmbed.EMBED_MAX_LENGTH_BOT);
+    }
+    //each response is over 2000 characters (its description and field), so only two fit
+    Assert.assertEquals(3, packed.size());
+    Assert.assertEquals("r2", packed.get(1).getMessage().getTitle());
+  }
+
+  @Test
+  public void pack_unpackableResponsesFlushAroundThem() {
+    MessageEmbed poster = new EmbedBuilder().setTitle("poster").setImage("http://poster").build();
+    MessageEmbed longDescription = new EmbedBuilder().setTitle("long").setDescription(repeat('x', MessageEmbed.VALUE_MAX_LENGTH + 1)).build();
+    DiscordResponse addResponse = new DiscordResponse(new EmbedBuilder().setTitle("alien")
+      .addField(ADD_MOVIE_COMMAND_FIELD_PREFIX, "movie id add alien 348", false).build());
+
+    List<DiscordResponse> packed = DiscordMessagePacker.pack(Arrays.asList(
+      response("a", 1), response("b", 1), new DiscordResponse(poster), response("c", 1),
+      addResponse, new DiscordResponse(longDescription), response("d", 1), response("e", 1)));
+
+    Assert.assertEquals(6, packed.size());
+    Assert.assertEquals("a", packed.get(0).getMessage().getTitle());
+    Assert.assertEquals(3, packed.get(0).getMessage().getFields().size());
+    Assert.assertSame(poster, packed.get(1).getMessage());
+    Assert.assertEquals("c", packed.get(2).getMessage().getTitle());
+    Assert.assertEquals("movie id add alien 348", packed.get(3).getAddCommand());
+    Assert.assertSame(longDescription, packed.get(4).getMessage());
+    Assert.assertEquals("d", packed.get(5).getMessage().getTitle());
+    Assert.assertEquals(3, packed.get(5).getMessage().getFields().size());
+  }
+
+  @Test
+  public void pack_missingHeadingsGetAPlaceholder() {
+    DiscordResponse untitled = new DiscordResponse(new EmbedBuilder().addField("f", "v", false).build());
+    List<DiscordResponse> packed = DiscordMessagePacker.pack(Arrays.asList(response("a", 1), untitled));
+    Assert.assertEquals(1, packed.size());
+    //discord rejects empty field names/values
+    Assert.assertEquals("\u200B", packed.get(0).getMessage().getFields().get(1).getName());
+    Assert.assertEquals("\u200B", packed.get(0).getMessage().getFields().get(1).getValue());
+  }
+
+  private static DiscordResponse response(String title, int fields) {
+    return response(title, fields, "");
+  }
+
+  private static DiscordResponse response(String title, int fields, String fieldPadding) {
+    EmbedBuilder embedBuilder = new EmbedBuilder().setTitle(title).setDescription(title + " description" + fieldPadding);
+    for (int i = 0; i < fields; i++) {
+      embedBuilder.addField(title + i, "value" + fieldPadding, false);
+    }
+    return new DiscordResponse(embedBuilder.build());
+  }
+
+  private static String repeat(char c, int count) {
+    char[] chars = new char[count];
+    Arrays.fill(chars, c);
+    return new String(chars);
+  }
+}
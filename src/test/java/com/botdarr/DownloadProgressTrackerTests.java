@@ -0,0 +1,69 @@
+package com.botdarr;
+
+import com.botdarr.api.DownloadProgress;
+import com.botdarr.api.DownloadProgressTracker;
+import com.botdarr.api.radarr.RadarrQueue;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+public class DownloadProgressTrackerTests {
+  @Test
+  public void getProgress_unknownWithOneSample() {
+    DownloadProgressTracker downloadProgressTracker = new DownloadProgressTracker(STALL_MILLIS);
+    downloadProgressTracker.record(Arrays.asList(getQueueItem(1, 1000)), 0);
+    Assert.assertFalse(downloadProgressTracker.getProgress(1).isKnown());
+    Assert.assertEquals(-1, downloadProgressTracker.getTotalBytesPerSecond(), 0);
+  }
+
+  @Test
+  public void getProgress_etaFromMedianRate() {
+    DownloadProgressTracker downloadProgressTracker = new DownloadProgressTracker(STALL_MILLIS);
+    //10 bytes/s, then a burst of 100 bytes/s, then 10 bytes/s again
+    downloadProgressTracker.record(Arrays.asList(getQueueItem(1, 1000)), 0);
+    downloadProgressTracker.record(Arrays.asList(getQueueItem(1, 900)), 10000);
+    downloadProgressTracker.record(Arrays.asList(getQueueItem(1, 800)), 11000);
+    downloadProgressTracker.record(Arrays.asList(getQueueItem(1, 700)), 21000);
+
+    DownloadProgress downloadProgress = downloadProgressTracker.getProgress(1);
+    //the burst doesn't skew the eta, 700 bytes left at 10 bytes/s
+    Assert.assertEquals(70000, downloadProgress.getEtaMillis());
+    Assert.assertFalse(downloadProgress.isStalled());
+  }
+
+  @Test
+  public void getProgress_stalledWhenSizeleftDoesntChange() {
+    DownloadProgressTracker downloadProgressTracker = new DownloadProgressTracker(STALL_MILLIS);
+    downloadProgressTracker.record(Arrays.asList(getQueueItem(1, 1000)), 0);
+    for (int i = 1; i <= 20; i++) {
+      //more polls than fit in the ring buffer
+      downloadProgressTracker.record(Arrays.asList(getQueueItem(1, 500)), i * TimeUnit.MINUTES.toMillis(1));
+    }
+    Assert.assertTrue(downloadProgressTracker.getProgress(1).isStalled());
+  }
+
+  @Test
+  public void record_evictsDownloadsThatLeftTheQueue() {
+    DownloadProgressTracker downloadProgressTracker = new DownloadProgressTracker(STALL_MILLIS);
+    downloadProgressTracker.record(Arrays.asList(getQueueItem(1, 1000), getQueueItem(2, 1000)), 0);
+    downloadProgressTracker.record(Arrays.asList(getQueueItem(1, 900), getQueueItem(2, 800)), 10000);
+    Assert.assertEquals(30, downloadProgressTracker.getTotalBytesPerSecond(), 0.001);
+
+    downloadProgressTracker.record(Collections.emptyList(), 20000);
+    Assert.assertFalse(downloadProgressTracker.getProgress(1).isKnown());
+    Assert.assertEquals(-1, downloadProgressTracker.getTotalBytesPerSecond(), 0);
+  }
+
+  private RadarrQueue getQueueItem(long id, double sizeleft) {
+    RadarrQueue radarrQueue = new RadarrQueue();
+    radarrQueue.setId(id);
+    radarrQueue.setSize(1000);
+    radarrQueue.setSizeleft(sizeleft);
+    return radarrQueue;
+  }
+
+  private static final long STALL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+}
@@ -0,0 +1,147 @@
+package com.botdarr;
+
+import com.botdarr.clients.OutboundDispatcher;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class OutboundDispatcherTests {
+  @Test
+  public void submit_sendsInOrderAtTheChannelRate() throws Exception {
+    OutboundDispatcher dispatcher = new OutboundDispatcher("test", 2, 50, 1, 100, e -> -1);
+    List<Integer> sent = Collections.synchronizedList(new ArrayList<>());
+    List<CompletableFuture<Integer>> futures = new ArrayList<>();
+    long start = System.nanoTime();
+    for (int i = 0; i < 5; i++) {
+      int message = i;
+      futures.add(dispatcher.submit("channel1", OutboundDispatcher.Priority.BACKGROUND, () -> {
+        sent.add(message);
+        return message;
+      }));
+    }
+    CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+    Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4), sent);
+    //no burst, so each message after the first waits its turn
+    Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 4 * 50 - 10);
+    Assert.assertEquals(5, (long) dispatcher.getMetrics().get("sent background"));
+    Assert.assertEquals(0, (long) dispatcher.getMetrics().get("queued"));
+  }
+
+  @Test
+  public void submit_interactiveGoesAheadOfBackground() throws Exception {
+    OutboundDispatcher dispatcher = new OutboundDispatcher("test", 1, 20, 1, 100, e -> -1);
+    List<String> sent = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch blocked = new CountDownLatch(1);
+    //hold the channel up while everything else queues
+    dispatcher.submit("channel1", OutboundDispatcher.Priority.BACKGROUND, () -> {
+      blocked.await();
+      return null;
+    });
+    for (int i = 0; i < 3; i++) {
+      String message = "notification" + i;
+      dispatcher.submit("channel1", OutboundDispatcher.Priority.BACKGROUND, () -> sent.add(message));
+    }
+    CompletableFuture<Boolean> reply = dispatcher.submit("channel1", OutboundDispatcher.Priority.INTERACTIVE, () -> sent.add("reply"));
+    blocked.countDown();
+    reply.get(5, TimeUnit.SECONDS);
+    Assert.assertEquals("reply", sent.get(0));
+  }
+
+  @Test
+  public void submit_channelsDontWaitOnEachOther() throws Exception {
+    OutboundDispatcher dispatcher = new OutboundDispatcher("test", 2, 1000, 1, 100, e -> -1);
+    dispatcher.submit("channel1", () -> 1).get(5, TimeUnit.SECONDS);
+    //channel1 has to wait a second before its next message, channel2 doesn't
+    CompletableFuture<Integer> channel1 = dispatcher.submit("channel1", () -> 2);
+    Assert.assertEquals(3, (int) dispatcher.submit("channel2", () -> 3).get(500, TimeUnit.MILLISECONDS));
+    Assert.assertFalse(channel1.isDone());
+  }
+
+  @Test
+  public void submit_rateLimitedCallsAreRetried() throws Exception {
+    OutboundDispatcher dispatcher = new OutboundDispatcher("test", 1, 0, 1, 100, e -> e instanceof IllegalStateException ? 50 : -1);
+    int[] attempts = new int[1];
+    CompletableFuture<Integer> future = dispatcher.submit("channel1", () -> {
+      if (attempts[0]++ == 0) {
+        throw new IllegalStateException("429");
+      }
+      return attempts[0];
+    });
+    Assert.assertEquals(2, (int) future.get(5, TimeUnit.SECONDS));
+    Assert.assertEquals(1, (long) dispatcher.getMetrics().get("rate limited"));
+  }
+
+  @Test
+  public void submit_failuresCompleteTheFuture() throws Exception {
+    OutboundDispatcher dispatcher = new OutboundDispatcher("test", 1, 0, 1, 1, e -> -1);
+    CompletableFuture<Integer> failed = dispatcher.submit("channel1", () -> {
+      throw new IOException("connection reset");
+    });
+    try {
+      failed.get(5, TimeUnit.SECONDS);
+      Assert.fail("Expected the send to fail");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof IOException);
+    }
+    Assert.assertEquals(1, (long) dispatcher.getMetrics().get("failed"));
+  }
+
+  @Test
+  public void submit_rejectsWhenTheChannelQueueIsFull() throws Exception {
+    OutboundDispatcher dispatcher = new OutboundDispatcher("test", 1, 1000, 1, 1, e -> -1);
+    dispatcher.submit("channel1", () -> 1).get(5, TimeUnit.SECONDS);
+    //waits on the channel rate, so it is still queued
+    dispatcher.submit("channel1", () -> 2);
+    CompletableFuture<Integer> rejected = dispatcher.submit("channel1", () -> 3);
+    try {
+      rejected.get(1, TimeUnit.SECONDS);
+      Assert.fail("Expected the message to be rejected");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+  }
+
+  @Test
+  public void submitAsync_channelWaitsWithoutHoldingAThread() throws Exception {
+    OutboundDispatcher dispatcher = new OutboundDispatcher("test", 1, 0, 1, 100, e -> -1);
+    List<String> sent = Collections.synchronizedList(new ArrayList<>());
+    CompletableFuture<String> inFlight = new CompletableFuture<>();
+    CompletableFuture<String> first = dispatcher.submitAsync("channel1", OutboundDispatcher.Priority.BACKGROUND, () -> inFlight);
+    CompletableFuture<Boolean> second = dispatcher.submit("channel1", OutboundDispatcher.Priority.BACKGROUND, () -> sent.add("second"));
+    //the only dispatcher thread is free while channel1 waits on its call
+    Assert.assertTrue(dispatcher.submit("channel2", OutboundDispatcher.Priority.BACKGROUND, () -> sent.add("other channel")).get(5, TimeUnit.SECONDS));
+    Assert.assertFalse(second.isDone());
+
+    inFlight.complete("first");
+    Assert.assertEquals("first", first.get(5, TimeUnit.SECONDS));
+    second.get(5, TimeUnit.SECONDS);
+    Assert.assertEquals(Arrays.asList("other channel", "second"), sent);
+  }
+
+  @Test
+  public void submitAsync_rateLimitedCallsAreRetried() throws Exception {
+    OutboundDispatcher dispatcher = new OutboundDispatcher("test", 1, 0, 1, 100, e -> e instanceof IllegalStateException ? 50 : -1);
+    int[] attempts = new int[1];
+    CompletableFuture<Integer> future = dispatcher.submitAsync("channel1", () -> {
+      CompletableFuture<Integer> call = new CompletableFuture<>();
+      if (attempts[0]++ == 0) {
+        call.completeExceptionally(new IllegalStateException("429"));
+      } else {
+        call.complete(attempts[0]);
+      }
+      return call;
+    });
+    Assert.assertEquals(2, (int) future.get(5, TimeUnit.SECONDS));
+    Assert.assertEquals(1, (long) dispatcher.getMetrics().get("rate limited"));
+  }
+}
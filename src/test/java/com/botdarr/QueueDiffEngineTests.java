@@ -0,0 +1,106 @@
+package com.botdarr;
+
+import com.botdarr.api.QueueDiffEngine;
+import com.botdarr.api.QueueEvent;
+import com.botdarr.api.radarr.RadarrQueue;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class QueueDiffEngineTests {
+  @Test
+  public void diff_firstPollOnlyEstablishesState() {
+    QueueDiffEngine queueDiffEngine = new QueueDiffEngine(25, STALL_MILLIS);
+    Assert.assertTrue(queueDiffEngine.diff(Arrays.asList(getQueueItem(1, 100, 50, "downloading", "ok")), 0).isEmpty());
+  }
+
+  @Test
+  public void diff_newDownloadStarted() {
+    QueueDiffEngine queueDiffEngine = new QueueDiffEngine(25, STALL_MILLIS);
+    queueDiffEngine.diff(Collections.emptyList(), 0);
+
+    List<QueueEvent> queueEvents = queueDiffEngine.diff(Arrays.asList(getQueueItem(1, 100, 100, "downloading", "ok")), 1000);
+    Assert.assertEquals(1, queueEvents.size());
+    Assert.assertEquals(QueueEvent.Type.STARTED, queueEvents.get(0).getType());
+  }
+
+  @Test
+  public void diff_progressOnlyReportedPastThreshold() {
+    QueueDiffEngine queueDiffEngine = new QueueDiffEngine(25, STALL_MILLIS);
+    queueDiffEngine.diff(Arrays.asList(getQueueItem(1, 100, 100, "downloading", "ok")), 0);
+
+    //10% isn't enough to report
+    Assert.assertTrue(queueDiffEngine.diff(Arrays.asList(getQueueItem(1, 100, 90, "downloading", "ok")), 1000).isEmpty());
+
+    List<QueueEvent> queueEvents = queueDiffEngine.diff(Arrays.asList(getQueueItem(1, 100, 70, "downloading", "ok")), 2000);
+    Assert.assertEquals(1, queueEvents.size());
+    Assert.assertEquals(QueueEvent.Type.PROGRESSED, queueEvents.get(0).getType());
+    Assert.assertEquals(25, queueEvents.get(0).getProgressPercent());
+
+    //same step doesn't get reported twice
+    Assert.assertTrue(queueDiffEngine.diff(Arrays.asList(getQueueItem(1, 100, 60, "downloading", "ok")), 3000).isEmpty());
+  }
+
+  @Test
+  public void diff_stalledReportedOnce() {
+    QueueDiffEngine queueDiffEngine = new QueueDiffEngine(25, STALL_MILLIS);
+    queueDiffEngine.diff(Arrays.asList(getQueueItem(1, 100, 80, "downloading", "ok")), 0);
+    Assert.assertTrue(queueDiffEngine.diff(Arrays.asList(getQueueItem(1, 100, 80, "downloading", "ok")), STALL_MILLIS - 1).isEmpty());
+
+    List<QueueEvent> queueEvents = queueDiffEngine.diff(Arrays.asList(getQueueItem(1, 100, 80, "downloading", "ok")), STALL_MILLIS);
+    Assert.assertEquals(1, queueEvents.size());
+    Assert.assertEquals(QueueEvent.Type.STALLED, queueEvents.get(0).getType());
+
+    Assert.assertTrue(queueDiffEngine.diff(Arrays.asList(getQueueItem(1, 100, 80, "downloading", "ok")), STALL_MILLIS * 2).isEmpty());
+  }
+
+  @Test
+  public void diff_failedAndCompleted() {
+    QueueDiffEngine queueDiffEngine = new QueueDiffEngine(25, STALL_MILLIS);
+    queueDiffEngine.diff(Arrays.asList(
+      getQueueItem(1, 100, 80, "downloading", "ok"),
+      getQueueItem(2, 100, 0, "downloading", "ok")), 0);
+
+    //download 1 errors out, download 2 leaves the queue since it finished
+    List<QueueEvent> queueEvents = queueDiffEngine.diff(Arrays.asList(getQueueItem(1, 100, 80, "downloading", "error")), 1000);
+    Assert.assertEquals(2, queueEvents.size());
+    Assert.assertEquals(QueueEvent.Type.FAILED, queueEvents.get(0).getType());
+    Assert.assertEquals(QueueEvent.Type.COMPLETED, queueEvents.get(1).getType());
+    Assert.assertEquals(2, queueEvents.get(1).getId());
+
+    //the failed download being removed from the queue isn't reported as completed
+    Assert.assertTrue(queueDiffEngine.diff(Collections.emptyList(), 2000).isEmpty());
+  }
+
+  @Test
+  public void diff_removedBeforeFinishingIsNotCompleted() {
+    QueueDiffEngine queueDiffEngine = new QueueDiffEngine(25, STALL_MILLIS);
+    queueDiffEngine.diff(Arrays.asList(
+      getQueueItem(1, 100, 60, "downloading", "ok"),
+      getQueueItem(2, 100, 5, "importing", "ok")), 0);
+
+    //download 1 was deleted by hand at 40%, download 2 was imported
+    List<QueueEvent> queueEvents = queueDiffEngine.diff(Collections.emptyList(), 1000);
+    Assert.assertEquals(2, queueEvents.size());
+    queueEvents.sort((event1, event2) -> Long.compare(event1.getId(), event2.getId()));
+    Assert.assertEquals(QueueEvent.Type.REMOVED, queueEvents.get(0).getType());
+    Assert.assertEquals(40, queueEvents.get(0).getProgressPercent());
+    Assert.assertEquals(QueueEvent.Type.COMPLETED, queueEvents.get(1).getType());
+  }
+
+  private RadarrQueue getQueueItem(long id, double size, double sizeleft, String status, String trackedDownloadStatus) {
+    RadarrQueue radarrQueue = new RadarrQueue();
+    radarrQueue.setId(id);
+    radarrQueue.setSize(size);
+    radarrQueue.setSizeleft(sizeleft);
+    radarrQueue.setStatus(status);
+    radarrQueue.setTrackedDownloadStatus(trackedDownloadStatus);
+    return radarrQueue;
+  }
+
+  private static final long STALL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+}
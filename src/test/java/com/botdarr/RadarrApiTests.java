@@ -1,5 +1,6 @@
 package com.botdarr;
 
+import com.botdarr.api.DownloadProgress;
 import com.botdarr.api.RadarrApi;
 import com.botdarr.api.radarr.*;
 import com.botdarr.api.sonarr.SonarrProfile;
@@ -10,6 +11,7 @@ import com.botdarr.clients.ChatClientResponseBuilder;
 import com.botdarr.commands.Command;
 import com.botdarr.commands.CommandResponse;
 import com.google.gson.Gson;
+import com.google.gson.JsonParser;
 import mockit.Deencapsulation;
 import org.junit.*;
 import org.junit.rules.TemporaryFolder;
@@ -17,6 +19,7 @@ import org.mockserver.junit.MockServerRule;
 import org.mockserver.model.HttpRequest;
 import org.mockserver.model.HttpResponse;
 import org.mockserver.model.MediaType;
+import org.mockserver.verify.VerificationTimes;
 
 import java.io.File;
 import java.io.FileOutputStream;
@@ -29,6 +32,8 @@ public class RadarrApiTests {
   public void beforeEachTest() throws Exception {
     File propertiesFile = new File(temporaryFolder.getRoot(), "properties");
     Deencapsulation.setField(Config.class, "propertiesPath", propertiesFile.getPath());
+    //other test classes may have already loaded a config pointing somewhere else
+    Deencapsulation.setField(Config.class, "instance", null);
     Properties properties = new Properties();
     properties.setProperty("discord-token", "G$K$GK");
     properties.setProperty("discord-channels", "plex-testing2");
@@ -143,8 +148,8 @@ public class RadarrApiTests {
     List<TestResponse> testResponses = commandResponse.getMultipleChatClientResponses();
     //verify the max (20) even though the mock server returned 40 (see above)
     Assert.assertEquals(20, testResponses.size());
-    //verify the first message is a message about the fact too many movies were returned by the server
-    Assert.assertEquals(testResponses.get(0).responseMessage, "Too many movies found, please narrow search");
+    //verify the first message explains how to page through the rest of the movies returned by the server
+    Assert.assertEquals("Showing new movies 1-19 of 40, use \"results next\" to see more", testResponses.get(0).responseMessage);
   }
 
   @Test
@@ -421,10 +426,97 @@ public class RadarrApiTests {
 
     //verify response data
     List<TestResponse> testResponses = commandResponse.getMultipleChatClientResponses();
-    //even though we sent 30 movies, the api limits it to 20
-    //with the first message being a message about too many movies found
+    //even though we sent 30 movies, the api limits it to 20 per page
+    //with the first message explaining how to page through the rest
     Assert.assertEquals(20, testResponses.size());
-    Assert.assertEquals("Too many movies found, please narrow search", testResponses.get(0).responseMessage);
+    Assert.assertEquals("Showing new movies 1-19 of 30, use \"results next\" to see more", testResponses.get(0).responseMessage);
+  }
+
+  @Test
+  public void handleWebhook_downloadCachesLatestMovie() {
+    RadarrApi radarrApi = new RadarrApi(new TestResponseBuilder());
+    HttpRequest request = HttpRequest.request()
+      .withMethod("GET")
+      .withPath("/api/movie/1001")
+      .withQueryStringParameter("apiKey", "FSJDkjmf#$Kf3");
+
+    RadarrMovie latestRadarrMovie = new RadarrMovie();
+    latestRadarrMovie.setId(1001);
+    latestRadarrMovie.setTmdbId(1001);
+    latestRadarrMovie.setTitle("webhook movie");
+    latestRadarrMovie.setHasFile(true);
+
+    //setup expected response in mock server
+    mockServerRule.getClient()
+      .when(request)
+      .respond(HttpResponse.response()
+        .withStatusCode(200)
+        .withBody(new Gson().toJson(latestRadarrMovie), MediaType.APPLICATION_JSON));
+
+    //trigger api with the (partial) movie radarr sends in its webhooks
+    radarrApi.handleWebhook(new JsonParser().parse(
+      "{\"eventType\":\"Download\",\"movie\":{\"id\":1001,\"title\":\"webhook movie\",\"tmdbId\":1001}}").getAsJsonObject());
+
+    //verify the latest state of the movie was fetched and cached
+    mockServerRule.getClient().verify(request);
+    RadarrCache radarrCache = Deencapsulation.getField(radarrApi, "RADARR_CACHE");
+    Assert.assertTrue(radarrCache.doesMovieExist("webhook movie"));
+    Assert.assertTrue(radarrCache.getExistingMovie(1001).isHasFile());
+  }
+
+  @Test
+  public void handleWebhook_movieDeleteRemovesFromCache() {
+    RadarrApi radarrApi = new RadarrApi(new TestResponseBuilder());
+    RadarrMovie radarrMovie = new RadarrMovie();
+    radarrMovie.setId(1002);
+    radarrMovie.setTmdbId(1002);
+    radarrMovie.setTitle("deleted movie");
+    RadarrCache radarrCache = Deencapsulation.getField(radarrApi, "RADARR_CACHE");
+    radarrCache.add(radarrMovie);
+
+    radarrApi.handleWebhook(new JsonParser().parse(
+      "{\"eventType\":\"MovieDelete\",\"movie\":{\"id\":1002,\"title\":\"deleted movie\",\"tmdbId\":1002}}").getAsJsonObject());
+
+    //verify the movie was removed without calling back into radarr
+    Assert.assertFalse(radarrCache.doesMovieExist("deleted movie"));
+    Assert.assertNull(radarrCache.getExistingMovie(1002));
+    mockServerRule.getClient().verify(HttpRequest.request().withPath("/api/movie/1002"), VerificationTimes.exactly(0));
+  }
+
+  @Test
+  public void handleWebhook_testAndMovielessEventsIgnored() {
+    RadarrApi radarrApi = new RadarrApi(new TestResponseBuilder());
+    radarrApi.handleWebhook(new JsonParser().parse("{\"eventType\":\"Test\",\"movie\":{\"id\":1003,\"tmdbId\":1003}}").getAsJsonObject());
+    radarrApi.handleWebhook(new JsonParser().parse("{\"eventType\":\"Download\"}").getAsJsonObject());
+
+    //verify nothing was fetched or cached
+    mockServerRule.getClient().verify(HttpRequest.request().withPath("/api/movie/1003"), VerificationTimes.exactly(0));
+    RadarrCache radarrCache = Deencapsulation.getField(radarrApi, "RADARR_CACHE");
+    Assert.assertNull(radarrCache.getExistingMovie(1003));
+  }
+
+  @Test
+  public void handleWebhook_malformedEventsIgnored() {
+    RadarrApi radarrApi = new RadarrApi(new TestResponseBuilder());
+    RadarrMovie radarrMovie = new RadarrMovie();
+    radarrMovie.setId(1004);
+    radarrMovie.setTmdbId(1004);
+    radarrMovie.setTitle("kept movie");
+    RadarrCache radarrCache = Deencapsulation.getField(radarrApi, "RADARR_CACHE");
+    radarrCache.add(radarrMovie);
+
+    //none of these throw
+    radarrApi.handleWebhook(new JsonParser().parse("{\"eventType\":null,\"movie\":{\"id\":1004,\"tmdbId\":1004}}").getAsJsonObject());
+    radarrApi.handleWebhook(new JsonParser().parse("{\"eventType\":\"MovieDelete\",\"movie\":null}").getAsJsonObject());
+    radarrApi.handleWebhook(new JsonParser().parse("{\"eventType\":\"MovieDelete\",\"movie\":\"kept movie\"}").getAsJsonObject());
+    //no tmdbId to remove it by
+    radarrApi.handleWebhook(new JsonParser().parse("{\"eventType\":\"MovieDelete\",\"movie\":{\"id\":1004,\"title\":\"kept movie\"}}").getAsJsonObject());
+    //no id to fetch it by
+    radarrApi.handleWebhook(new JsonParser().parse("{\"eventType\":\"Download\",\"movie\":{\"tmdbId\":1004}}").getAsJsonObject());
+
+    //verify nothing was fetched and the cached movie is untouched
+    mockServerRule.getClient().verify(HttpRequest.request().withPath("/api/movie/.*"), VerificationTimes.exactly(0));
+    Assert.assertTrue(radarrCache.doesMovieExist("kept movie"));
   }
 
   private static class TestResponse implements ChatClientResponse {
@@ -467,12 +559,12 @@ public class RadarrApiTests {
     }
 
     @Override
-    public TestResponse getShowDownloadResponses(SonarrQueue sonarrShow) {
+    public TestResponse getShowDownloadResponses(SonarrQueue sonarrShow, DownloadProgress downloadProgress) {
       return new TestResponse();
     }
 
     @Override
-    public TestResponse getMovieDownloadResponses(RadarrQueue radarrQueue) {
+    public TestResponse getMovieDownloadResponses(RadarrQueue radarrQueue, DownloadProgress downloadProgress) {
       return new TestResponse(radarrQueue);
     }
 
@@ -525,6 +617,11 @@ public class RadarrApiTests {
     public TestResponse getDiscoverableMovies(RadarrMovie radarrMovie) {
       return new TestResponse(radarrMovie);
     }
+
+    @Override
+    public TestResponse getStatusBoard(String title, List<String> lines) {
+      return new TestResponse(title);
+    }
   }
 
   @Rule
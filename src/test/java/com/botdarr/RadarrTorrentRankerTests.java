@@ -0,0 +1,70 @@
+package com.botdarr;
+
+import com.botdarr.api.radarr.RadarrTorrent;
+import com.botdarr.api.radarr.RadarrTorrentRanker;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class RadarrTorrentRankerTests {
+  @Test
+  public void getTopTorrents_bestFirstAndLimited() {
+    List<RadarrTorrent> radarrTorrents = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      radarrTorrents.add(getTorrent("release" + i, "hash" + i, i, 10, "indexer1"));
+    }
+    List<RadarrTorrent> topTorrents = getRanker().getTopTorrents(radarrTorrents, 3);
+    Assert.assertEquals(3, topTorrents.size());
+    Assert.assertEquals("release99", topTorrents.get(0).getTitle());
+    Assert.assertEquals("release98", topTorrents.get(1).getTitle());
+    Assert.assertEquals("release97", topTorrents.get(2).getTitle());
+  }
+
+  @Test
+  public void getTopTorrents_duplicateInfoHashesMerged() {
+    RadarrTorrent lessSeeded = getTorrent("release1", "HASH1", 10, 5, "indexer1");
+    RadarrTorrent betterSeeded = getTorrent("release1", "hash1", 10, 50, "indexer2");
+    RadarrTorrent other = getTorrent("release2", "hash2", 10, 5, "indexer1");
+    List<RadarrTorrent> topTorrents = getRanker().getTopTorrents(Arrays.asList(lessSeeded, betterSeeded, other), 10);
+    Assert.assertEquals(2, topTorrents.size());
+    Assert.assertSame(betterSeeded, topTorrents.get(0));
+    Assert.assertSame(other, topTorrents.get(1));
+  }
+
+  @Test
+  public void getTopTorrents_rejectedAndPreferredIndexers() {
+    Map<String, Double> weights = new HashMap<>();
+    weights.put("indexer", 1d);
+    weights.put("rejected", 5d);
+    RadarrTorrentRanker ranker = new RadarrTorrentRanker(weights, Arrays.asList("indexer2", "indexer1"));
+    RadarrTorrent rejected = getTorrent("rejected", "hash1", 10, 5, "indexer2");
+    rejected.setRejected(true);
+    RadarrTorrent preferred = getTorrent("preferred", "hash2", 10, 5, "indexer2");
+    RadarrTorrent other = getTorrent("other", "hash3", 10, 5, "indexer1");
+    List<RadarrTorrent> topTorrents = ranker.getTopTorrents(Arrays.asList(rejected, other, preferred), 10);
+    Assert.assertEquals(Arrays.asList(preferred, other, rejected), topTorrents);
+  }
+
+  private RadarrTorrentRanker getRanker() {
+    Map<String, Double> weights = new HashMap<>();
+    weights.put("quality", 1d);
+    weights.put("seeders", 1d);
+    return new RadarrTorrentRanker(weights, Collections.emptyList());
+  }
+
+  private RadarrTorrent getTorrent(String title, String infoHash, int qualityWeight, int seeders, String indexer) {
+    RadarrTorrent radarrTorrent = new RadarrTorrent();
+    radarrTorrent.setTitle(title);
+    radarrTorrent.setInfoHash(infoHash);
+    radarrTorrent.setQualityWeight(qualityWeight);
+    radarrTorrent.setSeeders(seeders);
+    radarrTorrent.setIndexer(indexer);
+    return radarrTorrent;
+  }
+}
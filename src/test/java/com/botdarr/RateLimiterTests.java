@@ -0,0 +1,50 @@
+package com.botdarr;
+
+import com.botdarr.commands.CommandCost;
+import com.botdarr.commands.RateLimiter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class RateLimiterTests {
+  @Test
+  public void tryAcquire_userLimitedAfterBurst() {
+    RateLimiter rateLimiter = new RateLimiter(3, 0, 0, 1);
+    for (int i = 0; i < 3; i++) {
+      Assert.assertNull(rateLimiter.tryAcquire("user1", "channel1", CommandCost.CHEAP, 0));
+    }
+    RateLimiter.Rejection rejection = rateLimiter.tryAcquire("user1", "channel1", CommandCost.CHEAP, 0);
+    Assert.assertEquals("user", rejection.getLimitName());
+    //one token comes back every 20 seconds
+    Assert.assertEquals(TimeUnit.SECONDS.toMillis(20), rejection.getRetryAfterMillis());
+
+    //other users aren't affected
+    Assert.assertNull(rateLimiter.tryAcquire("user2", "channel1", CommandCost.CHEAP, 0));
+    //and the user can run another command once a token refills
+    Assert.assertNull(rateLimiter.tryAcquire("user1", "channel1", CommandCost.CHEAP, TimeUnit.SECONDS.toNanos(20)));
+    Assert.assertEquals(1, (long) rateLimiter.getRejectionCounts().get("user"));
+  }
+
+  @Test
+  public void tryAcquire_expensiveCommandsWeighMore() {
+    RateLimiter rateLimiter = new RateLimiter(10, 0, 0, 5);
+    Assert.assertNull(rateLimiter.tryAcquire("user1", "channel1", CommandCost.EXPENSIVE, 0));
+    Assert.assertNull(rateLimiter.tryAcquire("user1", "channel1", CommandCost.EXPENSIVE, 0));
+    Assert.assertNotNull(rateLimiter.tryAcquire("user1", "channel1", CommandCost.CHEAP, 0));
+  }
+
+  @Test
+  public void tryAcquire_rejectedCommandsDontUseUpOtherLimits() {
+    RateLimiter rateLimiter = new RateLimiter(10, 10, 1, 1);
+    Assert.assertNull(rateLimiter.tryAcquire("user1", "channel1", CommandCost.EXPENSIVE, 0));
+    //the shared expensive limit is hit
+    RateLimiter.Rejection rejection = rateLimiter.tryAcquire("user1", "channel1", CommandCost.EXPENSIVE, 0);
+    Assert.assertEquals("expensive commands", rejection.getLimitName());
+    //the rejected command didn't count against the user/channel, 9 of 10 are left
+    for (int i = 0; i < 9; i++) {
+      Assert.assertNull(rateLimiter.tryAcquire("user1", "channel1", CommandCost.CHEAP, 0));
+    }
+    Assert.assertEquals("user", rateLimiter.tryAcquire("user1", "channel1", CommandCost.CHEAP, 0).getLimitName());
+  }
+}
@@ -0,0 +1,47 @@
+package com.botdarr;
+
+import com.botdarr.clients.ReactionCommandIndex;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+public class ReactionCommandIndexTests {
+  @Test
+  public void get_returnsIndexedCommands() {
+    ReactionCommandIndex index = new ReactionCommandIndex(10, TimeUnit.HOURS.toMillis(1), null);
+    index.put("C1:123.456", "movie id add Alien 348");
+    Assert.assertEquals("movie id add Alien 348", index.get("C1:123.456"));
+    Assert.assertNull(index.get("C1:999.999"));
+    Assert.assertEquals(1, index.getHits());
+    Assert.assertEquals(1, index.getMisses());
+  }
+
+  @Test
+  public void get_isBounded() {
+    ReactionCommandIndex index = new ReactionCommandIndex(2, TimeUnit.HOURS.toMillis(1), null);
+    for (int i = 0; i < 10; i++) {
+      index.put("message" + i, "show id add Show " + i);
+    }
+    int remembered = 0;
+    for (int i = 0; i < 10; i++) {
+      if (index.get("message" + i) != null) {
+        remembered++;
+      }
+    }
+    Assert.assertTrue(remembered <= 2);
+  }
+
+  @Test
+  public void save_survivesRestarts() throws Exception {
+    File file = File.createTempFile("reaction-index", ".json");
+    file.deleteOnExit();
+    ReactionCommandIndex index = new ReactionCommandIndex(10, TimeUnit.HOURS.toMillis(1), file.getAbsolutePath());
+    index.put("C1:123.456", "movie id add Alien 348");
+    index.save();
+
+    ReactionCommandIndex restarted = new ReactionCommandIndex(10, TimeUnit.HOURS.toMillis(1), file.getAbsolutePath());
+    Assert.assertEquals("movie id add Alien 348", restarted.get("C1:123.456"));
+  }
+}
@@ -0,0 +1,41 @@
+package com.botdarr;
+
+import com.botdarr.api.ResultPipeline;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+public class ResultPipelineTests {
+  @Test
+  public void collect_filterRankAndLimit() {
+    List<Integer> results = ResultPipeline.of(Arrays.asList(5, 8, 1, 9, 4, 7, 2))
+      .filter(result -> result % 2 == 1)
+      .rank(Comparator.reverseOrder())
+      .limit(2)
+      .collect();
+    Assert.assertEquals(Arrays.asList(9, 7), results);
+  }
+
+  @Test
+  public void render_onlyRendersWhatIsKept() {
+    List<Integer> rendered = new ArrayList<>();
+    List<String> responses = ResultPipeline.of(Arrays.asList(1, 2, 3, 4, 5, 6))
+      .filter(result -> result > 1)
+      .limit(3)
+      .render(result -> {
+        rendered.add(result);
+        return "result" + result;
+      });
+    Assert.assertEquals(Arrays.asList("result2", "result3", "result4"), responses);
+    Assert.assertEquals(Arrays.asList(2, 3, 4), rendered);
+  }
+
+  @Test
+  public void collect_unlimitedRankSortsEverything() {
+    Assert.assertEquals(Arrays.asList(1, 2, 3), ResultPipeline.of(Arrays.asList(3, 1, 2)).rank(Comparator.naturalOrder()).collect());
+  }
+}
@@ -0,0 +1,105 @@
+package com.botdarr;
+
+import com.botdarr.clients.ChatClientResponse;
+import com.botdarr.clients.ChatClientResponseBuilder;
+import com.botdarr.commands.CommandContext;
+import com.botdarr.commands.ResultSessions;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ResultSessionsTests {
+  @Test
+  public void paginate_smallResultsRenderedAsIs() {
+    try (CommandContext.Scope ignored = CommandContext.create("user1", "channel1", 0).bind()) {
+      List<ChatClientResponse> responses = ResultSessions.paginate("movies", getResults(5), TestResponse::new, getBuilder());
+      Assert.assertEquals(5, responses.size());
+      Assert.assertEquals("result0", responses.get(0).toString());
+    }
+  }
+
+  @Test
+  public void paginate_onlyCurrentPageRendered() {
+    List<Integer> rendered = new ArrayList<>();
+    try (CommandContext.Scope ignored = CommandContext.create("user2", "channel1", 0).bind()) {
+      List<ChatClientResponse> responses = ResultSessions.paginate("movies", getResults(45), result -> {
+        rendered.add(result);
+        return new TestResponse(result);
+      }, getBuilder());
+      Assert.assertEquals(20, responses.size());
+      Assert.assertEquals("Showing movies 1-19 of 45, use \"results next\" to see more", responses.get(0).toString());
+      Assert.assertEquals(19, rendered.size());
+
+      responses = ResultSessions.next(getBuilder());
+      Assert.assertEquals("Showing movies 20-38 of 45, use \"results next\" to see more", responses.get(0).toString());
+      Assert.assertEquals("result19", responses.get(1).toString());
+
+      responses = ResultSessions.next(getBuilder());
+      Assert.assertEquals(8, responses.size());
+      Assert.assertEquals("Showing movies 39-45 of 45, use \"results prev\" to go back", responses.get(0).toString());
+      Assert.assertEquals("No more movies to show", ResultSessions.next(getBuilder()).get(0).toString());
+
+      responses = ResultSessions.previous(getBuilder());
+      Assert.assertEquals("result19", responses.get(1).toString());
+      Assert.assertEquals(19 + 19 + 7 + 19, rendered.size());
+    }
+  }
+
+  @Test
+  public void paginate_saysWhenOnlyTheBestAreKept() {
+    try (CommandContext.Scope ignored = CommandContext.create("user5", "channel1", 0).bind()) {
+      List<ChatClientResponse> responses = ResultSessions.paginate("downloads", getResults(50), 312, TestResponse::new, getBuilder());
+      Assert.assertEquals("Showing downloads 1-19 of 50 (the best of 312 found), use \"results next\" to see more", responses.get(0).toString());
+      //kept results that fit in one reply still get the header
+      responses = ResultSessions.paginate("downloads", getResults(5), 8, TestResponse::new, getBuilder());
+      Assert.assertEquals(6, responses.size());
+      Assert.assertEquals("Showing downloads 1-5 of 5 (the best of 8 found)", responses.get(0).toString());
+    }
+  }
+
+  @Test
+  public void next_sessionsArePerUser() {
+    try (CommandContext.Scope ignored = CommandContext.create("user3", "channel1", 0).bind()) {
+      ResultSessions.paginate("movies", getResults(45), TestResponse::new, getBuilder());
+    }
+    try (CommandContext.Scope ignored = CommandContext.create("user4", "channel1", 0).bind()) {
+      Assert.assertEquals("No results to page through, run a search first", ResultSessions.next(getBuilder()).get(0).toString());
+    }
+  }
+
+  private List<Integer> getResults(int count) {
+    List<Integer> results = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      results.add(i);
+    }
+    return results;
+  }
+
+  @SuppressWarnings("unchecked")
+  private ChatClientResponseBuilder<TestResponse> getBuilder() {
+    //only the info messages are needed to page
+    return (ChatClientResponseBuilder<TestResponse>) Proxy.newProxyInstance(getClass().getClassLoader(),
+      new Class[] {ChatClientResponseBuilder.class},
+      (proxy, method, args) -> new TestResponse(args[0].toString()));
+  }
+
+  private static class TestResponse implements ChatClientResponse {
+    private TestResponse(int result) {
+      this("result" + result);
+    }
+
+    private TestResponse(String message) {
+      this.message = message;
+    }
+
+    @Override
+    public String toString() {
+      return message;
+    }
+
+    private final String message;
+  }
+}
@@ -0,0 +1,541 @@
+package com.botdarr;
+
+import com.botdarr.slack.SlackConnectionSupervisor;
+import com.botdarr.slack.SlackMetadataCache;
+import com.github.seratch.jslack.api.methods.response.conversations.ConversationsHistoryResponse;
+import com.github.seratch.jslack.api.methods.response.conversations.ConversationsListResponse;
+import com.github.seratch.jslack.api.methods.response.users.UsersInfoResponse;
+import com.github.seratch.jslack.api.methods.response.users.UsersListResponse;
+import com.github.seratch.jslack.api.model.Conversation;
+import com.github.seratch.jslack.api.model.Message;
+import com.github.seratch.jslack.api.model.ResponseMetadata;
+import com.github.seratch.jslack.api.rtm.RTMCloseHandler;
+import com.github.seratch.jslack.api.rtm.RTMErrorHandler;
+import com.github.seratch.jslack.api.rtm.RTMMessageHandler;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+public class SlackConnectionSupervisorTests {
+  @Test
+  public void start_connects() {
+    start();
+    Assert.assertEquals(SlackConnectionSupervisor.State.CONNECTED, supervisor.getState());
+    Assert.assertEquals(1, connection.connects);
+    Assert.assertEquals(0, connection.reconnects);
+    Assert.assertEquals(1L, (long) supervisor.getMetrics().get("connects"));
+  }
+
+  @Test
+  public void start_retriesFailedConnects() {
+    connection.failedConnects = 2;
+    start();
+    Assert.assertEquals(SlackConnectionSupervisor.State.RECONNECTING, supervisor.getState());
+
+    //backoff is at least 250ms, and capped at the 300ms max
+    executor.advance(249);
+    Assert.assertEquals(0, connection.reconnects);
+    executor.advance(51);
+    Assert.assertEquals(1, connection.reconnects);
+    executor.advance(300);
+
+    //the first attempt connects, the retries get a fresh websocket url
+    Assert.assertEquals(SlackConnectionSupervisor.State.CONNECTED, supervisor.getState());
+    Assert.assertEquals(1, connection.connects);
+    Assert.assertEquals(2, connection.reconnects);
+    Assert.assertEquals(2L, (long) supervisor.getMetrics().get("failed connects"));
+  }
+
+  @Test
+  public void close_reconnectsAfterBackoff() {
+    start();
+    connection.close();
+    Assert.assertEquals(SlackConnectionSupervisor.State.RECONNECTING, supervisor.getState());
+    //a second callback for the same outage doesn't schedule another reconnect
+    connection.error(new RuntimeException("connection reset"));
+
+    executor.advance(300);
+    Assert.assertEquals(SlackConnectionSupervisor.State.CONNECTED, supervisor.getState());
+    Assert.assertEquals(1, connection.reconnects);
+    Assert.assertEquals(1L, (long) supervisor.getMetrics().get("reconnects"));
+    //well past any backoff, short of a liveness timeout
+    executor.advance(PING_INTERVAL_MILLIS * 2);
+    Assert.assertEquals(1, connection.reconnects);
+  }
+
+  @Test
+  public void checkLiveness_pingsAndReconnectsWhenPingsGoUnanswered() {
+    start();
+    executor.advance(PING_INTERVAL_MILLIS);
+    Assert.assertEquals(1, connection.sentMessages.size());
+    JsonObject ping = new JsonParser().parse(connection.sentMessages.get(0)).getAsJsonObject();
+    Assert.assertEquals("ping", ping.get("type").getAsString());
+
+    //3 pings go unanswered before the (half open) connection is dropped
+    executor.advance(PING_INTERVAL_MILLIS * 2);
+    Assert.assertEquals(SlackConnectionSupervisor.State.CONNECTED, supervisor.getState());
+    executor.advance(PING_INTERVAL_MILLIS);
+    Assert.assertEquals(SlackConnectionSupervisor.State.RECONNECTING, supervisor.getState());
+    Assert.assertEquals(1, connection.disconnects);
+    Assert.assertEquals(1L, (long) supervisor.getMetrics().get("liveness timeouts"));
+
+    //and replaced
+    executor.advance(300);
+    Assert.assertEquals(SlackConnectionSupervisor.State.CONNECTED, supervisor.getState());
+    Assert.assertEquals(1, connection.reconnects);
+  }
+
+  @Test
+  public void checkLiveness_answeredPingsKeepTheConnection() {
+    start();
+    for (int i = 0; i < 10; i++) {
+      executor.advance(PING_INTERVAL_MILLIS);
+      connection.frame("{\"type\":\"pong\",\"reply_to\":" + (i + 1) + "}");
+    }
+    Assert.assertEquals(10, connection.sentMessages.size());
+    Assert.assertEquals(0, connection.reconnects);
+    Assert.assertEquals(0, connection.disconnects);
+    Assert.assertEquals(SlackConnectionSupervisor.State.CONNECTED, supervisor.getState());
+  }
+
+  @Test
+  public void checkLiveness_onlyWhileConnected() {
+    connection.failedConnects = 1;
+    start();
+    supervisor.checkLiveness();
+    Assert.assertTrue(connection.sentMessages.isEmpty());
+    Assert.assertEquals(0, connection.disconnects);
+  }
+
+  @Test
+  public void catchUp_replaysMissedMessagesOldestFirst() {
+    long nowSeconds = System.currentTimeMillis() / 1000;
+    String handled = (nowSeconds + 1) + ".000100";
+    String missed1 = (nowSeconds + 1) + ".000200";
+    String missed2 = (nowSeconds + 2) + ".000100";
+    //newest first, like slack returns them
+    history.messages.addAll(Arrays.asList(
+      message(missed2, "U1", null, "movie find new alien"),
+      message((nowSeconds + 1) + ".000300", null, "B1", "movie id add alien 348"),
+      message(missed1, "U1", null, "show find new dark"),
+      message(handled, "U1", null, "help")));
+    List<String> caughtUp = new ArrayList<>();
+    supervisor = getSupervisor();
+    supervisor.addCatchUpHandler(caughtUp::add);
+    supervisor.start();
+    executor.advance(0);
+    connection.frame("{\"type\":\"hello\"}");
+    Assert.assertTrue(supervisor.messageSeen("C1", handled));
+
+    connection.close();
+    executor.advance(300);
+
+    //starts after the last handled message, skips it and our own posts
+    Assert.assertEquals(Collections.singletonList(handled), history.oldest);
+    Assert.assertEquals(2, caughtUp.size());
+    JsonObject first = new JsonParser().parse(caughtUp.get(0)).getAsJsonObject();
+    Assert.assertEquals("message", first.get("type").getAsString());
+    Assert.assertEquals("C1", first.get("channel").getAsString());
+    Assert.assertEquals("U1", first.get("user").getAsString());
+    Assert.assertEquals(missed1, first.get("ts").getAsString());
+    Assert.assertEquals("show find new dark", first.get("text").getAsString());
+    Assert.assertEquals(missed2, new JsonParser().parse(caughtUp.get(1)).getAsJsonObject().get("ts").getAsString());
+    Assert.assertEquals(2L, (long) supervisor.getMetrics().get("caught up messages"));
+  }
+
+  @Test
+  public void catchUp_liveMessagesWhileCatchingUpDontHideMissedOnes() {
+    long nowSeconds = System.currentTimeMillis() / 1000;
+    String handled = (nowSeconds + 1) + ".000100";
+    String missed = (nowSeconds + 2) + ".000100";
+    String live = (nowSeconds + 3) + ".000100";
+    history.messages.addAll(Arrays.asList(
+      message(live, "U1", null, "show downloads"),
+      message(missed, "U1", null, "movie downloads")));
+    List<String> caughtUp = new ArrayList<>();
+    supervisor = getSupervisor();
+    //handlers skip what was already handled, like the chat client does
+    supervisor.addCatchUpHandler(frame -> {
+      JsonObject message = new JsonParser().parse(frame).getAsJsonObject();
+      if (supervisor.messageSeen(message.get("channel").getAsString(), message.get("ts").getAsString())) {
+        caughtUp.add(message.get("ts").getAsString());
+      }
+    });
+    supervisor.start();
+    executor.advance(0);
+    connection.frame("{\"type\":\"hello\"}");
+    supervisor.messageSeen("C1", handled);
+
+    connection.close();
+    //a live message gets handled after reconnecting, before the channel is caught up (while channels are refreshed)
+    metadataSource.onListChannels = () -> supervisor.messageSeen("C1", live);
+    executor.advance(300);
+
+    //catching up still starts after the last message handled before the disconnect
+    Assert.assertEquals(Collections.singletonList(handled), history.oldest);
+    Assert.assertEquals(Collections.singletonList(missed), caughtUp);
+  }
+
+  @Test
+  public void catchUp_notOnTheFirstConnect() {
+    history.messages.add(message((System.currentTimeMillis() / 1000) + ".000100", "U1", null, "help"));
+    List<String> caughtUp = new ArrayList<>();
+    supervisor = getSupervisor();
+    supervisor.addCatchUpHandler(caughtUp::add);
+    supervisor.start();
+    executor.advance(0);
+    Assert.assertEquals(SlackConnectionSupervisor.State.CONNECTED, supervisor.getState());
+    Assert.assertTrue(caughtUp.isEmpty());
+    Assert.assertTrue(history.oldest.isEmpty());
+  }
+
+  @Test
+  public void messageSeen_onlyOnce() {
+    supervisor = getSupervisor();
+    Assert.assertTrue(supervisor.messageSeen("C1", "1579212345.000100"));
+    Assert.assertFalse(supervisor.messageSeen("C1", "1579212345.000100"));
+    Assert.assertTrue(supervisor.messageSeen("C2", "1579212345.000100"));
+    //nothing to dedupe on
+    Assert.assertTrue(supervisor.messageSeen("C1", null));
+    Assert.assertTrue(supervisor.messageSeen("C1", null));
+  }
+
+  @Test
+  public void stop_disconnectsAndStopsReconnecting() throws Exception {
+    start();
+    supervisor.stop();
+    Assert.assertEquals(SlackConnectionSupervisor.State.STOPPED, supervisor.getState());
+    Assert.assertEquals(1, connection.disconnects);
+    Assert.assertTrue(executor.isShutdown());
+    supervisor.awaitStopped();
+
+    connection.close();
+    Assert.assertEquals(SlackConnectionSupervisor.State.STOPPED, supervisor.getState());
+    Assert.assertEquals(0, connection.reconnects);
+  }
+
+  @Test
+  public void getBackoffMillis_growsUpToTheMax() {
+    Random random = new Random(42);
+    for (int attempt = 0; attempt < 100; attempt++) {
+      long backoffMillis = SlackConnectionSupervisor.getBackoffMillis(attempt, 60000, random);
+      Assert.assertTrue(backoffMillis >= 250);
+      Assert.assertTrue(backoffMillis <= Math.max(250, Math.min(60000, 1000L << Math.min(attempt, 20))));
+    }
+  }
+
+  @Test
+  public void getBackoffMillis_isJittered() {
+    Random random = new Random(42);
+    long first = SlackConnectionSupervisor.getBackoffMillis(10, 300000, random);
+    long second = SlackConnectionSupervisor.getBackoffMillis(10, 300000, random);
+    Assert.assertTrue(first != second);
+  }
+
+  @Test
+  public void compareTimestamps_comparesNumerically() {
+    Assert.assertTrue(SlackConnectionSupervisor.compareTimestamps("1579212345.000200", "1579212345.000100") > 0);
+    Assert.assertTrue(SlackConnectionSupervisor.compareTimestamps("999999999.000000", "1000000000.000000") < 0);
+    Assert.assertEquals(0, SlackConnectionSupervisor.compareTimestamps("1579212345.000100", "1579212345.000100"));
+  }
+
+  private void start() {
+    supervisor = getSupervisor();
+    supervisor.start();
+    //the first connect runs right away
+    executor.advance(0);
+  }
+
+  private SlackConnectionSupervisor getSupervisor() {
+    SlackMetadataCache metadataCache = new SlackMetadataCache(Collections.singletonList("botdarr"), metadataSource, Runnable::run);
+    //backoff never goes below 250ms, so a 300ms max makes every reconnect happen within 300ms
+    return new SlackConnectionSupervisor(connection, metadataCache, history, 300, TimeUnit.MINUTES.toMillis(10),
+      PING_INTERVAL_MILLIS, executor, () -> TimeUnit.MILLISECONDS.toNanos(executor.now));
+  }
+
+  private static Message message(String ts, String user, String botId, String text) {
+    Message message = new Message();
+    message.setTs(ts);
+    message.setUser(user);
+    message.setBotId(botId);
+    message.setText(text);
+    return message;
+  }
+
+  private static class TestConnection implements SlackConnectionSupervisor.Connection {
+    @Override
+    public void connect() {
+      connects++;
+      failIfRequested();
+    }
+
+    @Override
+    public void reconnect() {
+      reconnects++;
+      failIfRequested();
+    }
+
+    @Override
+    public void disconnect() {
+      disconnects++;
+    }
+
+    @Override
+    public void sendMessage(String message) {
+      sentMessages.add(message);
+    }
+
+    @Override
+    public void addMessageHandler(RTMMessageHandler messageHandler) {
+      messageHandlers.add(messageHandler);
+    }
+
+    @Override
+    public void addCloseHandler(RTMCloseHandler closeHandler) {
+      closeHandlers.add(closeHandler);
+    }
+
+    @Override
+    public void addErrorHandler(RTMErrorHandler errorHandler) {
+      errorHandlers.add(errorHandler);
+    }
+
+    private void frame(String frame) {
+      for (RTMMessageHandler messageHandler : messageHandlers) {
+        messageHandler.handle(frame);
+      }
+    }
+
+    private void close() {
+      for (RTMCloseHandler closeHandler : closeHandlers) {
+        closeHandler.handle(null);
+      }
+    }
+
+    private void error(Throwable throwable) {
+      for (RTMErrorHandler errorHandler : errorHandlers) {
+        errorHandler.handle(throwable);
+      }
+    }
+
+    private void failIfRequested() {
+      if (failedConnects > 0) {
+        failedConnects--;
+        throw new IllegalStateException("slack is down");
+      }
+    }
+
+    private final List<RTMMessageHandler> messageHandlers = new ArrayList<>();
+    private final List<RTMCloseHandler> closeHandlers = new ArrayList<>();
+    private final List<RTMErrorHandler> errorHandlers = new ArrayList<>();
+    private final List<String> sentMessages = new ArrayList<>();
+    private int connects;
+    private int reconnects;
+    private int disconnects;
+    private int failedConnects;
+  }
+
+  private static class TestHistory implements SlackConnectionSupervisor.History {
+    @Override
+    public ConversationsHistoryResponse getMessagesAfter(String channelId, String oldest, int limit) {
+      this.oldest.add(oldest);
+      ConversationsHistoryResponse conversationsHistoryResponse = new ConversationsHistoryResponse();
+      conversationsHistoryResponse.setOk(true);
+      conversationsHistoryResponse.setMessages(new ArrayList<>(messages));
+      return conversationsHistoryResponse;
+    }
+
+    private final List<Message> messages = new ArrayList<>();
+    private final List<String> oldest = new ArrayList<>();
+  }
+
+  private static class TestMetadataSource implements SlackMetadataCache.MetadataSource {
+    @Override
+    public ConversationsListResponse listChannels(String cursor) {
+      onListChannels.run();
+      ConversationsListResponse conversationsListResponse = new ConversationsListResponse();
+      conversationsListResponse.setOk(true);
+      Conversation botdarr = new Conversation();
+      botdarr.setId("C1");
+      botdarr.setName("botdarr");
+      conversationsListResponse.setChannels(Collections.singletonList(botdarr));
+      conversationsListResponse.setResponseMetadata(new ResponseMetadata());
+      return conversationsListResponse;
+    }
+
+    @Override
+    public UsersListResponse listUsers(String cursor) {
+      UsersListResponse usersListResponse = new UsersListResponse();
+      usersListResponse.setOk(true);
+      usersListResponse.setMembers(Collections.emptyList());
+      return usersListResponse;
+    }
+
+    @Override
+    public UsersInfoResponse getUser(String userId) {
+      return new UsersInfoResponse();
+    }
+
+    private Runnable onListChannels = () -> {};
+  }
+
+  /**
+   * Runs scheduled tasks on the test thread, only when the test moves time forward
+   */
+  private static class ManualExecutor extends AbstractExecutorService implements ScheduledExecutorService {
+    @Override
+    public void execute(Runnable command) {
+      schedule(command, 0, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+      return add(command, unit.toMillis(delay), 0);
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+      return add(command, unit.toMillis(initialDelay), unit.toMillis(period));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+      return add(command, unit.toMillis(initialDelay), unit.toMillis(delay));
+    }
+
+    @Override
+    public void shutdown() {
+      shutdown = true;
+      tasks.clear();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+      shutdown();
+      return new ArrayList<>();
+    }
+
+    @Override
+    public boolean isShutdown() {
+      return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+      return shutdown;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+      return shutdown;
+    }
+
+    /**
+     * Moves time forward, running everything that comes due on the way (in order)
+     */
+    private void advance(long millis) {
+      long until = now + millis;
+      while (!tasks.isEmpty() && tasks.peek().runAt <= until) {
+        Task task = tasks.poll();
+        now = Math.max(now, task.runAt);
+        task.command.run();
+        if (task.period > 0 && !shutdown) {
+          task.runAt = now + task.period;
+          tasks.add(task);
+        }
+      }
+      now = until;
+    }
+
+    private Task add(Runnable command, long delayMillis, long periodMillis) {
+      if (shutdown) {
+        throw new RejectedExecutionException("shutdown");
+      }
+      Task task = new Task(command, now + delayMillis, periodMillis, sequence++);
+      tasks.add(task);
+      return task;
+    }
+
+    private class Task implements ScheduledFuture<Object> {
+      private Task(Runnable command, long runAt, long period, long sequence) {
+        this.command = command;
+        this.runAt = runAt;
+        this.period = period;
+        this.sequence = sequence;
+      }
+
+      @Override
+      public long getDelay(TimeUnit unit) {
+        return unit.convert(runAt - now, TimeUnit.MILLISECONDS);
+      }
+
+      @Override
+      public int compareTo(Delayed other) {
+        Task otherTask = (Task) other;
+        return runAt != otherTask.runAt ? Long.compare(runAt, otherTask.runAt) : Long.compare(sequence, otherTask.sequence);
+      }
+
+      @Override
+      public boolean cancel(boolean mayInterruptIfRunning) {
+        return tasks.remove(this);
+      }
+
+      @Override
+      public boolean isCancelled() {
+        return false;
+      }
+
+      @Override
+      public boolean isDone() {
+        return !tasks.contains(this);
+      }
+
+      @Override
+      public Object get() {
+        return null;
+      }
+
+      @Override
+      public Object get(long timeout, TimeUnit unit) {
+        return null;
+      }
+
+      private final Runnable command;
+      private final long period;
+      private final long sequence;
+      private long runAt;
+    }
+
+    private final PriorityQueue<Task> tasks = new PriorityQueue<>();
+    private long now;
+    private long sequence;
+    private boolean shutdown;
+  }
+
+  private final TestConnection connection = new TestConnection();
+  private final TestHistory history = new TestHistory();
+  private final TestMetadataSource metadataSource = new TestMetadataSource();
+  private final ManualExecutor executor = new ManualExecutor();
+  private SlackConnectionSupervisor supervisor;
+  private static final long PING_INTERVAL_MILLIS = 1000;
+}
@@ -0,0 +1,153 @@
+package com.botdarr;
+
+import com.botdarr.clients.ChatClientResponse;
+import com.botdarr.commands.BaseCommand;
+import com.botdarr.commands.Command;
+import com.botdarr.commands.CommandResponse;
+import com.botdarr.commands.CommandRouter;
+import com.botdarr.slack.SlackFrameFilter;
+import com.botdarr.slack.SlackMetadataCache;
+import com.github.seratch.jslack.api.methods.response.conversations.ConversationsListResponse;
+import com.github.seratch.jslack.api.methods.response.users.UsersInfoResponse;
+import com.github.seratch.jslack.api.methods.response.users.UsersListResponse;
+import com.github.seratch.jslack.api.model.Conversation;
+import com.github.seratch.jslack.api.model.ResponseMetadata;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class SlackFrameFilterTests {
+  @Test
+  public void accept_dropsTypingPresenceAndPongs() {
+    SlackFrameFilter frameFilter = getLoadedFilter();
+    Assert.assertFalse(frameFilter.accept("{\"type\":\"user_typing\",\"channel\":\"C1\",\"user\":\"U1\"}"));
+    Assert.assertFalse(frameFilter.accept("{\"type\":\"presence_change\",\"presence\":\"away\",\"user\":\"U1\"}"));
+    Assert.assertFalse(frameFilter.accept("{\"type\":\"pong\",\"reply_to\":3}"));
+    Assert.assertFalse(frameFilter.accept("{\"type\":\"hello\"}"));
+    Assert.assertEquals(4, frameFilter.getDroppedFrames());
+    Assert.assertEquals(0, frameFilter.getAcceptedFrames());
+  }
+
+  @Test
+  public void accept_commandsInConfiguredChannels() {
+    SlackFrameFilter frameFilter = getLoadedFilter();
+    Assert.assertTrue(frameFilter.accept("{\"type\":\"message\",\"channel\":\"C1\",\"user\":\"U1\",\"text\":\"movie find new alien\",\"ts\":\"1579212345.000100\"}"));
+    Assert.assertTrue(frameFilter.accept("{\"type\":\"message\",\"channel\":\"C1\",\"user\":\"U1\",\"text\":\"  help\"}"));
+    Assert.assertEquals(2, frameFilter.getAcceptedFrames());
+  }
+
+  @Test
+  public void accept_dropsChatter() {
+    SlackFrameFilter frameFilter = getLoadedFilter();
+    Assert.assertFalse(frameFilter.accept("{\"type\":\"message\",\"channel\":\"C1\",\"user\":\"U1\",\"text\":\"anyone seen alien?\"}"));
+    //the command has to start the message
+    Assert.assertFalse(frameFilter.accept("{\"type\":\"message\",\"channel\":\"C1\",\"user\":\"U1\",\"text\":\"try movie find new alien\"}"));
+  }
+
+  @Test
+  public void accept_dropsOtherChannels() {
+    SlackFrameFilter frameFilter = getLoadedFilter();
+    Assert.assertFalse(frameFilter.accept("{\"type\":\"message\",\"channel\":\"C2\",\"user\":\"U1\",\"text\":\"movie find new alien\"}"));
+    Assert.assertFalse(frameFilter.accept("{\"type\":\"reaction_added\",\"user\":\"U1\",\"reaction\":\"+1\",\"item\":{\"type\":\"message\",\"channel\":\"C2\",\"ts\":\"1579212345.000100\"}}"));
+  }
+
+  @Test
+  public void accept_dropsBotMessages() {
+    SlackFrameFilter frameFilter = getLoadedFilter();
+    //i.e., our own search results, which carry the add command
+    Assert.assertFalse(frameFilter.accept("{\"type\":\"message\",\"subtype\":\"bot_message\",\"channel\":\"C1\",\"bot_id\":\"B1\"," +
+      "\"text\":\"movie id add alien 348\",\"blocks\":[{\"type\":\"section\",\"text\":{\"type\":\"mrkdwn\",\"text\":\"movie id add alien 348\"}}]}"));
+    Assert.assertFalse(frameFilter.accept("{\"type\":\"message\",\"channel\":\"C1\",\"bot_id\":\"B1\",\"text\":\"help\"}"));
+  }
+
+  @Test
+  public void accept_thumbsUpReactionsInConfiguredChannels() {
+    SlackFrameFilter frameFilter = getLoadedFilter();
+    Assert.assertTrue(frameFilter.accept("{\"type\":\"reaction_added\",\"user\":\"U1\",\"reaction\":\"+1\",\"item\":{\"type\":\"message\",\"channel\":\"C1\",\"ts\":\"1579212345.000100\"}}"));
+    Assert.assertFalse(frameFilter.accept("{\"type\":\"reaction_added\",\"user\":\"U1\",\"reaction\":\"tada\",\"item\":{\"type\":\"message\",\"channel\":\"C1\",\"ts\":\"1579212345.000100\"}}"));
+  }
+
+  @Test
+  public void accept_channelAndUserChanges() {
+    SlackFrameFilter frameFilter = getLoadedFilter();
+    Assert.assertTrue(frameFilter.accept("{\"type\":\"channel_rename\",\"channel\":{\"id\":\"C2\",\"name\":\"botdarr\"}}"));
+    Assert.assertTrue(frameFilter.accept("{\"type\":\"user_change\",\"user\":{\"id\":\"U1\",\"name\":\"alice\"}}"));
+  }
+
+  @Test
+  public void accept_letsMessagesThroughUntilChannelsAreLoaded() {
+    TestMetadataSource metadataSource = new TestMetadataSource();
+    List<Runnable> loads = new ArrayList<>();
+    SlackMetadataCache metadataCache = new SlackMetadataCache(Collections.singletonList("botdarr"), metadataSource, loads::add);
+    SlackFrameFilter frameFilter = new SlackFrameFilter(metadataCache, getCommandRouter());
+
+    //nothing is known about the channels yet, so nothing can be ruled out (without waiting on slack)
+    Assert.assertTrue(frameFilter.accept("{\"type\":\"message\",\"channel\":\"C2\",\"user\":\"U1\",\"text\":\"movie find new alien\"}"));
+    Assert.assertEquals(0, metadataSource.channelLists);
+    Assert.assertEquals(1, loads.size());
+    //typing and chatter are still dropped
+    Assert.assertFalse(frameFilter.accept("{\"type\":\"user_typing\",\"channel\":\"C2\",\"user\":\"U1\"}"));
+    Assert.assertFalse(frameFilter.accept("{\"type\":\"message\",\"channel\":\"C2\",\"user\":\"U1\",\"text\":\"anyone seen alien?\"}"));
+
+    //once the (background) load finished other channels are dropped again
+    loads.get(0).run();
+    Assert.assertFalse(frameFilter.accept("{\"type\":\"message\",\"channel\":\"C2\",\"user\":\"U1\",\"text\":\"movie find new alien\"}"));
+    Assert.assertTrue(frameFilter.accept("{\"type\":\"message\",\"channel\":\"C1\",\"user\":\"U1\",\"text\":\"movie find new alien\"}"));
+  }
+
+  private SlackFrameFilter getLoadedFilter() {
+    SlackMetadataCache metadataCache = new SlackMetadataCache(Collections.singletonList("botdarr"), new TestMetadataSource(), Runnable::run);
+    metadataCache.refresh();
+    return new SlackFrameFilter(metadataCache, getCommandRouter());
+  }
+
+  private CommandRouter getCommandRouter() {
+    List<Command> commands = new ArrayList<>();
+    for (String identifier : Arrays.asList("movie find new", "movie id add", "help")) {
+      commands.add(new BaseCommand(identifier, identifier) {
+        @Override
+        public CommandResponse<? extends ChatClientResponse> execute(String command) {
+          return null;
+        }
+      });
+    }
+    return new CommandRouter(commands);
+  }
+
+  private static class TestMetadataSource implements SlackMetadataCache.MetadataSource {
+    @Override
+    public ConversationsListResponse listChannels(String cursor) {
+      channelLists++;
+      ConversationsListResponse conversationsListResponse = new ConversationsListResponse();
+      conversationsListResponse.setOk(true);
+      Conversation botdarr = new Conversation();
+      botdarr.setId("C1");
+      botdarr.setName("botdarr");
+      Conversation random = new Conversation();
+      random.setId("C2");
+      random.setName("random");
+      conversationsListResponse.setChannels(Arrays.asList(botdarr, random));
+      conversationsListResponse.setResponseMetadata(new ResponseMetadata());
+      return conversationsListResponse;
+    }
+
+    @Override
+    public UsersListResponse listUsers(String cursor) {
+      UsersListResponse usersListResponse = new UsersListResponse();
+      usersListResponse.setOk(true);
+      usersListResponse.setMembers(Collections.emptyList());
+      return usersListResponse;
+    }
+
+    @Override
+    public UsersInfoResponse getUser(String userId) {
+      return new UsersInfoResponse();
+    }
+
+    private int channelLists;
+  }
+}
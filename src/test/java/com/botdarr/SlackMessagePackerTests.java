@@ -0,0 +1,108 @@
+package com.botdarr;
+
+import com.botdarr.slack.SlackMessagePacker;
+import com.botdarr.slack.SlackResponse;
+import com.github.seratch.jslack.api.model.block.DividerBlock;
+import com.github.seratch.jslack.api.model.block.LayoutBlock;
+import com.github.seratch.jslack.api.model.block.SectionBlock;
+import com.github.seratch.jslack.api.model.block.composition.MarkdownTextObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.botdarr.api.RadarrApi.ADD_MOVIE_COMMAND_FIELD_PREFIX;
+
+public class SlackMessagePackerTests {
+  @Test
+  public void pack_responsesShareAMessage() {
+    List<SlackResponse> packed = SlackMessagePacker.pack(Arrays.asList(response("a", 2), response("b", 2), response("c", 2)));
+    Assert.assertEquals(1, packed.size());
+    //each response is followed by a divider
+    Assert.assertEquals(9, packed.get(0).getBlocks().size());
+    Assert.assertEquals("a0", getText(packed.get(0).getBlocks().get(0)));
+    Assert.assertTrue(packed.get(0).getBlocks().get(2) instanceof DividerBlock);
+    Assert.assertEquals("c1", getText(packed.get(0).getBlocks().get(7)));
+  }
+
+  @Test
+  public void pack_staysWithinTheBlockLimit() {
+    List<SlackResponse> responses = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      responses.add(response("r" + i, 2));
+    }
+    List<SlackResponse> packed = SlackMessagePacker.pack(responses);
+    //16 responses (of 3 blocks with the divider) fit in 50 blocks
+    Assert.assertEquals(2, packed.size());
+    Assert.assertEquals(48, packed.get(0).getBlocks().size());
+    Assert.assertEquals(12, packed.get(1).getBlocks().size());
+    Assert.assertEquals("r160", getText(packed.get(1).getBlocks().get(0)));
+  }
+
+  @Test
+  public void pack_responsesAreNotSplitAcrossMessages() {
+    List<SlackResponse> packed = SlackMessagePacker.pack(Arrays.asList(response("a", 30), response("b", 30)));
+    Assert.assertEquals(2, packed.size());
+    Assert.assertEquals(31, packed.get(0).getBlocks().size());
+    Assert.assertEquals("b0", getText(packed.get(1).getBlocks().get(0)));
+  }
+
+  @Test
+  public void pack_responseOverTheBlockLimitIsSplit() {
+    List<SlackResponse> packed = SlackMessagePacker.pack(Arrays.asList(response("a", 2), response("big", 60), response("c", 2)));
+    Assert.assertEquals(3, packed.size());
+    Assert.assertEquals(3, packed.get(0).getBlocks().size());
+    Assert.assertEquals(50, packed.get(1).getBlocks().size());
+    Assert.assertEquals("big0", getText(packed.get(1).getBlocks().get(0)));
+    //the rest of it, then the next response fills in after it
+    Assert.assertEquals(11 + 3, packed.get(2).getBlocks().size());
+    Assert.assertEquals("big50", getText(packed.get(2).getBlocks().get(0)));
+    Assert.assertEquals("c0", getText(packed.get(2).getBlocks().get(11)));
+    for (SlackResponse slackResponse : packed) {
+      Assert.assertTrue(slackResponse.getBlocks().size() <= 50);
+    }
+  }
+
+  @Test
+  public void pack_addCommandsGetTheirOwnMessage() {
+    List<SlackResponse> packed = SlackMessagePacker.pack(Arrays.asList(
+      response("a", 2), response("b", 2), addResponse("alien 348"), response("c", 2), response("d", 2)));
+    Assert.assertEquals(3, packed.size());
+    Assert.assertEquals(6, packed.get(0).getBlocks().size());
+    Assert.assertEquals("alien 348", packed.get(1).getAddCommand());
+    Assert.assertEquals(3, packed.get(1).getBlocks().size());
+    //packing starts over after it
+    Assert.assertEquals("c0", getText(packed.get(2).getBlocks().get(0)));
+    Assert.assertEquals(6, packed.get(2).getBlocks().size());
+  }
+
+  @Test
+  public void pack_nothingToPack() {
+    Assert.assertTrue(SlackMessagePacker.pack(new ArrayList<>()).isEmpty());
+  }
+
+  private static SlackResponse response(String name, int blocks) {
+    SlackResponse slackResponse = new SlackResponse();
+    for (int i = 0; i < blocks; i++) {
+      slackResponse.addBlock(section(name + i));
+    }
+    return slackResponse;
+  }
+
+  private static SlackResponse addResponse(String addCommand) {
+    SlackResponse slackResponse = new SlackResponse();
+    slackResponse.addBlock(section("*Title* - alien"));
+    slackResponse.addBlock(section(ADD_MOVIE_COMMAND_FIELD_PREFIX + " - " + addCommand));
+    return slackResponse;
+  }
+
+  private static SectionBlock section(String text) {
+    return SectionBlock.builder().text(MarkdownTextObject.builder().text(text).build()).build();
+  }
+
+  private static String getText(LayoutBlock layoutBlock) {
+    return ((MarkdownTextObject) ((SectionBlock) layoutBlock).getText()).getText();
+  }
+}
@@ -0,0 +1,241 @@
+package com.botdarr;
+
+import com.botdarr.slack.SlackMetadataCache;
+import com.github.seratch.jslack.api.methods.response.conversations.ConversationsListResponse;
+import com.github.seratch.jslack.api.methods.response.users.UsersInfoResponse;
+import com.github.seratch.jslack.api.methods.response.users.UsersListResponse;
+import com.github.seratch.jslack.api.model.Conversation;
+import com.github.seratch.jslack.api.model.ResponseMetadata;
+import com.github.seratch.jslack.api.model.User;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class SlackMetadataCacheTests {
+  @Test
+  public void refresh_pagesThroughChannelsAndUsers() {
+    TestMetadataSource metadataSource = new TestMetadataSource();
+    metadataSource.channelPages.put(null, channelPage("page2", channel("C1", "botdarr"), channel("C2", "random")));
+    metadataSource.channelPages.put("page2", channelPage(null, channel("C3", "botdarr-shows")));
+    metadataSource.userPages.put(null, userPage("page2", user("U1", "alice")));
+    metadataSource.userPages.put("page2", userPage(null, user("U2", "bob")));
+    SlackMetadataCache metadataCache = new SlackMetadataCache(Arrays.asList("botdarr", "botdarr-shows"), metadataSource, Runnable::run);
+
+    metadataCache.refresh();
+
+    Assert.assertTrue(metadataCache.isLoaded());
+    Assert.assertEquals(Arrays.asList("C1", "C3"), sorted(metadataCache.getChannelIds()));
+    //both pages of users were cached, so neither needs a lookup
+    Assert.assertEquals("alice", metadataCache.getUserName("U1"));
+    Assert.assertEquals("bob", metadataCache.getUserName("U2"));
+    Assert.assertEquals(0, metadataSource.userLookups);
+  }
+
+  @Test
+  public void refresh_failedListKeepsPreviousChannels() {
+    TestMetadataSource metadataSource = new TestMetadataSource();
+    metadataSource.channelPages.put(null, channelPage(null, channel("C1", "botdarr")));
+    SlackMetadataCache metadataCache = new SlackMetadataCache(Collections.singletonList("botdarr"), metadataSource, Runnable::run);
+    metadataCache.refresh();
+
+    ConversationsListResponse failedResponse = new ConversationsListResponse();
+    failedResponse.setOk(false);
+    failedResponse.setError("ratelimited");
+    metadataSource.channelPages.put(null, failedResponse);
+    metadataCache.refresh();
+
+    Assert.assertEquals(Collections.singletonList("C1"), metadataCache.getChannelIds());
+  }
+
+  @Test
+  public void handleEvent_channelCreatedRenamedAndDeleted() {
+    SlackMetadataCache metadataCache = loadedCache(Collections.singletonList("botdarr"));
+
+    Assert.assertTrue(metadataCache.handleEvent(parse("{\"type\":\"channel_created\",\"channel\":{\"id\":\"C9\",\"name\":\"botdarr\"}}")));
+    Assert.assertEquals(Collections.singletonList("C9"), metadataCache.getChannelIds());
+
+    //renamed away from the configured name
+    Assert.assertTrue(metadataCache.handleEvent(parse("{\"type\":\"channel_rename\",\"channel\":{\"id\":\"C9\",\"name\":\"old-botdarr\"}}")));
+    Assert.assertTrue(metadataCache.getChannelIds().isEmpty());
+
+    //and back again
+    Assert.assertTrue(metadataCache.handleEvent(parse("{\"type\":\"channel_rename\",\"channel\":{\"id\":\"C9\",\"name\":\"botdarr\"}}")));
+    Assert.assertEquals(Collections.singletonList("C9"), metadataCache.getChannelIds());
+
+    Assert.assertTrue(metadataCache.handleEvent(parse("{\"type\":\"channel_deleted\",\"channel\":\"C9\"}")));
+    Assert.assertTrue(metadataCache.getChannelIds().isEmpty());
+  }
+
+  @Test
+  public void handleEvent_userChange() {
+    TestMetadataSource metadataSource = new TestMetadataSource();
+    metadataSource.userPages.put(null, userPage(null, user("U1", "alice")));
+    SlackMetadataCache metadataCache = new SlackMetadataCache(Collections.singletonList("botdarr"), metadataSource, Runnable::run);
+    metadataCache.refresh();
+
+    Assert.assertTrue(metadataCache.handleEvent(parse("{\"type\":\"user_change\",\"user\":{\"id\":\"U1\",\"name\":\"alice2\"}}")));
+    Assert.assertTrue(metadataCache.handleEvent(parse("{\"type\":\"team_join\",\"user\":{\"id\":\"U2\",\"name\":\"bob\"}}")));
+
+    Assert.assertEquals("alice2", metadataCache.getUserName("U1"));
+    Assert.assertEquals("bob", metadataCache.getUserName("U2"));
+    Assert.assertEquals(0, metadataSource.userLookups);
+  }
+
+  @Test
+  public void handleEvent_otherEventsIgnored() {
+    SlackMetadataCache metadataCache = loadedCache(Collections.singletonList("botdarr"));
+    Assert.assertFalse(metadataCache.handleEvent(parse("{\"type\":\"message\",\"channel\":\"C1\",\"text\":\"movie find new x\"}")));
+    Assert.assertFalse(metadataCache.handleEvent(parse("{\"text\":\"no type\"}")));
+  }
+
+  @Test
+  public void getUserName_looksUpUnknownUsersOnce() {
+    TestMetadataSource metadataSource = new TestMetadataSource();
+    metadataSource.users.put("U5", user("U5", "carol"));
+    SlackMetadataCache metadataCache = new SlackMetadataCache(Collections.singletonList("botdarr"), metadataSource, Runnable::run);
+
+    Assert.assertEquals("carol", metadataCache.getUserName("U5"));
+    Assert.assertEquals("carol", metadataCache.getUserName("U5"));
+    Assert.assertEquals(1, metadataSource.userLookups);
+  }
+
+  @Test
+  public void getUserName_fallsBackToUserId() {
+    TestMetadataSource metadataSource = new TestMetadataSource();
+    SlackMetadataCache metadataCache = new SlackMetadataCache(Collections.singletonList("botdarr"), metadataSource, Runnable::run);
+
+    //not found
+    Assert.assertEquals("U6", metadataCache.getUserName("U6"));
+
+    //slack unreachable
+    metadataSource.failUserLookups = true;
+    Assert.assertEquals("U7", metadataCache.getUserName("U7"));
+  }
+
+  @Test
+  public void getChannelIds_neverBlocksOnTheFirstLoad() {
+    TestMetadataSource metadataSource = new TestMetadataSource();
+    metadataSource.channelPages.put(null, channelPage(null, channel("C1", "botdarr")));
+    List<Runnable> loads = new ArrayList<>();
+    SlackMetadataCache metadataCache = new SlackMetadataCache(Collections.singletonList("botdarr"), metadataSource, loads::add);
+
+    //nothing loaded yet, so nothing is returned and exactly one load is started
+    Assert.assertTrue(metadataCache.getChannelIds().isEmpty());
+    Assert.assertTrue(metadataCache.getChannelIds().isEmpty());
+    Assert.assertEquals(1, loads.size());
+    Assert.assertEquals(0, metadataSource.channelLists);
+
+    loads.get(0).run();
+    Assert.assertTrue(metadataCache.isLoaded());
+    Assert.assertEquals(Collections.singletonList("C1"), metadataCache.getChannelIds());
+    Assert.assertEquals(1, loads.size());
+  }
+
+  @Test
+  public void loadChannelIds_loadsRightAway() {
+    TestMetadataSource metadataSource = new TestMetadataSource();
+    metadataSource.channelPages.put(null, channelPage(null, channel("C1", "botdarr")));
+    List<Runnable> loads = new ArrayList<>();
+    SlackMetadataCache metadataCache = new SlackMetadataCache(Collections.singletonList("botdarr"), metadataSource, loads::add);
+
+    Assert.assertEquals(Collections.singletonList("C1"), metadataCache.loadChannelIds());
+    Assert.assertTrue(loads.isEmpty());
+  }
+
+  private SlackMetadataCache loadedCache(List<String> configuredChannelNames) {
+    SlackMetadataCache metadataCache = new SlackMetadataCache(configuredChannelNames, new TestMetadataSource(), Runnable::run);
+    metadataCache.refresh();
+    return metadataCache;
+  }
+
+  private static JsonObject parse(String json) {
+    return new JsonParser().parse(json).getAsJsonObject();
+  }
+
+  private static List<String> sorted(List<String> values) {
+    List<String> sortedValues = new ArrayList<>(values);
+    Collections.sort(sortedValues);
+    return sortedValues;
+  }
+
+  private static Conversation channel(String id, String name) {
+    Conversation conversation = new Conversation();
+    conversation.setId(id);
+    conversation.setName(name);
+    return conversation;
+  }
+
+  private static User user(String id, String name) {
+    User user = new User();
+    user.setId(id);
+    user.setName(name);
+    return user;
+  }
+
+  private static ResponseMetadata nextCursor(String cursor) {
+    ResponseMetadata responseMetadata = new ResponseMetadata();
+    responseMetadata.setNextCursor(cursor == null ? "" : cursor);
+    return responseMetadata;
+  }
+
+  private static ConversationsListResponse channelPage(String nextCursor, Conversation... channels) {
+    ConversationsListResponse conversationsListResponse = new ConversationsListResponse();
+    conversationsListResponse.setOk(true);
+    conversationsListResponse.setChannels(Arrays.asList(channels));
+    conversationsListResponse.setResponseMetadata(nextCursor(nextCursor));
+    return conversationsListResponse;
+  }
+
+  private static UsersListResponse userPage(String nextCursor, User... users) {
+    UsersListResponse usersListResponse = new UsersListResponse();
+    usersListResponse.setOk(true);
+    usersListResponse.setMembers(Arrays.asList(users));
+    usersListResponse.setResponseMetadata(nextCursor(nextCursor));
+    return usersListResponse;
+  }
+
+  private static class TestMetadataSource implements SlackMetadataCache.MetadataSource {
+    @Override
+    public ConversationsListResponse listChannels(String cursor) {
+      channelLists++;
+      ConversationsListResponse conversationsListResponse = channelPages.get(cursor);
+      return conversationsListResponse == null ? channelPage(null) : conversationsListResponse;
+    }
+
+    @Override
+    public UsersListResponse listUsers(String cursor) {
+      UsersListResponse usersListResponse = userPages.get(cursor);
+      return usersListResponse == null ? userPage(null) : usersListResponse;
+    }
+
+    @Override
+    public UsersInfoResponse getUser(String userId) throws IOException {
+      userLookups++;
+      if (failUserLookups) {
+        throw new IOException("slack is down");
+      }
+      UsersInfoResponse usersInfoResponse = new UsersInfoResponse();
+      User user = users.get(userId);
+      usersInfoResponse.setOk(user != null);
+      usersInfoResponse.setUser(user);
+      usersInfoResponse.setError(user == null ? "user_not_found" : null);
+      return usersInfoResponse;
+    }
+
+    private final Map<String, ConversationsListResponse> channelPages = new HashMap<>();
+    private final Map<String, UsersListResponse> userPages = new HashMap<>();
+    private final Map<String, User> users = new HashMap<>();
+    private int channelLists;
+    private int userLookups;
+    private boolean failUserLookups;
+  }
+}
@@ -0,0 +1,149 @@
+package com.botdarr;
+
+import com.botdarr.api.CachedDataType;
+import com.botdarr.api.SnapshotCache;
+import mockit.Deencapsulation;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SnapshotCacheTests {
+  @Before
+  public void beforeEachTest() throws Exception {
+    Deencapsulation.setField(Config.class, "instance", null);
+    File propertiesFile = new File(temporaryFolder.getRoot(), "properties");
+    Deencapsulation.setField(Config.class, "propertiesPath", propertiesFile.getPath());
+    Properties properties = new Properties();
+    properties.setProperty("discord-token", "G$K$GK");
+    properties.setProperty("discord-channels", "plex-testing2");
+    //refresh after 10 seconds, serve stale data for up to a minute
+    properties.setProperty(String.format(Config.Constants.CACHE_REFRESH_SECONDS_FORMAT, CachedDataType.DOWNLOADS.getName()), "10");
+    properties.setProperty(String.format(Config.Constants.CACHE_MAX_STALE_SECONDS_FORMAT, CachedDataType.DOWNLOADS.getName()), "60");
+    try (FileOutputStream fos = new FileOutputStream(propertiesFile)) {
+      properties.store(fos, "");
+    }
+  }
+
+  @After
+  public void afterEachTest() {
+    Deencapsulation.setField(Config.class, "instance", null);
+  }
+
+  @Test
+  public void get_loadsOnceAndServesFreshSnapshots() throws Exception {
+    Assert.assertEquals("v1", snapshotCache.get("key", loader).getValue());
+    now += TimeUnit.SECONDS.toMillis(10);
+    SnapshotCache.Snapshot<String> snapshot = snapshotCache.get("key", loader);
+    Assert.assertEquals("v1", snapshot.getValue());
+    Assert.assertFalse(snapshot.isStale());
+    Assert.assertEquals(TimeUnit.SECONDS.toMillis(10), snapshot.getAgeMillis());
+    Assert.assertEquals(1, loads.get());
+    Assert.assertTrue(refreshes.isEmpty());
+  }
+
+  @Test
+  public void get_servesStaleSnapshotsWhileRefreshingInTheBackground() throws Exception {
+    snapshotCache.get("key", loader);
+    now += TimeUnit.SECONDS.toMillis(11);
+
+    SnapshotCache.Snapshot<String> snapshot = snapshotCache.get("key", loader);
+    Assert.assertEquals("v1", snapshot.getValue());
+    Assert.assertTrue(snapshot.isStale());
+    Assert.assertFalse(snapshot.isRefreshFailed());
+    //the refresh hasn't run, so the backend wasn't waited on
+    Assert.assertEquals(1, loads.get());
+    //and only one refresh is started no matter how often the snapshot is asked for
+    snapshotCache.get("key", loader);
+    Assert.assertEquals(1, refreshes.size());
+
+    refreshes.get(0).run();
+    snapshot = snapshotCache.get("key", loader);
+    Assert.assertEquals("v2", snapshot.getValue());
+    Assert.assertFalse(snapshot.isStale());
+    Assert.assertEquals(0, snapshot.getAgeMillis());
+  }
+
+  @Test
+  public void get_failedRefreshKeepsServingTheStaleSnapshot() throws Exception {
+    snapshotCache.get("key", loader);
+    now += TimeUnit.SECONDS.toMillis(30);
+    snapshotCache.get("key", loader);
+    failLoads = true;
+    refreshes.get(0).run();
+
+    SnapshotCache.Snapshot<String> snapshot = snapshotCache.get("key", loader);
+    Assert.assertEquals("v1", snapshot.getValue());
+    Assert.assertTrue(snapshot.isStale());
+    Assert.assertTrue(snapshot.isRefreshFailed());
+    //the failed refresh can be retried
+    Assert.assertEquals(2, refreshes.size());
+  }
+
+  @Test
+  public void get_waitsOnTheBackendPastMaxStale() throws Exception {
+    snapshotCache.get("key", loader);
+    now += TimeUnit.SECONDS.toMillis(61);
+
+    SnapshotCache.Snapshot<String> snapshot = snapshotCache.get("key", loader);
+    Assert.assertEquals("v2", snapshot.getValue());
+    Assert.assertFalse(snapshot.isStale());
+    Assert.assertTrue(refreshes.isEmpty());
+  }
+
+  @Test
+  public void get_firstLoadFailureIsThrown() throws Exception {
+    failLoads = true;
+    try {
+      snapshotCache.get("key", loader);
+      Assert.fail("Expected the load to fail");
+    } catch (IOException e) {
+      //nothing to serve, so the backend error is the answer
+    }
+  }
+
+  @Test
+  public void put_replacesTheSnapshot() throws Exception {
+    snapshotCache.get("key", loader);
+    now += TimeUnit.SECONDS.toMillis(30);
+    snapshotCache.put("key", "pushed");
+
+    SnapshotCache.Snapshot<String> snapshot = snapshotCache.get("key", loader);
+    Assert.assertEquals("pushed", snapshot.getValue());
+    Assert.assertFalse(snapshot.isStale());
+    Assert.assertEquals(1, loads.get());
+  }
+
+  @Test
+  public void getAgeDescription() throws Exception {
+    snapshotCache.get("key", loader);
+    now += TimeUnit.SECONDS.toMillis(45);
+    Assert.assertEquals("45 seconds", snapshotCache.get("key", loader).getAgeDescription());
+    snapshotCache.put("key", "v1");
+    //right at max stale
+    now += TimeUnit.SECONDS.toMillis(60);
+    Assert.assertEquals("1 minutes", snapshotCache.get("key", loader).getAgeDescription());
+  }
+
+  private final List<Runnable> refreshes = new ArrayList<>();
+  private final AtomicInteger loads = new AtomicInteger();
+  private long now = TimeUnit.DAYS.toMillis(1);
+  private boolean failLoads;
+  private final SnapshotCache.Loader<String> loader = () -> {
+    if (failLoads) {
+      throw new IOException("backend down");
+    }
+    return "v" + loads.incrementAndGet();
+  };
+  private final SnapshotCache<String, String> snapshotCache = new SnapshotCache<>(CachedDataType.DOWNLOADS, 10, refreshes::add, () -> now);
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+}
@@ -0,0 +1,249 @@
+package com.botdarr;
+
+import com.botdarr.api.DownloadProgress;
+import com.botdarr.api.SonarrApi;
+import com.botdarr.api.radarr.RadarrMovie;
+import com.botdarr.api.radarr.RadarrProfile;
+import com.botdarr.api.radarr.RadarrQueue;
+import com.botdarr.api.radarr.RadarrTorrent;
+import com.botdarr.api.sonarr.SonarrCache;
+import com.botdarr.api.sonarr.SonarrProfile;
+import com.botdarr.api.sonarr.SonarrQueue;
+import com.botdarr.api.sonarr.SonarrShow;
+import com.botdarr.clients.ChatClientResponse;
+import com.botdarr.clients.ChatClientResponseBuilder;
+import com.botdarr.commands.Command;
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+import mockit.Deencapsulation;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import org.mockserver.junit.MockServerRule;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.model.MediaType;
+import org.mockserver.verify.VerificationTimes;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+import java.util.Properties;
+
+public class SonarrApiTests {
+  @Before
+  public void beforeEachTest() throws Exception {
+    File propertiesFile = new File(temporaryFolder.getRoot(), "properties");
+    Deencapsulation.setField(Config.class, "propertiesPath", propertiesFile.getPath());
+    //other test classes may have already loaded a config pointing somewhere else
+    Deencapsulation.setField(Config.class, "instance", null);
+    Properties properties = new Properties();
+    properties.setProperty("discord-token", "G$K$GK");
+    properties.setProperty("discord-channels", "plex-testing2");
+    properties.setProperty("sonarr-url", "http://localhost:" + mockServerRule.getPort());
+    properties.setProperty("sonarr-token", "FSJDkjmf#$Kf3");
+    properties.setProperty("sonarr-path", "/shows");
+    properties.setProperty("sonarr-default-profile", "any");
+    try (FileOutputStream fos = new FileOutputStream(propertiesFile)) {
+      properties.store(fos, "");
+    }
+  }
+
+  @After
+  public void afterEachTest() {
+    mockServerRule.getClient().reset();
+  }
+
+  @Test
+  public void handleWebhook_downloadCachesLatestShow() {
+    SonarrApi sonarrApi = new SonarrApi(new TestResponseBuilder());
+    HttpRequest request = HttpRequest.request()
+      .withMethod("GET")
+      .withPath("/api/series/2001")
+      .withQueryStringParameter("apiKey", "FSJDkjmf#$Kf3");
+
+    SonarrShow latestSonarrShow = new SonarrShow();
+    latestSonarrShow.setId(2001);
+    latestSonarrShow.setTvdbId(2001);
+    latestSonarrShow.setTitle("webhook show");
+    latestSonarrShow.setSeasonCount(3);
+
+    //setup expected response in mock server
+    mockServerRule.getClient()
+      .when(request)
+      .respond(HttpResponse.response()
+        .withStatusCode(200)
+        .withBody(new Gson().toJson(latestSonarrShow), MediaType.APPLICATION_JSON));
+
+    //trigger api with the (partial) series sonarr sends in its webhooks
+    sonarrApi.handleWebhook(new JsonParser().parse(
+      "{\"eventType\":\"Download\",\"series\":{\"id\":2001,\"title\":\"webhook show\",\"tvdbId\":2001}}").getAsJsonObject());
+
+    //verify the latest state of the show was fetched and cached
+    mockServerRule.getClient().verify(request);
+    SonarrCache sonarrCache = Deencapsulation.getField(sonarrApi, "SONARR_CACHE");
+    Assert.assertTrue(sonarrCache.doesShowExist("webhook show"));
+    Assert.assertEquals(3, sonarrCache.getExistingShowFromTvdbId(2001).getSeasonCount());
+  }
+
+  @Test
+  public void handleWebhook_seriesDeleteRemovesFromCache() {
+    SonarrApi sonarrApi = new SonarrApi(new TestResponseBuilder());
+    SonarrShow sonarrShow = new SonarrShow();
+    sonarrShow.setId(2002);
+    sonarrShow.setTvdbId(2002);
+    sonarrShow.setTitle("deleted show");
+    SonarrCache sonarrCache = Deencapsulation.getField(sonarrApi, "SONARR_CACHE");
+    sonarrCache.add(sonarrShow);
+
+    sonarrApi.handleWebhook(new JsonParser().parse(
+      "{\"eventType\":\"SeriesDelete\",\"series\":{\"id\":2002,\"title\":\"deleted show\",\"tvdbId\":2002}}").getAsJsonObject());
+
+    //verify the show was removed without calling back into sonarr
+    Assert.assertFalse(sonarrCache.doesShowExist("deleted show"));
+    Assert.assertNull(sonarrCache.getExistingShowFromTvdbId(2002));
+    mockServerRule.getClient().verify(HttpRequest.request().withPath("/api/series/2002"), VerificationTimes.exactly(0));
+  }
+
+  @Test
+  public void handleWebhook_testAndSerieslessEventsIgnored() {
+    SonarrApi sonarrApi = new SonarrApi(new TestResponseBuilder());
+    sonarrApi.handleWebhook(new JsonParser().parse("{\"eventType\":\"Test\",\"series\":{\"id\":2003,\"tvdbId\":2003}}").getAsJsonObject());
+    sonarrApi.handleWebhook(new JsonParser().parse("{\"eventType\":\"Download\"}").getAsJsonObject());
+
+    //verify nothing was fetched or cached
+    mockServerRule.getClient().verify(HttpRequest.request().withPath("/api/series/2003"), VerificationTimes.exactly(0));
+    SonarrCache sonarrCache = Deencapsulation.getField(sonarrApi, "SONARR_CACHE");
+    Assert.assertNull(sonarrCache.getExistingShowFromTvdbId(2003));
+  }
+  @Test
+  public void handleWebhook_malformedEventsIgnored() {
+    SonarrApi sonarrApi = new SonarrApi(new TestResponseBuilder());
+    SonarrShow sonarrShow = new SonarrShow();
+    sonarrShow.setId(2004);
+    sonarrShow.setTvdbId(2004);
+    sonarrShow.setTitle("kept show");
+    SonarrCache sonarrCache = Deencapsulation.getField(sonarrApi, "SONARR_CACHE");
+    sonarrCache.add(sonarrShow);
+
+    //none of these throw
+    sonarrApi.handleWebhook(new JsonParser().parse("{\"eventType\":null,\"series\":{\"id\":2004,\"tvdbId\":2004}}").getAsJsonObject());
+    sonarrApi.handleWebhook(new JsonParser().parse("{\"eventType\":\"SeriesDelete\",\"series\":null}").getAsJsonObject());
+    sonarrApi.handleWebhook(new JsonParser().parse("{\"eventType\":\"SeriesDelete\",\"series\":\"kept show\"}").getAsJsonObject());
+    //no tvdbId to remove it by
+    sonarrApi.handleWebhook(new JsonParser().parse("{\"eventType\":\"SeriesDelete\",\"series\":{\"id\":2004,\"title\":\"kept show\"}}").getAsJsonObject());
+    //no id to fetch it by
+    sonarrApi.handleWebhook(new JsonParser().parse("{\"eventType\":\"Download\",\"series\":{\"tvdbId\":2004}}").getAsJsonObject());
+
+    //verify nothing was fetched and the cached show is untouched
+    mockServerRule.getClient().verify(HttpRequest.request().withPath("/api/series/.*"), VerificationTimes.exactly(0));
+    Assert.assertTrue(sonarrCache.doesShowExist("kept show"));
+  }
+
+
+  private static class TestResponse implements ChatClientResponse {
+    private TestResponse() {}
+    private TestResponse(String responseMessage) {
+      this.responseMessage = responseMessage;
+    }
+    private TestResponse(SonarrShow sonarrShow) {
+      this.sonarrShow = sonarrShow;
+    }
+
+    private String responseMessage;
+    private SonarrShow sonarrShow;
+  }
+
+  private static class TestResponseBuilder implements ChatClientResponseBuilder<TestResponse> {
+
+    @Override
+    public TestResponse getHelpResponse() {
+      return new TestResponse();
+    }
+
+    @Override
+    public TestResponse getMoviesHelpResponse(List<Command> radarrCommands) {
+      return new TestResponse();
+    }
+
+    @Override
+    public TestResponse getShowsHelpResponse(List<Command> sonarrCommands) {
+      return new TestResponse();
+    }
+
+    @Override
+    public TestResponse getShowResponse(SonarrShow show) {
+      return new TestResponse(show);
+    }
+
+    @Override
+    public TestResponse getShowDownloadResponses(SonarrQueue sonarrShow, DownloadProgress downloadProgress) {
+      return new TestResponse();
+    }
+
+    @Override
+    public TestResponse getMovieDownloadResponses(RadarrQueue radarrQueue, DownloadProgress downloadProgress) {
+      return new TestResponse();
+    }
+
+    @Override
+    public TestResponse createErrorMessage(String message) {
+      return new TestResponse(message);
+    }
+
+    @Override
+    public TestResponse createInfoMessage(String message) {
+      return new TestResponse(message);
+    }
+
+    @Override
+    public TestResponse createSuccessMessage(String message) {
+      return new TestResponse(message);
+    }
+
+    @Override
+    public TestResponse getTorrentResponses(RadarrTorrent radarrTorrent, String movieTitle) {
+      return new TestResponse();
+    }
+
+    @Override
+    public TestResponse getShowProfile(SonarrProfile sonarrProfile) {
+      return new TestResponse();
+    }
+
+    @Override
+    public TestResponse getMovieProfile(RadarrProfile radarrProfile) {
+      return new TestResponse();
+    }
+
+    @Override
+    public TestResponse getNewOrExistingShow(SonarrShow sonarrShow, SonarrShow existingShow, boolean findNew) {
+      return new TestResponse(sonarrShow);
+    }
+
+    @Override
+    public TestResponse getNewOrExistingMovie(RadarrMovie lookupMovie, RadarrMovie existingMovie, boolean findNew) {
+      return new TestResponse();
+    }
+
+    @Override
+    public TestResponse getMovie(RadarrMovie radarrMovie) {
+      return new TestResponse();
+    }
+
+    @Override
+    public TestResponse getDiscoverableMovies(RadarrMovie radarrMovie) {
+      return new TestResponse();
+    }
+
+    @Override
+    public TestResponse getStatusBoard(String title, List<String> lines) {
+      return new TestResponse(title);
+    }
+  }
+
+  @Rule
+  public MockServerRule mockServerRule = new MockServerRule(this);
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+}
@@ -0,0 +1,187 @@
+package com.botdarr;
+
+import com.botdarr.api.Api;
+import com.botdarr.api.CacheClass;
+import com.botdarr.api.CacheResult;
+import com.botdarr.clients.ChatClient;
+import com.botdarr.clients.ChatClientResponse;
+import com.botdarr.connections.WebhookServer;
+import com.google.gson.JsonObject;
+import mockit.Deencapsulation;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class WebhookServerTests {
+  @Before
+  public void beforeEachTest() throws Exception {
+    //accepted webhooks are handed off to the scheduler, which needs a config
+    File propertiesFile = new File(temporaryFolder.getRoot(), "properties");
+    Deencapsulation.setField(Config.class, "propertiesPath", propertiesFile.getPath());
+    Properties properties = new Properties();
+    properties.setProperty("discord-token", "G$K$GK");
+    properties.setProperty("discord-channels", "plex-testing2");
+    try (FileOutputStream fos = new FileOutputStream(propertiesFile)) {
+      properties.store(fos, "");
+    }
+  }
+
+  @After
+  public void afterEachTest() {
+    if (webhookServer != null) {
+      webhookServer.stop();
+    }
+  }
+
+  @Test
+  public void webhook_validTokenAccepted() throws Exception {
+    start("abc");
+    Assert.assertEquals(202, post("/test?token=abc", "{\"eventType\":\"Download\"}"));
+    JsonObject webhook = testApi.webhooks.poll(5, TimeUnit.SECONDS);
+    Assert.assertNotNull(webhook);
+    Assert.assertEquals("Download", webhook.get("eventType").getAsString());
+  }
+
+  @Test
+  public void webhook_missingTokenRejected() throws Exception {
+    start("abc");
+    Assert.assertEquals(401, post("/test", "{\"eventType\":\"MovieDelete\"}"));
+    Assert.assertEquals(401, post("/test?other=abc", "{\"eventType\":\"MovieDelete\"}"));
+    Assert.assertTrue(testApi.webhooks.isEmpty());
+  }
+
+  @Test
+  public void webhook_invalidTokenRejected() throws Exception {
+    start("abc");
+    Assert.assertEquals(401, post("/test?token=abd", "{\"eventType\":\"MovieDelete\"}"));
+    Assert.assertEquals(401, post("/test?token=ab", "{\"eventType\":\"MovieDelete\"}"));
+    Assert.assertTrue(testApi.webhooks.isEmpty());
+  }
+
+  @Test
+  public void webhook_onlyPostAccepted() throws Exception {
+    start("abc");
+    HttpURLConnection connection = open("/test?token=abc");
+    connection.setRequestMethod("GET");
+    Assert.assertEquals(405, connection.getResponseCode());
+  }
+
+  @Test
+  public void webhook_oversizedBodyRejected() throws Exception {
+    start("abc");
+    StringBuilder body = new StringBuilder("{\"eventType\":\"");
+    while (body.length() <= 1024 * 1024) {
+      body.append("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa");
+    }
+    body.append("\"}");
+    Assert.assertEquals(413, post("/test?token=abc", body.toString()));
+    Assert.assertTrue(testApi.webhooks.isEmpty());
+  }
+
+  @Test
+  public void webhook_badJsonRejected() throws Exception {
+    start("abc");
+    Assert.assertEquals(400, post("/test?token=abc", "{\"eventType\":"));
+    Assert.assertEquals(400, post("/test?token=abc", "[1, 2]"));
+    Assert.assertTrue(testApi.webhooks.isEmpty());
+  }
+
+  @Test
+  public void webhook_noTokenOnlyListensOnLoopback() throws Exception {
+    start("");
+    Assert.assertTrue(webhookServer.getAddress().getAddress().isLoopbackAddress());
+    Assert.assertEquals(202, post("/test", "{\"eventType\":\"Test\"}"));
+    Assert.assertNotNull(testApi.webhooks.poll(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void webhook_tokenListensOnAllInterfaces() throws Exception {
+    start("abc");
+    Assert.assertTrue(webhookServer.getAddress().getAddress().isAnyLocalAddress());
+  }
+
+  private void start(String token) throws IOException {
+    webhookServer = new WebhookServer(Collections.singletonList(testApi), 0, token);
+    webhookServer.start();
+  }
+
+  private HttpURLConnection open(String pathAndQuery) throws IOException {
+    URL url = new URL("http://127.0.0.1:" + webhookServer.getAddress().getPort() + pathAndQuery);
+    return (HttpURLConnection) url.openConnection();
+  }
+
+  private int post(String pathAndQuery, String body) throws IOException {
+    HttpURLConnection connection = open(pathAndQuery);
+    connection.setRequestMethod("POST");
+    connection.setDoOutput(true);
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    connection.setFixedLengthStreamingMode(bytes.length);
+    try (OutputStream outputStream = connection.getOutputStream()) {
+      outputStream.write(bytes);
+    }
+    return connection.getResponseCode();
+  }
+
+  private static class TestApi implements Api {
+    @Override
+    public String getName() {
+      return "test";
+    }
+
+    @Override
+    public String getUrlBase() {
+      return null;
+    }
+
+    @Override
+    public String getApiUrl(String path) {
+      return null;
+    }
+
+    @Override
+    public List<ChatClientResponse> downloads() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public boolean sendPeriodicNotifications(ChatClient chatClient) {
+      return false;
+    }
+
+    @Override
+    public void handleWebhook(JsonObject webhook) {
+      webhooks.add(webhook);
+    }
+
+    @Override
+    public CacheResult cacheData(CacheClass cacheClass) {
+      return CacheResult.UNCHANGED;
+    }
+
+    @Override
+    public String getApiToken() {
+      return null;
+    }
+
+    private final BlockingQueue<JsonObject> webhooks = new LinkedBlockingQueue<>();
+  }
+
+  private final TestApi testApi = new TestApi();
+  private WebhookServer webhookServer;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+}
@@ -0,0 +1,88 @@
+package com.botdarr.benchmarks;
+
+import com.botdarr.clients.ChatClientResponse;
+import com.botdarr.commands.BaseCommand;
+import com.botdarr.commands.Command;
+import com.botdarr.commands.CommandResponse;
+import com.botdarr.commands.CommandRouter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the command router against the linear startsWith/replaceAll dispatch it replaced
+ * (run main from the test classpath after mvn test-compile)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandRouterBenchmark {
+  @Param({
+    "help",
+    "movie find all downloads",
+    "show find new the office",
+    "just chatting, not a command"
+  })
+  public String message;
+
+  @Setup
+  public void setup() {
+    for (String identifier : IDENTIFIERS) {
+      commands.add(new BaseCommand(identifier, identifier) {
+        @Override
+        public CommandResponse<? extends ChatClientResponse> execute(String command) {
+          return null;
+        }
+      });
+    }
+    commandRouter = new CommandRouter(commands);
+  }
+
+  @Benchmark
+  public String linearDispatch() {
+    //how ChatClientType.processMessage used to find commands
+    for (Command command : commands) {
+      if (message.startsWith(command.getIdentifier())) {
+        return message.replaceAll(command.getIdentifier().toLowerCase(), "").trim();
+      }
+    }
+    return null;
+  }
+
+  @Benchmark
+  public String trieRouter() {
+    CommandRouter.Match match = commandRouter.route(message);
+    return match == null ? null : match.getArguments();
+  }
+
+  public static void main(String[] args) throws Exception {
+    new Runner(new OptionsBuilder().include(CommandRouterBenchmark.class.getSimpleName()).build()).run();
+  }
+
+  //same identifiers as RadarrCommands, SonarrCommands and HelpCommands (in the same order)
+  private static final String[] IDENTIFIERS = {
+    "movie discover", "movie id add", "movie title add", "movie profiles", "movie find new", "movie find existing",
+    "movie find downloads", "movie find all downloads", "movie hash download", "movie downloads", "movie cancel download",
+    "show id add", "show title add", "show downloads", "show profiles", "show find existing", "show find new",
+    "help", "movies help", "shows help"
+  };
+  private final List<Command> commands = new ArrayList<>();
+  private CommandRouter commandRouter;
+}
@@ -0,0 +1,53 @@
+package com.botdarr.benchmarks;
+
+import com.botdarr.discord.DiscordCachePolicy;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.JDABuilder;
+import net.dv8tion.jda.api.entities.Guild;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the heap JDA retains once it's ready, with the default caches vs low memory mode.
+ * JDA 4 can only fill its caches from the gateway, so this connects to a test guild (the bigger the better, i.e., a
+ * synthetic guild stuffed with members, channels and voice activity) instead of a mock.
+ * Run main from the test classpath after mvn test-compile, once per mode so each gets a fresh heap:
+ * -Ddiscord.token=... com.botdarr.benchmarks.DiscordCacheBenchmark default|low-memory
+ */
+public class DiscordCacheBenchmark {
+  public static void main(String[] args) throws Exception {
+    String token = System.getProperty("discord.token");
+    if (token == null || args.length != 1) {
+      System.err.println("usage: -Ddiscord.token=<bot token> DiscordCacheBenchmark default|low-memory");
+      return;
+    }
+    boolean lowMemory = args[0].equalsIgnoreCase("low-memory");
+    long baseline = retainedHeap();
+    JDA jda = DiscordCachePolicy.apply(new JDABuilder(token), lowMemory).build();
+    jda.awaitReady();
+    //chunking (when it's on) keeps going after ready, let it finish
+    TimeUnit.SECONDS.sleep(SETTLE_SECONDS);
+    long retained = retainedHeap() - baseline;
+    int members = 0;
+    for (Guild guild : jda.getGuilds()) {
+      members += guild.getMembers().size();
+    }
+    System.out.println(args[0] + ": " + jda.getGuilds().size() + " guilds, " + members + " cached members, " +
+      jda.getUsers().size() + " cached users, " + (retained / 1024) + " KB retained");
+    jda.shutdownNow();
+  }
+
+  private static long retainedHeap() throws InterruptedException {
+    MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+    //a few rounds so soft/finalizable garbage goes too
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      TimeUnit.MILLISECONDS.sleep(200);
+    }
+    return memoryMXBean.getHeapMemoryUsage().getUsed();
+  }
+
+  private static final int SETTLE_SECONDS = 30;
+}